@@ -37,8 +37,13 @@ import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
 import org.jboss.netty.channel.socket.oio.OioDatagramChannelFactory;
 import org.jboss.netty.util.ThreadNameDeterminer;
 import org.jboss.netty.util.ThreadRenamingRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.*;
 
 /**
@@ -59,17 +64,32 @@ public abstract class AbstractCoapApplication {
      */
     public static final int NOT_BOUND = -1;
 
+    private static Logger LOG = LoggerFactory.getLogger(AbstractCoapApplication.class.getName());
+
     private ScheduledThreadPoolExecutor executor;
+    private Executor ioExecutor;
     private DatagramChannel channel;
+    private List<DatagramChannel> channels;
     private String applicationName;
 
 
     /**
-     * Creates a new instance of {@link AbstractCoapApplication}.
+     * Creates a new instance of {@link AbstractCoapApplication} using {@link ExecutionMode#PLATFORM_THREADS}.
      *
      * @param applicationName the given name of this application (for logging only)
      */
     protected AbstractCoapApplication(String applicationName) {
+        this(applicationName, ExecutionMode.PLATFORM_THREADS);
+    }
+
+    /**
+     * Creates a new instance of {@link AbstractCoapApplication}.
+     *
+     * @param applicationName the given name of this application (for logging only)
+     * @param executionMode the {@link ExecutionMode} to determine the threads to process the tasks submitted to
+     *                      the executor (see {@link #getExecutor()})
+     */
+    protected AbstractCoapApplication(String applicationName, ExecutionMode executionMode) {
 
         this.applicationName = applicationName;
 
@@ -85,7 +105,24 @@ public abstract class AbstractCoapApplication {
 
         // determine number of I/O threads and create thread pool executor of that size
         int ioThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
-        this.executor = new ScheduledThreadPoolExecutor(ioThreads, threadFactory);
+        ExecutorService taskExecutor = null;
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            taskExecutor = HybridScheduledExecutor.newVirtualThreadPerTaskExecutor(applicationName + " Worker #");
+            if (taskExecutor == null) {
+                LOG.warn("Virtual threads are not supported (Java 21 or later required), use platform threads.");
+            }
+        }
+
+        if (taskExecutor == null) {
+            this.executor = new ScheduledThreadPoolExecutor(ioThreads, threadFactory);
+            this.ioExecutor = this.executor;
+        } else {
+            // Netty I/O and timers remain on platform threads, everything else is done by virtual threads
+            HybridScheduledExecutor hybridExecutor = new HybridScheduledExecutor(ioThreads, threadFactory, taskExecutor);
+            this.executor = hybridExecutor;
+            this.ioExecutor = hybridExecutor.getPlatformExecutor();
+            LOG.info("Application \"{}\" uses virtual threads to process messages.", applicationName);
+        }
 //        this.executor = new SynchronizedExecutor(ioThreads, threadFactory);
     }
 
@@ -98,9 +135,73 @@ public abstract class AbstractCoapApplication {
      */
     protected void startApplication(CoapChannelPipelineFactory pipelineFactory, InetSocketAddress localSocket) {
         //ChannelFactory channelFactory = new NioDatagramChannelFactory(executor, executor.getCorePoolSize() / 2 );
-        ChannelFactory channelFactory = new NioDatagramChannelFactory(executor, 1 );
+        ChannelFactory channelFactory = new NioDatagramChannelFactory(ioExecutor, 1 );
+
+        this.channels = new ArrayList<>(1);
+        this.channel = bind(channelFactory, pipelineFactory, localSocket);
+        this.channels.add(this.channel);
+    }
+
+    /**
+     * <p>Starts this application with one {@link DatagramChannel} per given {@link CoapChannelPipelineFactory}. All
+     * channels are bound to the same local socket using the socket option <code>SO_REUSEPORT</code> and each
+     * channel is served by its own I/O thread. As the kernel distributes inbound datagrams based on the remote
+     * socket, all messages of a particular remote endpoint are processed by the same channel, i.e. the state of the
+     * {@link AbstractCoapChannelHandler}s of each pipeline is sharded by remote socket. If the port of the given
+     * socket is 0, the first channel is bound to an ephemeral port and all further channels to the same port.</p>
+     *
+     * @param pipelineFactories the {@link CoapChannelPipelineFactory}s (one per channel), each providing its own
+     * instances of {@link AbstractCoapChannelHandler}s
+     * @param localSocket the socket address to be used for inbound and outbound messages
+     *
+     * @throws java.lang.IllegalArgumentException if the number of factories exceeds the value returned by
+     * {@link #getMaxNumberOfChannels()}
+     */
+    protected void startApplication(List<? extends CoapChannelPipelineFactory> pipelineFactories,
+                                    InetSocketAddress localSocket) {
+
+        if (pipelineFactories.size() > getMaxNumberOfChannels()) {
+            throw new IllegalArgumentException("Number of channels must not exceed " + getMaxNumberOfChannels() +
+                    " (was: " + pipelineFactories.size() + ")");
+        }
+
+        if (pipelineFactories.size() == 1) {
+            startApplication(pipelineFactories.get(0), localSocket);
+            return;
+        }
+
+        ChannelFactory channelFactory = new ReusePortDatagramChannelFactory(ioExecutor, pipelineFactories.size());
+
+        this.channels = new ArrayList<>(pipelineFactories.size());
+        this.channel = bind(channelFactory, pipelineFactories.get(0), localSocket);
+        this.channels.add(this.channel);
+
+        // the local socket of the first channel, i.e. with the actual port if the given port was 0
+        InetSocketAddress boundSocket = this.channel.getLocalAddress();
+        for (CoapChannelPipelineFactory pipelineFactory : pipelineFactories.subList(1, pipelineFactories.size())) {
+            this.channels.add(bind(channelFactory, pipelineFactory, boundSocket));
+        }
+        LOG.info("Bound {} channels to local socket \"{}\".", this.channels.size(), boundSocket);
+    }
+
+    /**
+     * <p>Returns the maximum number of {@link DatagramChannel}s this application can bind to its local socket, i.e.
+     * 1 if <code>SO_REUSEPORT</code> is not supported (see {@link ReusePortDatagramChannelFactory#isSupported()}).
+     * Otherwise half of the threads of the executor (see {@link #getExecutor()}), as each channel permanently
+     * occupies one thread and the remaining threads are required to process the messages.</p>
+     *
+     * @return the maximum number of {@link DatagramChannel}s this application can bind to its local socket
+     */
+    public int getMaxNumberOfChannels() {
+        if (!ReusePortDatagramChannelFactory.isSupported()) {
+            return 1;
+        }
+        return Math.max(1, this.executor.getCorePoolSize() / 2);
+    }
+
+    private DatagramChannel bind(ChannelFactory channelFactory, CoapChannelPipelineFactory pipelineFactory,
+            InetSocketAddress localSocket) {
 
-        //System.out.println("Threads: " + (executor.getCorePoolSize() - 1));
         //Create and configure bootstrap
         ConnectionlessBootstrap bootstrap = new ConnectionlessBootstrap(channelFactory);
         bootstrap.setPipelineFactory(pipelineFactory);
@@ -108,15 +209,17 @@ public abstract class AbstractCoapApplication {
                 new FixedReceiveBufferSizePredictor(RECEIVE_BUFFER_SIZE));
 
         //Create datagram channel
-        this.channel = (DatagramChannel) bootstrap.bind(localSocket);
+        DatagramChannel datagramChannel = (DatagramChannel) bootstrap.bind(localSocket);
 
         // set the channel handler contexts
         for (ChannelHandler handler : pipelineFactory.getChannelHandlers()) {
             if (handler instanceof AbstractCoapChannelHandler) {
-                ChannelHandlerContext context = this.channel.getPipeline().getContext(handler.getClass());
+                ChannelHandlerContext context = datagramChannel.getPipeline().getContext(handler.getClass());
                 ((AbstractCoapChannelHandler) handler).setContext(context);
             }
         }
+
+        return datagramChannel;
     }
 
     /**
@@ -141,7 +244,8 @@ public abstract class AbstractCoapApplication {
      * {@link de.uzl.itm.ncoap.application.AbstractCoapApplication} to handle tasks, e.g. write and
      * receive messages. The returned {@link java.util.concurrent.ScheduledExecutorService} may also be used by
      * {@link de.uzl.itm.ncoap.application.server.resource.Webresource}s to handle inbound
-     * {@link de.uzl.itm.ncoap.message.CoapRequest}s
+     * {@link de.uzl.itm.ncoap.message.CoapRequest}s. Depending on the {@link ExecutionMode}, tasks which are not
+     * scheduled may be executed by virtual threads (see {@link HybridScheduledExecutor}).
      *
      * @return the {@link java.util.concurrent.ScheduledExecutorService} which is used by this
      * {@link de.uzl.itm.ncoap.application.AbstractCoapApplication} to handle tasks, e.g. write and
@@ -161,6 +265,17 @@ public abstract class AbstractCoapApplication {
         return this.channel;
     }
 
+    /**
+     * Returns all {@link DatagramChannel} instances this application uses to communicate with other endpoints. Unless
+     * the application was started with multiple channels (see {@link #startApplication(List, InetSocketAddress)})
+     * the returned list only contains the channel returned by {@link #getChannel()}.
+     *
+     * @return all {@link DatagramChannel} instances this application uses to communicate with other endpoints
+     */
+    public List<DatagramChannel> getChannels() {
+        return Collections.unmodifiableList(this.channels);
+    }
+
     /**
      * Returns the name this application was given
      *
@@ -50,9 +50,24 @@ public abstract class CoapChannelPipelineFactory implements ChannelPipelineFacto
 
 
     protected CoapChannelPipelineFactory(ScheduledExecutorService executor) {
+        this(executor, new ChannelHandler[0]);
+    }
+
+    /**
+     * Creates a new instance of {@link CoapChannelPipelineFactory} with additional handlers for encoded messages.
+     * These handlers are located between the {@link ExecutionHandler} and the {@link CoapMessageEncoder}, i.e. they
+     * deal with inbound and outbound {@link org.jboss.netty.buffer.ChannelBuffer}s.
+     *
+     * @param executor the {@link ScheduledExecutorService} to process inbound messages
+     * @param encodedMessageHandlers the handlers for encoded messages
+     */
+    protected CoapChannelPipelineFactory(ScheduledExecutorService executor, ChannelHandler... encodedMessageHandlers) {
         this.channelHandlers = new LinkedHashSet<>();
 
         addChannelHandler(new ExecutionHandler(executor));
+        for (ChannelHandler handler : encodedMessageHandlers) {
+            addChannelHandler(handler);
+        }
         addChannelHandler(new CoapMessageEncoder());
         addChannelHandler(new CoapMessageDecoder());
      }
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application;
+
+/**
+ * The execution model of an {@link AbstractCoapApplication}, i.e. which threads process the tasks submitted to
+ * the executor returned by {@link AbstractCoapApplication#getExecutor()}.
+ *
+ * @author Oliver Kleine
+ */
+public enum ExecutionMode {
+
+    /**
+     * All tasks (Netty I/O, timers, message processing, request handling, and callbacks) are executed by a fixed
+     * pool of platform threads. This is the default.
+     */
+    PLATFORM_THREADS,
+
+    /**
+     * Netty I/O and scheduled tasks (timers) are executed by a fixed pool of platform threads while all other tasks
+     * (i.e. the processing of inbound messages including request handling by
+     * {@link de.uzl.itm.ncoap.application.server.resource.Webresource}s and the invocation of
+     * {@link de.uzl.itm.ncoap.application.client.ClientCallback}s) are executed by a new virtual thread per task.
+     * This is to not run out of threads if these tasks block, e.g. due to database lookups.
+     *
+     * <p><b>Note:</b> virtual threads require Java 21 or later. On older runtimes, the application falls back to
+     * {@link #PLATFORM_THREADS}.</p>
+     */
+    VIRTUAL_THREADS
+}
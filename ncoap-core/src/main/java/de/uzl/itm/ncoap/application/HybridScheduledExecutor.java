@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A {@link HybridScheduledExecutor} is a {@link ScheduledThreadPoolExecutor} that only executes scheduled
+ * tasks (i.e. timers) with its own (platform) threads. All tasks to be executed immediately (i.e. via
+ * {@link #execute(Runnable)} or one of the <code>submit</code> methods) are delegated to another
+ * {@link ExecutorService}, e.g. one starting a new virtual thread per task (see
+ * {@link #newVirtualThreadPerTaskExecutor(String)}).</p>
+ *
+ * <p>As the Netty I/O threads permanently occupy a thread, they must not be started with
+ * {@link #execute(Runnable)} but with the {@link Executor} returned by {@link #getPlatformExecutor()}.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class HybridScheduledExecutor extends ScheduledThreadPoolExecutor {
+
+    private static Logger LOG = LoggerFactory.getLogger(HybridScheduledExecutor.class.getName());
+
+    private final ExecutorService taskExecutor;
+    private final Executor platformExecutor;
+
+    /**
+     * Creates a new instance of {@link HybridScheduledExecutor}
+     *
+     * @param corePoolSize the number of platform threads to execute scheduled tasks and Netty I/O
+     * @param threadFactory the {@link ThreadFactory} to create the platform threads
+     * @param taskExecutor the {@link ExecutorService} to execute all tasks that are not scheduled
+     */
+    public HybridScheduledExecutor(int corePoolSize, ThreadFactory threadFactory, ExecutorService taskExecutor) {
+        super(corePoolSize, threadFactory);
+        this.taskExecutor = taskExecutor;
+        this.platformExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                HybridScheduledExecutor.super.execute(command);
+            }
+        };
+    }
+
+    /**
+     * Returns an {@link Executor} that executes the given tasks with the platform threads of this
+     * {@link HybridScheduledExecutor} (e.g. for Netty I/O).
+     *
+     * @return an {@link Executor} that executes the given tasks with the platform threads of this
+     * {@link HybridScheduledExecutor}
+     */
+    public Executor getPlatformExecutor() {
+        return this.platformExecutor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.taskExecutor.execute(command);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return this.taskExecutor.submit(task);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return this.taskExecutor.submit(task, result);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return this.taskExecutor.submit(task);
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        this.taskExecutor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = new ArrayList<>(super.shutdownNow());
+        result.addAll(this.taskExecutor.shutdownNow());
+        return result;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return super.isTerminated() && this.taskExecutor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return super.awaitTermination(timeout, unit) &&
+                this.taskExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns a new {@link ExecutorService} that starts a new virtual thread per task or <code>null</code> if the
+     * runtime does not support virtual threads (i.e. Java versions prior to 21). As this code is compiled for older
+     * versions, the virtual threads API is accessed via reflection.
+     *
+     * @param namePrefix the prefix of the names of the virtual threads (followed by a counter)
+     *
+     * @return a new {@link ExecutorService} that starts a new virtual thread per task or <code>null</code> if the
+     * runtime does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method method = java.util.concurrent.Executors.class.getMethod(
+                    "newThreadPerTaskExecutor", ThreadFactory.class
+            );
+            return (ExecutorService) method.invoke(null, threadFactory);
+        } catch (Exception ex) {
+            LOG.debug("Virtual threads are not supported by this runtime ({}).", ex.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application;
+
+import org.jboss.netty.channel.ChannelException;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.socket.DatagramChannel;
+import org.jboss.netty.channel.socket.nio.NioDatagramChannel;
+import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>A {@link NioDatagramChannelFactory} that enables <code>SO_REUSEPORT</code> on every newly created
+ * {@link DatagramChannel} prior to binding it. This allows to bind several channels to the very same local socket
+ * address. The kernel then distributes inbound datagrams among these channels based on a hash of the remote
+ * socket, i.e. all datagrams from a particular remote socket are received by the same channel.</p>
+ *
+ * <p>Each channel is assigned to its own I/O worker thread (round robin), so the number of workers given on
+ * construction should equal the number of channels to be bound.</p>
+ *
+ * <p><b>Note:</b> The socket option <code>SO_REUSEPORT</code> is available since Java 9 and only on operating
+ * systems supporting it (e.g. Linux 3.9+). Use {@link #isSupported()} to check for availability.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class ReusePortDatagramChannelFactory extends NioDatagramChannelFactory {
+
+    private static Logger LOG = LoggerFactory.getLogger(ReusePortDatagramChannelFactory.class.getName());
+
+    private static final SocketOption<Boolean> SO_REUSEPORT;
+    private static final Method GET_DATAGRAM_CHANNEL;
+
+    static {
+        SocketOption<Boolean> reusePort = null;
+        Method getDatagramChannel = null;
+        try {
+            @SuppressWarnings("unchecked")
+            SocketOption<Boolean> option =
+                    (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+            // check if the platform supports the option at all
+            java.nio.channels.DatagramChannel probe = java.nio.channels.DatagramChannel.open();
+            try {
+                if (probe.supportedOptions().contains(option)) {
+                    reusePort = option;
+                }
+            } finally {
+                probe.close();
+            }
+            getDatagramChannel = NioDatagramChannel.class.getDeclaredMethod("getDatagramChannel");
+            getDatagramChannel.setAccessible(true);
+        } catch (Exception ex) {
+            LOG.debug("Socket option SO_REUSEPORT is not available ({}).", ex.toString());
+            reusePort = null;
+        }
+        SO_REUSEPORT = reusePort;
+        GET_DATAGRAM_CHANNEL = getDatagramChannel;
+    }
+
+    /**
+     * Creates a new instance of {@link ReusePortDatagramChannelFactory}.
+     *
+     * @param workerExecutor the {@link Executor} to provide the I/O worker threads
+     * @param workerCount the number of I/O worker threads (should equal the number of channels to be bound)
+     */
+    public ReusePortDatagramChannelFactory(Executor workerExecutor, int workerCount) {
+        super(workerExecutor, workerCount);
+    }
+
+    /**
+     * Returns <code>true</code> if <code>SO_REUSEPORT</code> is supported by the running JVM and operating system
+     * and <code>false</code> otherwise.
+     *
+     * @return <code>true</code> if <code>SO_REUSEPORT</code> is supported by the running JVM and operating system
+     * and <code>false</code> otherwise.
+     */
+    public static boolean isSupported() {
+        return SO_REUSEPORT != null && GET_DATAGRAM_CHANNEL != null;
+    }
+
+    @Override
+    public DatagramChannel newChannel(ChannelPipeline pipeline) {
+        DatagramChannel channel = super.newChannel(pipeline);
+        if (!isSupported()) {
+            return channel;
+        }
+
+        try {
+            java.nio.channels.DatagramChannel datagramChannel =
+                    (java.nio.channels.DatagramChannel) GET_DATAGRAM_CHANNEL.invoke(channel);
+            datagramChannel.setOption(SO_REUSEPORT, true);
+            return channel;
+        } catch (Exception ex) {
+            channel.close();
+            throw new ChannelException("Could not enable SO_REUSEPORT!", ex);
+        }
+    }
+}
@@ -27,12 +27,14 @@ package de.uzl.itm.ncoap.application.client;
 import de.uzl.itm.ncoap.application.CoapChannelPipelineFactory;
 import de.uzl.itm.ncoap.communication.blockwise.client.ClientBlock1Handler;
 import de.uzl.itm.ncoap.communication.blockwise.client.ClientBlock2Handler;
+import de.uzl.itm.ncoap.communication.caching.ClientResponseCacheHandler;
 import de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher;
 import de.uzl.itm.ncoap.communication.dispatching.client.TokenFactory;
 import de.uzl.itm.ncoap.communication.identification.ClientIdentificationHandler;
 import de.uzl.itm.ncoap.communication.observing.ClientObservationHandler;
 import de.uzl.itm.ncoap.communication.reliability.inbound.ClientInboundReliabilityHandler;
 import de.uzl.itm.ncoap.communication.reliability.outbound.ClientOutboundReliabilityHandler;
+import de.uzl.itm.ncoap.communication.reliability.outbound.CongestionController;
 import de.uzl.itm.ncoap.communication.reliability.outbound.MessageIDFactory;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.socket.DatagramChannel;
@@ -50,20 +52,48 @@ public class ClientChannelPipelineFactory extends CoapChannelPipelineFactory {
 
 
     /**
-     * Creates a new instance of {@link ClientChannelPipelineFactory}.
+     * Creates a new instance of {@link ClientChannelPipelineFactory} (without response cache).
      *
      * @param executor The {@link ScheduledExecutorService} to provide the thread(s) for I/O operations
      */
     public ClientChannelPipelineFactory(ScheduledExecutorService executor) {
+        this(executor, 0);
+    }
+
+    /**
+     * Creates a new instance of {@link ClientChannelPipelineFactory}.
+     *
+     * @param executor The {@link ScheduledExecutorService} to provide the thread(s) for I/O operations
+     * @param responseCacheSize the maximum number of responses cached by the {@link ClientResponseCacheHandler}
+     *                          (<code>0</code> to disable the cache)
+     */
+    public ClientChannelPipelineFactory(ScheduledExecutorService executor, int responseCacheSize) {
+        this(executor, responseCacheSize, CongestionController.DEFAULT_NSTART);
+    }
+
+    /**
+     * Creates a new instance of {@link ClientChannelPipelineFactory}.
+     *
+     * @param executor The {@link ScheduledExecutorService} to provide the thread(s) for I/O operations
+     * @param responseCacheSize the maximum number of responses cached by the {@link ClientResponseCacheHandler}
+     *                          (<code>0</code> to disable the cache)
+     * @param nstart the maximum number of outstanding confirmable requests per remote endpoint (see
+     *               {@link CongestionController})
+     */
+    public ClientChannelPipelineFactory(ScheduledExecutorService executor, int responseCacheSize, int nstart) {
 
         super(executor);
+        CongestionController congestionController = new CongestionController(executor, nstart);
+
         addChannelHandler(new ClientIdentificationHandler(executor));
-        addChannelHandler(new ClientOutboundReliabilityHandler(executor, new MessageIDFactory(executor)));
+        addChannelHandler(new ClientOutboundReliabilityHandler(executor, new MessageIDFactory(executor),
+                congestionController));
         addChannelHandler(new ClientInboundReliabilityHandler(executor));
         addChannelHandler(new ClientBlock2Handler(executor));
         addChannelHandler(new ClientBlock1Handler(executor));
         addChannelHandler(new ClientObservationHandler(executor));
-        addChannelHandler(new ResponseDispatcher(executor, new TokenFactory()));
+        addChannelHandler(new ClientResponseCacheHandler(executor, congestionController, responseCacheSize));
+        addChannelHandler(new ResponseDispatcher(executor, new TokenFactory(), congestionController));
     }
 
 }
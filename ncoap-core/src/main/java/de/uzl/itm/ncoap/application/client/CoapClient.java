@@ -24,9 +24,13 @@
  */
 package de.uzl.itm.ncoap.application.client;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import de.uzl.itm.ncoap.application.AbstractCoapApplication;
+import de.uzl.itm.ncoap.application.ExecutionMode;
 import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.caching.ClientResponseCacheHandler;
 import de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher;
+import de.uzl.itm.ncoap.communication.reliability.outbound.CongestionController;
 import de.uzl.itm.ncoap.message.CoapMessage;
 import de.uzl.itm.ncoap.message.CoapRequest;
 import de.uzl.itm.ncoap.message.CoapResponse;
@@ -36,13 +40,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An instance of {@link CoapClient} is the entry point to send {@link CoapMessage}s to a (remote)
  * server or proxy.
  * 
  * With {@link #sendCoapRequest(CoapRequest, InetSocketAddress, ClientCallback)} it e.g. provides an
- * easy-to-use method to write CoAP requests to a server.
+ * easy-to-use method to write CoAP requests to a server. Alternatively,
+ * {@link #sendCoapRequest(CoapRequest, InetSocketAddress, long, TimeUnit)} returns a {@link ResponseFuture}
+ * (with a deadline) to ease the composition of many parallel requests.
  * 
  * Furthermore, with {@link #sendCoapPing(java.net.InetSocketAddress, ClientCallback)} it provides a method to test
  * if a remote CoAP endpoint (i.e. the CoAP application and not only the host(!)) is alive.
@@ -56,6 +64,7 @@ public class CoapClient extends AbstractCoapApplication {
     public static final String DEFAULT_NAME = "nCoAP Client";
 
     private ResponseDispatcher responseDispatcher;
+    private ClientResponseCacheHandler responseCache;
     private static Logger LOG = LoggerFactory.getLogger(CoapClient.class.getName());
 
 
@@ -93,12 +102,89 @@ public class CoapClient extends AbstractCoapApplication {
      * @param clientSocket the socket to send {@link CoapMessage}s
      */
     public CoapClient(String name, InetSocketAddress clientSocket) {
-        super(name);
+        this(name, clientSocket, ExecutionMode.PLATFORM_THREADS);
+    }
+
+    /**
+     * Creates a new instance of {@link CoapClient}.
+     *
+     * @param name the name of the application (used for logging purposes)
+     * @param clientSocket the socket to send {@link CoapMessage}s
+     * @param executionMode the {@link ExecutionMode} to determine the threads to, e.g. invoke the
+     *                      {@link ClientCallback}s
+     */
+    public CoapClient(String name, InetSocketAddress clientSocket, ExecutionMode executionMode) {
+        this(name, clientSocket, executionMode, 0);
+    }
+
+    /**
+     * Creates a new instance of {@link CoapClient} with a response cache, i.e. responses to GET requests are
+     * cached (according to their Max-Age) and requests for fresh cached responses are answered locally (see
+     * {@link ClientResponseCacheHandler} for details).
+     *
+     * @param name the name of the application (used for logging purposes)
+     * @param clientSocket the socket to send {@link CoapMessage}s
+     * @param executionMode the {@link ExecutionMode} to determine the threads to, e.g. invoke the
+     *                      {@link ClientCallback}s
+     * @param responseCacheSize the maximum number of cached responses (<code>0</code> to disable the cache, see
+     *                          {@link ClientResponseCacheHandler#DEFAULT_MAXIMUM_SIZE} for a recommended value)
+     */
+    public CoapClient(String name, InetSocketAddress clientSocket, ExecutionMode executionMode,
+            int responseCacheSize) {
 
-        ClientChannelPipelineFactory factory = new ClientChannelPipelineFactory(this.getExecutor());
+        this(name, clientSocket, executionMode, responseCacheSize, CongestionController.DEFAULT_NSTART);
+    }
+
+    /**
+     * Creates a new instance of {@link CoapClient} with a response cache (see
+     * {@link #CoapClient(String, InetSocketAddress, ExecutionMode, int)}) and the given NSTART, i.e. the maximum
+     * number of outstanding confirmable requests per remote endpoint. Further confirmable requests to the same
+     * remote endpoint are queued (see {@link CongestionController} for details).
+     *
+     * @param name the name of the application (used for logging purposes)
+     * @param clientSocket the socket to send {@link CoapMessage}s
+     * @param executionMode the {@link ExecutionMode} to determine the threads to, e.g. invoke the
+     *                      {@link ClientCallback}s
+     * @param responseCacheSize the maximum number of cached responses (<code>0</code> to disable the cache, see
+     *                          {@link ClientResponseCacheHandler#DEFAULT_MAXIMUM_SIZE} for a recommended value)
+     * @param nstart the maximum number of outstanding confirmable requests per remote endpoint (see
+     *               {@link CongestionController#DEFAULT_NSTART} for the default value)
+     */
+    public CoapClient(String name, InetSocketAddress clientSocket, ExecutionMode executionMode,
+            int responseCacheSize, int nstart) {
+
+        super(name, executionMode);
+
+        ClientChannelPipelineFactory factory = new ClientChannelPipelineFactory(this.getExecutor(),
+                responseCacheSize, nstart);
         startApplication(factory, clientSocket);
 
         this.responseDispatcher = getChannel().getPipeline().get(ResponseDispatcher.class);
+        this.responseCache = getChannel().getPipeline().get(ClientResponseCacheHandler.class);
+    }
+
+
+    /**
+     * Returns the {@link ClientResponseCacheHandler} of this {@link CoapClient}, e.g. to retrieve the number of
+     * requests that were answered from the cache (the cache is disabled unless this {@link CoapClient} was
+     * created with a response cache size).
+     *
+     * @return the {@link ClientResponseCacheHandler} of this {@link CoapClient}
+     */
+    public ClientResponseCacheHandler getResponseCache() {
+        return this.responseCache;
+    }
+
+
+    /**
+     * Enables or disables the coalescing of identical concurrent GET requests (disabled by default), i.e. such
+     * requests share a single message exchange or an ongoing observation of the addressed resource (see
+     * {@link ResponseDispatcher#setCoalescing(boolean)} for details).
+     *
+     * @param coalescing <code>true</code> to enable the coalescing and <code>false</code> to disable it
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.responseDispatcher.setCoalescing(coalescing);
     }
 
 
@@ -123,6 +209,64 @@ public class CoapClient extends AbstractCoapApplication {
     }
 
 
+    /**
+     * Sends a {@link de.uzl.itm.ncoap.message.CoapRequest} to the given remote endpoint, i.e. CoAP server or
+     * proxy, and returns a {@link ResponseFuture} that succeeds with the {@link CoapResponse} or fails with a
+     * {@link MessageExchangeException} (e.g. if the request timed out on the transport layer).
+     *
+     * In contrast to {@link #sendCoapRequest(CoapRequest, InetSocketAddress, ClientCallback)} the request is
+     * written by the calling thread and the future is completed by the thread that processes the response, i.e.
+     * without an additional task being submitted to the executor.
+     *
+     * @param coapRequest the {@link de.uzl.itm.ncoap.message.CoapRequest} to be sent
+     * @param remoteSocket the desired recipient of the given {@link de.uzl.itm.ncoap.message.CoapRequest}
+     *
+     * @return the {@link ResponseFuture} to be completed with the (first) {@link CoapResponse}
+     */
+    public ResponseFuture sendCoapRequest(CoapRequest coapRequest, InetSocketAddress remoteSocket) {
+        ResponseFuture future = new ResponseFuture(this.responseDispatcher, remoteSocket);
+        future.send(coapRequest);
+        return future;
+    }
+
+
+    /**
+     * Sends a {@link de.uzl.itm.ncoap.message.CoapRequest} to the given remote endpoint like
+     * {@link #sendCoapRequest(CoapRequest, InetSocketAddress)} but with a deadline, i.e. the returned
+     * {@link ResponseFuture} fails with a {@link java.util.concurrent.TimeoutException} if there was no response
+     * within the given time. Then, a response that is received afterwards is ignored.
+     *
+     * @param coapRequest the {@link de.uzl.itm.ncoap.message.CoapRequest} to be sent
+     * @param remoteSocket the desired recipient of the given {@link de.uzl.itm.ncoap.message.CoapRequest}
+     * @param timeout the maximum time to wait for the response
+     * @param unit the {@link TimeUnit} of the given timeout
+     *
+     * @return the {@link ResponseFuture} to be completed with the (first) {@link CoapResponse}
+     */
+    public ResponseFuture sendCoapRequest(CoapRequest coapRequest, InetSocketAddress remoteSocket,
+            final long timeout, final TimeUnit unit) {
+
+        final ResponseFuture future = new ResponseFuture(this.responseDispatcher, remoteSocket);
+        future.send(coapRequest);
+        if (!future.isDone()) {
+            final ScheduledFuture<?> deadline = getExecutor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    future.expire(timeout, unit);
+                }
+            }, timeout, unit);
+
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    deadline.cancel(false);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        return future;
+    }
+
+
     /**
      * Sends a CoAP PING, i.e. a {@link de.uzl.itm.ncoap.message.CoapMessage} with
      * {@link de.uzl.itm.ncoap.message.MessageType#CON} and
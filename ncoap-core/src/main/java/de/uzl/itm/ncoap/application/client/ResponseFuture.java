@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application.client;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link ResponseFuture} is the result of
+ * {@link CoapClient#sendCoapRequest(CoapRequest, InetSocketAddress, long, TimeUnit)}, i.e. a
+ * {@link com.google.common.util.concurrent.ListenableFuture} that succeeds with the (first) {@link CoapResponse} or
+ * fails with a {@link MessageExchangeException} (e.g. on transmission timeout or RST) or a {@link TimeoutException}
+ * if the deadline of the request passed.
+ *
+ * The future is completed by the thread that processes the inbound message, i.e. without submitting another task to
+ * the executor. Listeners that are added with {@link com.google.common.util.concurrent.MoreExecutors#sameThreadExecutor()}
+ * are thus invoked without a further context switch. For many parallel requests the futures can be combined, e.g.
+ * with {@link com.google.common.util.concurrent.Futures#allAsList(Iterable)}, instead of counting down latches in
+ * {@link ClientCallback}s.
+ *
+ * <b>Note:</b> A {@link ResponseFuture} completes with the first {@link CoapResponse}, i.e. observations are
+ * canceled with the first update notification. Use {@link ClientCallback}s for observations.
+ *
+ * @author Oliver Kleine
+ */
+public class ResponseFuture extends AbstractFuture<CoapResponse> {
+
+    private static Logger LOG = LoggerFactory.getLogger(ResponseFuture.class.getName());
+
+    private final ResponseDispatcher responseDispatcher;
+    private volatile InetSocketAddress remoteSocket;
+    private volatile Token token;
+    private final ResponseCallback callback;
+
+
+    ResponseFuture(ResponseDispatcher responseDispatcher, InetSocketAddress remoteSocket) {
+        this.responseDispatcher = responseDispatcher;
+        this.remoteSocket = remoteSocket;
+        this.callback = new ResponseCallback();
+    }
+
+
+    /**
+     * Sends the given {@link CoapRequest} (in the calling thread) and relates this future with the request
+     */
+    void send(CoapRequest coapRequest) {
+        this.responseDispatcher.writeCoapRequest(coapRequest, this.remoteSocket, this.callback);
+        this.token = coapRequest.getToken();
+    }
+
+
+    /**
+     * Fails this future with a {@link TimeoutException} (unless it is already completed) and releases the
+     * {@link Token} of the request, i.e. a response received afterwards is ignored.
+     *
+     * @param timeout the timeout the request was sent with (for the message of the exception)
+     * @param unit the {@link TimeUnit} of the timeout
+     *
+     * @return <code>true</code> if this future failed due to the given timeout and <code>false</code> otherwise
+     */
+    boolean expire(long timeout, TimeUnit unit) {
+        if (setException(new TimeoutException("No response within " + timeout + " " + unit + "."))) {
+            LOG.info("Request expired (remote socket: \"{}\", token: {}).", this.remoteSocket, this.token);
+            release();
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Cancels this future and releases the {@link Token} of the request, i.e. a response received afterwards
+     * is ignored.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (super.cancel(mayInterruptIfRunning)) {
+            release();
+            return true;
+        }
+        return false;
+    }
+
+
+    private void release() {
+        Token token = this.token;
+        if (token != null) {
+            this.responseDispatcher.cancelCoapRequest(this.remoteSocket, token, this.callback);
+        }
+    }
+
+
+    private class ResponseCallback extends ClientCallback {
+
+        @Override
+        public void processCoapResponse(CoapResponse coapResponse) {
+            // intermediate blocks of blockwise transfers are no complete responses
+            if (coapResponse.isLastBlock2()) {
+                set(coapResponse);
+            }
+        }
+
+        @Override
+        public void processRemoteSocketChanged(InetSocketAddress remoteSocket, InetSocketAddress previous) {
+            ResponseFuture.this.remoteSocket = remoteSocket;
+        }
+
+        @Override
+        public void processTransmissionTimeout() {
+            setException(new MessageExchangeException("Transmission timed out."));
+        }
+
+        @Override
+        public void processReset() {
+            setException(new MessageExchangeException("Request was answered with RST."));
+        }
+
+        @Override
+        public void processBlockwiseResponseTransferFailed() {
+            setException(new MessageExchangeException("Blockwise response transfer failed."));
+        }
+
+        @Override
+        public void processMiscellaneousError(String description) {
+            setException(new MessageExchangeException(description));
+        }
+
+        @Override
+        public void processNoMessageIDAvailable() {
+            setException(new MessageExchangeException("No message ID available."));
+        }
+    }
+}
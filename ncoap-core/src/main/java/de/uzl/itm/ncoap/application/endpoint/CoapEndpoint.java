@@ -30,6 +30,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import de.uzl.itm.ncoap.application.AbstractCoapApplication;
+import de.uzl.itm.ncoap.application.ExecutionMode;
 import de.uzl.itm.ncoap.application.server.CoapServer;
 import de.uzl.itm.ncoap.application.server.resource.Webresource;
 import de.uzl.itm.ncoap.application.client.ClientCallback;
@@ -125,11 +126,31 @@ public class CoapEndpoint extends AbstractCoapApplication {
      * @param applicationName the name of this {@link CoapEndpoint} (for logging only)
      * @param notFoundHandler the {@link NotFoundHandler} to handle inbound requests for unknown resources
      * @param localSocket the socket address to send and receive messages
+     * @param maxBlock1Size the maximum BLOCK 1 size (<b>for inbound requests only</b>)
+     * @param maxBlock2Size the maximum BLOCK 2 size (<b>for outbound responses only</b>)
      */
     public CoapEndpoint(String applicationName, NotFoundHandler notFoundHandler, InetSocketAddress localSocket,
                         BlockSize maxBlock1Size, BlockSize maxBlock2Size) {
 
-        super(applicationName);
+        this(applicationName, notFoundHandler, localSocket, maxBlock1Size, maxBlock2Size,
+                ExecutionMode.PLATFORM_THREADS);
+    }
+
+    /**
+     * Creates a new instance of {@link CoapEndpoint}
+     *
+     * @param applicationName the name of this {@link CoapEndpoint} (for logging only)
+     * @param notFoundHandler the {@link NotFoundHandler} to handle inbound requests for unknown resources
+     * @param localSocket the socket address to send and receive messages
+     * @param maxBlock1Size the maximum BLOCK 1 size (<b>for inbound requests only</b>)
+     * @param maxBlock2Size the maximum BLOCK 2 size (<b>for outbound responses only</b>)
+     * @param executionMode the {@link ExecutionMode} to determine the threads to, e.g. process inbound requests
+     *                      and invoke {@link ClientCallback}s
+     */
+    public CoapEndpoint(String applicationName, NotFoundHandler notFoundHandler, InetSocketAddress localSocket,
+                        BlockSize maxBlock1Size, BlockSize maxBlock2Size, ExecutionMode executionMode) {
+
+        super(applicationName, executionMode);
 
         CoapEndpointChannelPipelineFactory pipelineFactory = new CoapEndpointChannelPipelineFactory(
                 this.getExecutor(), new TokenFactory(), notFoundHandler, maxBlock1Size, maxBlock2Size
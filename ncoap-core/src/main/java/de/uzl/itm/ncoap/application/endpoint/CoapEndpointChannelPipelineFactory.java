@@ -42,7 +42,9 @@ import de.uzl.itm.ncoap.communication.observing.ClientObservationHandler;
 import de.uzl.itm.ncoap.communication.observing.ServerObservationHandler;
 import de.uzl.itm.ncoap.communication.reliability.inbound.ClientInboundReliabilityHandler;
 import de.uzl.itm.ncoap.communication.reliability.inbound.ServerInboundReliabilityHandler;
+import de.uzl.itm.ncoap.communication.reliability.inbound.ServerResponseCacheHandler;
 import de.uzl.itm.ncoap.communication.reliability.outbound.ClientOutboundReliabilityHandler;
+import de.uzl.itm.ncoap.communication.reliability.outbound.CongestionController;
 import de.uzl.itm.ncoap.communication.reliability.outbound.MessageIDFactory;
 import de.uzl.itm.ncoap.communication.reliability.outbound.ServerOutboundReliabilityHandler;
 
@@ -70,20 +72,21 @@ public class CoapEndpointChannelPipelineFactory extends CoapChannelPipelineFacto
     public CoapEndpointChannelPipelineFactory(ScheduledExecutorService executor, TokenFactory tokenFactory,
                              NotFoundHandler notFoundHandler, BlockSize maxBlock1Size, BlockSize maxBlock2Size) {
 
-        super(executor);
+        super(executor, new ServerResponseCacheHandler());
         MessageIDFactory factory = new MessageIDFactory(executor);
+        CongestionController congestionController = new CongestionController(executor);
 
         // identification
         addChannelHandler(new ClientIdentificationHandler(executor));
         addChannelHandler(new ServerIdentificationHandler(executor));
 
         // client specific handlers
-        addChannelHandler(new ClientOutboundReliabilityHandler(executor, factory));
+        addChannelHandler(new ClientOutboundReliabilityHandler(executor, factory, congestionController));
         addChannelHandler(new ClientInboundReliabilityHandler(executor));
         addChannelHandler(new ClientBlock2Handler(executor));
         addChannelHandler(new ClientBlock1Handler(executor));
         addChannelHandler(new ClientObservationHandler(executor));
-        addChannelHandler(new ResponseDispatcher(executor, tokenFactory));
+        addChannelHandler(new ResponseDispatcher(executor, tokenFactory, congestionController));
 
         // server specific handlers
         addChannelHandler(new ServerOutboundReliabilityHandler(executor, factory));
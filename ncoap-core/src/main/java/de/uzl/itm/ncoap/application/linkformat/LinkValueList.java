@@ -64,7 +64,11 @@ public class LinkValueList {
 
     private static Collection<String> getLinkValues(String linkValueList) {
         List<String> linkValues = new ArrayList<>();
-        Collections.addAll(linkValues, linkValueList.split(","));
+        for (String linkValue : linkValueList.split(",")) {
+            if (!linkValue.isEmpty()) {
+                linkValues.add(linkValue);
+            }
+        }
         return linkValues;
     }
 
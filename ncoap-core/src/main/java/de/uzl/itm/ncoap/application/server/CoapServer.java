@@ -29,16 +29,27 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import de.uzl.itm.ncoap.application.AbstractCoapApplication;
+import de.uzl.itm.ncoap.application.ExecutionMode;
 import de.uzl.itm.ncoap.application.server.resource.Webresource;
 import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.communication.dispatching.server.NotFoundHandler;
 import de.uzl.itm.ncoap.communication.dispatching.server.RequestDispatcher;
+import de.uzl.itm.ncoap.communication.observing.ObservationRecord;
+import de.uzl.itm.ncoap.communication.observing.ObservationStore;
+import de.uzl.itm.ncoap.communication.observing.ServerObservationHandler;
 import de.uzl.itm.ncoap.message.CoapRequest;
-import org.jboss.netty.channel.*;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.ChannelGroupFuture;
+import org.jboss.netty.channel.group.ChannelGroupFutureListener;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.DatagramChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 
 /**
@@ -65,6 +76,7 @@ public class CoapServer extends AbstractCoapApplication {
     private static Logger LOG = LoggerFactory.getLogger(CoapServer.class.getName());
 
     private RequestDispatcher requestDispatcher;
+    private volatile ObservationStore observationStore;
 
     /**
      * Creates a new instance of {@link CoapServer} with default parameters, i.e.
@@ -174,13 +186,75 @@ public class CoapServer extends AbstractCoapApplication {
     public CoapServer(String name, NotFoundHandler notFoundHandler, InetSocketAddress serverSocket,
                       BlockSize maxBlock1Size, BlockSize maxBlock2Size) {
 
-        super(name);
+        this(name, notFoundHandler, serverSocket, maxBlock1Size, maxBlock2Size, 1);
+    }
+
+    /**
+     * <p>Creates a new instance of {@link CoapServer} that binds the given number of channels to the given socket
+     * (using the socket option <code>SO_REUSEPORT</code>). Each channel is served by its own I/O thread and has its
+     * own pipeline of handlers. As inbound datagrams are distributed among the channels based on the remote
+     * socket, the state of these handlers (e.g. for reliability or observations) is sharded by remote socket.
+     * The registered {@link Webresource}s are shared among all channels.</p>
+     *
+     * <p>The number of channels is limited to {@link #getMaxNumberOfChannels()}, i.e. the server falls back to a
+     * single channel if <code>SO_REUSEPORT</code> is not supported.</p>
+     *
+     * @param name the name of this {@link CoapServer} (for logging only)
+     * @param notFoundHandler the {@link NotFoundHandler} to handle inbound requests for unknown resources
+     * @param serverSocket the socket address for the server to listen at
+     * @param maxBlock1Size the maximum blocksize for inbound requests
+     * @param maxBlock2Size the maximum blocksize for outbound responses
+     * @param ioChannels the number of channels (and thus I/O threads) to receive and send messages
+     */
+    public CoapServer(String name, NotFoundHandler notFoundHandler, InetSocketAddress serverSocket,
+                      BlockSize maxBlock1Size, BlockSize maxBlock2Size, int ioChannels) {
+
+        this(name, notFoundHandler, serverSocket, maxBlock1Size, maxBlock2Size, ioChannels,
+                ExecutionMode.PLATFORM_THREADS);
+    }
+
+    /**
+     * <p>Creates a new instance of {@link CoapServer} (see
+     * {@link #CoapServer(String, NotFoundHandler, InetSocketAddress, BlockSize, BlockSize, int)}) with the given
+     * {@link ExecutionMode}. With {@link ExecutionMode#VIRTUAL_THREADS}, inbound requests are processed by
+     * virtual threads, i.e. {@link Webresource}s may block (e.g. for database lookups) without exhausting the
+     * threads of the server.</p>
+     *
+     * @param name the name of this {@link CoapServer} (for logging only)
+     * @param notFoundHandler the {@link NotFoundHandler} to handle inbound requests for unknown resources
+     * @param serverSocket the socket address for the server to listen at
+     * @param maxBlock1Size the maximum blocksize for inbound requests
+     * @param maxBlock2Size the maximum blocksize for outbound responses
+     * @param ioChannels the number of channels (and thus I/O threads) to receive and send messages
+     * @param executionMode the {@link ExecutionMode} to determine the threads to process inbound requests
+     */
+    public CoapServer(String name, NotFoundHandler notFoundHandler, InetSocketAddress serverSocket,
+                      BlockSize maxBlock1Size, BlockSize maxBlock2Size, int ioChannels, ExecutionMode executionMode) {
+
+        super(name, executionMode);
 
-        CoapServerChannelPipelineFactory pipelineFactory =
-                new CoapServerChannelPipelineFactory(this.getExecutor(), notFoundHandler, maxBlock1Size, maxBlock2Size);
+        if (ioChannels < 1) {
+            throw new IllegalArgumentException("Number of I/O channels must be at least 1 (was: " + ioChannels + ")");
+        }
+
+        if (ioChannels > getMaxNumberOfChannels()) {
+            LOG.warn("Use {} instead of {} I/O channels (see getMaxNumberOfChannels()).",
+                    getMaxNumberOfChannels(), ioChannels);
+            ioChannels = getMaxNumberOfChannels();
+        }
+
+        List<CoapServerChannelPipelineFactory> pipelineFactories = new ArrayList<>(ioChannels);
+        RequestDispatcher sharedDispatcher = null;
+        for (int i = 0; i < ioChannels; i++) {
+            CoapServerChannelPipelineFactory pipelineFactory = new CoapServerChannelPipelineFactory(
+                    this.getExecutor(), notFoundHandler, maxBlock1Size, maxBlock2Size, sharedDispatcher
+            );
+            sharedDispatcher = pipelineFactory.getRequestDispatcher();
+            pipelineFactories.add(pipelineFactory);
+        }
+
+        startApplication(pipelineFactories, serverSocket);
 
-        startApplication(pipelineFactory, serverSocket);
-        
         // set the request dispatcher and register .well-known/core
         this.requestDispatcher = getChannel().getPipeline().get(RequestDispatcher.class);
         this.requestDispatcher.registerWellKnownCoreResource();
@@ -223,7 +297,49 @@ public class CoapServer extends AbstractCoapApplication {
     }
 
     private RequestDispatcher getRequestDispatcher() {
-        return getChannel().getPipeline().get(RequestDispatcher.class);
+        return this.requestDispatcher;
+    }
+
+    /**
+     * <p>Sets the {@link ObservationStore} to persist the observations of this {@link CoapServer} in. The
+     * observations contained in the given store (e.g. from a previous run of the server) are resumed, i.e. each
+     * observer is notified about the actual status as soon as the observed
+     * {@link de.uzl.itm.ncoap.application.server.resource.ObservableWebresource} is registered (again) and about
+     * every status change afterwards.</p>
+     *
+     * <p>If there is an {@link ObservationStore}, the observations are kept (i.e. no shutdown notifications are sent)
+     * upon {@link #shutdown()} and the store is closed afterwards. Observations of single resources that are shut
+     * down with {@link #shutdownWebresource(String)} are stopped (and removed from the store) as usual.</p>
+     *
+     * <p><b>Note:</b> This method is to be invoked before any
+     * {@link de.uzl.itm.ncoap.application.server.resource.ObservableWebresource} is registered. All resumed
+     * observations are kept by the first I/O channel (see {@link #getChannel()}), i.e. the notifications are sent
+     * from that channel. With more than one I/O channel, the kernel distributes inbound datagrams by the 4-tuple of
+     * the remote and local socket, so the ACKs, RSTs and cancellations of a resumed observer may still be received
+     * by another channel. Use a single I/O channel if resumed observations must be reliable.</p>
+     *
+     * @param observationStore the {@link ObservationStore} to persist the observations in
+     */
+    public void setObservationStore(ObservationStore observationStore) {
+        this.observationStore = observationStore;
+        List<ServerObservationHandler> handlers = getObservationHandlers();
+        for (ServerObservationHandler handler : handlers) {
+            handler.setObservationStore(observationStore);
+        }
+
+        Collection<ObservationRecord> records = observationStore.load();
+        for (ObservationRecord record : records) {
+            handlers.get(0).resumeObservation(record);
+        }
+        LOG.info("Resume {} stored observation(s).", records.size());
+    }
+
+    private List<ServerObservationHandler> getObservationHandlers() {
+        List<ServerObservationHandler> handlers = new ArrayList<>();
+        for (DatagramChannel channel : getChannels()) {
+            handlers.add(channel.getPipeline().get(ServerObservationHandler.class));
+        }
+        return handlers;
     }
 
     /**
@@ -246,24 +362,33 @@ public class CoapServer extends AbstractCoapApplication {
     public ListenableFuture<Void> shutdown() {
         LOG.warn("Shutdown server...");
         final SettableFuture<Void> shutdownFuture = SettableFuture.create();
+        if (this.observationStore != null) {
+            for (ServerObservationHandler handler : getObservationHandlers()) {
+                handler.retainObservations();
+            }
+        }
         Futures.addCallback(this.requestDispatcher.shutdown(), new FutureCallback<Void>() {
             @Override
             public void onSuccess(Void aVoid) {
-                ChannelFuture channelClosedFuture = getChannel().close();
+                final List<DatagramChannel> channels = getChannels();
+                final ChannelGroupFuture channelsClosedFuture = closeChannels(channels);
 
                 //Await the closure and let the factory release its external resource to finalize the shutdown
-                channelClosedFuture.addListener(new ChannelFutureListener() {
+                channelsClosedFuture.addListener(new ChannelGroupFutureListener() {
                     @Override
-                    public void operationComplete(ChannelFuture future) throws Exception {
-                        LOG.warn("Server channel closed. Release external resources...");
+                    public void operationComplete(ChannelGroupFuture future) throws Exception {
+                        LOG.warn("Server channel(s) closed. Release external resources...");
 
-                        getChannel().getFactory().releaseExternalResources();
+                        channels.get(0).getFactory().releaseExternalResources();
                     }
                 });
 
-                channelClosedFuture.awaitUninterruptibly().addListener(new ChannelFutureListener() {
+                channelsClosedFuture.awaitUninterruptibly().addListener(new ChannelGroupFutureListener() {
                     @Override
-                    public void operationComplete(ChannelFuture future) throws Exception {
+                    public void operationComplete(ChannelGroupFuture future) throws Exception {
+                        if (observationStore != null) {
+                            observationStore.close();
+                        }
                         LOG.warn("Server shutdown completed!");
                         shutdownFuture.set(null);
                     }
@@ -277,4 +402,10 @@ public class CoapServer extends AbstractCoapApplication {
         });
         return shutdownFuture;
     }
-}
\ No newline at end of file
+
+    private static ChannelGroupFuture closeChannels(List<DatagramChannel> channels) {
+        ChannelGroup channelGroup = new DefaultChannelGroup();
+        channelGroup.addAll(channels);
+        return channelGroup.close();
+    }
+}
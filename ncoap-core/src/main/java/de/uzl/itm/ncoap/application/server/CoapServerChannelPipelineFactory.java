@@ -33,8 +33,10 @@ import de.uzl.itm.ncoap.communication.dispatching.server.RequestDispatcher;
 import de.uzl.itm.ncoap.communication.identification.ServerIdentificationHandler;
 import de.uzl.itm.ncoap.communication.observing.ServerObservationHandler;
 import de.uzl.itm.ncoap.communication.reliability.inbound.ServerInboundReliabilityHandler;
+import de.uzl.itm.ncoap.communication.reliability.inbound.ServerResponseCacheHandler;
 import de.uzl.itm.ncoap.communication.reliability.outbound.MessageIDFactory;
 import de.uzl.itm.ncoap.communication.reliability.outbound.ServerOutboundReliabilityHandler;
+import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.socket.DatagramChannel;
 
@@ -58,13 +60,47 @@ public class CoapServerChannelPipelineFactory extends CoapChannelPipelineFactory
     public CoapServerChannelPipelineFactory(ScheduledExecutorService executor, NotFoundHandler notFoundHandler,
                                             BlockSize maxBlock1Size, BlockSize maxBlock2Size) {
 
-        super(executor);
+        this(executor, notFoundHandler, maxBlock1Size, maxBlock2Size, null);
+    }
+
+    /**
+     * Creates a new instance of {@link CoapServerChannelPipelineFactory} whose {@link RequestDispatcher} shares
+     * the registered {@link de.uzl.itm.ncoap.application.server.resource.Webresource}s with the given
+     * {@link RequestDispatcher} (if not <code>null</code>), i.e. with the pipeline of another channel bound to
+     * the same local socket.
+     *
+     * @param executor The {@link ScheduledExecutorService} to provide the thread(s) for I/O operations
+     * @param notFoundHandler the {@link de.uzl.itm.ncoap.communication.dispatching.server.NotFoundHandler}
+     *                        to handle inbound {@link de.uzl.itm.ncoap.message.CoapRequest}s targeting
+     *                        unknown {@link de.uzl.itm.ncoap.application.server.resource.Webresource}s.
+     * @param sharedDispatcher the {@link RequestDispatcher} to share the registered resources with or
+     *                         <code>null</code>
+     */
+    public CoapServerChannelPipelineFactory(ScheduledExecutorService executor, NotFoundHandler notFoundHandler,
+                                            BlockSize maxBlock1Size, BlockSize maxBlock2Size,
+                                            RequestDispatcher sharedDispatcher) {
+
+        super(executor, new ServerResponseCacheHandler());
         addChannelHandler(new ServerIdentificationHandler(executor));
         addChannelHandler(new ServerOutboundReliabilityHandler(executor, new MessageIDFactory(executor)));
         addChannelHandler(new ServerInboundReliabilityHandler(executor));
         addChannelHandler(new ServerBlock1Handler(executor, maxBlock1Size));
         addChannelHandler(new ServerBlock2Handler(executor, maxBlock2Size));
         addChannelHandler(new ServerObservationHandler(executor));
-        addChannelHandler(new RequestDispatcher(notFoundHandler, executor));
+        addChannelHandler(new RequestDispatcher(notFoundHandler, executor, sharedDispatcher));
+    }
+
+    /**
+     * Returns the {@link RequestDispatcher} which is part of the pipeline(s) created by this factory
+     *
+     * @return the {@link RequestDispatcher} which is part of the pipeline(s) created by this factory
+     */
+    public RequestDispatcher getRequestDispatcher() {
+        for (ChannelHandler handler : getChannelHandlers()) {
+            if (handler instanceof RequestDispatcher) {
+                return (RequestDispatcher) handler;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application.server.resource;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A {@link BoundedRequestExecutor} can be declared by a {@link Webresource} (see
+ * {@link Webresource#getRequestExecutor()}) to process inbound {@link de.uzl.itm.ncoap.message.CoapRequest}s
+ * apart from the I/O threads and the shared executor of the application. This is to isolate the latency of cheap
+ * resources from expensive ones, i.e. a slow resource does not stall unrelated traffic.</p>
+ *
+ * <p>The number of requests being processed or waiting to be processed (in-flight) is bounded. If that bound is
+ * reached, the {@link de.uzl.itm.ncoap.communication.dispatching.server.RequestDispatcher} immediately answers
+ * further requests with {@link de.uzl.itm.ncoap.message.MessageCode#SERVICE_UNAVAILABLE_503} and
+ * {@link de.uzl.itm.ncoap.message.options.Option#MAX_AGE} set to {@link #getRetryAfter()} (seconds), i.e. the
+ * client is told when to try again.</p>
+ *
+ * <p><b>Note:</b> the given {@link Executor} is owned by the {@link Webresource}, i.e. if it needs to be
+ * terminated, this is to be done in {@link Webresource#shutdown()}.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class BoundedRequestExecutor implements Executor {
+
+    /**
+     * The default number of seconds a client is asked to wait before retrying a rejected request (5)
+     */
+    public static final long DEFAULT_RETRY_AFTER = 5;
+
+    private final Executor executor;
+    private final int maxInFlightRequests;
+    private final long retryAfter;
+    private final AtomicInteger inFlightRequests;
+
+    /**
+     * Creates a new instance of {@link BoundedRequestExecutor} using {@link #DEFAULT_RETRY_AFTER}.
+     *
+     * @param executor the {@link Executor} to process the requests (e.g. a thread pool of its own or an executor
+     *                 starting a new virtual thread per task)
+     * @param maxInFlightRequests the maximum number of requests to be processed or waiting to be processed
+     */
+    public BoundedRequestExecutor(Executor executor, int maxInFlightRequests) {
+        this(executor, maxInFlightRequests, DEFAULT_RETRY_AFTER);
+    }
+
+    /**
+     * Creates a new instance of {@link BoundedRequestExecutor}.
+     *
+     * @param executor the {@link Executor} to process the requests (e.g. a thread pool of its own or an executor
+     *                 starting a new virtual thread per task)
+     * @param maxInFlightRequests the maximum number of requests to be processed or waiting to be processed
+     * @param retryAfter the number of seconds a client is asked to wait before retrying a rejected request
+     *
+     * @throws java.lang.IllegalArgumentException if the maximum number of in-flight requests is less than 1 or the
+     * number of seconds to retry after is negative
+     */
+    public BoundedRequestExecutor(Executor executor, int maxInFlightRequests, long retryAfter)
+            throws IllegalArgumentException {
+
+        if (maxInFlightRequests < 1) {
+            throw new IllegalArgumentException("Maximum number of in-flight requests must be at least 1.");
+        }
+        if (retryAfter < 0) {
+            throw new IllegalArgumentException("Retry after must not be negative.");
+        }
+        this.executor = executor;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.retryAfter = retryAfter;
+        this.inFlightRequests = new AtomicInteger(0);
+    }
+
+    /**
+     * Creates a new instance of {@link BoundedRequestExecutor} with a fixed thread pool of its own. The number of
+     * in-flight requests (and thus the queue of the pool) is bounded by the given maximum.
+     *
+     * @param name the name prefix of the threads (e.g. the path of the resource)
+     * @param threads the number of threads of the pool
+     * @param maxInFlightRequests the maximum number of requests to be processed or waiting to be processed
+     *
+     * @return a new instance of {@link BoundedRequestExecutor} with a fixed thread pool of its own
+     */
+    public static BoundedRequestExecutor create(final String name, int threads, int maxInFlightRequests) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(maxInFlightRequests), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return new BoundedRequestExecutor(executor, maxInFlightRequests);
+    }
+
+    /**
+     * Reserves a slot for a new in-flight request if the maximum number is not yet reached. Every successful
+     * invocation MUST be followed by an invocation of {@link #release()} when the request was processed.
+     *
+     * @return <code>true</code> if a slot was reserved or <code>false</code> if the request is to be rejected
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = this.inFlightRequests.get();
+            if (current >= this.maxInFlightRequests) {
+                return false;
+            }
+            if (this.inFlightRequests.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a slot previously reserved with {@link #tryAcquire()}
+     */
+    public void release() {
+        this.inFlightRequests.decrementAndGet();
+    }
+
+    /**
+     * Executes the given task with the underlying {@link Executor}. This method does not reserve a slot (see
+     * {@link #tryAcquire()}).
+     *
+     * @param task the task to be executed
+     *
+     * @throws RejectedExecutionException if the underlying {@link Executor} rejected the task
+     */
+    @Override
+    public void execute(Runnable task) throws RejectedExecutionException {
+        this.executor.execute(task);
+    }
+
+    /**
+     * Returns the underlying {@link Executor}
+     *
+     * @return the underlying {@link Executor}
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Returns the maximum number of requests to be processed or waiting to be processed
+     *
+     * @return the maximum number of requests to be processed or waiting to be processed
+     */
+    public int getMaxInFlightRequests() {
+        return this.maxInFlightRequests;
+    }
+
+    /**
+     * Returns the number of requests currently being processed or waiting to be processed
+     *
+     * @return the number of requests currently being processed or waiting to be processed
+     */
+    public int getInFlightRequests() {
+        return this.inFlightRequests.get();
+    }
+
+    /**
+     * Returns the number of seconds a client is asked to wait before retrying a rejected request
+     *
+     * @return the number of seconds a client is asked to wait before retrying a rejected request
+     */
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+}
@@ -26,6 +26,7 @@ package de.uzl.itm.ncoap.application.server.resource;
 
 import de.uzl.itm.ncoap.application.linkformat.LinkParam;
 import de.uzl.itm.ncoap.communication.dispatching.server.RequestDispatcher;
+import de.uzl.itm.ncoap.message.CoapRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,8 +60,10 @@ public abstract class NotObservableWebresource<T> implements Webresource<T> {
 
     private T resourceStatus;
     private long resourceStatusExpiryDate;
+    private volatile Representations representations;
 
     private ScheduledExecutorService executor;
+    private volatile BoundedRequestExecutor requestExecutor;
 
     protected NotObservableWebresource(String servicePath, T initialStatus, long lifetimeSeconds,
                                        ScheduledExecutorService executor) {
@@ -80,14 +83,24 @@ public abstract class NotObservableWebresource<T> implements Webresource<T> {
         }
 
         this.linkParams.put(linkParam.getKeyName(), linkParam);
+        linkParamsChanged();
     }
 
     @Override
     public boolean removeLinkParams(LinkParam.Key key) {
         this.linkParams.remove(key.getKeyName());
+        linkParamsChanged();
         return (this.linkParams.get(key.getKeyName()) == null);
     }
 
+    private void linkParamsChanged() {
+        // the link params are part of the (memoized) status of /.well-known/core
+        RequestDispatcher requestDispatcher = this.getRequestDispatcher();
+        if (requestDispatcher != null) {
+            requestDispatcher.updateWellKnownCoreResource();
+        }
+    }
+
     @Override
     public boolean hasLinkAttribute(LinkParam.Key key, String value) {
         LinkParam linkParam = this.linkParams.get(key.getKeyName());
@@ -130,6 +143,25 @@ public abstract class NotObservableWebresource<T> implements Webresource<T> {
     }
 
 
+    /**
+     * Sets the {@link BoundedRequestExecutor} to process inbound {@link CoapRequest}s for this resource (or
+     * <code>null</code> to process them by the thread that received them). Resources with expensive request
+     * processing should use an executor of their own to not stall other resources.
+     *
+     * @param requestExecutor the {@link BoundedRequestExecutor} to process inbound {@link CoapRequest}s for this
+     *                        resource or <code>null</code>
+     */
+    public void setRequestExecutor(BoundedRequestExecutor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+    }
+
+
+    @Override
+    public BoundedRequestExecutor getRequestExecutor() {
+        return this.requestExecutor;
+    }
+
+
     /**
      * This method is the one and only recommended way to change the status.
      *
@@ -150,6 +182,7 @@ public abstract class NotObservableWebresource<T> implements Webresource<T> {
             this.resourceStatus = resourceStatus;
             this.resourceStatusExpiryDate = System.currentTimeMillis() + (lifetimeSeconds * 1000);
             updateEtag(resourceStatus);
+            this.representations = new Representations(this.resourceStatusExpiryDate);
 
             LOG.debug("New status of {} set (expires in {} seconds).", this.path, lifetimeSeconds);
         } finally {
@@ -171,24 +204,32 @@ public abstract class NotObservableWebresource<T> implements Webresource<T> {
      * However, concurrent invocations of this method are possible, as the resources read-lock can be locked multiple
      * times in parallel.
      *
+     * The serialized status and the ETAG are memoized per content format until the next invocation of
+     * {@link #setResourceStatus(Object, long)}, i.e. {@link #getSerializedResourceStatus(long)} is called at most
+     * once per status and content format and subsequent invocations of this method do not lock at all.
+     *
      * @param contentFormat the number representing the desired content format of the serialized resource status
      *
      * @return a {@link WrappedResourceStatus} if the content format was supported or <code>null</code> if the
      * resource status could not be serialized to the desired content format.
      */
     public final WrappedResourceStatus getWrappedResourceStatus(long contentFormat) {
+        Representations representations = this.representations;
+        if (representations.contains(contentFormat)) {
+            return representations.get(contentFormat);
+        }
+
         try{
             this.readWriteLock.readLock().lock();
 
-            byte[] serializedResourceStatus = getSerializedResourceStatus(contentFormat);
-
-            if (serializedResourceStatus == null) {
-                return null;
-            } else {
-                byte[] etag = this.getEtag(contentFormat);
-                long maxAge = this.getMaxAge();
-                return new WrappedResourceStatus(serializedResourceStatus, contentFormat, etag, maxAge);
+            // the status might have changed in the meantime (and can't change while read-locked)
+            representations = this.representations;
+            if (!representations.contains(contentFormat)) {
+                byte[] serializedResourceStatus = getSerializedResourceStatus(contentFormat);
+                byte[] etag = serializedResourceStatus == null ? null : this.getEtag(contentFormat);
+                representations.put(contentFormat, serializedResourceStatus, etag);
             }
+            return representations.get(contentFormat);
         } finally {
             this.readWriteLock.readLock().unlock();
         }
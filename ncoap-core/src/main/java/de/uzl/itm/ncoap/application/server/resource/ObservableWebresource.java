@@ -64,9 +64,16 @@ public abstract class ObservableWebresource<T> extends Observable implements Web
 
     private T status;
     private long statusExpiryDate;
+    private volatile Representations representations;
+    private long statusVersion;
+    private long appliedStatusVersion;
     private ReentrantReadWriteLock statusLock;
 
     private ScheduledExecutorService executor;
+    private volatile BoundedRequestExecutor requestExecutor;
+
+    private volatile long minNotificationInterval;
+    private volatile long maxNotificationInterval;
 
 
     /**
@@ -99,6 +106,7 @@ public abstract class ObservableWebresource<T> extends Observable implements Web
         this.linkParams = new LinkedHashMap<>();
         this.statusLock = new ReentrantReadWriteLock();
         this.executor = executor;
+        this.representations = new Representations(0);
         setResourceStatus(initialStatus, lifetime);
     }
 
@@ -110,14 +118,24 @@ public abstract class ObservableWebresource<T> extends Observable implements Web
         }
 
         this.linkParams.put(linkParam.getKeyName(), linkParam);
+        linkParamsChanged();
     }
 
     @Override
     public boolean removeLinkParams(LinkParam.Key key) {
         this.linkParams.remove(key.getKeyName());
+        linkParamsChanged();
         return (this.linkParams.get(key.getKeyName()) == null);
     }
 
+    private void linkParamsChanged() {
+        // the link params are part of the (memoized) status of /.well-known/core
+        RequestDispatcher requestDispatcher = this.getRequestDispatcher();
+        if (requestDispatcher != null) {
+            requestDispatcher.updateWellKnownCoreResource();
+        }
+    }
+
     @Override
     public boolean hasLinkAttribute(LinkParam.Key key, String value) {
         LinkParam linkParam = this.linkParams.get(key.getKeyName());
@@ -159,6 +177,85 @@ public abstract class ObservableWebresource<T> extends Observable implements Web
     }
 
 
+    /**
+     * Sets the {@link BoundedRequestExecutor} to process inbound {@link CoapRequest}s for this resource (or
+     * <code>null</code> to process them by the thread that received them). Resources with expensive request
+     * processing should use an executor of their own to not stall other resources.
+     *
+     * @param requestExecutor the {@link BoundedRequestExecutor} to process inbound {@link CoapRequest}s for this
+     *                        resource or <code>null</code>
+     */
+    public void setRequestExecutor(BoundedRequestExecutor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+    }
+
+
+    @Override
+    public BoundedRequestExecutor getRequestExecutor() {
+        return this.requestExecutor;
+    }
+
+
+    /**
+     * <p>Sets the minimum and the maximum interval between two update notifications to the same observer (similar
+     * to the link attributes <code>pmin</code> and <code>pmax</code>).</p>
+     *
+     * <ul>
+     *     <li>
+     *         <b>Minimum interval:</b> status changes within this interval after the latest update notification are
+     *         coalesced, i.e. the observer is notified about the latest status when the interval elapsed. The
+     *         default is 0, i.e. observers are notified as soon as possible (but intermediate status changes may
+     *         still be skipped if the status changes faster than the notifications can be sent).
+     *     </li>
+     *     <li>
+     *         <b>Maximum interval:</b> if there was no update notification within this interval, the observer is
+     *         notified about the (unchanged) status. The default is 0, i.e. there are only notifications upon
+     *         status changes.
+     *     </li>
+     * </ul>
+     *
+     * @param minInterval the minimum interval (in milliseconds) between two update notifications to the same
+     *                    observer
+     * @param maxInterval the maximum interval (in milliseconds) between two update notifications to the same
+     *                    observer or 0 for no maximum interval
+     *
+     * @throws java.lang.IllegalArgumentException if any of the intervals is negative or if the maximum interval is
+     * smaller than the minimum interval
+     */
+    public void setNotificationIntervals(long minInterval, long maxInterval) throws IllegalArgumentException {
+        if (minInterval < 0 || maxInterval < 0) {
+            throw new IllegalArgumentException("Notification intervals must not be negative.");
+        }
+        if (maxInterval > 0 && maxInterval < minInterval) {
+            throw new IllegalArgumentException("Maximum notification interval must not be smaller than minimum.");
+        }
+        this.minNotificationInterval = minInterval;
+        this.maxNotificationInterval = maxInterval;
+    }
+
+
+    /**
+     * Returns the minimum interval (in milliseconds) between two update notifications to the same observer (see
+     * {@link #setNotificationIntervals(long, long)})
+     *
+     * @return the minimum interval (in milliseconds) between two update notifications to the same observer
+     */
+    public long getMinNotificationInterval() {
+        return this.minNotificationInterval;
+    }
+
+
+    /**
+     * Returns the maximum interval (in milliseconds) between two update notifications to the same observer or 0 if
+     * there is no maximum interval (see {@link #setNotificationIntervals(long, long)})
+     *
+     * @return the maximum interval (in milliseconds) between two update notifications to the same observer or 0
+     */
+    public long getMaxNotificationInterval() {
+        return this.maxNotificationInterval;
+    }
+
+
     /**
      * <p><b>Important:</b>To avoid synchronization issues do not use this method but
      * {@link #getWrappedResourceStatus(Set)} or {@link #getWrappedResourceStatus(long)} for status retrieval
@@ -175,6 +272,7 @@ public abstract class ObservableWebresource<T> extends Observable implements Web
 
     @Override
     public synchronized final void setResourceStatus(final T status, final long lifetime) {
+        final long version = ++this.statusVersion;
         this.executor.submit(new Runnable() {
 
             @Override
@@ -182,9 +280,18 @@ public abstract class ObservableWebresource<T> extends Observable implements Web
                 try{
                     statusLock.writeLock().lock();
 
+                    // the tasks are executed by a thread pool, i.e. a newer status might already have been set
+                    if (version < ObservableWebresource.this.appliedStatusVersion) {
+                        log.debug("Discard outdated status of {}.", ObservableWebresource.this.getUriPath());
+                        return;
+                    }
+                    ObservableWebresource.this.appliedStatusVersion = version;
+
                     ObservableWebresource.this.status = status;
                     ObservableWebresource.this.statusExpiryDate = System.currentTimeMillis() + (lifetime * 1000);
                     ObservableWebresource.this.updateEtag(status);
+                    ObservableWebresource.this.representations =
+                            new Representations(ObservableWebresource.this.statusExpiryDate);
 
                     log.debug("New status of {} successfully set (expires in {} seconds).",
                             ObservableWebresource.this.getUriPath(), lifetime);
@@ -217,23 +324,33 @@ public abstract class ObservableWebresource<T> extends Observable implements Web
      * <p>However, concurrent invocations of this method are possible, as the resources read-lock can be locked multiple
      * times in parallel and {@link #setResourceStatus(Object, long)} waits for all read-locks to be released.</p>
      *
+     * <p>The serialized status and the ETAG are memoized per content format until the next status is set, i.e.
+     * {@link #getSerializedResourceStatus(long)} is called at most once per status and content format (no matter
+     * if for inbound requests or update notifications) and subsequent invocations of this method do not lock at
+     * all.</p>
+     *
      * @param contentFormat the number representing the desired content format of the serialized resource status
      *
      * @return a {@link WrappedResourceStatus} if the content format was supported or <code>null</code> if the
      * resource status could not be serialized to the desired content format.
      */
     public final WrappedResourceStatus getWrappedResourceStatus(long contentFormat) {
+        Representations representations = this.representations;
+        if (representations.contains(contentFormat)) {
+            return representations.get(contentFormat);
+        }
+
         try {
             this.statusLock.readLock().lock();
 
-            byte[] serializedResourceStatus = getSerializedResourceStatus(contentFormat);
-
-            if (serializedResourceStatus == null) {
-                return null;
-            } else {
-                byte[] etag = this.getEtag(contentFormat);
-                return new WrappedResourceStatus(serializedResourceStatus, contentFormat, etag, this.getMaxAge());
+            // the status might have changed in the meantime (and can't change while read-locked)
+            representations = this.representations;
+            if (!representations.contains(contentFormat)) {
+                byte[] serializedResourceStatus = getSerializedResourceStatus(contentFormat);
+                byte[] etag = serializedResourceStatus == null ? null : this.getEtag(contentFormat);
+                representations.put(contentFormat, serializedResourceStatus, etag);
             }
+            return representations.get(contentFormat);
         } finally {
             this.statusLock.readLock().unlock();
         }
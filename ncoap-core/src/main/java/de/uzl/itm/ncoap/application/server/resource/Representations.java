@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application.server.resource;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Memoizes the serialized representations (and ETAGs) of a particular status (version) of a {@link Webresource}
+ * per content format. Each new status gets a new (empty) instance of {@link Representations}, i.e. there is no
+ * explicit invalidation of single representations. The representations are serialized at most once per status
+ * and content format and shared by all responses (and update notifications) for that status.</p>
+ *
+ * <p>Content formats that are not supported (i.e. the serialization returned <code>null</code>) are memoized as
+ * well, so that they are not tried again for the same status.</p>
+ *
+ * @author Oliver Kleine
+ */
+final class Representations {
+
+    private static final Representation UNSUPPORTED = new Representation(null, null);
+
+    private final long expiryDate;
+    private final ConcurrentHashMap<Long, Representation> representations;
+
+    /**
+     * Creates a new (empty) instance of {@link Representations}
+     *
+     * @param expiryDate the date (in milliseconds) the status expires, i.e. to compute the MAX-AGE
+     */
+    Representations(long expiryDate) {
+        this.expiryDate = expiryDate;
+        this.representations = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns <code>true</code> if the serialization for the given content format was memoized (no matter if
+     * the content format is supported or not) and <code>false</code> otherwise
+     *
+     * @param contentFormat the number representing the content format
+     *
+     * @return <code>true</code> if the serialization for the given content format was memoized and
+     * <code>false</code> otherwise
+     */
+    boolean contains(long contentFormat) {
+        return this.representations.containsKey(contentFormat);
+    }
+
+    /**
+     * Returns a new {@link WrappedResourceStatus} with the memoized serialization for the given content format (and
+     * the current MAX-AGE) or <code>null</code> if the content format is not supported or was not memoized.
+     *
+     * @param contentFormat the number representing the content format
+     *
+     * @return a new {@link WrappedResourceStatus} with the memoized serialization for the given content format or
+     * <code>null</code>
+     */
+    WrappedResourceStatus get(long contentFormat) {
+        Representation representation = this.representations.get(contentFormat);
+        if (representation == null || representation == UNSUPPORTED) {
+            return null;
+        }
+        long maxAge = Math.max(this.expiryDate - System.currentTimeMillis(), 0) / 1000;
+        return new WrappedResourceStatus(representation.content, contentFormat, representation.etag, maxAge);
+    }
+
+    /**
+     * Memoizes the serialization for the given content format (unless there already is one)
+     *
+     * @param contentFormat the number representing the content format
+     * @param content the serialized status or <code>null</code> if the content format is not supported
+     * @param etag the ETAG of the serialized status
+     */
+    void put(long contentFormat, byte[] content, byte[] etag) {
+        Representation representation = content == null ? UNSUPPORTED : new Representation(content, etag);
+        this.representations.putIfAbsent(contentFormat, representation);
+    }
+
+
+    private static final class Representation {
+
+        private final byte[] content;
+        private final byte[] etag;
+
+        private Representation(byte[] content, byte[] etag) {
+            this.content = content;
+            this.etag = etag;
+        }
+    }
+}
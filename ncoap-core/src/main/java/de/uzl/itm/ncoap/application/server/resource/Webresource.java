@@ -113,6 +113,16 @@ public interface Webresource<T> extends RequestConsumer{
      */
     public ScheduledExecutorService getExecutor();
 
+    /**
+     * Returns the {@link BoundedRequestExecutor} to process inbound {@link de.uzl.itm.ncoap.message.CoapRequest}s
+     * for this {@link Webresource} or <code>null</code> if requests are to be processed by the thread that
+     * received them (which is the default).
+     *
+     * @return the {@link BoundedRequestExecutor} to process inbound {@link de.uzl.itm.ncoap.message.CoapRequest}s
+     * for this {@link Webresource} or <code>null</code>
+     */
+    public BoundedRequestExecutor getRequestExecutor();
+
 
     /**
      * Returns the actual ETAG for the given content format (see {@link de.uzl.itm.ncoap.message.options.ContentFormat} for some pre-defined constants).
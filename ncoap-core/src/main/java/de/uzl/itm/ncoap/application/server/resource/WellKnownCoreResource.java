@@ -175,7 +175,12 @@ public final class WellKnownCoreResource extends ObservableWebresource<LinkValue
      */
     @Override
     public byte[] getSerializedResourceStatus(long contentFormat) {
-        return this.getResourceStatus().encode().getBytes(CoapMessage.CHARSET);
+        // the initial status is set asynchronously, i.e. it might not yet be available
+        LinkValueList status = this.getResourceStatus();
+        if (status == null) {
+            return new byte[0];
+        }
+        return status.encode().getBytes(CoapMessage.CHARSET);
     }
 
 
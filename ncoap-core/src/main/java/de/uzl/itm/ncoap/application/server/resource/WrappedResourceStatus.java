@@ -24,6 +24,9 @@
  */
 package de.uzl.itm.ncoap.application.server.resource;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
 /**
  * Instances of {@link WrappedResourceStatus} wrap a particular
  * representation of the actual status with meta data.
@@ -52,13 +55,26 @@ public class WrappedResourceStatus {
     }
 
     /**
-     * Returns the serialized resource status, i.e. a particular representation
+     * Returns the serialized resource status, i.e. a particular representation. As the serialized status is
+     * memoized and shared by all responses for the same status, the returned array MUST NOT be modified.
+     *
      * @return the serialized resource status, i.e. a particular representation
      */
     public byte[] getContent() {
         return content;
     }
 
+    /**
+     * Returns the serialized resource status as read-only {@link ChannelBuffer}. The returned buffer has its own
+     * indices but shares the content with all other buffers returned by this method, i.e. the content is not
+     * copied.
+     *
+     * @return the serialized resource status as read-only {@link ChannelBuffer}
+     */
+    public ChannelBuffer getContentBuffer() {
+        return ChannelBuffers.unmodifiableBuffer(ChannelBuffers.wrappedBuffer(content));
+    }
+
     /**
      * Returns the number referring to the format of the serialized resource status returned by {@link #getContent()}.
      *
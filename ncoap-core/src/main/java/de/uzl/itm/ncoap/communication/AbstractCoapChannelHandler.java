@@ -38,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.Iterator;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -129,14 +130,42 @@ public abstract class AbstractCoapChannelHandler extends SimpleChannelHandler{
         Object message = me.getMessage();
 
         if (me.getMessage() instanceof CoapMessage) {
-            if (!handleOutboundCoapMessage((CoapMessage) message, (InetSocketAddress) me.getRemoteAddress())) {
+            if (!handleOutboundCoapMessage((CoapMessage) message, (InetSocketAddress) me.getRemoteAddress(),
+                    me.getFuture())) {
                 me.getFuture().cancel();
                 return;
             }
+        } else if (message instanceof OutboundMessageBatch) {
+            if (!handleOutboundMessageBatch((OutboundMessageBatch) message)) {
+                me.getFuture().setSuccess();
+                return;
+            }
         }
         ctx.sendDownstream(me);
     }
 
+    /**
+     * Applies {@link #handleOutboundCoapMessage(CoapMessage, InetSocketAddress, ChannelFuture)} to each message of
+     * the given {@link OutboundMessageBatch}. Messages that are not to be processed further are removed from the batch and
+     * their futures are cancelled (the same as for single messages). Extending classes may override this method
+     * to process the messages of a batch in bulk.
+     *
+     * @param batch the {@link OutboundMessageBatch} to be sent
+     *
+     * @return <code>true</code> if there are messages left in the batch and <code>false</code> otherwise
+     */
+    protected boolean handleOutboundMessageBatch(OutboundMessageBatch batch) {
+        Iterator<OutboundMessageBatch.Entry> entries = batch.iterator();
+        while (entries.hasNext()) {
+            OutboundMessageBatch.Entry entry = entries.next();
+            if (!handleOutboundCoapMessage(entry.getCoapMessage(), entry.getRemoteSocket(), entry.getFuture())) {
+                entry.getFuture().cancel();
+                entries.remove();
+            }
+        }
+        return !batch.isEmpty();
+    }
+
     /**
      * Returns the {@link ScheduledExecutorService} used to execute I/O tasks
      *
@@ -171,6 +200,27 @@ public abstract class AbstractCoapChannelHandler extends SimpleChannelHandler{
     public abstract boolean handleOutboundCoapMessage(CoapMessage coapMessage, InetSocketAddress remoteSocket);
 
 
+    /**
+     * This method is called by the framework for every outbound {@link CoapMessage} and delegates to
+     * {@link #handleOutboundCoapMessage(CoapMessage, InetSocketAddress)}. Extending classes may override this
+     * method if they need the future of the write operation, e.g. to complete it successfully for a message that
+     * is answered locally instead of being sent (the future of a message that is not processed further is
+     * cancelled unless it is already completed).
+     *
+     * @param coapMessage the {@link CoapMessage} that is to be sent
+     * @param remoteSocket the recipient of the message
+     * @param future the {@link ChannelFuture} of the write operation
+     *
+     * @return <code>true</code> if this {@link AbstractCoapChannelHandler} is to be
+     * further processed by the next handler(s) and <code>false</code> otherwise.
+     */
+    protected boolean handleOutboundCoapMessage(CoapMessage coapMessage, InetSocketAddress remoteSocket,
+            ChannelFuture future) {
+
+        return handleOutboundCoapMessage(coapMessage, remoteSocket);
+    }
+
+
     /**
      * Triggers an internal event, i.e. some extension of {@link AbstractMessageExchangeEvent}
      *
@@ -265,6 +315,21 @@ public abstract class AbstractCoapChannelHandler extends SimpleChannelHandler{
         Channels.write(getContext(), future, coapMessage, remoteSocket);
     }
 
+    /**
+     * Sends all messages of the given {@link OutboundMessageBatch} with a single downstream event (see
+     * {@link OutboundMessageBatch} for details). The result of each message writing process is set on the
+     * {@link ChannelFuture} of the respective message.
+     *
+     * @param batch the {@link OutboundMessageBatch} to be sent
+     *
+     * @return a {@link ChannelFuture} that is set when the batch was passed to the socket
+     */
+    protected ChannelFuture sendCoapMessages(OutboundMessageBatch batch) {
+        ChannelFuture future = Channels.future(getContext().getChannel());
+        Channels.write(getContext(), future, batch);
+        return future;
+    }
+
     protected ScheduledFuture scheduleTask(Runnable task, long delay, TimeUnit unit) {
         return this.getExecutor().schedule(task, delay, unit);
     }
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>An {@link ExchangeTable} maps a remote socket and a message exchange specific key (e.g. a
+ * {@link de.uzl.itm.ncoap.communication.dispatching.Token} or a message ID) to a value. It is the shared data
+ * structure for the state of message exchanges kept by the {@link AbstractCoapChannelHandler}s.</p>
+ *
+ * <p>Internally, there is a single {@link ConcurrentHashMap} with composite keys, made of the bits of the
+ * remote IP address, the remote port, and the exchange key. Thus, there is no global lock but reads are lock-free
+ * and writes only lock a segment of the map. Operations that used to be "check with read lock, recheck with write
+ * lock" are to be replaced by the atomic operations {@link #putIfAbsent(InetSocketAddress, Object, Object)},
+ * {@link #remove(InetSocketAddress, Object, Object)} and
+ * {@link #replace(InetSocketAddress, Object, Object, Object)}.</p>
+ *
+ * @param <K> the type of the exchange specific key (e.g. {@link de.uzl.itm.ncoap.communication.dispatching.Token}
+ *           or {@link Integer} for message IDs)
+ * @param <V> the type of the values
+ *
+ * @author Oliver Kleine
+ */
+public class ExchangeTable<K, V> {
+
+    private ConcurrentHashMap<ExchangeKey<K>, V> exchanges;
+
+    /**
+     * Creates a new (empty) instance of {@link ExchangeTable}
+     */
+    public ExchangeTable() {
+        this.exchanges = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the value for the given remote socket and key or <code>null</code> if there is no such value
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     *
+     * @return the value for the given remote socket and key or <code>null</code> if there is no such value
+     */
+    public V get(InetSocketAddress remoteSocket, K key) {
+        return this.exchanges.get(new ExchangeKey<>(remoteSocket, key));
+    }
+
+    /**
+     * Returns <code>true</code> if there is a value for the given remote socket and key and <code>false</code>
+     * otherwise
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     *
+     * @return <code>true</code> if there is a value for the given remote socket and key and <code>false</code>
+     * otherwise
+     */
+    public boolean contains(InetSocketAddress remoteSocket, K key) {
+        return this.exchanges.containsKey(new ExchangeKey<>(remoteSocket, key));
+    }
+
+    /**
+     * Sets the value for the given remote socket and key
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     * @param value the value
+     *
+     * @return the previous value for the given remote socket and key or <code>null</code> if there was no such
+     * value
+     */
+    public V put(InetSocketAddress remoteSocket, K key, V value) {
+        return this.exchanges.put(new ExchangeKey<>(remoteSocket, key), value);
+    }
+
+    /**
+     * Atomically sets the value for the given remote socket and key unless there already is such a value
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     * @param value the value
+     *
+     * @return the already existing value for the given remote socket and key or <code>null</code> if the given
+     * value was set
+     */
+    public V putIfAbsent(InetSocketAddress remoteSocket, K key, V value) {
+        return this.exchanges.putIfAbsent(new ExchangeKey<>(remoteSocket, key), value);
+    }
+
+    /**
+     * Atomically replaces the value for the given remote socket and key if it is currently set to the given
+     * old value
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     * @param oldValue the expected current value
+     * @param newValue the new value
+     *
+     * @return <code>true</code> if the value was replaced and <code>false</code> otherwise
+     */
+    public boolean replace(InetSocketAddress remoteSocket, K key, V oldValue, V newValue) {
+        return this.exchanges.replace(new ExchangeKey<>(remoteSocket, key), oldValue, newValue);
+    }
+
+    /**
+     * Atomically replaces the value for the given remote socket and key if there is such a value
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     * @param value the new value
+     *
+     * @return the previous value or <code>null</code> if there was no value (and the given value was not set)
+     */
+    public V replace(InetSocketAddress remoteSocket, K key, V value) {
+        return this.exchanges.replace(new ExchangeKey<>(remoteSocket, key), value);
+    }
+
+    /**
+     * Removes the value for the given remote socket and key
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     *
+     * @return the removed value or <code>null</code> if there was no such value
+     */
+    public V remove(InetSocketAddress remoteSocket, K key) {
+        return this.exchanges.remove(new ExchangeKey<>(remoteSocket, key));
+    }
+
+    /**
+     * Atomically removes the value for the given remote socket and key if it is currently set to the given value
+     *
+     * @param remoteSocket the remote socket of the exchange
+     * @param key the exchange specific key
+     * @param value the expected current value
+     *
+     * @return <code>true</code> if the value was removed and <code>false</code> otherwise
+     */
+    public boolean remove(InetSocketAddress remoteSocket, K key, V value) {
+        return this.exchanges.remove(new ExchangeKey<>(remoteSocket, key), value);
+    }
+
+    /**
+     * Returns a (weakly consistent) view of all values of this table
+     *
+     * @return a (weakly consistent) view of all values of this table
+     */
+    public Collection<V> values() {
+        return this.exchanges.values();
+    }
+
+    /**
+     * Returns the number of values in this table
+     *
+     * @return the number of values in this table
+     */
+    public int size() {
+        return this.exchanges.size();
+    }
+
+    /**
+     * Removes all values from this table
+     */
+    public void clear() {
+        this.exchanges.clear();
+    }
+
+
+    /**
+     * The composite key. Equality is determined by the bits of the remote IP address, the remote port, and the
+     * exchange specific key (the same as {@link InetSocketAddress#equals(Object)} does for the socket).
+     */
+    private static final class ExchangeKey<K> {
+
+        private static final long IPV4_MAPPED_PREFIX = 0xFFFF00000000L;
+
+        private final InetSocketAddress remoteSocket;
+        private final K key;
+
+        private final long addressHigh;
+        private final long addressLow;
+        private final int port;
+        private final boolean resolved;
+        private final int hashCode;
+
+        private ExchangeKey(InetSocketAddress remoteSocket, K key) {
+            this.remoteSocket = remoteSocket;
+            this.key = key;
+
+            InetAddress address = remoteSocket.getAddress();
+            this.resolved = address != null;
+            if (address instanceof Inet4Address) {
+                // the hash code of an IPv4 address is the address itself (no copy of the address bytes), the
+                // prefix of IPv4-mapped IPv6 addresses (::ffff:0:0/96) avoids collisions with IPv6 addresses
+                this.addressHigh = 0;
+                this.addressLow = IPV4_MAPPED_PREFIX | (address.hashCode() & 0xFFFFFFFFL);
+            } else if (address != null) {
+                byte[] bytes = address.getAddress();
+                this.addressHigh = toLong(bytes, 0);
+                this.addressLow = toLong(bytes, 8);
+            } else {
+                // unresolved, i.e. equality is determined by the socket (see equals)
+                this.addressHigh = 0;
+                this.addressLow = remoteSocket.getHostName().toLowerCase().hashCode();
+            }
+            this.port = remoteSocket.getPort();
+
+            int hash = (int) (this.addressLow ^ (this.addressLow >>> 32) ^ this.addressHigh ^ (this.addressHigh >>> 32));
+            hash = 31 * hash + this.port;
+            this.hashCode = 31 * hash + key.hashCode();
+        }
+
+        private static long toLong(byte[] bytes, int offset) {
+            long result = 0;
+            for (int i = offset; i < offset + 8; i++) {
+                result = (result << 8) | (bytes[i] & 0xFF);
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof ExchangeKey)) {
+                return false;
+            }
+            ExchangeKey other = (ExchangeKey) object;
+            return this.hashCode == other.hashCode && this.port == other.port &&
+                    this.addressLow == other.addressLow && this.addressHigh == other.addressHigh &&
+                    this.resolved == other.resolved && this.key.equals(other.key) &&
+                    (this.resolved || this.remoteSocket.equals(other.remoteSocket));
+        }
+    }
+}
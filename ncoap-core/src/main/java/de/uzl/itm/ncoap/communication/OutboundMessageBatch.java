@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import de.uzl.itm.ncoap.message.CoapMessage;
+import org.jboss.netty.channel.ChannelFuture;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>An {@link OutboundMessageBatch} is a list of {@link CoapMessage}s (each with its recipient and a
+ * {@link ChannelFuture}) that is written as a single downstream event, e.g. the update notifications for all
+ * observers of a {@link de.uzl.itm.ncoap.application.server.resource.ObservableWebresource}.</p>
+ *
+ * <p>The batch traverses the pipeline only once. Every {@link AbstractCoapChannelHandler} applies
+ * {@link AbstractCoapChannelHandler#handleOutboundCoapMessage(CoapMessage, InetSocketAddress)} to each message of
+ * the batch (messages that are not to be processed further are removed from the batch and their futures are
+ * cancelled). The {@link de.uzl.itm.ncoap.communication.codec.CoapMessageEncoder} finally encodes all messages
+ * into one buffer and writes the datagrams back-to-back.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class OutboundMessageBatch implements Iterable<OutboundMessageBatch.Entry> {
+
+    private List<Entry> entries;
+
+    /**
+     * Creates a new (empty) instance of {@link OutboundMessageBatch}
+     *
+     * @param expectedSize the expected number of messages
+     */
+    public OutboundMessageBatch(int expectedSize) {
+        this.entries = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * Adds a message to this batch
+     *
+     * @param coapMessage the {@link CoapMessage} to be sent
+     * @param remoteSocket the recipient of the message
+     * @param future the {@link ChannelFuture} that will be set with the result of the message writing process
+     */
+    public void add(CoapMessage coapMessage, InetSocketAddress remoteSocket, ChannelFuture future) {
+        this.entries.add(new Entry(coapMessage, remoteSocket, future));
+    }
+
+    /**
+     * Returns the number of messages in this batch
+     *
+     * @return the number of messages in this batch
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns <code>true</code> if there are no messages in this batch and <code>false</code> otherwise
+     *
+     * @return <code>true</code> if there are no messages in this batch and <code>false</code> otherwise
+     */
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Returns an iterator over the messages of this batch (that supports removal)
+     *
+     * @return an iterator over the messages of this batch
+     */
+    @Override
+    public Iterator<Entry> iterator() {
+        return this.entries.iterator();
+    }
+
+
+    /**
+     * A single message of an {@link OutboundMessageBatch}
+     */
+    public static class Entry {
+
+        private final CoapMessage coapMessage;
+        private final InetSocketAddress remoteSocket;
+        private final ChannelFuture future;
+
+        private Entry(CoapMessage coapMessage, InetSocketAddress remoteSocket, ChannelFuture future) {
+            this.coapMessage = coapMessage;
+            this.remoteSocket = remoteSocket;
+            this.future = future;
+        }
+
+        /**
+         * Returns the {@link CoapMessage} to be sent
+         *
+         * @return the {@link CoapMessage} to be sent
+         */
+        public CoapMessage getCoapMessage() {
+            return this.coapMessage;
+        }
+
+        /**
+         * Returns the recipient of the message
+         *
+         * @return the recipient of the message
+         */
+        public InetSocketAddress getRemoteSocket() {
+            return this.remoteSocket;
+        }
+
+        /**
+         * Returns the {@link ChannelFuture} that will be set with the result of the message writing process
+         *
+         * @return the {@link ChannelFuture} that will be set with the result of the message writing process
+         */
+        public ChannelFuture getFuture() {
+            return this.future;
+        }
+    }
+}
@@ -24,8 +24,8 @@
  */
 package de.uzl.itm.ncoap.communication.blockwise.client;
 
-import com.google.common.collect.HashBasedTable;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
 import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.client.RemoteServerSocketChangedEvent;
@@ -45,7 +45,6 @@ import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * The {@link ClientBlock1Handler} handles the {@link Option#BLOCK_1} for
@@ -60,8 +59,7 @@ public class ClientBlock1Handler extends AbstractCoapChannelHandler implements T
 
     private static Logger LOG = LoggerFactory.getLogger(ClientBlock1Handler.class.getName());
 
-    private HashBasedTable<InetSocketAddress, Token, ClientBlock1Helper> block1Helpers;
-    private ReentrantReadWriteLock lock;
+    private ExchangeTable<Token, ClientBlock1Helper> block1Helpers;
 
     /**
      * Creates a new instance of {@link ClientBlock1Handler}
@@ -70,8 +68,7 @@ public class ClientBlock1Handler extends AbstractCoapChannelHandler implements T
      */
     public ClientBlock1Handler(ScheduledExecutorService executor) {
         super(executor);
-        this.block1Helpers = HashBasedTable.create();
-        this.lock = new ReentrantReadWriteLock();
+        this.block1Helpers = new ExchangeTable<>();
     }
 
     @Override
@@ -112,12 +109,7 @@ public class ClientBlock1Handler extends AbstractCoapChannelHandler implements T
     }
 
     private ClientBlock1Helper getBlock1Helper(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.readLock().lock();
-            return this.block1Helpers.get(remoteSocket, token);
-        } finally {
-            this.lock.readLock().unlock();
-        }
+        return this.block1Helpers.get(remoteSocket, token);
     }
 
     @Override
@@ -140,27 +132,17 @@ public class ClientBlock1Handler extends AbstractCoapChannelHandler implements T
 
     private ClientBlock1Helper addHelper(CoapRequest coapRequest, InetSocketAddress remoteSocket) {
 
-        try {
-            this.lock.writeLock().lock();
-            ClientBlock1Helper clientBlock1Helper = new ClientBlock1Helper(coapRequest, remoteSocket);
-            this.block1Helpers.put(remoteSocket, coapRequest.getToken(), clientBlock1Helper);
-            return clientBlock1Helper;
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        ClientBlock1Helper clientBlock1Helper = new ClientBlock1Helper(coapRequest, remoteSocket);
+        this.block1Helpers.put(remoteSocket, coapRequest.getToken(), clientBlock1Helper);
+        return clientBlock1Helper;
     }
 
 
     private void removeHelper(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.writeLock().lock();
-            if (this.block1Helpers.remove(remoteSocket, token) == null) {
-                LOG.debug("No BLOCK1 helper found to be removed (Remote Socket: {}, Token: {})", remoteSocket, token);
-            } else {
-                LOG.debug("Successfully removed BLOCK1 helper (Remote Socket: {}, Token: {})", remoteSocket, token);
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+        if (this.block1Helpers.remove(remoteSocket, token) == null) {
+            LOG.debug("No BLOCK1 helper found to be removed (Remote Socket: {}, Token: {})", remoteSocket, token);
+        } else {
+            LOG.debug("Successfully removed BLOCK1 helper (Remote Socket: {}, Token: {})", remoteSocket, token);
         }
     }
 
@@ -169,24 +151,14 @@ public class ClientBlock1Handler extends AbstractCoapChannelHandler implements T
     public void handleEvent(RemoteServerSocketChangedEvent event) {
         InetSocketAddress previous = event.getPreviousRemoteSocket();
         Token token = event.getToken();
-        try {
-            this.lock.readLock().lock();
-            if (!this.block1Helpers.contains(previous, token)) {
-                return;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        ClientBlock1Helper helper = this.block1Helpers.remove(previous, token);
+        if (helper == null) {
+            return;
         }
 
         InetSocketAddress actual = event.getRemoteSocket();
-        try {
-            this.lock.writeLock().lock();
-            ClientBlock1Helper helper = this.block1Helpers.remove(previous, token);
-            this.block1Helpers.put(event.getRemoteSocket(), token, helper);
-            LOG.debug("Successfully updated remote socket (previous: {}, actual: {})", previous, actual);
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        this.block1Helpers.put(actual, token, helper);
+        LOG.debug("Successfully updated remote socket (previous: {}, actual: {})", previous, actual);
     }
 
     @Override
@@ -24,9 +24,9 @@
  */
 package de.uzl.itm.ncoap.communication.blockwise.client;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.primitives.Bytes;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.client.BlockwiseResponseTransferFailedEvent;
 import de.uzl.itm.ncoap.communication.events.client.RemoteServerSocketChangedEvent;
@@ -47,7 +47,6 @@ import org.slf4j.LoggerFactory;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * <p>The {@link ClientBlock2Handler} handles the {@link Option#BLOCK_2} for
@@ -68,8 +67,7 @@ public class ClientBlock2Handler extends AbstractCoapChannelHandler implements T
 
     private static Logger LOG = LoggerFactory.getLogger(ClientBlock2Handler.class.getName());
 
-    private HashBasedTable<InetSocketAddress, Token, ClientBlock2Helper> block2HelperTable;
-    private ReentrantReadWriteLock lock;
+    private ExchangeTable<Token, ClientBlock2Helper> block2HelperTable;
 
     /**
      * Creates a new instance of {@link ClientBlock2Handler}
@@ -78,8 +76,7 @@ public class ClientBlock2Handler extends AbstractCoapChannelHandler implements T
      */
     public ClientBlock2Handler(ScheduledExecutorService executor) {
         super(executor);
-        this.block2HelperTable = HashBasedTable.create();
-        this.lock = new ReentrantReadWriteLock();
+        this.block2HelperTable = new ExchangeTable<>();
     }
 
     @Override
@@ -135,34 +132,24 @@ public class ClientBlock2Handler extends AbstractCoapChannelHandler implements T
 
     private byte[] addResponseBlock(InetSocketAddress remoteSocket, Token token, byte[] etag,
                                            ChannelBuffer responsePayloadBlock) {
-        try {
-            this.lock.writeLock().lock();
-            ClientBlock2Helper helper = this.block2HelperTable.get(remoteSocket, token);
-            if (helper != null) {
-                byte[] result =  helper.addResponseBlock(responsePayloadBlock, etag);
-                LOG.debug("Payload: {}", new String(result, CoapMessage.CHARSET));
-                return result;
-            } else {
+        ClientBlock2Helper helper = this.block2HelperTable.get(remoteSocket, token);
+        if (helper != null) {
+            byte[] result =  helper.addResponseBlock(responsePayloadBlock, etag);
+            LOG.debug("Payload: {}", new String(result, CoapMessage.CHARSET));
+            return result;
+        } else {
 //                return ChannelBuffers.EMPTY_BUFFER;
-                return new byte[0];
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+            return new byte[0];
         }
     }
 
     private CoapRequest getRequestForResponseBlock(InetSocketAddress remoteSocket, Token token,
                                                    long block2num, long block2szx) {
-        try {
-            this.lock.readLock().lock();
-            ClientBlock2Helper helper = this.block2HelperTable.get(remoteSocket, token);
-            if (helper != null) {
-                return helper.getCoapRequestForResponseBlock(block2num, block2szx);
-            } else {
-                return null;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        ClientBlock2Helper helper = this.block2HelperTable.get(remoteSocket, token);
+        if (helper != null) {
+            return helper.getCoapRequestForResponseBlock(block2num, block2szx);
+        } else {
+            return null;
         }
     }
 
@@ -182,27 +169,17 @@ public class ClientBlock2Handler extends AbstractCoapChannelHandler implements T
 
 
     private ClientBlock2Helper addHelper(CoapRequest coapRequest, InetSocketAddress remoteSocket) {
-        try {
-            this.lock.writeLock().lock();
-            ClientBlock2Helper clientBlock2Helper = new ClientBlock2Helper(coapRequest);
-            this.block2HelperTable.put(remoteSocket, coapRequest.getToken(), clientBlock2Helper);
-            return clientBlock2Helper;
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        ClientBlock2Helper clientBlock2Helper = new ClientBlock2Helper(coapRequest);
+        this.block2HelperTable.put(remoteSocket, coapRequest.getToken(), clientBlock2Helper);
+        return clientBlock2Helper;
     }
 
 
     private void removeHelper(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.writeLock().lock();
-            if (this.block2HelperTable.remove(remoteSocket, token) == null) {
-                LOG.debug("No BLOCK2 helper found to be removed (Remote Socket: {}, Token: {})", remoteSocket, token);
-            } else {
-                LOG.debug("Successfully removed BLOCK2 helper (Remote Socket: {}, Token: {})", remoteSocket, token);
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+        if (this.block2HelperTable.remove(remoteSocket, token) == null) {
+            LOG.debug("No BLOCK2 helper found to be removed (Remote Socket: {}, Token: {})", remoteSocket, token);
+        } else {
+            LOG.debug("Successfully removed BLOCK2 helper (Remote Socket: {}, Token: {})", remoteSocket, token);
         }
     }
 
@@ -210,24 +187,14 @@ public class ClientBlock2Handler extends AbstractCoapChannelHandler implements T
     public void handleEvent(RemoteServerSocketChangedEvent event) {
         InetSocketAddress previous = event.getPreviousRemoteSocket();
         Token token = event.getToken();
-        try {
-            this.lock.readLock().lock();
-            if (!this.block2HelperTable.contains(previous, token)) {
-                return;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        ClientBlock2Helper helper = this.block2HelperTable.remove(previous, token);
+        if (helper == null) {
+            return;
         }
 
         InetSocketAddress actual = event.getRemoteSocket();
-        try {
-            this.lock.writeLock().lock();
-            ClientBlock2Helper helper = this.block2HelperTable.remove(previous, token);
-            this.block2HelperTable.put(event.getRemoteSocket(), token, helper);
-            LOG.debug("Successfully updated remote socket (previous: {}, actual: {})", previous, actual);
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        this.block2HelperTable.put(actual, token, helper);
+        LOG.debug("Successfully updated remote socket (previous: {}, actual: {})", previous, actual);
     }
 
     @Override
@@ -248,7 +215,7 @@ public class ClientBlock2Handler extends AbstractCoapChannelHandler implements T
         }
 
 
-        private byte[] addResponseBlock(ChannelBuffer buffer, byte[] etag) {
+        private synchronized byte[] addResponseBlock(ChannelBuffer buffer, byte[] etag) {
             if (this.etag != null && etag == null) {
                 // previous response block had an ETAG but current block has no ETAG
                 return new byte[0];
@@ -268,7 +235,7 @@ public class ClientBlock2Handler extends AbstractCoapChannelHandler implements T
         }
 
 
-        private CoapRequest getCoapRequestForResponseBlock(long block2num, long block2szx) {
+        private synchronized CoapRequest getCoapRequestForResponseBlock(long block2num, long block2szx) {
             if (block2num > 0) {
                 coapRequest.setMessageID(CoapMessage.UNDEFINED_MESSAGE_ID);
                 coapRequest.setContent(ChannelBuffers.EMPTY_BUFFER);
@@ -24,8 +24,8 @@
  */
 package de.uzl.itm.ncoap.communication.blockwise.server;
 
-import com.google.common.collect.HashBasedTable;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
 import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.message.*;
@@ -43,7 +43,6 @@ import static de.uzl.itm.ncoap.message.MessageCode.CONTINUE_231;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * <p>The {@link ServerBlock2Handler} handles the {@link Option#BLOCK_2} for
@@ -63,8 +62,7 @@ public class ServerBlock1Handler extends AbstractCoapChannelHandler {
 
     private static Logger LOG = LoggerFactory.getLogger(ServerBlock1Handler.class.getName());
 
-    private HashBasedTable<InetSocketAddress, Token, ChannelBuffer> receivedRequestBlocks;
-    private ReentrantReadWriteLock lock;
+    private ExchangeTable<Token, ChannelBuffer> receivedRequestBlocks;
     private BlockSize maxBlock1Size;
 
     /**
@@ -77,8 +75,7 @@ public class ServerBlock1Handler extends AbstractCoapChannelHandler {
     public ServerBlock1Handler(ScheduledExecutorService executor, BlockSize maxBlock1Size) {
         super(executor);
         this.maxBlock1Size = maxBlock1Size;
-        this.receivedRequestBlocks = HashBasedTable.create();
-        this.lock = new ReentrantReadWriteLock();
+        this.receivedRequestBlocks = new ExchangeTable<>();
     }
 
     @Override
@@ -117,36 +114,30 @@ public class ServerBlock1Handler extends AbstractCoapChannelHandler {
 
 
     private ChannelBuffer addRequestBlock(CoapRequest coapRequest, InetSocketAddress remoteSocket) {
-        try {
-            this.lock.writeLock().lock();
-
-            // lookup previously received blocks and append actual block
-            Token token = coapRequest.getToken();
-            ChannelBuffer receivedBlocks = this.receivedRequestBlocks.get(remoteSocket, token);
-            if (receivedBlocks == null) {
-                receivedBlocks = coapRequest.getContent();
+        // lookup previously received blocks and append actual block (retry if there was a concurrent update)
+        Token token = coapRequest.getToken();
+        while (true) {
+            ChannelBuffer previousBlocks = this.receivedRequestBlocks.get(remoteSocket, token);
+            if (previousBlocks == null) {
+                ChannelBuffer receivedBlocks = coapRequest.getContent();
+                if (this.receivedRequestBlocks.putIfAbsent(remoteSocket, token, receivedBlocks) == null) {
+                    return receivedBlocks;
+                }
             } else {
-                receivedBlocks = ChannelBuffers.wrappedBuffer(receivedBlocks, coapRequest.getContent());
+                ChannelBuffer receivedBlocks = ChannelBuffers.wrappedBuffer(previousBlocks, coapRequest.getContent());
+                if (this.receivedRequestBlocks.replace(remoteSocket, token, previousBlocks, receivedBlocks)) {
+                    return receivedBlocks;
+                }
             }
-            this.receivedRequestBlocks.put(remoteSocket, token, receivedBlocks);
-
-            return receivedBlocks;
-        } finally {
-            this.lock.writeLock().unlock();
         }
     }
 
 
     private void removeRequestBlocks(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.writeLock().lock();
-            if (this.receivedRequestBlocks.remove(remoteSocket, token) != null) {
-                LOG.debug("Removed previous request blocks (remote socket: {}, token: {})", remoteSocket, token);
-            } else {
-                LOG.warn("No previous request blocks found (remote socket: {}, token: {})", remoteSocket, token);
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+        if (this.receivedRequestBlocks.remove(remoteSocket, token) != null) {
+            LOG.debug("Removed previous request blocks (remote socket: {}, token: {})", remoteSocket, token);
+        } else {
+            LOG.warn("No previous request blocks found (remote socket: {}, token: {})", remoteSocket, token);
         }
     }
 
@@ -173,23 +164,17 @@ public class ServerBlock1Handler extends AbstractCoapChannelHandler {
     }
 
     private boolean containsExpectedBlock(CoapRequest coapRequest, InetSocketAddress remoteSocket) {
-        try {
-            this.lock.readLock().lock();
-            ChannelBuffer previousBlocks = this.receivedRequestBlocks.get(remoteSocket, coapRequest.getToken());
-            if (previousBlocks == null) {
-                return true;
-            } else {
-                long block1num = coapRequest.getBlock1Number();
-                boolean expected = block1num == (previousBlocks.readableBytes() / coapRequest.getBlock1Size());
-                if (!expected) {
-                    sendEntityIncompleteResponse(coapRequest, remoteSocket, previousBlocks.readableBytes());
-                }
-                return expected;
+        ChannelBuffer previousBlocks = this.receivedRequestBlocks.get(remoteSocket, coapRequest.getToken());
+        if (previousBlocks == null) {
+            return true;
+        } else {
+            long block1num = coapRequest.getBlock1Number();
+            boolean expected = block1num == (previousBlocks.readableBytes() / coapRequest.getBlock1Size());
+            if (!expected) {
+                sendEntityIncompleteResponse(coapRequest, remoteSocket, previousBlocks.readableBytes());
             }
-        } finally {
-            this.lock.readLock().unlock();
+            return expected;
         }
-
     }
 
     private void sendEntityIncompleteResponse(CoapRequest coapRequest, final InetSocketAddress remoteSocket,
@@ -0,0 +1,398 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.caching;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.communication.events.client.TokenReleasedEvent;
+import de.uzl.itm.ncoap.communication.reliability.outbound.CongestionController;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.Option;
+import de.uzl.itm.ncoap.message.options.UintOptionValue;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>The {@link ClientResponseCacheHandler} is the client side cache for responses to GET requests (see RFC 7252,
+ * section 5.6). It is located between the
+ * {@link de.uzl.itm.ncoap.communication.observing.ClientObservationHandler} and the
+ * {@link de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher}, i.e. it deals with complete
+ * (re-assembled) responses.</p>
+ *
+ * <p>The responses (2.05 Content) are cached with the remote socket, the Uri-Path, the Uri-Query and the Accept
+ * option(s) of the request as key. An outbound GET request for a cached response is handled as follows:</p>
+ * <ul>
+ *     <li>If the cached response is fresh (i.e. its Max-Age did not expire), the request is not sent but
+ *     answered locally with a copy of the cached response.</li>
+ *     <li>If the cached response is stale but has an ETag, the request is sent with that ETag for validation. An
+ *     inbound 2.03 (Valid) is then replaced by the cached response (with the new Max-Age).</li>
+ *     <li>Otherwise, the request is sent (and the stale response is removed from the cache).</li>
+ * </ul>
+ *
+ * <p>Requests for observations, requests with ETag(s) set by the application and requests to proxies are never
+ * answered from the cache. Any other request than GET removes the cached responses for the same remote socket
+ * and Uri-Path. The cache is bounded by size (least recently used entries are evicted first). A maximum size of
+ * <code>0</code> disables the cache, i.e. all messages are passed unchanged.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class ClientResponseCacheHandler extends AbstractCoapChannelHandler implements TokenReleasedEvent.Handler {
+
+    /**
+     * The recommended maximum number of cached responses (1000)
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private static Logger LOG = LoggerFactory.getLogger(ClientResponseCacheHandler.class.getName());
+
+    private boolean enabled;
+    private Cache<CacheKey, CachedResponse> responses;
+
+    // the cacheable requests awaiting a response (key: remote socket and token of the request)
+    private ExchangeTable<Token, PendingRequest> pendingRequests;
+
+    private CongestionController congestionController;
+
+    private AtomicLong hitCount;
+    private AtomicLong missCount;
+    private AtomicLong revalidationCount;
+
+
+    /**
+     * Creates a new instance of {@link ClientResponseCacheHandler} with a maximum size of
+     * {@link #DEFAULT_MAXIMUM_SIZE}.
+     *
+     * @param executor the {@link ScheduledExecutorService} to process the tasks of this handler
+     * @param congestionController the {@link CongestionController} to release the outstanding exchange of a
+     *                             confirmable request that was answered locally (or <code>null</code> if the number
+     *                             of outstanding exchanges is not limited)
+     */
+    public ClientResponseCacheHandler(ScheduledExecutorService executor, CongestionController congestionController) {
+        this(executor, congestionController, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new instance of {@link ClientResponseCacheHandler}
+     *
+     * @param executor the {@link ScheduledExecutorService} to process the tasks of this handler
+     * @param congestionController the {@link CongestionController} to release the outstanding exchange of a
+     *                             confirmable request that was answered locally (or <code>null</code> if the number
+     *                             of outstanding exchanges is not limited)
+     * @param maximumSize the maximum number of cached responses (<code>0</code> to disable the cache)
+     */
+    public ClientResponseCacheHandler(ScheduledExecutorService executor, CongestionController congestionController,
+            int maximumSize) {
+
+        super(executor);
+        this.enabled = maximumSize > 0;
+        this.responses = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        this.pendingRequests = new ExchangeTable<>();
+        this.congestionController = congestionController;
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.revalidationCount = new AtomicLong();
+    }
+
+
+    @Override
+    public boolean handleOutboundCoapMessage(CoapMessage coapMessage, InetSocketAddress remoteSocket) {
+        return handleOutboundCoapMessage(coapMessage, remoteSocket, null);
+    }
+
+
+    @Override
+    protected boolean handleOutboundCoapMessage(CoapMessage coapMessage, InetSocketAddress remoteSocket,
+            ChannelFuture future) {
+
+        if (!this.enabled || !(coapMessage instanceof CoapRequest)) {
+            return true;
+        }
+
+        CoapRequest coapRequest = (CoapRequest) coapMessage;
+        if (coapRequest.getMessageCode() != MessageCode.GET) {
+            invalidate(remoteSocket, coapRequest.getUriPath());
+            return true;
+        } else if (!isCacheable(coapRequest)) {
+            return true;
+        }
+
+        CacheKey cacheKey = new CacheKey(remoteSocket, coapRequest);
+        CachedResponse cachedResponse = this.responses.getIfPresent(cacheKey);
+        long now = System.nanoTime();
+
+        if (cachedResponse != null && cachedResponse.isFresh(now) && future != null) {
+            // fresh response, i.e. answer locally
+            this.hitCount.incrementAndGet();
+            LOG.debug("Answer request from cache (remote socket: \"{}\", token: {}).", remoteSocket,
+                    coapRequest.getToken());
+            future.setSuccess();
+            if (this.congestionController != null && coapRequest.getMessageType() == MessageType.CON) {
+                this.congestionController.release(remoteSocket, coapRequest.getToken());
+            }
+            continueMessageProcessing(cachedResponse.toCoapResponse(coapRequest, now), remoteSocket);
+            return false;
+        }
+
+        this.missCount.incrementAndGet();
+        if (cachedResponse != null && cachedResponse.etag != null) {
+            // stale response, i.e. validate with the ETag
+            this.revalidationCount.incrementAndGet();
+            coapRequest.setEtags(cachedResponse.etag);
+            LOG.debug("Validate cached response (remote socket: \"{}\", token: {}).", remoteSocket,
+                    coapRequest.getToken());
+        } else if (cachedResponse != null) {
+            this.responses.invalidate(cacheKey);
+            cachedResponse = null;
+        }
+
+        this.pendingRequests.put(remoteSocket, coapRequest.getToken(), new PendingRequest(cacheKey, cachedResponse));
+        return true;
+    }
+
+
+    @Override
+    public boolean handleInboundCoapMessage(CoapMessage coapMessage, InetSocketAddress remoteSocket) {
+        if (!this.enabled || !(coapMessage instanceof CoapResponse)) {
+            return true;
+        }
+
+        CoapResponse coapResponse = (CoapResponse) coapMessage;
+        PendingRequest pendingRequest = this.pendingRequests.remove(remoteSocket, coapResponse.getToken());
+        if (pendingRequest == null || coapResponse.isUpdateNotification() || !coapResponse.isLastBlock2()) {
+            return true;
+        }
+
+        int messageCode = coapResponse.getMessageCode();
+        long now = System.nanoTime();
+
+        if (messageCode == MessageCode.CONTENT_205) {
+            if (coapResponse.getMaxAge() > 0) {
+                this.responses.put(pendingRequest.cacheKey, new CachedResponse(coapResponse, now));
+            } else {
+                this.responses.invalidate(pendingRequest.cacheKey);
+            }
+            return true;
+        } else if (messageCode == MessageCode.VALID_203 && pendingRequest.cachedResponse != null) {
+            // replace the 2.03 (Valid) with the validated response
+            CachedResponse validated = pendingRequest.cachedResponse.validate(coapResponse, now);
+            this.responses.put(pendingRequest.cacheKey, validated);
+            LOG.debug("Cached response validated (remote socket: \"{}\", token: {}).", remoteSocket,
+                    coapResponse.getToken());
+
+            CoapResponse validatedResponse = validated.toCoapResponse(coapResponse, now);
+            validatedResponse.setMessageID(coapResponse.getMessageID());
+            continueMessageProcessing(validatedResponse, remoteSocket);
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+
+    @Override
+    public void handleEvent(TokenReleasedEvent event) {
+        this.pendingRequests.remove(event.getRemoteSocket(), event.getToken());
+    }
+
+
+    /**
+     * Returns the number of GET requests that were answered from the cache
+     *
+     * @return the number of GET requests that were answered from the cache
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Returns the number of (cacheable) GET requests that were sent, i.e. not answered from the cache (including
+     * the requests to validate a stale response)
+     *
+     * @return the number of (cacheable) GET requests that were sent
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Returns the number of GET requests that were sent to validate a stale response
+     *
+     * @return the number of GET requests that were sent to validate a stale response
+     */
+    public long getRevalidationCount() {
+        return this.revalidationCount.get();
+    }
+
+    /**
+     * Returns the number of cached responses (including stale responses)
+     *
+     * @return the number of cached responses
+     */
+    public long getSize() {
+        return this.responses.size();
+    }
+
+
+    private static boolean isCacheable(CoapRequest coapRequest) {
+        return coapRequest.getObserve() == UintOptionValue.UNDEFINED && !coapRequest.containsOption(Option.ETAG) &&
+                !coapRequest.containsOption(Option.PROXY_URI) && !coapRequest.containsOption(Option.PROXY_SCHEME) &&
+                coapRequest.getBlock2Number() <= 0;
+    }
+
+
+    private void invalidate(InetSocketAddress remoteSocket, String uriPath) {
+        Iterator<CacheKey> keys = this.responses.asMap().keySet().iterator();
+        while (keys.hasNext()) {
+            CacheKey cacheKey = keys.next();
+            if (cacheKey.remoteSocket.equals(remoteSocket) && cacheKey.uriPath.equals(uriPath)) {
+                keys.remove();
+                LOG.debug("Removed cached response (remote socket: \"{}\", path: {}).", remoteSocket, uriPath);
+            }
+        }
+    }
+
+
+    private static class PendingRequest {
+
+        private final CacheKey cacheKey;
+        private final CachedResponse cachedResponse;
+
+        private PendingRequest(CacheKey cacheKey, CachedResponse cachedResponse) {
+            this.cacheKey = cacheKey;
+            this.cachedResponse = cachedResponse;
+        }
+    }
+
+
+    /**
+     * An immutable cached response, i.e. the options (without Max-Age, Observe and Block2), the content and the
+     * expiry of the response.
+     */
+    private static class CachedResponse {
+
+        private final CoapResponse template;
+        private final byte[] content;
+        private final byte[] etag;
+        private final long expiry;
+
+        private CachedResponse(CoapResponse coapResponse, long now) {
+            this.template = new CoapResponse(MessageType.NON, MessageCode.CONTENT_205);
+            this.template.setAllOptions(coapResponse.getAllOptions());
+            this.template.removeOptions(Option.MAX_AGE);
+            this.template.removeOptions(Option.OBSERVE);
+            this.template.removeOptions(Option.BLOCK_2);
+            this.template.removeOptions(Option.SIZE_2);
+            this.content = coapResponse.getContentAsByteArray();
+            this.etag = coapResponse.getEtag();
+            this.expiry = now + TimeUnit.SECONDS.toNanos(coapResponse.getMaxAge());
+        }
+
+        private CachedResponse(CachedResponse cachedResponse, long expiry) {
+            this.template = cachedResponse.template;
+            this.content = cachedResponse.content;
+            this.etag = cachedResponse.etag;
+            this.expiry = expiry;
+        }
+
+        private boolean isFresh(long now) {
+            return this.expiry - now > 0;
+        }
+
+        /**
+         * Returns a new {@link CachedResponse} with the Max-Age of the given 2.03 (Valid)
+         */
+        private CachedResponse validate(CoapResponse validResponse, long now) {
+            return new CachedResponse(this, now + TimeUnit.SECONDS.toNanos(validResponse.getMaxAge()));
+        }
+
+        /**
+         * Returns a copy of the cached response (with the remaining freshness as Max-Age) for the given message,
+         * i.e. with the same token and the message type of a response to that message.
+         */
+        private CoapResponse toCoapResponse(CoapMessage coapMessage, long now) {
+            int messageType = coapMessage.getMessageType();
+            if (messageType == MessageType.CON) {
+                messageType = MessageType.ACK;
+            }
+            CoapResponse coapResponse = new CoapResponse(messageType, MessageCode.CONTENT_205);
+            coapResponse.copyOptions(this.template);
+            coapResponse.setMaxAge(Math.max(0, TimeUnit.NANOSECONDS.toSeconds(this.expiry - now)));
+            coapResponse.setToken(coapMessage.getToken());
+            coapResponse.setContent(ChannelBuffers.unmodifiableBuffer(ChannelBuffers.wrappedBuffer(this.content)));
+            return coapResponse;
+        }
+    }
+
+
+    private static class CacheKey {
+
+        private final InetSocketAddress remoteSocket;
+        private final String uriPath;
+        private final String uriQuery;
+        private final Set<Long> accept;
+        private final int hashCode;
+
+        private CacheKey(InetSocketAddress remoteSocket, CoapRequest coapRequest) {
+            this.remoteSocket = remoteSocket;
+            this.uriPath = coapRequest.getUriPath();
+            this.uriQuery = coapRequest.getUriQuery();
+            this.accept = coapRequest.getAcceptedContentFormats();
+            this.hashCode = Arrays.hashCode(new Object[]{remoteSocket, this.uriPath, this.uriQuery, this.accept});
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) object;
+            return this.hashCode == other.hashCode && this.remoteSocket.equals(other.remoteSocket) &&
+                    this.uriPath.equals(other.uriPath) && this.uriQuery.equals(other.uriQuery) &&
+                    this.accept.equals(other.accept);
+        }
+    }
+}
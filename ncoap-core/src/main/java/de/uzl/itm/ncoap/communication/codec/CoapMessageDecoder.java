@@ -152,9 +152,12 @@ public class CoapMessageDecoder extends SimpleChannelUpstreamHandler {
             }
         }
 
-        //Read the token
-        byte[] token = new byte[tokenLength];
-        buffer.readBytes(token);
+        //Read the token (without intermediate byte array)
+        long tokenValue = 0;
+        for (int i = 0; i < tokenLength; i++) {
+            tokenValue = (tokenValue << 8) | buffer.readUnsignedByte();
+        }
+        Token token = Token.valueOf(tokenValue, tokenLength);
 
         //Handle non-empty messages (CON, NON or ACK)
         CoapMessage coapMessage;
@@ -167,7 +170,7 @@ public class CoapMessageDecoder extends SimpleChannelUpstreamHandler {
         }
 
         coapMessage.setMessageID(messageID);
-        coapMessage.setToken(new Token(token));
+        coapMessage.setToken(token);
 
         //Decode and set the options
         if (buffer.readableBytes() > 0) {
@@ -175,7 +178,7 @@ public class CoapMessageDecoder extends SimpleChannelUpstreamHandler {
                 setOptions(coapMessage, buffer);
             } catch (OptionCodecException ex) {
                 ex.setMessageID(messageID);
-                ex.setToken(new Token(token));
+                ex.setToken(token);
                 ex.setremoteSocket(remoteSocket);
                 ex.setMessageType(messageType);
                 throw ex;
@@ -184,17 +187,16 @@ public class CoapMessageDecoder extends SimpleChannelUpstreamHandler {
 
 
         //The remaining bytes (if any) are the messages payload. If there is no payload, reader and writer index are
-        //at the same position (buf.readableBytes() == 0).
-        buffer.discardReadBytes();
-
+        //at the same position (buf.readableBytes() == 0). The options refer to the buffer, so its content must not be
+        //moved (i.e. no discardReadBytes()).
         try {
-            coapMessage.setContent(buffer);
+            coapMessage.setContent(buffer.slice());
         } catch (IllegalArgumentException e) {
             String warning = "Message code {} does not allow content. Ignore {} bytes.";
             log.warn(warning, coapMessage.getMessageCode(), buffer.readableBytes());
         }
 
-        log.info("Decoded Message: {}", coapMessage);
+        log.debug("Decoded Message: {}", coapMessage);
 
         return coapMessage;
     }
@@ -207,7 +209,9 @@ public class CoapMessageDecoder extends SimpleChannelUpstreamHandler {
         int firstByte = buffer.readByte() & 0xFF;
 
         while(firstByte != 0xFF && buffer.readableBytes() >= 0) {
-            log.debug("First byte: {} ({})", toBinaryString(firstByte), firstByte);
+            if (log.isDebugEnabled()) {
+                log.debug("First byte: {} ({})", toBinaryString(firstByte), firstByte);
+            }
             int optionDelta =   (firstByte & 0xF0) >>> 4;
             int optionLength =   firstByte & 0x0F;
             log.debug("temp. delta: {}, temp. length {}", optionDelta, optionLength);
@@ -216,49 +220,25 @@ public class CoapMessageDecoder extends SimpleChannelUpstreamHandler {
                 optionDelta += buffer.readByte() & 0xFF;
             } else if (optionDelta == 14) {
                 optionDelta = 269 + ((buffer.readByte() & 0xFF) << 8) + (buffer.readByte() & 0xFF);
-            } else {
-                if (optionLength == 13) {
-                    optionLength += buffer.readByte() & 0xFF;
-                } else if (optionLength == 14) {
-                    optionLength = 269 + ((buffer.readByte() & 0xFF) << 8) + (buffer.readByte() & 0xFF);
-                }
             }
 
-            log.info("Previous option: {}, Option delta: {}", previousOptionNumber, optionDelta);
+            if (optionLength == 13) {
+                optionLength += buffer.readByte() & 0xFF;
+            } else if (optionLength == 14) {
+                optionLength = 269 + ((buffer.readByte() & 0xFF) << 8) + (buffer.readByte() & 0xFF);
+            }
+
+            log.debug("Previous option: {}, Option delta: {}", previousOptionNumber, optionDelta);
 
             int actualOptionNumber = previousOptionNumber + optionDelta;
-            log.info("Decode option no. {} with length of {} bytes.", actualOptionNumber, optionLength);
+            log.debug("Decode option no. {} with length of {} bytes.", actualOptionNumber, optionLength);
+
+            //Record the option as slice of the buffer (the value is decoded on first access)
+            int offset = buffer.readerIndex();
+            buffer.skipBytes(optionLength);
 
             try {
-                byte[] optionValue = new byte[optionLength];
-                buffer.readBytes(optionValue);
-
-                switch(OptionValue.getType(actualOptionNumber)) {
-                    case EMPTY: {
-                        EmptyOptionValue value = new EmptyOptionValue(actualOptionNumber);
-                        coapMessage.addOption(actualOptionNumber, value);
-                        break;
-                    }
-                    case OPAQUE: {
-                        OpaqueOptionValue value = new OpaqueOptionValue(actualOptionNumber, optionValue);
-                        coapMessage.addOption(actualOptionNumber, value);
-                        break;
-                    }
-                    case STRING: {
-                        StringOptionValue value = new StringOptionValue(actualOptionNumber, optionValue, true);
-                        coapMessage.addOption(actualOptionNumber, value);
-                        break;
-                    }
-                    case UINT: {
-                        UintOptionValue value = new UintOptionValue(actualOptionNumber, optionValue, true);
-                        coapMessage.addOption(actualOptionNumber, value);
-                        break;
-                    }
-                    default: {
-                        log.error("This should never happen!");
-                        throw new RuntimeException("This should never happen!");
-                    }
-                }
+                coapMessage.addOption(actualOptionNumber, buffer, offset, optionLength);
             } catch (IllegalArgumentException e) {
                 //failed option creation leads to an illegal argument exception
                 log.warn("Exception while decoding option!", e);
@@ -71,19 +71,23 @@
 
 package de.uzl.itm.ncoap.communication.codec;
 
-import com.google.common.primitives.Ints;
+import de.uzl.itm.ncoap.communication.OutboundMessageBatch;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.MiscellaneousErrorEvent;
 import de.uzl.itm.ncoap.message.CoapMessage;
 import de.uzl.itm.ncoap.message.MessageCode;
 import de.uzl.itm.ncoap.message.options.OptionValue;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.jboss.netty.channel.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
 
 
 /**
@@ -111,6 +115,11 @@ public class CoapMessageEncoder extends SimpleChannelDownstreamHandler {
     @Override
     public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent event) throws Exception {
 
+        if (event instanceof MessageEvent && ((MessageEvent) event).getMessage() instanceof OutboundMessageBatch) {
+            writeBatch(ctx, event, (OutboundMessageBatch) ((MessageEvent) event).getMessage());
+            return;
+        }
+
         if (!(event instanceof MessageEvent) || !(((MessageEvent) event).getMessage() instanceof CoapMessage)) {
             ctx.sendDownstream(event);
             return;
@@ -120,7 +129,7 @@ public class CoapMessageEncoder extends SimpleChannelDownstreamHandler {
         CoapMessage coapMessage = (CoapMessage) ((MessageEvent) event).getMessage();
 
         try {
-            ChannelBuffer encodedMessage = encode(coapMessage);
+            ChannelBuffer encodedMessage = encode(coapMessage, ctx.getChannel().getConfig().getBufferFactory());
             Channels.write(ctx, event.getFuture(), encodedMessage, remoteSocket);
         } catch(Exception ex) {
             event.getFuture().setFailure(ex);
@@ -131,35 +140,166 @@ public class CoapMessageEncoder extends SimpleChannelDownstreamHandler {
     }
 
 
+    /**
+     * <p>Encodes all messages of the given {@link OutboundMessageBatch} and writes the datagrams back-to-back, i.e.
+     * the I/O worker is (usually) woken up only once for the whole batch.</p>
+     *
+     * <p>Messages of a batch often differ in header and token only (e.g. the update notifications of an
+     * {@link de.uzl.itm.ncoap.application.server.resource.ObservableWebresource}). Thus, OPTIONS, the
+     * END-OF-OPTIONS marker and the payload (i.e. everything after the token) are encoded once per distinct
+     * section and shared by all datagrams. Sections are considered identical if the messages share the very same
+     * {@link OptionValue} and payload instances (see {@link CoapMessage#copyOptions(CoapMessage)}). HEADER and
+     * TOKEN of all messages are written into slices of a single buffer (one allocation per batch).</p>
+     */
+    private void writeBatch(ChannelHandlerContext ctx, ChannelEvent event, OutboundMessageBatch batch) {
+        ChannelBufferFactory bufferFactory = ctx.getChannel().getConfig().getBufferFactory();
+        Map<EncodedSection, EncodedSection> sections = new HashMap<>();
+
+        EncodedSection[] encodedSections = new EncodedSection[batch.size()];
+        Exception[] failures = new Exception[batch.size()];
+        int totalLength = 0;
+        int i = 0;
+        for (OutboundMessageBatch.Entry entry : batch) {
+            CoapMessage coapMessage = entry.getCoapMessage();
+            totalLength += getEncodedHeaderLength(coapMessage);
+            if (coapMessage.getMessageCode() != MessageCode.EMPTY) {
+                try {
+                    encodedSections[i] = getEncodedSection(coapMessage, sections, bufferFactory);
+                } catch (OptionCodecException ex) {
+                    failures[i] = ex;
+                }
+            }
+            i++;
+        }
+        LOG.debug("Encoded {} distinct section(s) for {} message(s).", sections.size(), batch.size());
+
+        ChannelBuffer slab = bufferFactory.getBuffer(totalLength);
+        int offset = 0;
+        i = 0;
+        for (OutboundMessageBatch.Entry entry : batch) {
+            CoapMessage coapMessage = entry.getCoapMessage();
+            InetSocketAddress remoteSocket = entry.getRemoteSocket();
+            int headerLength = getEncodedHeaderLength(coapMessage);
+            ChannelBuffer encodedMessage = slab.slice(offset, headerLength);
+            encodedMessage.clear();
+            offset += headerLength;
+
+            if (failures[i] != null) {
+                entry.getFuture().setFailure(failures[i]);
+                int messageID = coapMessage.getMessageID();
+                Token token = coapMessage.getToken();
+                sendInternalEncodingFailedMessage(ctx, remoteSocket, messageID, token, failures[i]);
+            } else {
+                if (coapMessage.getMessageCode() == MessageCode.EMPTY) {
+                    encodedMessage.writeInt(getEncodedHeader(coapMessage, 0));
+                } else {
+                    encodeHeader(encodedMessage, coapMessage);
+                    encodedMessage = ChannelBuffers.wrappedBuffer(encodedMessage, encodedSections[i].getBuffer(),
+                            coapMessage.getContent());
+                }
+                Channels.write(ctx, entry.getFuture(), encodedMessage, remoteSocket);
+            }
+            i++;
+        }
+
+        event.getFuture().setSuccess();
+    }
+
+
+    /**
+     * Returns the encoded OPTIONS and END-OF-OPTIONS marker (if any) of the given {@link CoapMessage}, either from
+     * the given sections (of previously encoded messages with identical options and payload) or newly encoded.
+     */
+    private EncodedSection getEncodedSection(CoapMessage coapMessage, Map<EncodedSection, EncodedSection> sections,
+            ChannelBufferFactory bufferFactory) throws OptionCodecException {
+
+        EncodedSection key = new EncodedSection(coapMessage);
+        EncodedSection section = sections.get(key);
+        if (section == null) {
+            int contentLength = coapMessage.getContent().readableBytes();
+            ChannelBuffer buffer = bufferFactory.getBuffer(getEncodedOptionsLength(coapMessage)
+                    + (contentLength > 0 ? 1 : 0));
+
+            encodeOptions(buffer, coapMessage);
+            if (contentLength > 0) {
+                buffer.writeByte(255);
+            }
+
+            key.setBuffer(buffer);
+            sections.put(key, key);
+            section = key;
+        }
+        return section;
+    }
+
+
+    /**
+     * Encodes the given {@link CoapMessage} using buffers provided by the
+     * {@link org.jboss.netty.buffer.HeapChannelBufferFactory}.
+     *
+     * @param coapMessage the {@link CoapMessage} to be encoded
+     *
+     * @return the encoded message
+     *
+     * @throws OptionCodecException if at least one of the options could not be encoded
+     */
     protected ChannelBuffer encode(CoapMessage coapMessage) throws OptionCodecException {
-        LOG.info("CoapMessage to be encoded: {}", coapMessage);
+        return encode(coapMessage, HeapChannelBufferFactory.getInstance());
+    }
 
-        // start encoding
-        ChannelBuffer encodedMessage = ChannelBuffers.dynamicBuffer(0);
 
-        // encode HEADER and TOKEN
-        encodeHeader(encodedMessage, coapMessage);
-        LOG.debug("Encoded length of message (after HEADER + TOKEN): {}", encodedMessage.readableBytes());
+    /**
+     * Encodes the given {@link CoapMessage} in a single pass. The exact length of HEADER, TOKEN, OPTIONS and
+     * the END-OF-OPTIONS marker is computed in advance, so that all of them are written into one buffer (obtained
+     * from the given {@link ChannelBufferFactory}) that never needs to grow. The payload (if any) is not copied but
+     * attached as second component of a composite buffer.
+     *
+     * @param coapMessage the {@link CoapMessage} to be encoded
+     * @param bufferFactory the {@link ChannelBufferFactory} to obtain the buffer for HEADER, TOKEN and OPTIONS from
+     *
+     * @return the encoded message
+     *
+     * @throws OptionCodecException if at least one of the options could not be encoded
+     */
+    protected ChannelBuffer encode(CoapMessage coapMessage, ChannelBufferFactory bufferFactory)
+            throws OptionCodecException {
+
+        return encode(coapMessage, bufferFactory.getBuffer(getEncodedLength(coapMessage)));
+    }
+
+
+    /**
+     * Encodes the given {@link CoapMessage} into the given buffer (which must provide at least
+     * {@link #getEncodedLength(CoapMessage)} writable bytes). The payload (if any) is not copied but attached as
+     * second component of a composite buffer.
+     */
+    private ChannelBuffer encode(CoapMessage coapMessage, ChannelBuffer encodedMessage)
+            throws OptionCodecException {
+
+        LOG.debug("CoapMessage to be encoded: {}", coapMessage);
 
+        // EMPTY messages consist of the header only (with token length 0)
         if (coapMessage.getMessageCode() == MessageCode.EMPTY) {
-            encodedMessage = ChannelBuffers.wrappedBuffer(Ints.toByteArray(encodedMessage.getInt(0) & 0xF0FFFFFF));
+            encodedMessage.writeInt(getEncodedHeader(coapMessage, 0));
             return encodedMessage;
         }
 
-        if (coapMessage.getAllOptions().size() == 0 && coapMessage.getContent().readableBytes() == 0) {
-            return encodedMessage;
-        }
+        int contentLength = coapMessage.getContent().readableBytes();
+
+        // encode HEADER and TOKEN
+        encodeHeader(encodedMessage, coapMessage);
+        LOG.debug("Encoded length of message (after HEADER + TOKEN): {}", encodedMessage.readableBytes());
 
         // encode OPTIONS (if any)
         encodeOptions(encodedMessage, coapMessage);
         LOG.debug("Encoded length of message (after OPTIONS): {}", encodedMessage.readableBytes());
 
         // encode payload (if any)
-        if (coapMessage.getContent().readableBytes() > 0) {
+        if (contentLength > 0) {
             // add END-OF-OPTIONS marker only if there is payload
             encodedMessage.writeByte(255);
 
-            // add payload
+            // add payload (without copying)
             encodedMessage = ChannelBuffers.wrappedBuffer(encodedMessage, coapMessage.getContent());
             LOG.debug("Encoded length of message (after CONTENT): {}", encodedMessage.readableBytes());
         }
@@ -170,13 +310,8 @@ public class CoapMessageEncoder extends SimpleChannelDownstreamHandler {
 
     protected void encodeHeader(ChannelBuffer buffer, CoapMessage coapMessage) {
 
-        byte[] token = coapMessage.getToken().getBytes();
-
-        int encodedHeader = ((coapMessage.getProtocolVersion()  & 0x03)     << 30)
-                          | ((coapMessage.getMessageType()      & 0x03)     << 28)
-                          | ((token.length                      & 0x0F)     << 24)
-                          | ((coapMessage.getMessageCode()      & 0xFF)     << 16)
-                          | ((coapMessage.getMessageID()        & 0xFFFF));
+        Token token = coapMessage.getToken();
+        int encodedHeader = getEncodedHeader(coapMessage, token.getLength());
 
         buffer.writeInt(encodedHeader);
 
@@ -188,23 +323,81 @@ public class CoapMessageEncoder extends SimpleChannelDownstreamHandler {
             LOG.debug("Encoded Header: {}", binary);
         }
 
-        //Write token
-        if (token.length > 0) {
-            buffer.writeBytes(token);
+        //Write token (without intermediate byte array)
+        long value = token.getValue();
+        for (int i = token.getLength() - 1; i >= 0; i--) {
+            buffer.writeByte((int) (value >>> (8 * i)));
         }
     }
 
 
+    private static int getEncodedHeader(CoapMessage coapMessage, int tokenLength) {
+        return ((coapMessage.getProtocolVersion()  & 0x03)     << 30)
+             | ((coapMessage.getMessageType()      & 0x03)     << 28)
+             | ((tokenLength                       & 0x0F)     << 24)
+             | ((coapMessage.getMessageCode()      & 0xFF)     << 16)
+             | ((coapMessage.getMessageID()        & 0xFFFF));
+    }
+
+
+    /**
+     * Returns the number of bytes HEADER and TOKEN of the given {@link CoapMessage} occupy when encoded.
+     */
+    private static int getEncodedHeaderLength(CoapMessage coapMessage) {
+        return coapMessage.getMessageCode() == MessageCode.EMPTY ? 4 : 4 + coapMessage.getToken().getLength();
+    }
+
+
+    /**
+     * Returns the number of bytes HEADER, TOKEN, OPTIONS and the END-OF-OPTIONS marker (if any) of the given
+     * {@link CoapMessage} occupy when encoded (i.e. the encoded length without payload).
+     */
+    private static int getEncodedLength(CoapMessage coapMessage) {
+        if (coapMessage.getMessageCode() == MessageCode.EMPTY) {
+            return getEncodedHeaderLength(coapMessage);
+        } else {
+            return getEncodedHeaderLength(coapMessage) + getEncodedOptionsLength(coapMessage)
+                    + (coapMessage.getContent().readableBytes() > 0 ? 1 : 0);
+        }
+    }
+
+
+    /**
+     * Returns the number of bytes the options of the given {@link CoapMessage} occupy when encoded, i.e. the sum
+     * of the (possibly extended) delta and length fields and the option values.
+     */
+    private static int getEncodedOptionsLength(CoapMessage coapMessage) {
+        int result = 0;
+        int previousOptionNumber = 0;
+
+        for(int i = 0; i < coapMessage.getOptionCount(); i++) {
+            int optionNumber = coapMessage.getOptionNumber(i);
+            int optionLength = coapMessage.getOptionValue(i).getValue().length;
+
+            result += 1 + getExtensionLength(optionNumber - previousOptionNumber) + getExtensionLength(optionLength)
+                    + optionLength;
+
+            previousOptionNumber = optionNumber;
+        }
+
+        return result;
+    }
+
+
+    private static int getExtensionLength(int value) {
+        return value < 13 ? 0 : value < 269 ? 1 : 2;
+    }
+
+
     protected void encodeOptions(ChannelBuffer buffer, CoapMessage coapMessage) throws OptionCodecException {
 
         //Encode options one after the other and append buf option to the buf
         int previousOptionNumber = 0;
 
-        for(int optionNumber : coapMessage.getAllOptions().keySet()) {
-            for(OptionValue optionValue : coapMessage.getOptions(optionNumber)) {
-                encodeOption(buffer, optionNumber, optionValue, previousOptionNumber);
-                previousOptionNumber = optionNumber;
-            }
+        for(int i = 0; i < coapMessage.getOptionCount(); i++) {
+            int optionNumber = coapMessage.getOptionNumber(i);
+            encodeOption(buffer, optionNumber, coapMessage.getOptionValue(i), previousOptionNumber);
+            previousOptionNumber = optionNumber;
         }
     }
 
@@ -284,8 +477,10 @@ public class CoapMessageEncoder extends SimpleChannelDownstreamHandler {
 
         //Write option value
         buffer.writeBytes(optionValue.getValue());
-        LOG.debug("Encoded option no {} with value {}", optionNumber, optionValue.getDecodedValue());
-        LOG.debug("Encoded message length is now: {}", buffer.readableBytes());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Encoded option no {} with value {}", optionNumber, optionValue.getDecodedValue());
+            LOG.debug("Encoded message length is now: {}", buffer.readableBytes());
+        }
     }
 
 
@@ -296,4 +491,66 @@ public class CoapMessageEncoder extends SimpleChannelDownstreamHandler {
         MiscellaneousErrorEvent event = new MiscellaneousErrorEvent(remoteSocket, messageID, token, desc);
         Channels.fireMessageReceived(ctx, event);
     }
+
+
+    /**
+     * The encoded OPTIONS and END-OF-OPTIONS marker of a message. Equality is determined by the identity of the
+     * {@link OptionValue}s and the payload of the message, i.e. messages that share these instances share the
+     * encoded section.
+     */
+    private static final class EncodedSection {
+
+        private final int[] numbers;
+        private final OptionValue[] values;
+        private final ChannelBuffer content;
+        private final int hashCode;
+
+        private ChannelBuffer buffer;
+
+        private EncodedSection(CoapMessage coapMessage) {
+            int optionCount = coapMessage.getOptionCount();
+            this.numbers = new int[optionCount];
+            this.values = new OptionValue[optionCount];
+            this.content = coapMessage.getContent();
+
+            int hash = System.identityHashCode(this.content);
+            for (int i = 0; i < optionCount; i++) {
+                this.numbers[i] = coapMessage.getOptionNumber(i);
+                this.values[i] = coapMessage.getOptionValue(i);
+                hash = 31 * (31 * hash + this.numbers[i]) + System.identityHashCode(this.values[i]);
+            }
+            this.hashCode = hash;
+        }
+
+        private ChannelBuffer getBuffer() {
+            return this.buffer;
+        }
+
+        private void setBuffer(ChannelBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof EncodedSection)) {
+                return false;
+            }
+            EncodedSection other = (EncodedSection) object;
+            if (this.hashCode != other.hashCode || this.content != other.content ||
+                    this.numbers.length != other.numbers.length) {
+                return false;
+            }
+            for (int i = 0; i < this.numbers.length; i++) {
+                if (this.numbers[i] != other.numbers[i] || this.values[i] != other.values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
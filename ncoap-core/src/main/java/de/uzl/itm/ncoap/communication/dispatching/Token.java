@@ -24,29 +24,37 @@
  */
 package de.uzl.itm.ncoap.communication.dispatching;
 
-import com.google.common.primitives.Bytes;
-import com.google.common.primitives.Longs;
 import com.google.common.primitives.UnsignedLongs;
 
-import java.util.Arrays;
-
 /**
  * A {@link Token} is the identifier to relate {@link de.uzl.itm.ncoap.message.CoapRequest}s with {@link de.uzl.itm.ncoap.message.CoapResponse}s. It consists of a byte
- * array with a size between 0 and 8 (both inclusive). So, {@link Token} basically is a wrapper class for a byte array.
+ * array with a size between 0 and 8 (both inclusive).
  *
  * The byte array content has no semantic meaning and thus, e.g. a {@link Token} instance backed by a byte
  * array containing a single zero byte (all bits set to 0) is different from a byte array backed by a byte array
  * containing two zero bytes.
  *
+ * Since a {@link Token} is at most 8 bytes long, it is internally represented by a <code>long</code> value (i.e.
+ * the bytes in network byte order, right-aligned) and its length. The hash code is computed once on construction,
+ * i.e. the lookups of {@link Token}s in hash based data structures (as done by several handlers for every message)
+ * neither allocate nor iterate over bytes.
+ *
  * @author Oliver Kleine
  */
 public class Token implements Comparable<Token>{
 
     public static int MAX_LENGTH = 8;
 
+    /**
+     * The (shared) {@link Token} of length 0
+     */
+    public static final Token EMPTY = new Token(0, 0);
+
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
 
-    private byte[] token;
+    private final long value;
+    private final int length;
+    private final int hashCode;
 
     /**
      * Creates a new {@link Token} instance.
@@ -56,18 +64,87 @@ public class Token implements Comparable<Token>{
      * @throws java.lang.IllegalArgumentException if the length of the given byte array is larger than 8
      */
     public Token(byte[] token) {
+        this(toLong(token), token.length);
+    }
+
+    /**
+     * Creates a new {@link Token} instance.
+     *
+     * @param value the bytes of the {@link Token} (in network byte order and right-aligned, e.g. <code>0x0102</code>
+     *              for the bytes <code>[0x01, 0x02]</code>)
+     * @param length the number of bytes of the {@link Token}
+     *
+     * @throws java.lang.IllegalArgumentException if the length is larger than 8 or the value does not fit into
+     * the given number of bytes
+     */
+    public Token(long value, int length) {
+        if (length < 0 || length > 8)
+            throw new IllegalArgumentException("Maximum token length is 8 (but given length was " + length + ")");
+
+        if (length < 8 && (value >>> (8 * length)) != 0)
+            throw new IllegalArgumentException("Value " + Long.toHexString(value) + " exceeds length " + length);
+
+        this.value = value;
+        this.length = length;
+        this.hashCode = hash(value, length);
+    }
+
+    /**
+     * Returns a {@link Token} with the given value and length, i.e. {@link #EMPTY} for length 0 and a new instance
+     * otherwise (see {@link #Token(long, int)}).
+     *
+     * @param value the bytes of the {@link Token} (in network byte order and right-aligned)
+     * @param length the number of bytes of the {@link Token}
+     *
+     * @return a {@link Token} with the given value and length
+     */
+    public static Token valueOf(long value, int length) {
+        return length == 0 ? EMPTY : new Token(value, length);
+    }
+
+    private static long toLong(byte[] token) {
         if (token.length > 8)
             throw new IllegalArgumentException("Maximum token length is 8 (but given length was " + token.length + ")");
 
-        this.token = token;
+        long result = 0;
+        for (byte b : token) {
+            result = (result << 8) | (b & 0xFF);
+        }
+        return result;
+    }
+
+    private static int hash(long value, int length) {
+        // spread the bits (tokens generated by other endpoints might differ in the lower bits only)
+        long hash = (value ^ length) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
     }
 
     /**
-     * Returns the byte array this {@link Token} instance wraps
-     * @return the byte array this {@link Token} instance wraps
+     * Returns a new byte array containing the bytes of this {@link Token}
+     * @return a new byte array containing the bytes of this {@link Token}
      */
     public byte[] getBytes() {
-        return this.token;
+        byte[] result = new byte[this.length];
+        for (int i = 0; i < this.length; i++) {
+            result[i] = (byte) (this.value >>> (8 * (this.length - 1 - i)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bytes of this {@link Token} as <code>long</code> value (in network byte order and right-aligned)
+     * @return the bytes of this {@link Token} as <code>long</code> value (in network byte order and right-aligned)
+     */
+    public long getValue() {
+        return this.value;
+    }
+
+    /**
+     * Returns the number of bytes of this {@link Token} (between 0 and 8)
+     * @return the number of bytes of this {@link Token} (between 0 and 8)
+     */
+    public int getLength() {
+        return this.length;
     }
 
 
@@ -98,33 +175,29 @@ public class Token implements Comparable<Token>{
 
     @Override
     public boolean equals(Object object) {
-        if (object == null || (!(object instanceof Token)))
+        if (this == object)
+            return true;
+
+        if (!(object instanceof Token))
             return false;
 
         Token other = (Token) object;
-        return Arrays.equals(this.getBytes(), other.getBytes());
+        return this.value == other.value && this.length == other.length;
     }
 
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(token);
+        return this.hashCode;
     }
 
 
     @Override
     public int compareTo(Token other) {
+        if (this.length != other.length)
+            return this.length < other.length ? -1 : 1;
 
-        if (other.equals(this))
-            return 0;
-
-        if (this.getBytes().length < other.getBytes().length)
-            return -1;
-
-        if (this.getBytes().length > other.getBytes().length)
-            return 1;
-
-        return UnsignedLongs.compare(Longs.fromByteArray(Bytes.concat(this.getBytes(), new byte[8])),
-                                     Longs.fromByteArray(Bytes.concat(other.getBytes(), new byte[8])));
+        // same length, i.e. right-aligned values compare like left-aligned values
+        return UnsignedLongs.compare(this.value, other.value);
     }
 }
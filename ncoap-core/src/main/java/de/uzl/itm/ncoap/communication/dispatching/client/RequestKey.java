@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.dispatching.client;
+
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.options.Option;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The key to identify identical requests, i.e. requests to the same remote socket with the same options (in the
+ * same order). The {@link Option#OBSERVE} is ignored, i.e. a GET request and a request to start an observation of
+ * the same resource have the same key.
+ *
+ * @author Oliver Kleine
+ */
+class RequestKey {
+
+    private final InetSocketAddress remoteSocket;
+    private final int messageCode;
+    private final List<Object> options;
+    private final int hashCode;
+
+    RequestKey(InetSocketAddress remoteSocket, CoapMessage coapMessage) {
+        this.remoteSocket = remoteSocket;
+        this.messageCode = coapMessage.getMessageCode();
+
+        int optionCount = coapMessage.getOptionCount();
+        this.options = new ArrayList<>(2 * optionCount);
+        for (int i = 0; i < optionCount; i++) {
+            int optionNumber = coapMessage.getOptionNumber(i);
+            if (optionNumber != Option.OBSERVE) {
+                this.options.add(optionNumber);
+                this.options.add(coapMessage.getOptionValue(i));
+            }
+        }
+
+        this.hashCode = 31 * (31 * remoteSocket.hashCode() + this.messageCode) + this.options.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey other = (RequestKey) object;
+        return this.hashCode == other.hashCode && this.messageCode == other.messageCode &&
+                this.remoteSocket.equals(other.remoteSocket) && this.options.equals(other.options);
+    }
+
+    @Override
+    public String toString() {
+        return "[Remote Socket: " + this.remoteSocket + ", Options: " + this.options + "]";
+    }
+}
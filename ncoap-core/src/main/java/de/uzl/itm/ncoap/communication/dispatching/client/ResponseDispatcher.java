@@ -24,23 +24,33 @@
  */
 package de.uzl.itm.ncoap.communication.dispatching.client;
 
-import com.google.common.collect.HashBasedTable;
 import de.uzl.itm.ncoap.application.client.ClientCallback;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
+import de.uzl.itm.ncoap.communication.OutboundMessageBatch;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.client.*;
 import de.uzl.itm.ncoap.communication.events.*;
+import de.uzl.itm.ncoap.communication.reliability.outbound.CongestionController;
 import de.uzl.itm.ncoap.message.CoapMessage;
 import de.uzl.itm.ncoap.message.CoapRequest;
 import de.uzl.itm.ncoap.message.CoapResponse;
 import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.UintOptionValue;
 import org.jboss.netty.channel.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <p>The {@link ResponseDispatcher} is responsible for
@@ -53,6 +63,9 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * {@link ResponseDispatcher} also deals with
  * the reliability of inbound {@link de.uzl.itm.ncoap.message.CoapResponse}s, i.e. sends RST or ACK
  * messages if necessary.</p>
+ * <p/>
+ * <p>Optionally (see {@link #setCoalescing(boolean)}), identical concurrent GET requests share a single message
+ * exchange.</p>
  *
  * @author Oliver Kleine
  */
@@ -63,12 +76,23 @@ public class ResponseDispatcher extends AbstractCoapChannelHandler implements Re
         BlockwiseResponseTransferFailedEvent.Handler, ContinueResponseReceivedEvent.Handler,
         MessageIDReleasedEvent.Handler {
 
+    /**
+     * The maximum number of requests to the same remote endpoint that are written as a single batch (256)
+     */
+    public static final int MAX_BATCH_SIZE = 256;
+
     private Logger log = LoggerFactory.getLogger(this.getClass().getName());
 
     private TokenFactory tokenFactory;
 
-    private HashBasedTable<InetSocketAddress, Token, ClientCallback> clientCallbacks;
-    private ReentrantReadWriteLock lock;
+    private ExchangeTable<Token, ClientCallback> clientCallbacks;
+    private CongestionController congestionController;
+    private ConcurrentHashMap<InetSocketAddress, OutboundQueue> outboundQueues;
+
+    private volatile boolean coalescing;
+    private ConcurrentHashMap<RequestKey, SharedCallback> sharedCallbacks;
+    private ConcurrentHashMap<RequestKey, SharedObservation> sharedObservations;
+    private ExchangeTable<Token, SharedObservation> observationsByToken;
 
 
     /**
@@ -81,10 +105,62 @@ public class ResponseDispatcher extends AbstractCoapChannelHandler implements Re
      *                     instances for outbound {@link de.uzl.itm.ncoap.message.CoapRequest}s
      */
     public ResponseDispatcher(ScheduledExecutorService executor, TokenFactory tokenFactory) {
+        this(executor, tokenFactory, null);
+    }
+
+    /**
+     * Creates a new instance of {@link ResponseDispatcher} that limits the number of outstanding confirmable
+     * requests per remote endpoint (see
+     * {@link CongestionController#acquire(InetSocketAddress, Token, CongestionController.Transmission)}).
+     *
+     * @param executor     the {@link java.util.concurrent.ScheduledExecutorService} to execute the tasks, e.g. send,
+     *                     receive and process {@link de.uzl.itm.ncoap.message.CoapMessage}s.
+     * @param tokenFactory the {@link TokenFactory} to
+     *                     provide {@link Token}
+     *                     instances for outbound {@link de.uzl.itm.ncoap.message.CoapRequest}s
+     * @param congestionController the {@link CongestionController} shared with the
+     *                     {@link de.uzl.itm.ncoap.communication.reliability.outbound.ClientOutboundReliabilityHandler}
+     *                     of the same pipeline (or <code>null</code> for no limit)
+     */
+    public ResponseDispatcher(ScheduledExecutorService executor, TokenFactory tokenFactory,
+            CongestionController congestionController) {
         super(executor);
-        this.clientCallbacks = HashBasedTable.create();
-        this.lock = new ReentrantReadWriteLock();
+        this.clientCallbacks = new ExchangeTable<>();
         this.tokenFactory = tokenFactory;
+        this.congestionController = congestionController;
+        this.outboundQueues = new ConcurrentHashMap<>();
+        this.coalescing = false;
+        this.sharedCallbacks = new ConcurrentHashMap<>();
+        this.sharedObservations = new ConcurrentHashMap<>();
+        this.observationsByToken = new ExchangeTable<>();
+    }
+
+
+    /**
+     * Enables or disables the coalescing of identical GET requests (disabled by default). If enabled, a GET request
+     * with the same remote socket and options (in the same order) as an ongoing one is not sent but shares the
+     * message exchange of the ongoing request, i.e. the response is delivered to the
+     * {@link de.uzl.itm.ncoap.application.client.ClientCallback}s of both requests. If there is an ongoing
+     * observation of the addressed resource and its latest update notification is still fresh (according to its
+     * Max-Age), the request is answered with that update notification. Otherwise the request is sent (i.e. it does
+     * not wait for the next update notification, which may never come).
+     *
+     * Requests to start an observation are never coalesced with other requests.
+     *
+     * @param coalescing <code>true</code> to enable the coalescing and <code>false</code> to disable it
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Returns <code>true</code> if identical GET requests are coalesced and <code>false</code> otherwise (see
+     * {@link #setCoalescing(boolean)})
+     *
+     * @return <code>true</code> if identical GET requests are coalesced and <code>false</code> otherwise
+     */
+    public boolean isCoalescing() {
+        return this.coalescing;
     }
 
 
@@ -275,7 +351,51 @@ public class ResponseDispatcher extends AbstractCoapChannelHandler implements Re
      * {@link de.uzl.itm.ncoap.communication.events.AbstractMessageExchangeEvent}.
      */
     public void sendCoapRequest(CoapRequest coapRequest, InetSocketAddress remoteSocket, ClientCallback callback) {
-        getExecutor().submit(new WriteCoapMessageTask(coapRequest, remoteSocket, callback));
+        getOutboundQueue(remoteSocket).add(new WriteCoapMessageTask(coapRequest, remoteSocket, callback));
+    }
+
+    /**
+     * Sends a {@link de.uzl.itm.ncoap.message.CoapRequest} to a remote endpoint (server) like
+     * {@link #sendCoapRequest(CoapRequest, InetSocketAddress, ClientCallback)} but in the calling thread, i.e.
+     * without submitting a task to the executor. Thus, the {@link Token} is set on the given request when this
+     * method returns.
+     *
+     * @param coapRequest the {@link de.uzl.itm.ncoap.message.CoapRequest} to be sent
+     * @param remoteSocket the {@link java.net.InetSocketAddress} of the recipient
+     * @param callback the {@link de.uzl.itm.ncoap.application.client.ClientCallback} to be
+     * called upon reception of a response or any kind of
+     * {@link de.uzl.itm.ncoap.communication.events.AbstractMessageExchangeEvent}.
+     */
+    public void writeCoapRequest(CoapRequest coapRequest, InetSocketAddress remoteSocket, ClientCallback callback) {
+        new WriteCoapMessageTask(coapRequest, remoteSocket, callback).run();
+    }
+
+    /**
+     * Removes the {@link de.uzl.itm.ncoap.application.client.ClientCallback} of an ongoing request (e.g. if the
+     * deadline of the request passed), i.e. a response that is received afterwards is ignored and the
+     * {@link Token} is released.
+     *
+     * @param remoteSocket the {@link java.net.InetSocketAddress} of the recipient of the request
+     * @param token the {@link Token} of the request
+     * @param callback the {@link de.uzl.itm.ncoap.application.client.ClientCallback} of the request (the message
+     *                 exchange of coalesced requests is only cancelled if no other request is waiting for the
+     *                 response)
+     *
+     * @return <code>true</code> if there was such a request and <code>false</code> otherwise
+     */
+    public boolean cancelCoapRequest(InetSocketAddress remoteSocket, Token token, ClientCallback callback) {
+        ClientCallback registered = getCallback(remoteSocket, token);
+        if (registered == callback) {
+            return removeCallback(remoteSocket, token) != null;
+        } else if (registered instanceof SharedCallback && ((SharedCallback) registered).leave(callback)) {
+            if (((SharedCallback) registered).isClosed()) {
+                // no more requests waiting for the response
+                removeCallback(remoteSocket, token);
+            }
+            return true;
+        } else {
+            return false;
+        }
     }
 
 //    /**
@@ -303,96 +423,118 @@ public class ResponseDispatcher extends AbstractCoapChannelHandler implements Re
     }
 
 
-    private ClientCallback updateCallback(InetSocketAddress remoteSocket, InetSocketAddress previous, Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (getCallback(previous, token) == null) {
-                return null;
+    private OutboundQueue getOutboundQueue(InetSocketAddress remoteSocket) {
+        OutboundQueue queue = this.outboundQueues.get(remoteSocket);
+        if (queue == null) {
+            OutboundQueue newQueue = new OutboundQueue(remoteSocket);
+            queue = this.outboundQueues.putIfAbsent(remoteSocket, newQueue);
+            if (queue == null) {
+                queue = newQueue;
             }
-        } finally {
-            this.lock.readLock().unlock();
         }
+        return queue;
+    }
+
 
-        try {
-            this.lock.writeLock().lock();
-            ClientCallback callback = this.clientCallbacks.remove(previous, token);
-            if (callback != null) {
-                this.clientCallbacks.put(remoteSocket, token, callback);
-                log.info("Updated remote socket (old: \"{}\", new: \"{}\")", previous, remoteSocket);
+    /**
+     * Writes the given requests to the given remote endpoint, i.e. assigns the {@link Token}s with a single
+     * critical section of the {@link TokenFactory}, adds the callbacks and passes the requests (that are not queued
+     * by the {@link CongestionController}) downstream as a single {@link OutboundMessageBatch}.
+     */
+    private void writeCoapRequests(InetSocketAddress remoteSocket, List<WriteCoapMessageTask> tasks) {
+        int number = 0;
+        for (WriteCoapMessageTask task : tasks) {
+            if (task.requiresToken()) {
+                number++;
+            }
+        }
+        Token[] tokens = this.tokenFactory.getNextTokens(number);
+
+        OutboundMessageBatch batch = new OutboundMessageBatch(tasks.size());
+        int index = 0;
+        for (WriteCoapMessageTask task : tasks) {
+            Token token = task.requiresToken() ? tokens[index++] : null;
+            if (task.prepare(token)) {
+                batch.add(task.coapMessage, remoteSocket, task.createFuture());
             }
-            return callback;
-        } finally {
-            this.lock.writeLock().unlock();
+        }
+
+        if (!batch.isEmpty()) {
+            log.debug("Write batch of {} request(s) to \"{}\".", batch.size(), remoteSocket);
+            sendCoapMessages(batch);
         }
     }
 
 
-    private void addCallback(InetSocketAddress remoteSocket, Token token, ClientCallback clientCallback) {
-        try {
-            this.lock.readLock().lock();
-            if (this.clientCallbacks.contains(remoteSocket, token)) {
-                log.error("Tried to use token twice (remote endpoint: {}, token: {})", remoteSocket, token);
-                return;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+    private ClientCallback updateCallback(InetSocketAddress remoteSocket, InetSocketAddress previous, Token token) {
+        ClientCallback callback = this.clientCallbacks.remove(previous, token);
+        if (callback != null) {
+            this.clientCallbacks.put(remoteSocket, token, callback);
+            log.info("Updated remote socket (old: \"{}\", new: \"{}\")", previous, remoteSocket);
         }
+        return callback;
+    }
 
-        try {
-            this.lock.writeLock().lock();
-            if (this.clientCallbacks.contains(remoteSocket, token)) {
-                log.error("Tried to use token twice (remote endpoint: {}, token: {})", remoteSocket, token);
-            } else {
-                clientCallbacks.put(remoteSocket, token, clientCallback);
-                log.info("Added callback (remote endpoint: {}, token: {})", remoteSocket, token);
-                if (this.clientCallbacks.size() > 1000) {
-                    log.error("More than 1000 callbacks!");
-                }
+
+    private void addCallback(InetSocketAddress remoteSocket, Token token, ClientCallback clientCallback) {
+        if (this.clientCallbacks.putIfAbsent(remoteSocket, token, clientCallback) != null) {
+            log.error("Tried to use token twice (remote endpoint: {}, token: {})", remoteSocket, token);
+        } else {
+            log.info("Added callback (remote endpoint: {}, token: {})", remoteSocket, token);
+            if (this.clientCallbacks.size() > 1000) {
+                log.error("More than 1000 callbacks!");
             }
-        } finally {
-            this.lock.writeLock().unlock();
         }
     }
 
 
     private ClientCallback removeCallback(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (!this.clientCallbacks.contains(remoteSocket, token)) {
-                log.info("No callback found to be removed (remote endpoint: {}, token: {})", remoteSocket, token);
-                return null;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        ClientCallback callback = this.clientCallbacks.remove(remoteSocket, token);
+        if (callback == null) {
+            log.info("No callback found to be removed (remote endpoint: {}, token: {})", remoteSocket, token);
+        } else {
+            log.info("Removed callback (remote endpoint: {}, token: {}). Remaining: {}",
+                    new Object[]{remoteSocket, token, this.clientCallbacks.size()});
+            stopSharing(remoteSocket, token, callback);
+            triggerEvent(new TokenReleasedEvent(remoteSocket, token), true);
         }
+        return callback;
+    }
 
-        try {
-            this.lock.writeLock().lock();
-            ClientCallback callback = clientCallbacks.remove(remoteSocket, token);
-            if (callback == null) {
-                log.info("No callback found to be removed (remote endpoint: {}, token: {})", remoteSocket, token);
-            } else {
-                log.info("Removed callback (remote endpoint: {}, token: {}). Remaining: {}",
-                        new Object[]{remoteSocket, token, this.clientCallbacks.size()});
-                triggerEvent(new TokenReleasedEvent(remoteSocket, token), true);
+    /**
+     * Closes the {@link SharedCallback} or the {@link SharedObservation} of the ended message exchange (if any)
+     */
+    private void stopSharing(InetSocketAddress remoteSocket, Token token, ClientCallback callback) {
+        if (callback instanceof SharedCallback) {
+            SharedCallback sharedCallback = (SharedCallback) callback;
+            sharedCallback.close();
+            this.sharedCallbacks.remove(sharedCallback.getRequestKey(), sharedCallback);
+        }
+
+        if (!this.sharedObservations.isEmpty()) {
+            SharedObservation observation = this.observationsByToken.remove(remoteSocket, token);
+            if (observation != null) {
+                this.sharedObservations.remove(observation.requestKey, observation);
+                observation.close();
             }
-            return callback;
-        } finally {
-            this.lock.writeLock().unlock();
         }
     }
 
     private ClientCallback getCallback(InetSocketAddress remoteAddress, Token token) {
-        try {
-            this.lock.readLock().lock();
-            return this.clientCallbacks.get(remoteAddress, token);
-        } finally {
-            this.lock.readLock().unlock();
-        }
+        return this.clientCallbacks.get(remoteAddress, token);
     }
 
     private void handleInboundCoapResponse(CoapResponse coapResponse, InetSocketAddress remoteSocket) {
         Token token = coapResponse.getToken();
+
+        if (!this.sharedObservations.isEmpty() && coapResponse.isUpdateNotification() &&
+                !coapResponse.isErrorResponse() && coapResponse.isLastBlock2()) {
+
+            SharedObservation observation = this.observationsByToken.get(remoteSocket, token);
+            if (observation != null) {
+                observation.update(coapResponse);
+            }
+        }
         ClientCallback callback = getCallback(remoteSocket, token);
 
         if (callback == null) {
@@ -426,6 +568,106 @@ public class ResponseDispatcher extends AbstractCoapChannelHandler implements Re
     }
 
 
+    /**
+     * An ongoing observation that is shared with identical GET requests. These are answered with the latest update
+     * notification as long as it is fresh.
+     */
+    private class SharedObservation {
+
+        private final RequestKey requestKey;
+        private final Token token;
+        private CoapResponse latest;
+        private long expiry;
+        private boolean closed;
+
+        private SharedObservation(RequestKey requestKey, Token token) {
+            this.requestKey = requestKey;
+            this.token = token;
+            this.closed = false;
+        }
+
+        /**
+         * Answers the request of the given task with the latest update notification if that is still fresh
+         *
+         * @return <code>true</code> if the request was answered and <code>false</code> otherwise (i.e. if the
+         * request is to be sent)
+         */
+        private boolean join(WriteCoapMessageTask task) {
+            CoapResponse fresh;
+            synchronized (this) {
+                if (this.closed || this.latest == null || this.expiry - System.nanoTime() <= 0) {
+                    return false;
+                }
+                fresh = this.latest;
+                task.coapMessage.setToken(this.token);
+            }
+            task.callback.processCoapResponse(fresh);
+            return true;
+        }
+
+        private synchronized void update(CoapResponse updateNotification) {
+            this.latest = updateNotification;
+            this.expiry = System.nanoTime() + TimeUnit.SECONDS.toNanos(updateNotification.getMaxAge());
+        }
+
+        private synchronized void close() {
+            this.closed = true;
+            this.latest = null;
+        }
+    }
+
+
+    /**
+     * The queue of requests to a single remote endpoint. Requests added to the queue are written in batches, i.e.
+     * there is a single executor task per batch (instead of one task per request) and the requests of a batch are
+     * passed downstream as a single {@link OutboundMessageBatch}.
+     */
+    private class OutboundQueue implements Runnable {
+
+        private final InetSocketAddress remoteSocket;
+        private final Queue<WriteCoapMessageTask> tasks;
+        private final AtomicBoolean scheduled;
+
+        private OutboundQueue(InetSocketAddress remoteSocket) {
+            this.remoteSocket = remoteSocket;
+            this.tasks = new ConcurrentLinkedQueue<>();
+            this.scheduled = new AtomicBoolean(false);
+        }
+
+        private void add(WriteCoapMessageTask task) {
+            this.tasks.add(task);
+            if (this.scheduled.compareAndSet(false, true)) {
+                getExecutor().submit(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            // reset first, i.e. requests that are added while draining schedule another run
+            this.scheduled.set(false);
+
+            List<WriteCoapMessageTask> drained = new ArrayList<>();
+            WriteCoapMessageTask task;
+            while (drained.size() < MAX_BATCH_SIZE && (task = this.tasks.poll()) != null) {
+                drained.add(task);
+            }
+
+            if (!this.tasks.isEmpty()) {
+                if (this.scheduled.compareAndSet(false, true)) {
+                    getExecutor().submit(this);
+                }
+            } else {
+                // requests added to this queue after its removal are still written (as the queue is scheduled)
+                outboundQueues.remove(this.remoteSocket, this);
+            }
+
+            if (!drained.isEmpty()) {
+                writeCoapRequests(this.remoteSocket, drained);
+            }
+        }
+    }
+
+
     private class WriteCoapMessageTask implements Runnable {
 
         private final CoapMessage coapMessage;
@@ -441,50 +683,149 @@ public class ResponseDispatcher extends AbstractCoapChannelHandler implements Re
 
         @Override
         public void run() {
+            if (prepare(null)) {
+                sendRequest();
+            }
+        }
+
+        /**
+         * Returns <code>true</code> if a new {@link Token} is to be assigned to the message (i.e. if it is neither
+         * a PING nor a request to stop an ongoing observation) and <code>false</code> otherwise
+         */
+        private boolean requiresToken() {
+            return !this.coapMessage.isPing() && !(this.coapMessage.getMessageCode() == MessageCode.GET &&
+                    this.coapMessage.getObserve() == 1);
+        }
+
+        /**
+         * Sets the {@link Token} and adds the callback for the message.
+         *
+         * @param token the {@link Token} for the message or <code>null</code> to get a new one from the
+         *              {@link TokenFactory} (if required)
+         *
+         * @return <code>true</code> if the message is to be sent now and <code>false</code> otherwise (i.e. if there
+         * was an error or the message was queued by the {@link CongestionController})
+         */
+        private boolean prepare(Token token) {
+            ClientCallback callback = this.callback;
             if (this.coapMessage.isPing()) {
                 //CoAP ping
-                Token emptyToken = new Token(new byte[0]);
+                Token emptyToken = Token.EMPTY;
                 if (getCallback(remoteSocket, emptyToken) != null) {
                     String description = "There is another ongoing PING for \"" + remoteSocket + "\".";
                     callback.processMiscellaneousError(description);
-                    return;
+                    return false;
                 } else {
                     // no other PING for the same remote socket...
                     this.coapMessage.setToken(emptyToken);
                 }
             } else if (this.coapMessage.getMessageCode() == MessageCode.GET && this.coapMessage.getObserve() == 1) {
                 // request to stop an ongoing observation
-                Token token = this.coapMessage.getToken();
-                if (getCallback(this.remoteSocket, token) == null) {
+                Token observationToken = this.coapMessage.getToken();
+                if (getCallback(this.remoteSocket, observationToken) == null) {
                     String description = "No ongoing observation on remote endpoint " + remoteSocket
-                            + " and token " + token + "!";
+                            + " and token " + observationToken + "!";
                     this.callback.processMiscellaneousError(description);
-                    return;
+                    return false;
                 }
             } else {
                 //Prepare CoAP request, the response reception and then send the CoAP request
-                Token token = tokenFactory.getNextToken();
+                RequestKey requestKey = null;
+                if (coalescing && this.coapMessage.getMessageCode() == MessageCode.GET) {
+                    requestKey = new RequestKey(this.remoteSocket, this.coapMessage);
+                    if (this.coapMessage.getObserve() == UintOptionValue.UNDEFINED && join(requestKey)) {
+                        if (token != null) {
+                            tokenFactory.releaseToken(token);
+                        }
+                        return false;
+                    }
+                }
+
+                if (token == null) {
+                    token = tokenFactory.getNextToken();
+                }
                 if (token == null) {
                     String description = "No token available for remote endpoint " + remoteSocket + ".";
                     this.callback.processMiscellaneousError(description);
-                    return;
+                    return false;
                 } else {
                     this.coapMessage.setToken(token);
+                    if (requestKey != null) {
+                        callback = share(requestKey, token);
+                    }
                 }
             }
 
             //Add the response callback to wait for the inbound response
-            addCallback(this.remoteSocket, this.coapMessage.getToken(), this.callback);
-            sendRequest();
+            addCallback(this.remoteSocket, this.coapMessage.getToken(), callback);
+
+            //Queue confirmable messages if there are too many outstanding exchanges with the remote endpoint
+            if (congestionController != null && this.coapMessage.getMessageType() == MessageType.CON) {
+                if (!congestionController.acquire(this.remoteSocket, this.coapMessage.getToken(),
+                        new QueuedTransmission())) {
+                    log.debug("Queued request to \"{}\" (token: {}).", this.remoteSocket, this.coapMessage.getToken());
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Lets this (GET) request share the fresh update notification of an ongoing observation or an ongoing message
+         * exchange of an identical request
+         *
+         * @return <code>true</code> if this request shares an ongoing observation or message exchange (i.e. is not
+         * to be sent) and <code>false</code> otherwise
+         */
+        private boolean join(RequestKey requestKey) {
+            SharedObservation observation = sharedObservations.get(requestKey);
+            if (observation != null && observation.join(this)) {
+                log.debug("Request joined observation (remote socket: \"{}\", token: {}).", this.remoteSocket,
+                        observation.token);
+                return true;
+            }
+
+            SharedCallback sharedCallback = sharedCallbacks.get(requestKey);
+            if (sharedCallback != null && sharedCallback.join(this.callback)) {
+                this.coapMessage.setToken(sharedCallback.getToken());
+                log.debug("Request joined ongoing request (remote socket: \"{}\", token: {}).", this.remoteSocket,
+                        sharedCallback.getToken());
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Offers the message exchange of this (GET) request to identical requests and returns the callback to be
+         * registered for the message exchange
+         */
+        private ClientCallback share(RequestKey requestKey, Token token) {
+            if (this.coapMessage.getObserve() == 0) {
+                SharedObservation observation = new SharedObservation(requestKey, token);
+                if (sharedObservations.putIfAbsent(requestKey, observation) == null) {
+                    observationsByToken.put(this.remoteSocket, token, observation);
+                }
+                return this.callback;
+            } else {
+                // if an identical request was shared concurrently, this request is sent on its own
+                SharedCallback sharedCallback = new SharedCallback(requestKey, token, this.callback);
+                return sharedCallbacks.putIfAbsent(requestKey, sharedCallback) == null ? sharedCallback : this.callback;
+            }
         }
 
         private void sendRequest() {
+            Channels.write(getContext(), createFuture(), coapMessage, this.remoteSocket);
+        }
+
+        private ChannelFuture createFuture() {
             ChannelFuture future = Channels.future(getContext().getChannel());
-            Channels.write(getContext(), future, coapMessage, this.remoteSocket);
             future.addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture future) throws Exception {
                     if (!future.isSuccess()) {
+                        if (congestionController != null) {
+                            congestionController.release(remoteSocket, coapMessage.getToken());
+                        }
                         ClientCallback callback = removeCallback(remoteSocket, coapMessage.getToken());
                         log.error("Could not write CoAP Request!", future.getCause());
                         if (callback != null) {
@@ -494,6 +835,31 @@ public class ResponseDispatcher extends AbstractCoapChannelHandler implements Re
                     }
                 }
             });
+            return future;
+        }
+
+        /**
+         * Sends the request when it was dequeued by the {@link CongestionController} (unless the request was
+         * cancelled in the meantime)
+         */
+        private class QueuedTransmission implements CongestionController.Transmission {
+
+            @Override
+            public boolean isCancelled() {
+                return getCallback(remoteSocket, coapMessage.getToken()) == null;
+            }
+
+            @Override
+            public void run() {
+                Token token = coapMessage.getToken();
+                if (isCancelled()) {
+                    // cancelled after being dequeued (the next transmission is run by the executor)
+                    log.debug("Queued request was cancelled (remote socket: \"{}\", token: {}).", remoteSocket, token);
+                    congestionController.release(remoteSocket, token);
+                } else {
+                    sendRequest();
+                }
+            }
         }
     }
 }
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.dispatching.client;
+
+import de.uzl.itm.ncoap.application.client.ClientCallback;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.message.CoapResponse;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link ClientCallback} of a GET request that is shared by identical concurrent GET requests (see
+ * {@link ResponseDispatcher#setCoalescing(boolean)}), i.e. all calls are forwarded to the {@link ClientCallback}s
+ * of all these requests. A {@link SharedCallback} is closed when the message exchange ends, i.e. no more
+ * {@link ClientCallback}s can join afterwards.
+ *
+ * @author Oliver Kleine
+ */
+class SharedCallback extends ClientCallback {
+
+    private final RequestKey requestKey;
+    private final Token token;
+    private final List<ClientCallback> callbacks;
+    private boolean closed;
+
+    SharedCallback(RequestKey requestKey, Token token, ClientCallback callback) {
+        this.requestKey = requestKey;
+        this.token = token;
+        this.callbacks = new ArrayList<>(2);
+        this.callbacks.add(callback);
+        this.closed = false;
+    }
+
+    RequestKey getRequestKey() {
+        return this.requestKey;
+    }
+
+    Token getToken() {
+        return this.token;
+    }
+
+    /**
+     * Adds the given {@link ClientCallback} unless this {@link SharedCallback} is closed
+     *
+     * @return <code>true</code> if the given {@link ClientCallback} was added and <code>false</code> otherwise
+     */
+    synchronized boolean join(ClientCallback callback) {
+        if (this.closed) {
+            return false;
+        }
+        this.callbacks.add(callback);
+        return true;
+    }
+
+    /**
+     * Removes the given {@link ClientCallback}. If there is no {@link ClientCallback} left, this
+     * {@link SharedCallback} is closed.
+     *
+     * @return <code>true</code> if the given {@link ClientCallback} was removed and <code>false</code> otherwise
+     */
+    synchronized boolean leave(ClientCallback callback) {
+        if (!this.callbacks.remove(callback)) {
+            return false;
+        }
+        if (this.callbacks.isEmpty()) {
+            this.closed = true;
+        }
+        return true;
+    }
+
+    synchronized void close() {
+        this.closed = true;
+    }
+
+    synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    private synchronized ClientCallback[] getCallbacks() {
+        return this.callbacks.toArray(new ClientCallback[this.callbacks.size()]);
+    }
+
+
+    @Override
+    public void processCoapResponse(CoapResponse coapResponse) {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processCoapResponse(coapResponse);
+        }
+    }
+
+    @Override
+    public void processRemoteSocketChanged(InetSocketAddress remoteSocket, InetSocketAddress previous) {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processRemoteSocketChanged(remoteSocket, previous);
+        }
+    }
+
+    @Override
+    public void processTransmissionTimeout() {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processTransmissionTimeout();
+        }
+    }
+
+    @Override
+    public void processReset() {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processReset();
+        }
+    }
+
+    @Override
+    public void processRetransmission() {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processRetransmission();
+        }
+    }
+
+    @Override
+    public void processResponseBlockReceived(long receivedLength, long expectedLength) {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processResponseBlockReceived(receivedLength, expectedLength);
+        }
+    }
+
+    @Override
+    public void processContinueResponseReceived(BlockSize block1Size) {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processContinueResponseReceived(block1Size);
+        }
+    }
+
+    @Override
+    public void processBlockwiseResponseTransferFailed() {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processBlockwiseResponseTransferFailed();
+        }
+    }
+
+    @Override
+    public void processEmptyAcknowledgement() {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processEmptyAcknowledgement();
+        }
+    }
+
+    @Override
+    public void processMiscellaneousError(String description) {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processMiscellaneousError(description);
+        }
+    }
+
+    @Override
+    public void processMessageIDAssignment(int messageID) {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processMessageIDAssignment(messageID);
+        }
+    }
+
+    @Override
+    public void processNoMessageIDAvailable() {
+        for (ClientCallback callback : getCallbacks()) {
+            callback.processNoMessageIDAvailable();
+        }
+    }
+}
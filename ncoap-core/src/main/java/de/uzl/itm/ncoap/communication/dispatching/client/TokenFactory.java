@@ -24,15 +24,11 @@
  */
 package de.uzl.itm.ncoap.communication.dispatching.client;
 
-import com.google.common.primitives.Longs;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Random;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * The TokenFactory generates tokens to match inbound responses with open requests and enable the
@@ -53,60 +49,54 @@ public class TokenFactory {
 
     private Logger log = LoggerFactory.getLogger(this.getClass().getName());
 
-    private SortedSet<Token> activeTokens;
-    private ReentrantReadWriteLock lock;
+    private TokenSet activeTokens;
     private Random random;
 
     /**
      * Creates a new instance of {@link de.uzl.itm.ncoap.communication.dispatching.client.TokenFactory}
-     * producing {@link Token}s where the length of
-     * {@link Token#getBytes()} is not longer than the given
-     * maximum length.
+     * producing {@link Token}s with a length of 8 bytes. The values of the active {@link Token}s are kept in
+     * a primitive hash set, i.e. neither the generation nor the release of a {@link Token} requires to compare
+     * byte arrays.
      */
     public TokenFactory() {
-        this.lock = new ReentrantReadWriteLock();
-        this.activeTokens = new TreeSet<>();
+        this.activeTokens = new TokenSet();
         this.random = new Random(System.currentTimeMillis());
     }
 
-    public Token getNextToken() {
-        try{
-            this.lock.writeLock().lock();
-            Token token;
-            do {
-                token = new Token(Longs.toByteArray(this.random.nextLong()));
-            } while (!this.activeTokens.add(token));
+    public synchronized Token getNextToken() {
+        long value;
+        do {
+            value = this.random.nextLong();
+        } while (value == 0 || !this.activeTokens.add(value));
 
-            return token;
-        }
-        finally {
-            this.lock.writeLock().unlock();
-        }
+        return new Token(value, Token.MAX_LENGTH);
     }
 
 
-    public synchronized boolean releaseToken(Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (!this.activeTokens.contains(token)) {
-                log.error("Could not release (unknown) Token ({})", token);
-                return false;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+    /**
+     * Returns the given number of (new) {@link Token}s, i.e. the same as the given number of invocations of
+     * {@link #getNextToken()} but within a single critical section.
+     *
+     * @param number the number of {@link Token}s to be returned
+     *
+     * @return an array containing the given number of (new) {@link Token}s
+     */
+    public synchronized Token[] getNextTokens(int number) {
+        Token[] tokens = new Token[number];
+        for (int i = 0; i < number; i++) {
+            tokens[i] = getNextToken();
         }
+        return tokens;
+    }
 
-        try{
-            this.lock.writeLock().lock();
-            if (this.activeTokens.remove(token)) {
-                log.info("Released Token ({})", token);
-                return true;
-            } else {
-                log.error("Could not release Token ({})", token);
-                return false;
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+
+    public synchronized boolean releaseToken(Token token) {
+        if (token.getLength() != Token.MAX_LENGTH || !this.activeTokens.remove(token.getValue())) {
+            log.error("Could not release (unknown) Token ({})", token);
+            return false;
+        } else {
+            log.info("Released Token ({})", token);
+            return true;
         }
     }
 
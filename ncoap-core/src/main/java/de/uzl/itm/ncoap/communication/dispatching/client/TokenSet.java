@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.dispatching.client;
+
+/**
+ * A set of (non-zero) <code>long</code> values based on open addressing with linear probing, i.e. without any
+ * boxing or entry objects. It is used by the {@link TokenFactory} to keep the values of the active
+ * {@link de.uzl.itm.ncoap.communication.dispatching.Token}s. The value <code>0</code> marks free slots and can thus
+ * not be added.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+class TokenSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] slots;
+    private int size;
+
+    /**
+     * Creates a new (empty) instance of {@link TokenSet}
+     */
+    TokenSet() {
+        this.slots = new long[MIN_CAPACITY];
+    }
+
+    /**
+     * Adds the given value to this set
+     *
+     * @param value the value to be added (must not be <code>0</code>)
+     *
+     * @return <code>true</code> if the value was added and <code>false</code> if it was already contained
+     */
+    boolean add(long value) {
+        checkValue(value);
+        int index = indexOf(this.slots, value);
+        if (this.slots[index] == value) {
+            return false;
+        }
+
+        this.slots[index] = value;
+        this.size++;
+        // keep the load factor below 0.5 (short probe sequences)
+        if (this.size * 2 > this.slots.length) {
+            resize(this.slots.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the given value is contained in this set and <code>false</code> otherwise
+     *
+     * @param value the value to look for
+     *
+     * @return <code>true</code> if the given value is contained in this set and <code>false</code> otherwise
+     */
+    boolean contains(long value) {
+        return value != 0 && this.slots[indexOf(this.slots, value)] == value;
+    }
+
+    /**
+     * Removes the given value from this set
+     *
+     * @param value the value to be removed
+     *
+     * @return <code>true</code> if the value was removed and <code>false</code> if it was not contained
+     */
+    boolean remove(long value) {
+        if (value == 0) {
+            return false;
+        }
+        int mask = this.slots.length - 1;
+        int index = indexOf(this.slots, value);
+        if (this.slots[index] != value) {
+            return false;
+        }
+
+        // shift the following values of the probe sequence backwards (no tombstones)
+        int next = (index + 1) & mask;
+        while (this.slots[next] != 0) {
+            int home = hash(this.slots[next]) & mask;
+            // the value at "next" can fill the gap if its home slot is not within (index, next]
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                this.slots[index] = this.slots[next];
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.slots[index] = 0;
+        this.size--;
+
+        if (this.slots.length > MIN_CAPACITY && this.size * 8 < this.slots.length) {
+            resize(this.slots.length / 2);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of values in this set
+     * @return the number of values in this set
+     */
+    int size() {
+        return this.size;
+    }
+
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (long value : this.slots) {
+            if (value != 0) {
+                resized[indexOf(resized, value)] = value;
+            }
+        }
+        this.slots = resized;
+    }
+
+    /**
+     * Returns the index of the slot containing the given value or the index of the free slot the probe sequence
+     * ends with (if the value is not contained)
+     */
+    private static int indexOf(long[] slots, long value) {
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != 0 && slots[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int hash(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static void checkValue(long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("Value 0 can not be added!");
+        }
+    }
+}
@@ -27,9 +27,11 @@ package de.uzl.itm.ncoap.communication.dispatching.server;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import de.uzl.itm.ncoap.application.linkformat.LinkValue;
 import de.uzl.itm.ncoap.application.linkformat.LinkValueList;
+import de.uzl.itm.ncoap.application.server.resource.BoundedRequestExecutor;
 import de.uzl.itm.ncoap.application.server.resource.ObservableWebresource;
 import de.uzl.itm.ncoap.application.server.resource.Webresource;
 import de.uzl.itm.ncoap.application.server.resource.WellKnownCoreResource;
@@ -50,12 +52,16 @@ import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static de.uzl.itm.ncoap.message.MessageCode.INTERNAL_SERVER_ERROR_500;
 import static de.uzl.itm.ncoap.message.MessageCode.PRECONDITION_FAILED_412;
+import static de.uzl.itm.ncoap.message.MessageCode.SERVICE_UNAVAILABLE_503;
 
 /**
 * The {@link RequestDispatcher} is the topmost {@link ChannelHandler} of the {@link ChannelPipeline} returned
@@ -91,9 +97,15 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
     //This map holds all registered webresources (key: URI path, value: Webservice instance)
     private Map<String, Webresource> registeredServices;
 
+    //The trie to find the webresource addressed by an inbound request (lock-free)
+    private UriPathRouter router;
+
+    //All dispatchers sharing the map of registered webresources (one per channel, including this one)
+    private List<RequestDispatcher> dispatchers;
+
     private NotFoundHandler notFoundHandler;
     //private Channel channel;
-    private boolean shutdown;
+    private volatile boolean shutdown;
 
     /**
      * @param notFoundHandler Instance of {@link NotFoundHandler} to deal with inbound {@link de.uzl.itm.ncoap.message.CoapRequest}s with
@@ -103,8 +115,36 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
      *                        and
      */
     public RequestDispatcher(NotFoundHandler notFoundHandler, ScheduledExecutorService executor) {
+        this(notFoundHandler, executor, null);
+    }
+
+    /**
+     * Creates a new instance of {@link RequestDispatcher} that shares the registered
+     * {@link de.uzl.itm.ncoap.application.server.resource.Webresource}s with the given {@link RequestDispatcher}
+     * (if not <code>null</code>). This is to serve the same resources on multiple channels bound to the same
+     * local socket, i.e. a {@link de.uzl.itm.ncoap.application.server.resource.Webresource} registered at one of
+     * the sharing dispatchers is available on all channels.
+     *
+     * @param notFoundHandler Instance of {@link NotFoundHandler} to deal with inbound
+     * {@link de.uzl.itm.ncoap.message.CoapRequest}s for unknown resources
+     * @param executor the {@link ScheduledExecutorService} to process the task to send a
+     * {@link de.uzl.itm.ncoap.message.CoapResponse}
+     * @param sharedDispatcher the {@link RequestDispatcher} to share the registered resources with or
+     * <code>null</code> if there is no such dispatcher
+     */
+    public RequestDispatcher(NotFoundHandler notFoundHandler, ScheduledExecutorService executor,
+                             RequestDispatcher sharedDispatcher) {
         super(executor);
-        this.registeredServices = Collections.synchronizedMap(new HashMap<String, Webresource>());
+        if (sharedDispatcher == null) {
+            this.registeredServices = Collections.synchronizedMap(new LinkedHashMap<String, Webresource>());
+            this.router = new UriPathRouter();
+            this.dispatchers = new CopyOnWriteArrayList<>();
+        } else {
+            this.registeredServices = sharedDispatcher.registeredServices;
+            this.router = sharedDispatcher.router;
+            this.dispatchers = sharedDispatcher.dispatchers;
+        }
+        this.dispatchers.add(this);
         this.notFoundHandler = notFoundHandler;
         this.shutdown = false;
     }
@@ -132,7 +172,7 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
         final SettableFuture<CoapResponse> responseFuture = SettableFuture.create();
 
         //Look up web service instance to handle the request
-        final Webresource webresource = this.registeredServices.get(coapRequest.getUriPath());
+        final Webresource webresource = this.router.find(coapRequest);
         if (webresource == null) {
             // the requested Webservice DOES NOT exist
             try {
@@ -144,10 +184,11 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
                 createPreconditionFailed(coapRequest.getMessageType(), coapRequest.getUriPath(), responseFuture);
         } else {
             // the requested Webservice DOES exist
-            try {
-                webresource.processCoapRequest(responseFuture, coapRequest, remoteSocket);
-            } catch (Exception ex) {
-                responseFuture.setException(ex);
+            BoundedRequestExecutor requestExecutor = webresource.getRequestExecutor();
+            if (requestExecutor == null) {
+                processCoapRequest(webresource, responseFuture, coapRequest, remoteSocket);
+            } else {
+                executeCoapRequest(requestExecutor, webresource, responseFuture, coapRequest, remoteSocket);
             }
         }
 
@@ -178,6 +219,67 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
 //        this.channel = channel;
 //    }
 
+    private static void processCoapRequest(Webresource webresource, SettableFuture<CoapResponse> responseFuture,
+            CoapRequest coapRequest, InetSocketAddress remoteSocket) {
+
+        try {
+            webresource.processCoapRequest(responseFuture, coapRequest, remoteSocket);
+        } catch (Exception ex) {
+            responseFuture.setException(ex);
+        }
+    }
+
+
+    /**
+     * Hands the given request over to the {@link BoundedRequestExecutor} of the addressed resource. If the maximum
+     * number of in-flight requests is reached or the executor rejects the task, the response future is immediately
+     * set with {@link de.uzl.itm.ncoap.message.MessageCode#SERVICE_UNAVAILABLE_503}, i.e. the load is shed
+     * without queueing.
+     */
+    private static void executeCoapRequest(final BoundedRequestExecutor requestExecutor,
+            final Webresource webresource, final SettableFuture<CoapResponse> responseFuture,
+            final CoapRequest coapRequest, final InetSocketAddress remoteSocket) {
+
+        if (!requestExecutor.tryAcquire()) {
+            LOG.warn("Too many in-flight requests for \"{}\" (max: {}), reject request from \"{}\".",
+                    new Object[]{webresource.getUriPath(), requestExecutor.getMaxInFlightRequests(), remoteSocket});
+            createServiceUnavailable(coapRequest.getMessageType(), requestExecutor.getRetryAfter(), responseFuture);
+            return;
+        }
+
+        // release the slot as soon as the response is available (no matter whether success or failure)
+        responseFuture.addListener(new Runnable() {
+            @Override
+            public void run() {
+                requestExecutor.release();
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        try {
+            requestExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    processCoapRequest(webresource, responseFuture, coapRequest, remoteSocket);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("Executor of \"{}\" rejected request from \"{}\".", webresource.getUriPath(), remoteSocket);
+            createServiceUnavailable(coapRequest.getMessageType(), requestExecutor.getRetryAfter(), responseFuture);
+        }
+    }
+
+
+    private static void createServiceUnavailable(int messageType, long retryAfter,
+        SettableFuture<CoapResponse> responseFuture) {
+
+        CoapResponse coapResponse = new CoapResponse(messageType, SERVICE_UNAVAILABLE_503);
+        coapResponse.setMaxAge(retryAfter);
+        String message = "Too many requests. Retry after " + retryAfter + " seconds.";
+        coapResponse.setContent(message.getBytes(CoapMessage.CHARSET), ContentFormat.TEXT_PLAIN_UTF8);
+        responseFuture.set(coapResponse);
+    }
+
+
     private void createPreconditionFailed(int messageType, String resourcePath,
         SettableFuture<CoapResponse> responseFuture) {
 
@@ -219,7 +321,9 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
      * invokes the {@link de.uzl.itm.ncoap.application.server.resource.Webresource#shutdown()} method of all registered services.
      */
     public ListenableFuture<Void> shutdown() {
-        this.shutdown = true;
+        for (RequestDispatcher dispatcher : this.dispatchers) {
+            dispatcher.shutdown = true;
+        }
         String[] uriPaths = registeredServices.keySet().toArray(new String[registeredServices.size()]);
         for(String path : uriPaths) {
             shutdownWebresource(path);
@@ -247,19 +351,18 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
      * be shut down
      */
     public void shutdownWebresource(final String uriPath) {
-        Webresource webresource = registeredServices.remove(uriPath);
+        Webresource webresource;
+        synchronized (this.registeredServices) {
+            webresource = registeredServices.remove(uriPath);
+            if (webresource != null) {
+                this.router.remove(uriPath);
+            }
+        }
 
         if (webresource != null) {
             LOG.info("Resource \"{}\" removed from server.", uriPath);
             webresource.shutdown();
-            WellKnownCoreResource wkcResource =
-                    ((WellKnownCoreResource) this.registeredServices.get(WellKnownCoreResource.URI_PATH));
-            if (wkcResource != null) {
-                byte[] oldStatus = wkcResource.getWrappedResourceStatus(ContentFormat.APP_LINK_FORMAT).getContent();
-                LinkValueList linkValueList = LinkValueList.decode(new String(oldStatus, CoapMessage.CHARSET));
-                linkValueList.removeLinkValue(uriPath);
-                wkcResource.setResourceStatus(linkValueList, 0);
-            }
+            updateWellKnownCoreResource();
         } else {
             LOG.error("Resource \"{}\" could not be removed. Does not exist.", uriPath);
         }
@@ -270,44 +373,62 @@ public class RequestDispatcher extends AbstractCoapChannelHandler {
      * Registers a Webservice instance at the server. After registration the service will be available at the path
      * given as <code>service.getUriPath()</code>.
      *
-     * It is not possible to register multiple webServices at a single path. If a new service is registered at the
-     * server with a path from another already registered service, then the new service replaces the old one.
+     * It is not possible to register multiple webServices at a single path. The path may contain templated segments
+     * (e.g. <code>/sensors/{id}/temp</code>) or end with <code>/*</code> to handle a whole subtree (see
+     * {@link UriPathRouter}).
      *
      * @param webresource A {@link de.uzl.itm.ncoap.application.server.resource.Webresource} instance to be registered at the server
      *
      * @throws java.lang.IllegalArgumentException if there was already a
-     * {@link de.uzl.itm.ncoap.application.server.resource.Webresource} registered with the same path
+     * {@link de.uzl.itm.ncoap.application.server.resource.Webresource} registered with the same path (templated
+     * segments with different names denote the same path)
      */
     public final void registerWebresource(final Webresource webresource) throws IllegalArgumentException{
-        if (registeredServices.containsKey(webresource.getUriPath())) {
-            throw new IllegalArgumentException("Resource " + webresource.getUriPath() + " is already registered");
-        }
+        synchronized (this.registeredServices) {
+            if (registeredServices.containsKey(webresource.getUriPath())) {
+                throw new IllegalArgumentException("Resource " + webresource.getUriPath() + " is already registered");
+            }
 
-        webresource.setRequestDispatcher(this);
-        registeredServices.put(webresource.getUriPath(), webresource);
+            this.router.add(webresource);
+            webresource.setRequestDispatcher(this);
+            registeredServices.put(webresource.getUriPath(), webresource);
+        }
         LOG.info("Registered new service at " + webresource.getUriPath());
 
         if (webresource instanceof ObservableWebresource) {
-            ChannelPipeline pipeline = getContext().getChannel().getPipeline();
-            ServerObservationHandler handler = pipeline.get(ServerObservationHandler.class);
-            handler.registerWebresource((ObservableWebresource) webresource);
+            // the observers of the resource are spread over the pipelines of all sharing dispatchers
+            for (RequestDispatcher dispatcher : this.dispatchers) {
+                ChannelPipeline pipeline = dispatcher.getContext().getChannel().getPipeline();
+                ServerObservationHandler handler = pipeline.get(ServerObservationHandler.class);
+                handler.registerWebresource((ObservableWebresource) webresource);
+            }
         }
 
         // update /.well-known/core resource
+        updateWellKnownCoreResource();
+    }
+
+
+    /**
+     * Sets the status of the /.well-known/core resource (if registered) to the link values of all registered
+     * resources. The status is derived from the registered resources (and not from the previous status) as the
+     * status of {@link ObservableWebresource}s is set asynchronously, i.e. the previous status might be outdated.
+     *
+     * This method is invoked by the framework upon registration and removal of resources and upon changes of the
+     * link params of registered resources (as the serialized status of the /.well-known/core resource is memoized).
+     */
+    public void updateWellKnownCoreResource() {
         WellKnownCoreResource wkcResource =
                 (WellKnownCoreResource) this.registeredServices.get(WellKnownCoreResource.URI_PATH);
 
         if (wkcResource != null) {
-            byte[] oldStatus = wkcResource.getWrappedResourceStatus(ContentFormat.APP_LINK_FORMAT).getContent();
-            LinkValueList linkValueList;
-            if (oldStatus.length == 0) {
-                linkValueList = new LinkValueList();
-            } else {
-                linkValueList = LinkValueList.decode(new String(oldStatus, CoapMessage.CHARSET));
+            LinkValueList linkValueList = new LinkValueList();
+            synchronized (this.registeredServices) {
+                for (Webresource webresource : this.registeredServices.values()) {
+                    linkValueList.addLinkValue(new LinkValue(webresource.getUriPath(), webresource.getLinkParams()));
+                }
+                wkcResource.setResourceStatus(linkValueList, 0);
             }
-
-            linkValueList.addLinkValue(new LinkValue(webresource.getUriPath(), webresource.getLinkParams()));
-            wkcResource.setResourceStatus(linkValueList, 0);
         }
     }
 
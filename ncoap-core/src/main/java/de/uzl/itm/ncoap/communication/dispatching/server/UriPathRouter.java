@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.dispatching.server;
+
+import de.uzl.itm.ncoap.application.server.resource.Webresource;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.options.OptionValue;
+import de.uzl.itm.ncoap.message.options.StringOptionValue;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static de.uzl.itm.ncoap.message.options.Option.URI_PATH;
+
+/**
+ * <p>The {@link UriPathRouter} maps the path of inbound {@link CoapRequest}s to the registered {@link Webresource}s.
+ * It is a trie with one node per path segment, i.e. the {@link de.uzl.itm.ncoap.message.options.Option#URI_PATH}
+ * values of a request are matched one after another without (re-)building the full path.</p>
+ *
+ * <p>Besides literal path segments the paths of registered {@link Webresource}s may contain</p>
+ * <ul>
+ *     <li>templated segments (e.g. <code>/sensors/{id}/temp</code>) that match any single segment and</li>
+ *     <li>a trailing <code>*</code> segment (e.g. <code>/files/*</code>) to handle the whole subtree below the
+ *     given prefix (including the prefix itself).</li>
+ * </ul>
+ *
+ * <p>Literal segments take precedence over templated segments which take precedence over subtrees, i.e. the most
+ * specific {@link Webresource} is returned.</p>
+ *
+ * <p>Lookups are lock-free. Modifications are synchronized and become visible to lookups atomically per node.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class UriPathRouter {
+
+    /**
+     * The last segment of a path to register a {@link Webresource} for a whole subtree
+     */
+    public static final String SUBTREE_SEGMENT = "*";
+
+    private final Node root;
+
+    /**
+     * Creates a new (empty) instance of {@link UriPathRouter}
+     */
+    public UriPathRouter() {
+        this.root = new Node();
+    }
+
+
+    /**
+     * Adds the given {@link Webresource} at the path returned by {@link Webresource#getUriPath()}
+     *
+     * @param webresource the {@link Webresource} to be added
+     *
+     * @throws IllegalArgumentException if there is already a {@link Webresource} at the same path (templated
+     * segments with different names are considered to be the same path)
+     */
+    public synchronized void add(Webresource webresource) throws IllegalArgumentException {
+        String[] segments = split(webresource.getUriPath());
+        Node node = this.root;
+        boolean subtree = false;
+
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (i == segments.length - 1 && SUBTREE_SEGMENT.equals(segment)) {
+                subtree = true;
+            } else if (isTemplate(segment)) {
+                if (node.template == null) {
+                    node.template = new Node();
+                }
+                node = node.template;
+            } else {
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+        }
+
+        if (subtree ? node.subtree != null : node.webresource != null) {
+            throw new IllegalArgumentException("Resource " + webresource.getUriPath() + " is already registered");
+        } else if (subtree) {
+            node.subtree = webresource;
+        } else {
+            node.webresource = webresource;
+        }
+    }
+
+
+    /**
+     * Removes the {@link Webresource} registered at the given path (if any)
+     *
+     * @param uriPath the path the {@link Webresource} to be removed was registered at
+     *
+     * @return <code>true</code> if a {@link Webresource} was removed and <code>false</code> otherwise
+     */
+    public synchronized boolean remove(String uriPath) {
+        return remove(this.root, split(uriPath), 0);
+    }
+
+
+    private boolean remove(Node node, String[] segments, int index) {
+        if (index == segments.length) {
+            boolean removed = node.webresource != null;
+            node.webresource = null;
+            return removed;
+        }
+
+        String segment = segments[index];
+        if (index == segments.length - 1 && SUBTREE_SEGMENT.equals(segment)) {
+            boolean removed = node.subtree != null;
+            node.subtree = null;
+            return removed;
+        } else if (isTemplate(segment)) {
+            Node child = node.template;
+            if (child == null || !remove(child, segments, index + 1)) {
+                return false;
+            }
+            if (child.isEmpty()) {
+                node.template = null;
+            }
+            return true;
+        } else {
+            Node child = node.children.get(segment);
+            if (child == null || !remove(child, segments, index + 1)) {
+                return false;
+            }
+            if (child.isEmpty()) {
+                node.children.remove(segment, child);
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * Returns the most specific {@link Webresource} matching the
+     * {@link de.uzl.itm.ncoap.message.options.Option#URI_PATH} values of the given {@link CoapRequest} or
+     * <code>null</code> if there is no such {@link Webresource}
+     *
+     * @param coapRequest the {@link CoapRequest} to find the {@link Webresource} for
+     *
+     * @return the most specific {@link Webresource} matching the path of the given {@link CoapRequest} or
+     * <code>null</code> if there is no such {@link Webresource}
+     */
+    public Webresource find(CoapRequest coapRequest) {
+        Set<OptionValue> options = coapRequest.getOptions(URI_PATH);
+        String[] segments = new String[options.size()];
+        Iterator<OptionValue> iterator = options.iterator();
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ((StringOptionValue) iterator.next()).getDecodedValue();
+        }
+        return find(this.root, segments, 0);
+    }
+
+
+    /**
+     * Returns the most specific {@link Webresource} matching the given path or <code>null</code> if there is no
+     * such {@link Webresource}
+     *
+     * @param uriPath the path to find the {@link Webresource} for (e.g. <code>/sensors/1/temp</code>)
+     *
+     * @return the most specific {@link Webresource} matching the given path or <code>null</code> if there is no
+     * such {@link Webresource}
+     */
+    public Webresource find(String uriPath) {
+        return find(this.root, split(uriPath), 0);
+    }
+
+
+    private static Webresource find(Node node, String[] segments, int index) {
+        if (index == segments.length) {
+            Webresource webresource = node.webresource;
+            return webresource != null ? webresource : node.subtree;
+        }
+
+        Node child = node.children.get(segments[index]);
+        if (child != null) {
+            Webresource webresource = find(child, segments, index + 1);
+            if (webresource != null) {
+                return webresource;
+            }
+        }
+
+        child = node.template;
+        if (child != null) {
+            Webresource webresource = find(child, segments, index + 1);
+            if (webresource != null) {
+                return webresource;
+            }
+        }
+
+        return node.subtree;
+    }
+
+
+    private static boolean isTemplate(String segment) {
+        return segment.length() > 1 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+
+    private static String[] split(String uriPath) {
+        String path = uriPath.startsWith("/") ? uriPath.substring(1) : uriPath;
+        return path.isEmpty() ? new String[0] : path.split("/", -1);
+    }
+
+
+    private static class Node {
+
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        private volatile Node template;
+        private volatile Webresource webresource;
+        private volatile Webresource subtree;
+
+        private boolean isEmpty() {
+            return this.webresource == null && this.subtree == null && this.template == null &&
+                    this.children.isEmpty();
+        }
+    }
+}
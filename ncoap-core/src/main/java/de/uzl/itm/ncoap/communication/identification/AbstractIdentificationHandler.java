@@ -24,15 +24,19 @@
  */
 package de.uzl.itm.ncoap.communication.identification;
 
-import com.google.common.collect.HashBasedTable;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Abstract base class for {@link ClientIdentificationHandler} and {@link ServerIdentificationHandler}.
@@ -43,25 +47,30 @@ public abstract class AbstractIdentificationHandler extends AbstractCoapChannelH
 
     private static Logger LOG = LoggerFactory.getLogger(AbstractIdentificationHandler.class.getName());
 
-    // the endpoint IDs assigned to (!) other endpoints
-    private HashBasedTable<EndpointID, Token, InetSocketAddress> assignedByMe1;
-    private HashBasedTable<InetSocketAddress, Token, EndpointID> assignedByMe2;
+    // the endpoint IDs assigned to (!) other endpoints (both tables are modified while holding the monitor of
+    // assignedByMe1 but read without any lock)
+    private Table<EndpointID, Token, InetSocketAddress> assignedByMe1;
+    private ExchangeTable<Token, EndpointID> assignedByMe2;
 
     // the endpoint IDs assigned by (!) other endpoints
-    private HashBasedTable<InetSocketAddress, Token, byte[]> assignedToMe;
+    private ExchangeTable<Token, byte[]> assignedToMe;
 
     private EndpointIDFactory factory;
-    private ReentrantReadWriteLock lock;
 
 
     protected AbstractIdentificationHandler(ScheduledExecutorService executor) {
         super(executor);
-        this.assignedByMe1 = HashBasedTable.create();
-        this.assignedByMe2 = HashBasedTable.create();
-        this.assignedToMe = HashBasedTable.create();
+        this.assignedByMe1 = Tables.newCustomTable(new ConcurrentHashMap<EndpointID, Map<Token, InetSocketAddress>>(),
+                new Supplier<Map<Token, InetSocketAddress>>() {
+                    @Override
+                    public Map<Token, InetSocketAddress> get() {
+                        return new ConcurrentHashMap<>();
+                    }
+                });
+        this.assignedByMe2 = new ExchangeTable<>();
+        this.assignedToMe = new ExchangeTable<>();
 
         this.factory = new EndpointIDFactory();
-        this.lock = new ReentrantReadWriteLock();
     }
 
     protected EndpointIDFactory getFactory() {
@@ -69,82 +78,37 @@ public abstract class AbstractIdentificationHandler extends AbstractCoapChannelH
     }
 
     protected void addToAssignedToMe(InetSocketAddress remoteSocket, Token token, byte[] endpointID) {
-        try{
-            lock.writeLock().lock();
-            this.assignedToMe.put(remoteSocket, token,  endpointID);
-            LOG.info("New ID to identify myself at remote endpoint {}: {}", remoteSocket, new EndpointID(endpointID));
-        }
-        finally {
-            lock.writeLock().unlock();
-        }
+        this.assignedToMe.put(remoteSocket, token,  endpointID);
+        LOG.info("New ID to identify myself at remote endpoint {}: {}", remoteSocket, new EndpointID(endpointID));
     }
 
 
     protected byte[] getFromAssignedToMe(InetSocketAddress remoteSocket, Token token) {
-        try{
-            lock.readLock().lock();
-            return this.assignedToMe.get(remoteSocket, token);
-        }
-        finally {
-            lock.readLock().unlock();
-        }
+        return this.assignedToMe.get(remoteSocket, token);
     }
 
     protected void removeFromAssignedToMe(InetSocketAddress remoteSocket, Token token) {
-        try{
-            lock.readLock().lock();
-            if (!this.assignedToMe.contains(remoteSocket, token)) {
-                return;
-            }
-        }
-
-        finally {
-            lock.readLock().unlock();
-        }
-        try{
-            lock.writeLock().lock();
-            byte[] endpointID = this.assignedToMe.remove(remoteSocket, token);
+        byte[] endpointID = this.assignedToMe.remove(remoteSocket, token);
+        if (endpointID != null) {
             LOG.info("Removed ID to identify myself at remote endpoint {}: {}", remoteSocket, new EndpointID(endpointID));
         }
-        finally {
-            lock.writeLock().unlock();
-        }
     }
 
     protected InetSocketAddress getFromAssignedByMe(EndpointID endpointID, Token token) {
-        try{
-            lock.readLock().lock();
-            return this.assignedByMe1.get(endpointID, token);
-        }
-        finally {
-            lock.readLock().unlock();
-        }
+        return this.assignedByMe1.get(endpointID, token);
     }
 
     protected EndpointID getFromAssignedByMe(InetSocketAddress remoteSocket, Token token) {
-        try{
-            lock.readLock().lock();
-            return this.assignedByMe2.get(remoteSocket, token);
-        }
-        finally {
-            lock.readLock().unlock();
-        }
+        return this.assignedByMe2.get(remoteSocket, token);
     }
 
 
     protected void removeFromAssignedByMe(InetSocketAddress remoteSocket, Token token, boolean releaseEndpointID) {
-        try {
-            lock.readLock().lock();
-            if (!this.assignedByMe2.contains(remoteSocket, token)) {
-                return;
-            }
+        if (!this.assignedByMe2.contains(remoteSocket, token)) {
+            return;
         }
 
-        finally {
-            lock.readLock().unlock();
-        }
-        try{
-            lock.writeLock().lock();
+        synchronized (this.assignedByMe1) {
             EndpointID endpointID = this.assignedByMe2.remove(remoteSocket, token);
             if (endpointID != null) {
                 this.assignedByMe1.remove(endpointID, token);
@@ -154,44 +118,32 @@ public abstract class AbstractIdentificationHandler extends AbstractCoapChannelH
                 LOG.info("Removed ID to identify remote host {}: {}", remoteSocket, endpointID);
             }
         }
-        finally {
-            lock.writeLock().unlock();
-        }
     }
 
     protected void addToAssignedByMe(InetSocketAddress remoteSocket, Token token, EndpointID endpointID) {
-        try {
-            this.lock.writeLock().lock();
+        synchronized (this.assignedByMe1) {
             this.assignedByMe1.put(endpointID, token, remoteSocket);
             this.assignedByMe2.put(remoteSocket, token, endpointID);
             LOG.info("Added ID to identify remote host {}: {}", remoteSocket, endpointID);
         }
-        finally {
-            this.lock.writeLock().unlock();
-        }
     }
 
     protected boolean updateAssignedByMe(EndpointID endpointID, Token token, InetSocketAddress remoteSocket) {
 
-        try {
-            this.lock.readLock().lock();
-            InetSocketAddress previousRemoteSocket = getFromAssignedByMe(endpointID, token);
-            if (remoteSocket.equals(previousRemoteSocket)) {
-                return false;
-            }
-        }
-        finally {
-            this.lock.readLock().unlock();
+        InetSocketAddress previousRemoteSocket = getFromAssignedByMe(endpointID, token);
+        if (remoteSocket.equals(previousRemoteSocket)) {
+            return false;
         }
 
-        try {
-            lock.writeLock().lock();
-            InetSocketAddress previousRemoteSocket = getFromAssignedByMe(endpointID, token);
+        synchronized (this.assignedByMe1) {
+            previousRemoteSocket = getFromAssignedByMe(endpointID, token);
             if (remoteSocket.equals(previousRemoteSocket)) {
                 return false;
             }
 
-            removeFromAssignedByMe(previousRemoteSocket, token, false);
+            if (previousRemoteSocket != null) {
+                removeFromAssignedByMe(previousRemoteSocket, token, false);
+            }
             addToAssignedByMe(remoteSocket, token, endpointID);
 
             LOG.info("Socket for remote Endpoint (EID: {}) updated: {} (Token: {}).",
@@ -199,8 +151,5 @@ public abstract class AbstractIdentificationHandler extends AbstractCoapChannelH
 
             return true;
         }
-        finally {
-            lock.writeLock().unlock();
-        }
     }
 }
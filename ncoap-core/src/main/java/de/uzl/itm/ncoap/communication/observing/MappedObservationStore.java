@@ -0,0 +1,334 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observing;
+
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>A {@link MappedObservationStore} is an {@link ObservationStore} that appends the added and removed
+ * observations to a memory-mapped file, i.e. recording an observation is a (synchronized) write into memory and
+ * the operating system writes the file in the background (which survives even a crash of the JVM).</p>
+ *
+ * <p>The file is a sequence of records (<code>ADD</code> or <code>REMOVE</code>) followed by zeros. The type of a
+ * record is written after its content, i.e. a record that was not completely written is ignored on reload. The
+ * file is compacted on reload and whenever it is full, i.e. the <code>ADD</code> records of the running observations
+ * are written into a temporary file which then atomically replaces the file. Thus, a crash during compaction leaves
+ * either the old or the new file but never a mixture of both. If the running observations occupy more than half of
+ * the file after compaction, the file size is doubled.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class MappedObservationStore implements ObservationStore {
+
+    /**
+     * The default initial size of the file (1 MB)
+     */
+    public static final int DEFAULT_INITIAL_SIZE = 1024 * 1024;
+
+    private static Logger LOG = LoggerFactory.getLogger(MappedObservationStore.class.getName());
+
+    private static final byte END = 0;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+
+    private final File file;
+    private final File temporaryFile;
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+
+    // the running observations (to compact the file)
+    private final Map<Map.Entry<InetSocketAddress, Token>, ObservationRecord> records;
+    private boolean closed;
+
+
+    /**
+     * Creates a new instance of {@link MappedObservationStore} with an initial file size of
+     * {@link #DEFAULT_INITIAL_SIZE}
+     *
+     * @param file the file to store the observations in (created if not existing)
+     *
+     * @throws IOException if the file could not be opened or read
+     */
+    public MappedObservationStore(File file) throws IOException {
+        this(file, DEFAULT_INITIAL_SIZE);
+    }
+
+    /**
+     * Creates a new instance of {@link MappedObservationStore}. If the given file already exists, the observations
+     * recorded in this file are loaded (see {@link #load()}).
+     *
+     * @param file the file to store the observations in (created if not existing)
+     * @param initialSize the initial size of the file in bytes (if the file is larger, the actual size is kept)
+     *
+     * @throws IOException if the file could not be opened or read
+     */
+    public MappedObservationStore(File file, int initialSize) throws IOException {
+        this.file = file;
+        this.temporaryFile = new File(file.getPath() + ".tmp");
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.records = new LinkedHashMap<>();
+
+        int size = (int) Math.max(this.randomAccessFile.length(), initialSize);
+        this.buffer = map(size);
+        readRecords();
+        LOG.info("Loaded {} observation(s) from \"{}\".", this.records.size(), file);
+        compact();
+    }
+
+
+    @Override
+    public synchronized void add(ObservationRecord record) {
+        if (this.closed) {
+            return;
+        }
+        this.records.put(createKey(record.getRemoteSocket(), record.getToken()), record);
+        append(ADD, record.getRemoteSocket(), record.getToken(), record);
+    }
+
+
+    @Override
+    public synchronized void remove(InetSocketAddress remoteSocket, Token token) {
+        if (this.closed) {
+            return;
+        }
+        if (this.records.remove(createKey(remoteSocket, token)) != null) {
+            append(REMOVE, remoteSocket, token, null);
+        }
+    }
+
+
+    @Override
+    public synchronized Collection<ObservationRecord> load() {
+        return new ArrayList<>(this.records.values());
+    }
+
+
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.buffer.force();
+        try {
+            this.randomAccessFile.close();
+        } catch (IOException ex) {
+            LOG.error("Could not close \"{}\"!", this.file, ex);
+        }
+    }
+
+
+    /**
+     * Returns the current size of the file in bytes
+     *
+     * @return the current size of the file in bytes
+     */
+    public synchronized int getFileSize() {
+        return this.buffer.capacity();
+    }
+
+
+    private MappedByteBuffer map(int size) throws IOException {
+        return this.randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+
+    private void append(byte type, InetSocketAddress remoteSocket, Token token, ObservationRecord record) {
+        byte[] encoded = encode(type, remoteSocket, token, record);
+        try {
+            if (this.buffer.remaining() < encoded.length + 1) {
+                compact();
+                if (type == REMOVE) {
+                    // the compacted file does not contain the removed observation anymore
+                    return;
+                }
+            }
+            if (this.buffer.remaining() < encoded.length + 1) {
+                LOG.error("Could not record observation (too large): {}", record);
+                return;
+            }
+
+            // write the content first and the type afterwards (i.e. incomplete records are ignored on reload)
+            int position = this.buffer.position();
+            this.buffer.position(position + 1);
+            this.buffer.put(encoded);
+            this.buffer.put(position, type);
+        } catch (IOException ex) {
+            LOG.error("Could not write \"{}\"!", this.file, ex);
+        }
+    }
+
+
+    private void compact() throws IOException {
+        ByteBuffer live = ByteBuffer.allocate(getEncodedLength());
+        for (ObservationRecord record : this.records.values()) {
+            live.put(ADD);
+            live.put(encode(ADD, record.getRemoteSocket(), record.getToken(), record));
+        }
+
+        int size = this.buffer.capacity();
+        if (live.position() > size / 2) {
+            size = Math.max(size * 2, live.position() * 2);
+            LOG.info("Increase size of \"{}\" to {} bytes.", this.file, size);
+        }
+
+        // write the compacted records into a temporary file (the remainder of which is filled with zeros)...
+        live.flip();
+        try (RandomAccessFile compacted = new RandomAccessFile(this.temporaryFile, "rw")) {
+            compacted.setLength(0);
+            FileChannel channel = compacted.getChannel();
+            while (live.hasRemaining()) {
+                channel.write(live);
+            }
+            compacted.setLength(size);
+            channel.force(true);
+        }
+
+        // ...and replace the file in a single step
+        Files.move(this.temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        this.randomAccessFile.close();
+        this.randomAccessFile = new RandomAccessFile(this.file, "rw");
+        this.buffer = map(size);
+        this.buffer.position(live.limit());
+    }
+
+
+    private int getEncodedLength() {
+        int result = 0;
+        for (ObservationRecord record : this.records.values()) {
+            result += 1 + encode(ADD, record.getRemoteSocket(), record.getToken(), record).length;
+        }
+        return result;
+    }
+
+
+    private void readRecords() {
+        this.buffer.position(0);
+        while (this.buffer.hasRemaining()) {
+            int position = this.buffer.position();
+            byte type = this.buffer.get();
+            try {
+                if (type == ADD) {
+                    ObservationRecord record = decodeRecord();
+                    this.records.put(createKey(record.getRemoteSocket(), record.getToken()), record);
+                } else if (type == REMOVE) {
+                    InetSocketAddress remoteSocket = decodeRemoteSocket();
+                    this.records.remove(createKey(remoteSocket, decodeToken()));
+                } else {
+                    this.buffer.position(position);
+                    return;
+                }
+            } catch (IOException | BufferUnderflowException | IllegalArgumentException ex) {
+                LOG.warn("Ignore corrupted record at position {} of \"{}\".", position, this.file);
+                this.buffer.position(position);
+                return;
+            }
+        }
+    }
+
+
+    private static byte[] encode(byte type, InetSocketAddress remoteSocket, Token token, ObservationRecord record) {
+        byte[] address = remoteSocket.getAddress().getAddress();
+        byte[] tokenBytes = token.getBytes();
+        byte[] uriPath = record == null ? null : record.getUriPath().getBytes(CoapMessage.CHARSET);
+
+        int length = 1 + address.length + 2 + 1 + tokenBytes.length;
+        if (type == ADD) {
+            length += 2 + uriPath.length + 8 + 1 + 4;
+        }
+
+        ByteBuffer encoded = ByteBuffer.allocate(length);
+        encoded.put((byte) address.length);
+        encoded.put(address);
+        encoded.putShort((short) remoteSocket.getPort());
+        encoded.put((byte) tokenBytes.length);
+        encoded.put(tokenBytes);
+        if (type == ADD) {
+            encoded.putShort((short) uriPath.length);
+            encoded.put(uriPath);
+            encoded.putLong(record.getContentFormat());
+            encoded.put((byte) record.getBlock2Size().getSzx());
+            encoded.putInt((int) record.getSequenceNumber());
+        }
+        return encoded.array();
+    }
+
+
+    private ObservationRecord decodeRecord() throws IOException {
+        InetSocketAddress remoteSocket = decodeRemoteSocket();
+        Token token = decodeToken();
+
+        byte[] uriPath = new byte[this.buffer.getShort() & 0xFFFF];
+        this.buffer.get(uriPath);
+        long contentFormat = this.buffer.getLong();
+        BlockSize block2Size = BlockSize.getBlockSize(this.buffer.get());
+        long sequenceNumber = this.buffer.getInt() & 0xFFFFFFFFL;
+
+        return new ObservationRecord(remoteSocket, token, new String(uriPath, CoapMessage.CHARSET), contentFormat,
+                block2Size, sequenceNumber);
+    }
+
+
+    private InetSocketAddress decodeRemoteSocket() throws IOException {
+        byte[] address = new byte[this.buffer.get() & 0xFF];
+        this.buffer.get(address);
+        int port = this.buffer.getShort() & 0xFFFF;
+        return new InetSocketAddress(InetAddress.getByAddress(address), port);
+    }
+
+
+    private Token decodeToken() {
+        byte[] token = new byte[this.buffer.get() & 0xFF];
+        this.buffer.get(token);
+        return new Token(token);
+    }
+
+
+    private static Map.Entry<InetSocketAddress, Token> createKey(InetSocketAddress remoteSocket, Token token) {
+        return new AbstractMap.SimpleImmutableEntry<>(remoteSocket, token);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observing;
+
+import de.uzl.itm.ncoap.application.server.resource.ObservableWebresource;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+
+import java.net.InetSocketAddress;
+
+/**
+ * An {@link ObservationParams} instance holds all parameters of a running observation, i.e. everything the
+ * {@link ServerObservationHandler} needs to send an update notification to the observer (without any further
+ * lookup).
+ *
+ * @author Oliver Kleine
+ */
+class ObservationParams {
+
+    private final ObservableWebresource webresource;
+    private final InetSocketAddress remoteSocket;
+    private final Token token;
+    private final long contentFormat;
+    private final BlockSize block2Size;
+
+    // the status version and the time (in millis) of the latest notification (or response)
+    private volatile long notifiedVersion;
+    private volatile long lastNotification;
+
+    // set when the observation was stopped (while the instance may still be referenced by a snapshot)
+    private volatile boolean cancelled;
+
+    ObservationParams(ObservableWebresource webresource, InetSocketAddress remoteSocket, Token token,
+            long contentFormat, BlockSize block2Size) {
+
+        this.webresource = webresource;
+        this.remoteSocket = remoteSocket;
+        this.token = token;
+        this.contentFormat = contentFormat;
+        this.block2Size = block2Size == null ? BlockSize.UNBOUND : block2Size;
+    }
+
+    InetSocketAddress getRemoteSocket() {
+        return remoteSocket;
+    }
+
+    Token getToken() {
+        return token;
+    }
+
+    long getContentFormat() {
+        return contentFormat;
+    }
+
+    BlockSize getBlock2Size() {
+        return block2Size;
+    }
+
+    ObservableWebresource getWebresource() {
+        return webresource;
+    }
+
+    long getNotifiedVersion() {
+        return notifiedVersion;
+    }
+
+    long getLastNotification() {
+        return lastNotification;
+    }
+
+    void setNotified(long notifiedVersion, long lastNotification) {
+        this.notifiedVersion = notifiedVersion;
+        this.lastNotification = lastNotification;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        this.cancelled = true;
+    }
+}
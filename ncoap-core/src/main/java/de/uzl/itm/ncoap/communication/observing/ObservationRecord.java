@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observing;
+
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+
+import java.net.InetSocketAddress;
+
+/**
+ * An {@link ObservationRecord} is the persistent representation of a running observation as kept by an
+ * {@link ObservationStore}, i.e. everything that is required to resume sending update notifications to the observer
+ * after a restart of the server.
+ *
+ * @author Oliver Kleine
+ */
+public class ObservationRecord {
+
+    private final InetSocketAddress remoteSocket;
+    private final Token token;
+    private final String uriPath;
+    private final long contentFormat;
+    private final BlockSize block2Size;
+    private final long sequenceNumber;
+
+    /**
+     * Creates a new instance of {@link ObservationRecord}
+     *
+     * @param remoteSocket the socket address of the observer
+     * @param token the {@link Token} of the observation
+     * @param uriPath the path of the observed {@link de.uzl.itm.ncoap.application.server.resource.ObservableWebresource}
+     * @param contentFormat the number of the content format of the update notifications
+     * @param block2Size the (maximum) {@link BlockSize} of the update notifications
+     * @param sequenceNumber the value of the observe option of the latest recorded notification (or response)
+     */
+    public ObservationRecord(InetSocketAddress remoteSocket, Token token, String uriPath, long contentFormat,
+            BlockSize block2Size, long sequenceNumber) {
+
+        this.remoteSocket = remoteSocket;
+        this.token = token;
+        this.uriPath = uriPath;
+        this.contentFormat = contentFormat;
+        this.block2Size = block2Size == null ? BlockSize.UNBOUND : block2Size;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Returns the socket address of the observer
+     * @return the socket address of the observer
+     */
+    public InetSocketAddress getRemoteSocket() {
+        return remoteSocket;
+    }
+
+    /**
+     * Returns the {@link Token} of the observation
+     * @return the {@link Token} of the observation
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * Returns the path of the observed resource
+     * @return the path of the observed resource
+     */
+    public String getUriPath() {
+        return uriPath;
+    }
+
+    /**
+     * Returns the number of the content format of the update notifications
+     * @return the number of the content format of the update notifications
+     */
+    public long getContentFormat() {
+        return contentFormat;
+    }
+
+    /**
+     * Returns the (maximum) {@link BlockSize} of the update notifications
+     * @return the (maximum) {@link BlockSize} of the update notifications
+     */
+    public BlockSize getBlock2Size() {
+        return block2Size;
+    }
+
+    /**
+     * Returns the value of the observe option of the latest recorded notification (or response)
+     * @return the value of the observe option of the latest recorded notification (or response)
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "[Remote Socket: " + remoteSocket + ", Token: " + token + ", Path: " + uriPath + ", Content Format: " +
+                contentFormat + ", Block2 Size: " + block2Size + ", Sequence Number: " + sequenceNumber + "]";
+    }
+}
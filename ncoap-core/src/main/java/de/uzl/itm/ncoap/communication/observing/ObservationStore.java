@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observing;
+
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+
+/**
+ * <p>An {@link ObservationStore} persists the running observations of a
+ * {@link de.uzl.itm.ncoap.application.server.CoapServer}, so that a restarted server resumes sending update
+ * notifications to the observers (instead of all observers detecting the loss of their observation at the same time
+ * and registering again).</p>
+ *
+ * <p>The {@link ServerObservationHandler}s record every started observation with {@link #add(ObservationRecord)}
+ * and every stopped observation with {@link #remove(InetSocketAddress, Token)}. These methods are invoked by the
+ * I/O threads, i.e. they are not supposed to block for long. Implementations must be thread-safe.</p>
+ *
+ * <p>See {@link MappedObservationStore} for the default implementation.</p>
+ *
+ * @author Oliver Kleine
+ */
+public interface ObservationStore {
+
+    /**
+     * Records the given observation (replacing a previous observation with the same remote socket and token)
+     *
+     * @param record the {@link ObservationRecord} of the started observation
+     */
+    public void add(ObservationRecord record);
+
+    /**
+     * Removes the observation with the given remote socket and {@link Token} (if any)
+     *
+     * @param remoteSocket the socket address of the observer
+     * @param token the {@link Token} of the observation
+     */
+    public void remove(InetSocketAddress remoteSocket, Token token);
+
+    /**
+     * Returns all recorded observations, i.e. observations that were added and not removed (including those
+     * recorded before a restart)
+     *
+     * @return all recorded observations
+     */
+    public Collection<ObservationRecord> load();
+
+    /**
+     * Releases all resources of this {@link ObservationStore}. The recorded observations are kept, i.e. a new
+     * instance created for the same storage returns them on {@link #load()}.
+     */
+    public void close();
+}
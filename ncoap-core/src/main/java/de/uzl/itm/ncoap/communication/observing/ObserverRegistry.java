@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observing;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>An {@link ObserverRegistry} holds the observations of a single
+ * {@link de.uzl.itm.ncoap.application.server.resource.ObservableWebresource}, grouped by content format (i.e. by
+ * the representation the observers are to be notified with).</p>
+ *
+ * <p>The registry is copy-on-write, i.e. {@link #getGroups()} returns an immutable snapshot that can be iterated
+ * without any lookup or lock while observations are concurrently added or removed. Modifications replace the
+ * snapshot with a compare-and-set, so neither modifications nor iterations block each other. As a consequence, an
+ * iteration may still see observations that were stopped meanwhile (see {@link ObservationParams#isCancelled()}).
+ * </p>
+ *
+ * @author Oliver Kleine
+ */
+class ObserverRegistry {
+
+    private static final Group[] EMPTY = new Group[0];
+
+    private final AtomicReference<Group[]> groups;
+
+    ObserverRegistry() {
+        this.groups = new AtomicReference<>(EMPTY);
+    }
+
+    /**
+     * Adds the given observation (to the group of its content format)
+     *
+     * @param params the {@link ObservationParams} of the observation to be added
+     */
+    void add(ObservationParams params) {
+        while (true) {
+            Group[] current = this.groups.get();
+            Group[] updated;
+            int index = indexOf(current, params.getContentFormat());
+            if (index < 0) {
+                updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = new Group(params.getContentFormat(), new ObservationParams[]{params});
+            } else {
+                updated = current.clone();
+                updated[index] = current[index].with(params);
+            }
+
+            if (this.groups.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the given observation (if contained)
+     *
+     * @param params the {@link ObservationParams} of the observation to be removed
+     *
+     * @return <code>true</code> if the observation was removed and <code>false</code> if it was not contained
+     */
+    boolean remove(ObservationParams params) {
+        while (true) {
+            Group[] current = this.groups.get();
+            int index = indexOf(current, params.getContentFormat());
+            if (index < 0) {
+                return false;
+            }
+
+            Group group = current[index].without(params);
+            if (group == current[index]) {
+                return false;
+            }
+
+            Group[] updated;
+            if (group.size() > 0) {
+                updated = current.clone();
+                updated[index] = group;
+            } else {
+                updated = new Group[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            }
+
+            if (this.groups.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes all observations and returns them (as the last snapshot)
+     *
+     * @return the groups that were contained before
+     */
+    Group[] clear() {
+        return this.groups.getAndSet(EMPTY);
+    }
+
+    /**
+     * Returns an immutable snapshot of the contained groups
+     *
+     * @return an immutable snapshot of the contained groups
+     */
+    Group[] getGroups() {
+        return this.groups.get();
+    }
+
+    /**
+     * Returns the number of contained observations
+     *
+     * @return the number of contained observations
+     */
+    int size() {
+        int result = 0;
+        for (Group group : this.groups.get()) {
+            result += group.size();
+        }
+        return result;
+    }
+
+    private static int indexOf(Group[] groups, long contentFormat) {
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i].getContentFormat() == contentFormat) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * An (immutable) group of observations with the same content format
+     */
+    static final class Group {
+
+        private final long contentFormat;
+        private final ObservationParams[] observations;
+
+        private Group(long contentFormat, ObservationParams[] observations) {
+            this.contentFormat = contentFormat;
+            this.observations = observations;
+        }
+
+        long getContentFormat() {
+            return this.contentFormat;
+        }
+
+        int size() {
+            return this.observations.length;
+        }
+
+        ObservationParams get(int index) {
+            return this.observations[index];
+        }
+
+        private Group with(ObservationParams params) {
+            ObservationParams[] updated = Arrays.copyOf(this.observations, this.observations.length + 1);
+            updated[this.observations.length] = params;
+            return new Group(this.contentFormat, updated);
+        }
+
+        private Group without(ObservationParams params) {
+            for (int i = 0; i < this.observations.length; i++) {
+                if (this.observations[i] == params) {
+                    ObservationParams[] updated = new ObservationParams[this.observations.length - 1];
+                    System.arraycopy(this.observations, 0, updated, 0, i);
+                    System.arraycopy(this.observations, i + 1, updated, i, this.observations.length - i - 1);
+                    return new Group(this.contentFormat, updated);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -24,11 +24,12 @@
  */
 package de.uzl.itm.ncoap.communication.observing;
 
-import com.google.common.collect.HashBasedTable;
 import de.uzl.itm.ncoap.application.server.CoapServer;
 import de.uzl.itm.ncoap.application.server.resource.ObservableWebresource;
 import de.uzl.itm.ncoap.application.server.resource.WrappedResourceStatus;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
+import de.uzl.itm.ncoap.communication.OutboundMessageBatch;
 import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.TransmissionTimeoutEvent;
@@ -44,12 +45,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@link ServerObservationHandler} is responsible to maintain the list of registered clients observing any
@@ -63,10 +72,15 @@ public class ServerObservationHandler extends AbstractCoapChannelHandler impleme
 
     private static Logger LOG = LoggerFactory.getLogger(ServerObservationHandler.class.getName());
 
-    private HashBasedTable<InetSocketAddress, Token, ObservationParams> observations1;
-    private HashBasedTable<ObservableWebresource, InetSocketAddress, Token> observations2;
+    private ExchangeTable<Token, ObservationParams> observations1;
+    private ConcurrentMap<ObservableWebresource, ObserverRegistry> observations2;
+    private ConcurrentMap<ObservableWebresource, NotificationScheduler> schedulers;
 
-    private ReentrantReadWriteLock lock;
+    // the (optional) persistent store and the stored observations whose resources are not (yet) registered
+    private volatile ObservationStore observationStore;
+    private volatile boolean retainObservations;
+    private ConcurrentMap<String, ObservableWebresource> webresources;
+    private Map<String, List<ObservationRecord>> pendingRecords;
 
     /**
      * Creates a new instance of {@link ServerObservationHandler}
@@ -76,10 +90,11 @@ public class ServerObservationHandler extends AbstractCoapChannelHandler impleme
      */
     public ServerObservationHandler(ScheduledExecutorService executor) {
         super(executor);
-        this.observations1 = HashBasedTable.create();
-        this.observations2 = HashBasedTable.create();
-
-        this.lock = new ReentrantReadWriteLock();
+        this.observations1 = new ExchangeTable<>();
+        this.observations2 = new ConcurrentHashMap<>();
+        this.schedulers = new ConcurrentHashMap<>();
+        this.webresources = new ConcurrentHashMap<>();
+        this.pendingRecords = new HashMap<>();
     }
 
 
@@ -142,70 +157,165 @@ public class ServerObservationHandler extends AbstractCoapChannelHandler impleme
     public void registerWebresource(ObservableWebresource webresource) {
         LOG.debug("ServerObservationHandler is now observing \"{}\".", webresource.getUriPath());
         webresource.addObserver(this);
+
+        List<ObservationRecord> records;
+        synchronized (this.pendingRecords) {
+            this.webresources.put(webresource.getUriPath(), webresource);
+            records = this.pendingRecords.remove(webresource.getUriPath());
+        }
+        if (records != null) {
+            for (ObservationRecord record : records) {
+                resumeObservation(webresource, record);
+            }
+        }
+    }
+
+
+    /**
+     * Sets the {@link ObservationStore} to record all observations of this handler (started after the invocation of
+     * this method) in.
+     *
+     * @param observationStore the {@link ObservationStore} to record the observations in
+     */
+    public void setObservationStore(ObservationStore observationStore) {
+        this.observationStore = observationStore;
+    }
+
+
+    /**
+     * Resumes the given (previously stored) observation, i.e. the observer is notified about the actual status of
+     * the observed {@link ObservableWebresource} (as it might have changed during the restart) and every status
+     * change afterwards. If there is no {@link ObservableWebresource} registered at the path of the given record
+     * yet, the observation is resumed upon registration.
+     *
+     * @param record the {@link ObservationRecord} of the observation to be resumed
+     */
+    public void resumeObservation(ObservationRecord record) {
+        ObservableWebresource webresource;
+        synchronized (this.pendingRecords) {
+            webresource = this.webresources.get(record.getUriPath());
+            if (webresource == null) {
+                List<ObservationRecord> records = this.pendingRecords.get(record.getUriPath());
+                if (records == null) {
+                    records = new ArrayList<>();
+                    this.pendingRecords.put(record.getUriPath(), records);
+                }
+                records.add(record);
+                return;
+            }
+        }
+        resumeObservation(webresource, record);
+    }
+
+
+    private void resumeObservation(ObservableWebresource webresource, ObservationRecord record) {
+        // observe numbers are derived from the clock, i.e. they keep increasing across restarts
+        ObservationParams params = new ObservationParams(webresource, record.getRemoteSocket(), record.getToken(),
+                record.getContentFormat(), record.getBlock2Size());
+        startObservation(params, -1, 0);
+        getScheduler(webresource).submit();
+        LOG.info("Resumed observation: {}", record);
+    }
+
+
+    /**
+     * Makes this handler keep the stored observations when the {@link ObservableWebresource}s are shut down, i.e. no
+     * shutdown notifications are sent and the observations are resumed after a restart of the server. This is
+     * invoked by the framework when the server is shut down (and there is an {@link ObservationStore}).
+     */
+    public void retainObservations() {
+        this.retainObservations = true;
     }
 
 
     private void startObservation(InetSocketAddress remoteSocket, Token token, ObservableWebresource webresource,
             long contentFormat, BlockSize block2Size) {
 
-        try {
-            this.lock.writeLock().lock();
-            ObservationParams params =
-                    new ObservationParams(webresource, remoteSocket, token, contentFormat, block2Size);
-            this.observations1.put(remoteSocket, token, params);
-            this.observations2.put(webresource, remoteSocket, token);
-            LOG.info("Client \"{}\" is now observing \"{}\".", remoteSocket, webresource.getUriPath());
-        } finally {
-            this.lock.writeLock().unlock();
+        // the observer received the actual status with the response to its request
+        NotificationScheduler scheduler = getScheduler(webresource);
+        startObservation(new ObservationParams(webresource, remoteSocket, token, contentFormat, block2Size),
+                scheduler.getStatusVersion(), System.currentTimeMillis());
+    }
+
+
+    private void startObservation(ObservationParams params, long notifiedVersion, long lastNotification) {
+        ObservableWebresource webresource = params.getWebresource();
+        InetSocketAddress remoteSocket = params.getRemoteSocket();
+        params.setNotified(notifiedVersion, lastNotification);
+        this.observations1.put(remoteSocket, params.getToken(), params);
+        getRegistry(webresource).add(params);
+        if (this.observationStore != null) {
+            long sequenceNumber = System.currentTimeMillis() % ResourceStatusAge.MODULUS;
+            this.observationStore.add(new ObservationRecord(remoteSocket, params.getToken(),
+                    webresource.getUriPath(), params.getContentFormat(), params.getBlock2Size(), sequenceNumber));
+        }
+        LOG.info("Client \"{}\" is now observing \"{}\".", remoteSocket, webresource.getUriPath());
+
+        if (webresource.getMaxNotificationInterval() > 0) {
+            // (re-)schedule the next notification due to the maximum interval
+            getScheduler(webresource).submit();
         }
     }
 
 
-    private ObservationParams stopObservation(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (!this.observations1.contains(remoteSocket, token)) {
-                return null;
+    private ObserverRegistry getRegistry(ObservableWebresource webresource) {
+        ObserverRegistry registry = this.observations2.get(webresource);
+        if (registry == null) {
+            registry = new ObserverRegistry();
+            ObserverRegistry previous = this.observations2.putIfAbsent(webresource, registry);
+            if (previous != null) {
+                registry = previous;
             }
-        } finally {
-            this.lock.readLock().unlock();
         }
+        return registry;
+    }
+
 
-        try {
-            this.lock.writeLock().lock();
-            ObservationParams params = this.observations1.remove(remoteSocket, token);
-            if (params == null) {
-                return null;
+    private NotificationScheduler getScheduler(ObservableWebresource webresource) {
+        NotificationScheduler scheduler = this.schedulers.get(webresource);
+        if (scheduler == null) {
+            scheduler = new NotificationScheduler(webresource);
+            NotificationScheduler previous = this.schedulers.putIfAbsent(webresource, scheduler);
+            if (previous != null) {
+                scheduler = previous;
             }
-            this.observations2.remove(params.getWebresource(), remoteSocket);
-            LOG.info("Client \"{}\" is no longer observing \"{}\" (token was: \"{}\").",
-                    new Object[]{remoteSocket, params.getWebresource().getUriPath(), token});
-            return params;
+        }
+        return scheduler;
+    }
+
 
-        } finally {
-            this.lock.writeLock().unlock();
+    private ObservationParams stopObservation(InetSocketAddress remoteSocket, Token token) {
+        ObservationParams params = this.observations1.remove(remoteSocket, token);
+        if (params == null) {
+            return null;
         }
+
+        params.cancel();
+        if (this.observationStore != null) {
+            this.observationStore.remove(remoteSocket, token);
+        }
+        ObserverRegistry registry = this.observations2.get(params.getWebresource());
+        if (registry != null) {
+            registry.remove(params);
+        }
+        LOG.info("Client \"{}\" is no longer observing \"{}\" (token was: \"{}\").",
+                new Object[]{remoteSocket, params.getWebresource().getUriPath(), token});
+        return params;
     }
 
 
     private boolean updateObserverSocket(InetSocketAddress previousRemoteSocket, InetSocketAddress newRemoteSocket,
                                       Token token) {
 
-        try {
-            this.lock.writeLock().lock();
-            ObservationParams params = this.observations1.remove(previousRemoteSocket, token);
-            if (params == null) {
-                return false;
-            } else {
-                this.observations2.remove(params.getWebresource(), previousRemoteSocket);
-                this.startObservation(newRemoteSocket, token, params.getWebresource(), params.getContentFormat(),
-                        params.getBlock2Size());
-                return true;
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+        ObservationParams params = this.stopObservation(previousRemoteSocket, token);
+        if (params == null) {
+            return false;
+        } else {
+            ObservationParams newParams = new ObservationParams(params.getWebresource(), newRemoteSocket, token,
+                    params.getContentFormat(), params.getBlock2Size());
+            this.startObservation(newParams, params.getNotifiedVersion(), params.getLastNotification());
+            return true;
         }
-
     }
 
     @Override
@@ -213,110 +323,257 @@ public class ServerObservationHandler extends AbstractCoapChannelHandler impleme
         ObservableWebresource webresource = (ObservableWebresource) observable;
         LOG.info("Webresource {} was updated. Starting to send update notifications to observers.");
         if (type.equals(ObservableWebresource.UPDATE)) {
-            sendUpdateNotifications(webresource);
+            getScheduler(webresource).statusChanged();
         } else if (type.equals(ObservableWebresource.SHUTDOWN)) {
-            sendShutdownNotifications(webresource);
+            NotificationScheduler scheduler = this.schedulers.remove(webresource);
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+            this.webresources.remove(webresource.getUriPath(), webresource);
+            if (this.retainObservations && this.observationStore != null) {
+                dropObservations(webresource);
+            } else {
+                sendShutdownNotifications(webresource);
+            }
         }
     }
 
+    private void dropObservations(ObservableWebresource webresource) {
+        ObserverRegistry registry = this.observations2.remove(webresource);
+        if (registry == null) {
+            return;
+        }
+
+        // remove the observations from memory only (they are resumed after restart)
+        int count = 0;
+        for (ObserverRegistry.Group group : registry.clear()) {
+            for (int i = 0; i < group.size(); i++) {
+                ObservationParams params = group.get(i);
+                if (this.observations1.remove(params.getRemoteSocket(), params.getToken(), params)) {
+                    params.cancel();
+                    count++;
+                }
+            }
+        }
+        LOG.info("Retained {} observation(s) of \"{}\".", count, webresource.getUriPath());
+    }
+
     private void sendShutdownNotifications(ObservableWebresource webresource) {
-        try {
-            this.lock.writeLock().lock();
-            Map<InetSocketAddress, Token> observations = new HashMap<>(this.observations2.row(webresource));
-            for (Map.Entry<InetSocketAddress, Token> observation : observations.entrySet()) {
-                InetSocketAddress remoteSocket = observation.getKey();
-                Token token = observation.getValue();
-                ObservationParams params = stopObservation(remoteSocket, token);
-                if(params != null) {
+        ObserverRegistry registry = this.observations2.remove(webresource);
+        if (registry == null) {
+            return;
+        }
+
+        for (ObserverRegistry.Group group : registry.clear()) {
+            for (int i = 0; i < group.size(); i++) {
+                ObservationParams params = group.get(i);
+                InetSocketAddress remoteSocket = params.getRemoteSocket();
+                Token token = params.getToken();
+                if (this.observations1.remove(remoteSocket, token, params)) {
+                    params.cancel();
+                    if (this.observationStore != null) {
+                        this.observationStore.remove(remoteSocket, token);
+                    }
                     BlockSize block2Size = params.getBlock2Size();
                     String uriPath = webresource.getUriPath();
                     getExecutor().submit(new ShutdownNotificationTask(remoteSocket, token, uriPath, block2Size));
                 } else {
-                    LOG.error("This should never happen!");
+                    LOG.debug("Observation was stopped concurrently (Remote Socket: {}, Token: {})", remoteSocket,
+                            token);
                 }
             }
-        } finally {
-            this.lock.writeLock().unlock();
         }
-
     }
 
 
-    private void sendUpdateNotifications(ObservableWebresource webresource) {
-        try {
-            this.lock.readLock().lock();
-            Map<Long, WrappedResourceStatus> representations = new HashMap<>();
-            for(Map.Entry<InetSocketAddress, Token> observation : this.observations2.row(webresource).entrySet()) {
-                // determine observation specific data
-                InetSocketAddress remoteSocket = observation.getKey();
-                Token token = observation.getValue();
-                ObservationParams params = this.observations1.get(remoteSocket, token);
-                long contentFormat = params.getContentFormat();
-                BlockSize block2Size = params.getBlock2Size();
-
-                // get the actual resource status
-                WrappedResourceStatus status = representations.get(contentFormat);
-                if (status == null) {
-                    status = webresource.getWrappedResourceStatus(contentFormat);
-                    representations.put(contentFormat, status);
-                }
+    /**
+     * <p>A {@link NotificationScheduler} sends the update notifications of a particular {@link ObservableWebresource}
+     * to the observers of this handler (i.e. of one channel). Status changes are coalesced, i.e. there is at most
+     * one pending notification task per resource (no matter how many status changes occurred meanwhile) and this
+     * task notifies all observers with the latest status.</p>
+     *
+     * <p>Observers are not notified more often than the minimum notification interval of the resource allows.
+     * Observers that were notified too recently are notified (about the then latest status) by a task scheduled
+     * for the time the interval elapsed. Observers that were not notified within the maximum notification interval
+     * are notified even if the status did not change.</p>
+     */
+    private class NotificationScheduler implements Runnable {
 
-                // schedule update notification (immediately)
-                boolean confirmable = webresource.isUpdateNotificationConfirmable(remoteSocket);
-                int messageType =  confirmable ? MessageType.CON : MessageType.NON;
-                getExecutor().submit(new UpdateNotificationTask(remoteSocket, status, messageType, token, block2Size));
-            }
-        } finally {
-            this.lock.readLock().unlock();
-        }
-    }
+        private final ObservableWebresource webresource;
+        private final AtomicLong statusVersion;
+        private final AtomicBoolean submitted;
 
-    private class ObservationParams {
+        // guarded by this
+        private ScheduledFuture<?> timer;
+        private boolean shutdown;
 
-        private ObservableWebresource webresource;
-        private InetSocketAddress remoteSocket;
-        private Token token;
-        private long contentFormat;
-        private BlockSize block2Size;
+        private NotificationScheduler(ObservableWebresource webresource) {
+            this.webresource = webresource;
+            this.statusVersion = new AtomicLong(0);
+            this.submitted = new AtomicBoolean(false);
+        }
 
-        public ObservationParams(ObservableWebresource webresource, InetSocketAddress remoteSocket, Token token,
-                                 long contentFormat, BlockSize block2Size) {
+        private long getStatusVersion() {
+            return this.statusVersion.get();
+        }
 
-            this.webresource = webresource;
-            this.remoteSocket = remoteSocket;
-            this.token = token;
-            this.contentFormat = contentFormat;
-            this.block2Size = block2Size;
+        private void statusChanged() {
+            this.statusVersion.incrementAndGet();
+            submit();
         }
 
+        private void submit() {
+            // coalesce status changes until the pending task (if any) was started
+            if (this.submitted.compareAndSet(false, true)) {
+                getExecutor().submit(this);
+            }
+        }
 
-        public InetSocketAddress getRemoteSocket() {
-            return remoteSocket;
+        private synchronized void shutdown() {
+            this.shutdown = true;
+            if (this.timer != null) {
+                this.timer.cancel(false);
+            }
         }
 
-        public void setRemoteSocket(InetSocketAddress remoteSocket) {
-            this.remoteSocket = remoteSocket;
+        @Override
+        public synchronized void run() {
+            this.submitted.set(false);
+            if (this.shutdown) {
+                return;
+            }
+            try {
+                sendUpdateNotifications();
+            } catch (Exception ex) {
+                LOG.error("Exception while sending update notifications for \"{}\"!", webresource.getUriPath(), ex);
+            }
         }
 
-        public Token getToken() {
-            return token;
+        private void sendUpdateNotifications() {
+            ObserverRegistry registry = observations2.get(this.webresource);
+            if (registry == null) {
+                return;
+            }
+
+            long version = this.statusVersion.get();
+            long minInterval = this.webresource.getMinNotificationInterval();
+            long maxInterval = this.webresource.getMaxNotificationInterval();
+            long now = System.currentTimeMillis();
+            long nextRun = Long.MAX_VALUE;
+
+            ObserverRegistry.Group[] groups = registry.getGroups();
+            OutboundMessageBatch batch = new OutboundMessageBatch(registry.size());
+            for (ObserverRegistry.Group group : groups) {
+                // the actual resource status (once per content format) and the options and payload to be shared
+                // by all notifications with the same content format and block size (both created on demand)
+                WrappedResourceStatus status = null;
+                Map<BlockSize, CoapResponse> templates = new EnumMap<>(BlockSize.class);
+
+                for (int i = 0; i < group.size(); i++) {
+                    ObservationParams params = group.get(i);
+                    if (params.isCancelled()) {
+                        // observation was stopped concurrently
+                        continue;
+                    }
+
+                    long lastNotification = params.getLastNotification();
+                    boolean statusChanged = params.getNotifiedVersion() < version;
+                    if (!statusChanged && (maxInterval == 0 || now - lastNotification < maxInterval)) {
+                        // nothing new (yet)
+                        if (maxInterval > 0) {
+                            nextRun = Math.min(nextRun, lastNotification + maxInterval);
+                        }
+                        continue;
+                    }
+
+                    if (now - lastNotification < minInterval) {
+                        // notified too recently (send the then latest status later)
+                        nextRun = Math.min(nextRun, lastNotification + minInterval);
+                        continue;
+                    }
+
+                    if (status == null) {
+                        status = this.webresource.getWrappedResourceStatus(group.getContentFormat());
+                    }
+                    CoapResponse template = templates.get(params.getBlock2Size());
+                    if (template == null) {
+                        template = createTemplate(status, params.getBlock2Size());
+                        templates.put(params.getBlock2Size(), template);
+                    }
+
+                    // add update notification to the batch (i.e. no task and no pipeline traversal per observer)
+                    params.setNotified(version, now);
+                    InetSocketAddress remoteSocket = params.getRemoteSocket();
+                    boolean confirmable = this.webresource.isUpdateNotificationConfirmable(remoteSocket);
+                    int messageType =  confirmable ? MessageType.CON : MessageType.NON;
+                    addUpdateNotification(batch, remoteSocket, template, messageType, params.getToken());
+
+                    if (maxInterval > 0) {
+                        nextRun = Math.min(nextRun, now + maxInterval);
+                    }
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                sendCoapMessages(batch);
+            }
+
+            LOG.debug("Sent {} update notification(s) for \"{}\".", batch.size(), this.webresource.getUriPath());
+            scheduleNextRun(nextRun, now);
         }
 
-        public long getContentFormat() {
-            return contentFormat;
+        private CoapResponse createTemplate(WrappedResourceStatus representation, BlockSize block2Size) {
+            CoapResponse template = new CoapResponse(MessageType.NON, MessageCode.CONTENT_205);
+            template.setEtag(representation.getEtag());
+            template.setContent(representation.getContentBuffer(), representation.getContentFormat());
+            template.setMaxAge(representation.getMaxAge());
+            template.setObserve();
+            template.setPreferredBlock2Size(block2Size);
+            return template;
         }
 
-        public BlockSize getBlock2Size() {
-            return block2Size;
+        private void addUpdateNotification(OutboundMessageBatch batch, final InetSocketAddress remoteSocket,
+                CoapResponse template, int messageType, final Token token) {
+
+            // share options and payload with the template (i.e. they are encoded only once, see CoapMessageEncoder)
+            CoapResponse updateNotification = new CoapResponse(messageType, MessageCode.CONTENT_205);
+            updateNotification.setToken(token);
+            updateNotification.copyOptions(template);
+            updateNotification.setContent(template.getContent());
+
+            ChannelFuture future = Channels.future(getContext().getChannel());
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        LOG.error("Update Notification Failure!", future.getCause());
+                    } else {
+                        LOG.info("Update Notification sent to \"{}\" (Token: {}).", remoteSocket, token);
+                    }
+                }
+            });
+
+            batch.add(updateNotification, remoteSocket, future);
         }
 
-        public ObservableWebresource getWebresource() {
-            return webresource;
+        private void scheduleNextRun(long nextRun, long now) {
+            if (this.timer != null) {
+                this.timer.cancel(false);
+                this.timer = null;
+            }
+
+            if (nextRun < Long.MAX_VALUE) {
+                this.timer = getExecutor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submit();
+                    }
+                }, Math.max(nextRun - now, 0), TimeUnit.MILLISECONDS);
+            }
         }
     }
 
 
-
     private class ShutdownNotificationTask implements Runnable{
 
         private InetSocketAddress remoteSocket;
@@ -357,51 +614,4 @@ public class ServerObservationHandler extends AbstractCoapChannelHandler impleme
             });
         }
     }
-
-    private class UpdateNotificationTask implements Runnable{
-
-        private InetSocketAddress remoteSocket;
-        private int messageType;
-        private Token token;
-        private BlockSize block2Size;
-        private WrappedResourceStatus representation;
-
-        public UpdateNotificationTask(InetSocketAddress remoteSocket, WrappedResourceStatus representation,
-                    int messageType, Token token, BlockSize block2Size) {
-
-            this.remoteSocket = remoteSocket;
-            this.representation = representation;
-            this.messageType = messageType;
-            this.token = token;
-            this.block2Size = block2Size;
-        }
-
-        public void run() {
-            try {
-                CoapResponse updateNotification = new CoapResponse(messageType, MessageCode.CONTENT_205);
-                updateNotification.setToken(token);
-                updateNotification.setEtag(representation.getEtag());
-                updateNotification.setContent(representation.getContent(), representation.getContentFormat());
-                updateNotification.setMaxAge(representation.getMaxAge());
-                updateNotification.setObserve();
-                updateNotification.setPreferredBlock2Size(block2Size);
-
-                ChannelFuture future = Channels.future(getContext().getChannel());
-                sendCoapMessage(updateNotification, remoteSocket, future);
-
-                future.addListener(new ChannelFutureListener() {
-                    @Override
-                    public void operationComplete(ChannelFuture future) throws Exception {
-                        if (!future.isSuccess()) {
-                            LOG.error("Update Notification Failure!", future.getCause());
-                        } else {
-                            LOG.info("Update Notification sent to \"{}\" (Token: {}).", remoteSocket, token);
-                        }
-                    }
-                });
-            } catch (Exception ex) {
-                LOG.error("Exception!", ex);
-            }
-        }
-    }
 }
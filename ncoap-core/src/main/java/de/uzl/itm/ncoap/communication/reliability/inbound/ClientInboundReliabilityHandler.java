@@ -24,9 +24,8 @@
  */
 package de.uzl.itm.ncoap.communication.reliability.inbound;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.client.RemoteServerSocketChangedEvent;
 import de.uzl.itm.ncoap.communication.events.client.TokenReleasedEvent;
@@ -38,7 +37,6 @@ import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static de.uzl.itm.ncoap.message.MessageType.*;
 
@@ -53,8 +51,7 @@ public class ClientInboundReliabilityHandler extends AbstractCoapChannelHandler
      */
     private static Logger LOG = LoggerFactory.getLogger(ClientInboundReliabilityHandler.class.getName());
 
-    private Multimap<InetSocketAddress, Token> awaitedResponses;
-    private ReentrantReadWriteLock lock;
+    private ExchangeTable<Token, Boolean> awaitedResponses;
 
 
     /**
@@ -66,8 +63,7 @@ public class ClientInboundReliabilityHandler extends AbstractCoapChannelHandler
      */
     public ClientInboundReliabilityHandler(ScheduledExecutorService executor) {
         super(executor);
-        this.awaitedResponses = HashMultimap.create();
-        this.lock = new ReentrantReadWriteLock();
+        this.awaitedResponses = new ExchangeTable<>();
     }
 
 
@@ -133,46 +129,22 @@ public class ClientInboundReliabilityHandler extends AbstractCoapChannelHandler
 
 
     private boolean isResponseAwaited(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.readLock().lock();
-            return awaitedResponses.get(remoteSocket).contains(token);
-        } finally {
-            this.lock.readLock().unlock();
-        }
+        return this.awaitedResponses.contains(remoteSocket, token);
     }
 
     private void addToAwaitedResponses(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.writeLock().lock();
-            this.awaitedResponses.put(remoteSocket, token);
-            LOG.debug("Added message exchange with \"{}\" and token {} (Now: {})",
-                    new Object[]{remoteSocket, token, this.awaitedResponses.size()});
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        this.awaitedResponses.put(remoteSocket, token, Boolean.TRUE);
+        LOG.debug("Added message exchange with \"{}\" and token {} (Now: {})",
+                new Object[]{remoteSocket, token, this.awaitedResponses.size()});
     }
 
     private boolean removeFromAwaitedResponses(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (!awaitedResponses.get(remoteSocket).contains(token)) {
-                return false;
-            }
-        } finally {
-            this.lock.readLock().unlock();
-        }
-
-        try {
-            this.lock.writeLock().lock();
-            if (this.awaitedResponses.remove(remoteSocket, token)) {
-                LOG.debug("Removed message exchange with \"{}\" and token {} (Remaining: {})",
-                        new Object[]{remoteSocket, token, this.awaitedResponses.size()});
-                return true;
-            } else {
-                return false;
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+        if (this.awaitedResponses.remove(remoteSocket, token) != null) {
+            LOG.debug("Removed message exchange with \"{}\" and token {} (Remaining: {})",
+                    new Object[]{remoteSocket, token, this.awaitedResponses.size()});
+            return true;
+        } else {
+            return false;
         }
     }
 
@@ -24,9 +24,8 @@
  */
 package de.uzl.itm.ncoap.communication.reliability.inbound;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.message.CoapMessage;
 import de.uzl.itm.ncoap.message.CoapRequest;
@@ -39,7 +38,6 @@ import java.net.InetSocketAddress;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
@@ -60,9 +58,8 @@ public class ServerInboundReliabilityHandler extends AbstractCoapChannelHandler
 
     private static Logger LOG = LoggerFactory.getLogger(ServerInboundReliabilityHandler.class.getName());
 
-    private Table<InetSocketAddress, Integer, Token> unprocessedRequests;
-    private Table<InetSocketAddress, Integer, ScheduledFuture> scheduledEmptyAcknowledgements;
-    private ReentrantReadWriteLock lock;
+    private ExchangeTable<Integer, Token> unprocessedRequests;
+    private ExchangeTable<Integer, ScheduledFuture> scheduledEmptyAcknowledgements;
 
 
     /**
@@ -74,10 +71,8 @@ public class ServerInboundReliabilityHandler extends AbstractCoapChannelHandler
      */
     public ServerInboundReliabilityHandler(ScheduledExecutorService executor) {
         super(executor);
-        this.unprocessedRequests = HashBasedTable.create();
-        this.scheduledEmptyAcknowledgements = HashBasedTable.create();
-
-        this.lock = new ReentrantReadWriteLock();
+        this.unprocessedRequests = new ExchangeTable<>();
+        this.scheduledEmptyAcknowledgements = new ExchangeTable<>();
     }
 
 
@@ -147,95 +142,48 @@ public class ServerInboundReliabilityHandler extends AbstractCoapChannelHandler
 
 
     private boolean addUnprocessedRequest(InetSocketAddress remoteSocket, int messageID, Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (this.unprocessedRequests.contains(remoteSocket, messageID)) {
-                return false;
-            }
-        } finally {
-            this.lock.readLock().unlock();
-        }
-
-        try {
-            this.lock.writeLock().lock();
-            if (this.unprocessedRequests.contains(remoteSocket, messageID)) {
-                return false;
-            } else {
-                this.unprocessedRequests.put(remoteSocket, messageID, token);
-                return true;
-            }
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        return this.unprocessedRequests.putIfAbsent(remoteSocket, messageID, token) == null;
     }
 
     private void removeUnprocessedRequest(InetSocketAddress remoteSocket, int messageID, Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (!token.equals(this.unprocessedRequests.get(remoteSocket, messageID))) {
-                return;
-            }
-        } finally {
-            this.lock.readLock().unlock();
-        }
-
-        try {
-            this.lock.writeLock().lock();
-            if (token.equals(this.unprocessedRequests.get(remoteSocket, messageID))) {
-                this.unprocessedRequests.remove(remoteSocket, messageID);
-                LOG.debug("Removed request from \"{}\" from \"unprocessed\" (Message ID: {}, Token: {}).",
-                        new Object[]{remoteSocket, messageID, token});
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+        if (this.unprocessedRequests.remove(remoteSocket, messageID, token)) {
+            LOG.debug("Removed request from \"{}\" from \"unprocessed\" (Message ID: {}, Token: {}).",
+                    new Object[]{remoteSocket, messageID, token});
         }
     }
 
     private void scheduleEmptyAcknowledgement(final InetSocketAddress remoteSocket, final int messageID) {
 
-        try {
-            this.lock.readLock().lock();
-            if (this.scheduledEmptyAcknowledgements.contains(remoteSocket, messageID)) {
-                LOG.debug("Empty ACK was already scheduled (RCPT: \"{}\", message ID: {}", remoteSocket, messageID);
-                return;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        if (this.scheduledEmptyAcknowledgements.contains(remoteSocket, messageID)) {
+            LOG.debug("Empty ACK was already scheduled (RCPT: \"{}\", message ID: {}", remoteSocket, messageID);
+            return;
         }
 
-        try {
-            this.lock.writeLock().lock();
-            if (this.scheduledEmptyAcknowledgements.contains(remoteSocket, messageID)) {
-                LOG.debug("Empty ACK was already scheduled (RCPT: \"{}\", message ID: {}", remoteSocket, messageID);
-                return;
+        // the task is scheduled before it is put into the table, i.e. a concurrent duplicate may cause a second
+        // task which is immediately cancelled then
+        ScheduledFuture future = getExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                removeFromScheduledEmptyAcknowledgements(remoteSocket, messageID);
+                sendEmptyACK(messageID, remoteSocket);
             }
-            //RequestConfirmationTask confirmationTask = new RequestConfirmationTask(ctx, remoteSocket, messageID);
-            ScheduledFuture future = getExecutor().schedule(new Runnable() {
-                @Override
-                public void run() {
-                    removeFromScheduledEmptyAcknowledgements(remoteSocket, messageID);
-                    sendEmptyACK(messageID, remoteSocket);
-                }
-            }, EMPTY_ACK_DELAY, TimeUnit.MILLISECONDS);
-            this.scheduledEmptyAcknowledgements.put(remoteSocket, messageID, future);
+        }, EMPTY_ACK_DELAY, TimeUnit.MILLISECONDS);
+
+        if (this.scheduledEmptyAcknowledgements.putIfAbsent(remoteSocket, messageID, future) != null) {
+            future.cancel(false);
+            LOG.debug("Empty ACK was already scheduled (RCPT: \"{}\", message ID: {}", remoteSocket, messageID);
+        } else {
             LOG.debug("Scheduled empty ACK (RCPT: \"{}\", message ID: {}", remoteSocket, messageID);
-        } finally {
-            this.lock.writeLock().unlock();
         }
     }
 
     private boolean cancelEmptyAcknowledgement(InetSocketAddress remoteSocket, int messageID) {
-        try {
-            this.lock.readLock().lock();
-            ScheduledFuture future = this.scheduledEmptyAcknowledgements.get(remoteSocket, messageID);
-            if (future == null || future.isDone()) {
-                return false;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        ScheduledFuture future = this.scheduledEmptyAcknowledgements.get(remoteSocket, messageID);
+        if (future == null || future.isDone()) {
+            return false;
         }
 
-        ScheduledFuture future = removeFromScheduledEmptyAcknowledgements(remoteSocket, messageID);
+        future = removeFromScheduledEmptyAcknowledgements(remoteSocket, messageID);
         if (future != null && !future.isDone()) {
             if (future.cancel(false)) {
                 LOG.info("Canceled empty ACK to \"{}\" (message ID: {})", remoteSocket, messageID);
@@ -251,25 +199,14 @@ public class ServerInboundReliabilityHandler extends AbstractCoapChannelHandler
 
 
     private ScheduledFuture removeFromScheduledEmptyAcknowledgements(InetSocketAddress remoteSocket, int messageID) {
-        try {
-            this.lock.writeLock().lock();
-            ScheduledFuture future = this.scheduledEmptyAcknowledgements.remove(remoteSocket, messageID);
-            if (LOG.isDebugEnabled() && future != null) {
-                LOG.debug("Removed scheduled empty ACK (Remaining: {})", this.scheduledEmptyAcknowledgements.size());
-            }
-            return future;
-        } finally {
-            this.lock.writeLock().unlock();
+        ScheduledFuture future = this.scheduledEmptyAcknowledgements.remove(remoteSocket, messageID);
+        if (LOG.isDebugEnabled() && future != null) {
+            LOG.debug("Removed scheduled empty ACK (Remaining: {})", this.scheduledEmptyAcknowledgements.size());
         }
+        return future;
     }
 
     private ScheduledFuture getFromScheduledEmptyAcknowledgements(InetSocketAddress remoteSocket, int messageID) {
-        try {
-            this.lock.readLock().lock();
-            return this.scheduledEmptyAcknowledgements.get(remoteSocket, messageID);
-        } finally {
-            this.lock.readLock().unlock();
-        }
+        return this.scheduledEmptyAcknowledgements.get(remoteSocket, messageID);
     }
 }
-
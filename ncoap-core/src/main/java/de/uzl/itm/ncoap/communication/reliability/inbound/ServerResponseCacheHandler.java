@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.reliability.inbound;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.communication.reliability.outbound.MessageIDFactory;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The {@link ServerResponseCacheHandler} is the {@link org.jboss.netty.channel.ChannelHandler} to deal with
+ * duplicate inbound {@link de.uzl.itm.ncoap.message.CoapRequest}s whose responses were already sent (see RFC 7252,
+ * section 4.5). It is located between the {@link org.jboss.netty.handler.execution.ExecutionHandler} and the
+ * {@link de.uzl.itm.ncoap.communication.codec.CoapMessageEncoder}, i.e. it deals with encoded messages only.</p>
+ *
+ * <p>The encoded messages sent in reply to a request are cached with the remote socket and the message ID of the
+ * request as key. These are</p>
+ * <ul>
+ *     <li>acknowledgements (empty or with piggy-backed response) for confirmable requests and</li>
+ *     <li>non-confirmable responses for non-confirmable requests.</li>
+ * </ul>
+ *
+ * <p>If a duplicate of the request arrives later on, the cached bytes are replayed without decoding the duplicate,
+ * i.e. the duplicate is never processed by the addressed
+ * {@link de.uzl.itm.ncoap.application.server.resource.Webresource} again. Duplicates arriving before the response
+ * was sent are handled by the {@link ServerInboundReliabilityHandler}.</p>
+ *
+ * <p>The cache is bounded by size (least recently written entries are evicted first) and by age
+ * ({@link MessageIDFactory#EXCHANGE_LIFETIME}).</p>
+ *
+ * @author Oliver Kleine
+ */
+public class ServerResponseCacheHandler extends SimpleChannelHandler {
+
+    /**
+     * The default maximum number of cached responses (10000)
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private static Logger LOG = LoggerFactory.getLogger(ServerResponseCacheHandler.class.getName());
+
+    // encoded messages sent in reply to requests (key: remote socket and message ID of the request)
+    private Cache<CacheKey, byte[]> responses;
+
+    // message IDs of non-confirmable requests awaiting a response (key: remote socket and token of the request)
+    private Cache<CacheKey, Integer> nonRequests;
+
+
+    /**
+     * Creates a new instance of {@link ServerResponseCacheHandler} with a maximum size of
+     * {@link #DEFAULT_MAXIMUM_SIZE} and the {@link MessageIDFactory#EXCHANGE_LIFETIME} as maximum age.
+     */
+    public ServerResponseCacheHandler() {
+        this(DEFAULT_MAXIMUM_SIZE, TimeUnit.SECONDS.toMillis(MessageIDFactory.EXCHANGE_LIFETIME));
+    }
+
+    /**
+     * Creates a new instance of {@link ServerResponseCacheHandler}
+     *
+     * @param maximumSize the maximum number of cached responses
+     * @param lifetimeMillis the maximum age of cached responses in milliseconds
+     */
+    public ServerResponseCacheHandler(int maximumSize, long lifetimeMillis) {
+        this.responses = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(lifetimeMillis, TimeUnit.MILLISECONDS)
+                .build();
+
+        this.nonRequests = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(lifetimeMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent me) throws Exception {
+        if (!(me.getMessage() instanceof ChannelBuffer) || ((ChannelBuffer) me.getMessage()).readableBytes() < 4) {
+            ctx.sendUpstream(me);
+            return;
+        }
+
+        ChannelBuffer buffer = (ChannelBuffer) me.getMessage();
+        int index = buffer.readerIndex();
+        int messageType = (buffer.getUnsignedByte(index) >>> 4) & 0x03;
+        int tokenLength = buffer.getUnsignedByte(index) & 0x0F;
+        int messageCode = buffer.getUnsignedByte(index + 1);
+
+        if (MessageCode.isRequest(messageCode) && (messageType == MessageType.CON || messageType == MessageType.NON)) {
+            InetSocketAddress remoteSocket = (InetSocketAddress) me.getRemoteAddress();
+            int messageID = buffer.getUnsignedShort(index + 2);
+
+            byte[] response = this.responses.getIfPresent(new CacheKey(remoteSocket, messageID));
+            if (response != null) {
+                LOG.info("Duplicate request from \"{}\" (Message ID: {}). Replay cached response.", remoteSocket,
+                        messageID);
+                me.getFuture().setSuccess();
+                Channels.write(ctx, Channels.future(ctx.getChannel()), ChannelBuffers.wrappedBuffer(response),
+                        remoteSocket);
+                return;
+            }
+
+            if (messageType == MessageType.NON && tokenLength <= Token.MAX_LENGTH &&
+                    buffer.readableBytes() >= 4 + tokenLength) {
+
+                Token token = readToken(buffer, index, tokenLength);
+                this.nonRequests.put(new CacheKey(remoteSocket, token), messageID);
+            }
+        }
+
+        ctx.sendUpstream(me);
+    }
+
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent me) throws Exception {
+        if (me.getMessage() instanceof ChannelBuffer && ((ChannelBuffer) me.getMessage()).readableBytes() >= 4) {
+            ChannelBuffer buffer = (ChannelBuffer) me.getMessage();
+            int index = buffer.readerIndex();
+            int messageType = (buffer.getUnsignedByte(index) >>> 4) & 0x03;
+            int tokenLength = buffer.getUnsignedByte(index) & 0x0F;
+            int messageCode = buffer.getUnsignedByte(index + 1);
+            InetSocketAddress remoteSocket = (InetSocketAddress) me.getRemoteAddress();
+
+            if (messageType == MessageType.ACK &&
+                    (messageCode == MessageCode.EMPTY || MessageCode.isResponse(messageCode))) {
+
+                // empty ACK or piggy-backed response (same message ID as the request)
+                int messageID = buffer.getUnsignedShort(index + 2);
+                this.responses.put(new CacheKey(remoteSocket, messageID), readBytes(buffer));
+            } else if (messageType == MessageType.NON && MessageCode.isResponse(messageCode) &&
+                    tokenLength <= Token.MAX_LENGTH && buffer.readableBytes() >= 4 + tokenLength) {
+
+                // response to a non-confirmable request (different message ID than the request)
+                CacheKey requestKey = new CacheKey(remoteSocket, readToken(buffer, index, tokenLength));
+                Integer messageID = this.nonRequests.getIfPresent(requestKey);
+                if (messageID != null) {
+                    this.nonRequests.invalidate(requestKey);
+                    this.responses.put(new CacheKey(remoteSocket, messageID), readBytes(buffer));
+                }
+            }
+        }
+
+        ctx.sendDownstream(me);
+    }
+
+
+    /**
+     * Returns the number of cached responses (including expired responses that were not yet evicted)
+     *
+     * @return the number of cached responses
+     */
+    public long getSize() {
+        return this.responses.size();
+    }
+
+
+    private static Token readToken(ChannelBuffer buffer, int index, int tokenLength) {
+        long value = 0;
+        for (int i = 0; i < tokenLength; i++) {
+            value = (value << 8) | buffer.getUnsignedByte(index + 4 + i);
+        }
+        return Token.valueOf(value, tokenLength);
+    }
+
+
+    private static byte[] readBytes(ChannelBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return bytes;
+    }
+
+
+    private static class CacheKey {
+
+        private final InetSocketAddress remoteSocket;
+        private final Object key;
+
+        private CacheKey(InetSocketAddress remoteSocket, Object key) {
+            this.remoteSocket = remoteSocket;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.remoteSocket.hashCode() + this.key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) object;
+            return this.remoteSocket.equals(other.remoteSocket) && this.key.equals(other.key);
+        }
+    }
+}
@@ -24,15 +24,25 @@
  */
 package de.uzl.itm.ncoap.communication.reliability.outbound;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.uzl.itm.ncoap.communication.AbstractCoapChannelHandler;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.message.CoapMessage;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.Observer;
 import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -61,8 +71,30 @@ public abstract class AbstractOutboundReliabilityHandler extends AbstractCoapCha
      */
     public static final double ACK_RANDOM_FACTOR = 1.5;
 
+    /**
+     * The maximum number of milliseconds (93000) from the first transmission of an outgoing
+     * {@link de.uzl.itm.ncoap.message.CoapMessage} with {@link de.uzl.itm.ncoap.message.MessageType#CON} until
+     * the sender gives up to wait for an acknowledgement (see RFC 7252, section 4.8.2)
+     */
+    public static final int MAX_TRANSMIT_WAIT_MILLIS =
+            (int) (ACK_TIMEOUT_MILLIS * ((1 << (MAX_RETRANSMISSIONS + 1)) - 1) * ACK_RANDOM_FACTOR);
+
+    /**
+     * The tick duration (in milliseconds) of the default retransmission timer (see
+     * {@link #getDefaultRetransmissionTimer()})
+     */
+    public static final int RETRANSMISSION_TIMER_TICK_MILLIS = 50;
+
+    /**
+     * The number of ticks per round of the default retransmission timer (see
+     * {@link #getDefaultRetransmissionTimer()})
+     */
+    public static final int RETRANSMISSION_TIMER_TICKS_PER_WHEEL = 512;
+
     private static final Random RANDOM = new Random(System.currentTimeMillis());
 
+    private static Timer defaultRetransmissionTimer;
+
     /**
      * Provides a random(!) delay for the given retransmission number according to the CoAP specification
      * @param retransmission the retransmission number (e.g. 2 for the 2nd retransmission)
@@ -82,17 +114,54 @@ public abstract class AbstractOutboundReliabilityHandler extends AbstractCoapCha
         return delays;
     }
 
+    /**
+     * <p>Returns the {@link Timer} shared by all instances of {@link AbstractOutboundReliabilityHandler} that were
+     * not given a dedicated {@link Timer} on construction.</p>
+     *
+     * <p>The returned timer is a {@link HashedWheelTimer}, i.e. scheduling and cancellation of retransmissions are
+     * O(1) operations and there is a single (daemon) tick thread for all retransmissions. That thread only hands
+     * expired retransmissions over to the executor of the respective handler.</p>
+     *
+     * @return the {@link Timer} shared by all instances of {@link AbstractOutboundReliabilityHandler} that were
+     * not given a dedicated {@link Timer} on construction.
+     */
+    public static synchronized Timer getDefaultRetransmissionTimer() {
+        if (defaultRetransmissionTimer == null) {
+            ThreadFactory threadFactory =
+                    new ThreadFactoryBuilder().setNameFormat("nCoAP Retransmission Timer").setDaemon(true).build();
+            defaultRetransmissionTimer = new HashedWheelTimer(threadFactory, RETRANSMISSION_TIMER_TICK_MILLIS,
+                    TimeUnit.MILLISECONDS, RETRANSMISSION_TIMER_TICKS_PER_WHEEL);
+        }
+        return defaultRetransmissionTimer;
+    }
+
     private MessageIDFactory messageIDFactory;
+    private Timer retransmissionTimer;
 
     /**
      * Creates a new instance of {@link de.uzl.itm.ncoap.communication.reliability.outbound.AbstractOutboundReliabilityHandler}
+     * using the default retransmission timer (see {@link #getDefaultRetransmissionTimer()}).
+     *
      * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to process the tasks to ensure
      *                 reliable message transfer
      */
     public AbstractOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory) {
+        this(executor, factory, getDefaultRetransmissionTimer());
+    }
+
+    /**
+     * Creates a new instance of {@link de.uzl.itm.ncoap.communication.reliability.outbound.AbstractOutboundReliabilityHandler}
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to process the tasks to ensure
+     *                 reliable message transfer
+     * @param retransmissionTimer the {@link Timer} to schedule retransmissions of confirmable messages
+     */
+    public AbstractOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory,
+            Timer retransmissionTimer) {
+
         super(executor);
         this.messageIDFactory = factory;
         this.messageIDFactory.addObserver(this);
+        this.retransmissionTimer = retransmissionTimer;
     }
 
 
@@ -106,4 +175,164 @@ public abstract class AbstractOutboundReliabilityHandler extends AbstractCoapCha
         }
         return messageID;
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Assigns message IDs to the given {@link CoapMessage}s (to the same remote endpoint) within a single critical
+     * section of the {@link MessageIDFactory} (see
+     * {@link MessageIDFactory#getNextMessageIDs(InetSocketAddress, Token[])}).
+     *
+     * @param coapMessages the {@link CoapMessage}s to assign message IDs to
+     * @param remoteSocket the recipient of the given messages
+     *
+     * @return the assigned message IDs in the order of the given messages (or
+     * {@link CoapMessage#UNDEFINED_MESSAGE_ID} for messages that no message ID was available for)
+     */
+    protected int[] assignMessageIDs(List<CoapMessage> coapMessages, InetSocketAddress remoteSocket) {
+        Token[] tokens = new Token[coapMessages.size()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = coapMessages.get(i).getToken();
+        }
+
+        int[] messageIDs = this.messageIDFactory.getNextMessageIDs(remoteSocket, tokens);
+        for (int i = 0; i < messageIDs.length; i++) {
+            if (messageIDs[i] != CoapMessage.UNDEFINED_MESSAGE_ID) {
+                coapMessages.get(i).setMessageID(messageIDs[i]);
+            }
+        }
+        LOG.debug("Assigned {} message IDs (Remote Socket: {}).", messageIDs.length, remoteSocket);
+        return messageIDs;
+    }
+
+
+    /**
+     * <p>A {@link Retransmission} is the single entry in the retransmission timer per outbound confirmable
+     * message. After each retransmission it re-arms itself with the (randomized) delay for the next retransmission
+     * (see {@link #provideDelay(int)}) until {@link #MAX_RETRANSMISSIONS} is reached or it was
+     * cancelled, e.g. due to a received acknowledgement. After the last retransmission it re-arms itself once more
+     * to wait for an acknowledgement of that retransmission and calls {@link #expire()} if there was none.</p>
+     *
+     * <p>Retransmissions are executed by the executor of this handler, i.e. not by the tick thread of the timer.</p>
+     */
+    protected abstract class Retransmission implements TimerTask {
+
+        private final InetSocketAddress remoteSocket;
+        private volatile int retransmissionNo;
+        private volatile Timeout timeout;
+        private volatile boolean cancelled;
+
+        /**
+         * Creates a new instance of {@link Retransmission}
+         *
+         * @param remoteSocket the remote socket the message is to be retransmitted to
+         */
+        protected Retransmission(InetSocketAddress remoteSocket) {
+            this.remoteSocket = remoteSocket;
+        }
+
+        /**
+         * Returns the remote socket the message is to be retransmitted to
+         *
+         * @return the remote socket the message is to be retransmitted to
+         */
+        public InetSocketAddress getRemoteSocket() {
+            return this.remoteSocket;
+        }
+
+        /**
+         * Schedules the first retransmission
+         */
+        public void start() {
+            schedule(1);
+        }
+
+        private void schedule(int retransmissionNo) {
+            this.retransmissionNo = retransmissionNo;
+            long delay = provideDelay(retransmissionNo);
+            this.timeout = retransmissionTimer.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+            if (this.cancelled) {
+                // cancelled concurrently
+                this.timeout.cancel();
+            } else {
+                LOG.debug("Scheduled retransmission #{} with delay {} ms (Remote Socket: {}).",
+                        new Object[]{retransmissionNo, delay, remoteSocket});
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (timeout.isCancelled() || this.cancelled) {
+                return;
+            }
+
+            try {
+                getExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        int retransmissionNo = Retransmission.this.retransmissionNo;
+                        if (cancelled) {
+                            return;
+                        }
+                        if (retransmissionNo > MAX_RETRANSMISSIONS) {
+                            expire();
+                        } else if (retransmit(retransmissionNo)) {
+                            schedule(retransmissionNo + 1);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                LOG.debug("Retransmission to \"{}\" rejected (executor shut down).", remoteSocket);
+            }
+        }
+
+        /**
+         * Cancels all pending retransmissions
+         *
+         * @return <code>true</code> if there was a pending retransmission that was cancelled or <code>false</code>
+         * otherwise
+         */
+        public boolean cancel() {
+            this.cancelled = true;
+            Timeout timeout = this.timeout;
+            if (timeout == null || timeout.isExpired()) {
+                return false;
+            } else {
+                timeout.cancel();
+                return true;
+            }
+        }
+
+        /**
+         * Returns the delay (in milliseconds) of the given retransmission relative to the previous transmission.
+         * The default is the randomized delay according to the CoAP specification (see
+         * {@link #provideRetransmissionDelay(int)}). The delay for <code>{@link #MAX_RETRANSMISSIONS} + 1</code>
+         * is the time to wait for an acknowledgement of the last retransmission.
+         *
+         * @param retransmissionNo the number of the retransmission (starting with 1)
+         *
+         * @return the delay (in milliseconds) of the given retransmission relative to the previous transmission
+         */
+        protected long provideDelay(int retransmissionNo) {
+            return provideRetransmissionDelay(retransmissionNo);
+        }
+
+        /**
+         * Retransmits the message
+         *
+         * @param retransmissionNo the number of the retransmission (starting with 1)
+         *
+         * @return <code>true</code> if the message was retransmitted, i.e. further retransmissions are to be
+         * scheduled (if {@link #MAX_RETRANSMISSIONS} is not yet reached) or <code>false</code> otherwise
+         */
+        protected abstract boolean retransmit(int retransmissionNo);
+
+        /**
+         * Invoked if there was no acknowledgement for the last retransmission, i.e. the sender gives up to wait
+         * for an acknowledgement. The message ID remains allocated until it is released by the
+         * {@link MessageIDFactory}. The default implementation does nothing.
+         */
+        protected void expire() {
+            //nothing to do...
+        }
+    }
+}
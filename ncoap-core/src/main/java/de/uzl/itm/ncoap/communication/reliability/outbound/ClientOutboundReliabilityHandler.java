@@ -24,35 +24,49 @@
  */
 package de.uzl.itm.ncoap.communication.reliability.outbound;
 
-import com.google.common.collect.*;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
+import de.uzl.itm.ncoap.communication.OutboundMessageBatch;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.*;
 import de.uzl.itm.ncoap.message.*;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Observable;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
  * This is the handler to deal with message transmissions (e.g. transmissions of confirmable messages)
  * for CoAP Clients.
  *
+ * The retransmission delays of confirmable messages are provided per remote endpoint by the
+ * {@link CongestionController}, which is fed with the round trip times measured by this handler. Furthermore, this
+ * handler releases the outstanding exchanges (see {@link CongestionController#release(InetSocketAddress, Token)})
+ * upon acknowledgement, reset or if there was no acknowledgement within
+ * {@link AbstractOutboundReliabilityHandler#MAX_TRANSMIT_WAIT_MILLIS}, i.e. not only when the message ID is released
+ * (after {@link MessageIDFactory#EXCHANGE_LIFETIME} seconds).
+ *
  * @author Oliver Kleine
  */
 public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilityHandler {
 
     private static Logger LOG = LoggerFactory.getLogger(ClientOutboundReliabilityHandler.class.getName());
 
-    private Table<InetSocketAddress, Integer, TransmissionTask[]> transmissions;
-    private ReentrantReadWriteLock lock;
+    private ExchangeTable<Integer, Transmission> transmissions;
+    private CongestionController congestionController;
 
     /**
      * Creates a new instance of {@link de.uzl.itm.ncoap.communication.reliability.outbound.ClientOutboundReliabilityHandler}
@@ -60,9 +74,50 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
      *                 reliable message transfer
      */
     public ClientOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory) {
-        super(executor, factory);
-        this.transmissions = HashBasedTable.create();
-        this.lock = new ReentrantReadWriteLock();
+        this(executor, factory, new CongestionController(executor));
+    }
+
+    /**
+     * Creates a new instance of {@link de.uzl.itm.ncoap.communication.reliability.outbound.ClientOutboundReliabilityHandler}
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to process the tasks to ensure
+     *                 reliable message transfer
+     * @param retransmissionTimer the {@link Timer} to schedule retransmissions of confirmable messages
+     */
+    public ClientOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory,
+            Timer retransmissionTimer) {
+
+        this(executor, factory, new CongestionController(executor), retransmissionTimer);
+    }
+
+    /**
+     * Creates a new instance of {@link de.uzl.itm.ncoap.communication.reliability.outbound.ClientOutboundReliabilityHandler}
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to process the tasks to ensure
+     *                 reliable message transfer
+     * @param congestionController the {@link CongestionController} to provide the retransmission delays (to be
+     *                             shared with the {@link de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher}
+     *                             of the same pipeline)
+     */
+    public ClientOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory,
+            CongestionController congestionController) {
+
+        this(executor, factory, congestionController, getDefaultRetransmissionTimer());
+    }
+
+    /**
+     * Creates a new instance of {@link de.uzl.itm.ncoap.communication.reliability.outbound.ClientOutboundReliabilityHandler}
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to process the tasks to ensure
+     *                 reliable message transfer
+     * @param congestionController the {@link CongestionController} to provide the retransmission delays (to be
+     *                             shared with the {@link de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher}
+     *                             of the same pipeline)
+     * @param retransmissionTimer the {@link Timer} to schedule retransmissions of confirmable messages
+     */
+    public ClientOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory,
+            CongestionController congestionController, Timer retransmissionTimer) {
+
+        super(executor, factory, retransmissionTimer);
+        this.transmissions = new ExchangeTable<>();
+        this.congestionController = congestionController;
     }
 
 
@@ -89,13 +144,62 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
     }
 
 
+    /**
+     * Assigns the message IDs to the requests (and PINGs) of the given {@link OutboundMessageBatch} in bulk, i.e.
+     * with a single critical section of the {@link MessageIDFactory} per remote endpoint. Messages that no message
+     * ID was available for are removed from the batch.
+     */
+    @Override
+    protected boolean handleOutboundMessageBatch(OutboundMessageBatch batch) {
+        Map<InetSocketAddress, List<CoapMessage>> messages = new HashMap<>();
+        for (OutboundMessageBatch.Entry entry : batch) {
+            CoapMessage coapMessage = entry.getCoapMessage();
+            if (coapMessage instanceof CoapRequest || coapMessage.isPing()) {
+                List<CoapMessage> list = messages.get(entry.getRemoteSocket());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    messages.put(entry.getRemoteSocket(), list);
+                }
+                list.add(coapMessage);
+            }
+        }
+
+        Set<CoapMessage> rejected = Collections.newSetFromMap(new IdentityHashMap<CoapMessage, Boolean>());
+        for (Map.Entry<InetSocketAddress, List<CoapMessage>> group : messages.entrySet()) {
+            InetSocketAddress remoteSocket = group.getKey();
+            int[] messageIDs = assignMessageIDs(group.getValue(), remoteSocket);
+            for (int i = 0; i < messageIDs.length; i++) {
+                CoapMessage coapMessage = group.getValue().get(i);
+                handleOutboundCoapMessage2(coapMessage, remoteSocket, messageIDs[i]);
+                if (messageIDs[i] == CoapMessage.UNDEFINED_MESSAGE_ID) {
+                    rejected.add(coapMessage);
+                }
+            }
+        }
+
+        Iterator<OutboundMessageBatch.Entry> entries = batch.iterator();
+        while (entries.hasNext()) {
+            OutboundMessageBatch.Entry entry = entries.next();
+            if (rejected.contains(entry.getCoapMessage())) {
+                entry.getFuture().cancel();
+                entries.remove();
+            }
+        }
+        return !batch.isEmpty();
+    }
+
+
     private void handleOutboundCoapMessage2(CoapMessage coapRequest, InetSocketAddress remoteSocket) {
         LOG.debug("HANDLE OUTBOUND MESSAGE: {}", coapRequest);
+        handleOutboundCoapMessage2(coapRequest, remoteSocket, assignMessageID(coapRequest, remoteSocket));
+    }
+
 
-        int messageID = assignMessageID(coapRequest, remoteSocket);
+    private void handleOutboundCoapMessage2(CoapMessage coapRequest, InetSocketAddress remoteSocket, int messageID) {
         Token token = coapRequest.getToken();
         if (messageID == CoapMessage.UNDEFINED_MESSAGE_ID) {
             LOG.info("No message ID available for \"{}\" (ID pool exhausted).", remoteSocket);
+            this.congestionController.release(remoteSocket, token);
             triggerEvent(new NoMessageIDAvailableEvent(remoteSocket, token), false);
         } else {
             LOG.info("Set message ID to {}", messageID);
@@ -114,10 +218,14 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
             // incoming PINGs are handled by the inbound reliability handler
             return true;
         } else {
-            Token token = stopRetransmissions(remoteSocket, messageID);
-            if (token == null) {
+            Transmission transmission = stopRetransmissions(remoteSocket, messageID);
+            if (transmission == null) {
                 return true;
-            } else if (messageType == MessageType.ACK) {
+            }
+
+            completeTransmission(transmission, true);
+            Token token = transmission.getToken();
+            if (messageType == MessageType.ACK) {
                 LOG.info("Received empty ACK from \"{}\" for token {} (Message ID: {}).",
                     new Object[]{remoteSocket, messageID, token});
                 triggerEvent(new EmptyAckReceivedEvent(remoteSocket, messageID, token), false);
@@ -141,7 +249,9 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
 
         if (messageType == MessageType.ACK) {
             int messageID = coapResponse.getMessageID();
-            if (stopRetransmissions(remoteSocket, messageID) != null) {
+            Transmission transmission = stopRetransmissions(remoteSocket, messageID);
+            if (transmission != null) {
+                completeTransmission(transmission, true);
                 return true;
             } else {
                 LOG.warn("Received ACK from \"{}\" for unknown message ID {}", remoteSocket, messageID);
@@ -153,56 +263,40 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
     }
 
 
-    private Token stopRetransmissions(InetSocketAddress remoteSocket, int messageID) {
-        try {
-            this.lock.writeLock().lock();
-            TransmissionTask[] tasks = this.transmissions.remove(remoteSocket, messageID);
-            if (tasks == null) {
-                return null;
-            } else {
-                for (int i = 0; i < tasks.length; i++) {
-                    if (tasks[i].cancel()) {
-                        LOG.debug("Cancelled transmission #{} (Remote Socket: {}, Message ID: {})",
-                                new Object[]{i + 1, remoteSocket, messageID});
-                    } else {
-                        LOG.debug("Could not cancel transmission #{} (Remote Socket: {}, Message ID: {})",
-                                new Object[]{i + 1, remoteSocket, messageID});
-                    }
-                }
-                return tasks[0].getToken();
-            }
-        } finally {
-            this.lock.writeLock().unlock();
+    private Transmission stopRetransmissions(InetSocketAddress remoteSocket, int messageID) {
+        Transmission transmission = this.transmissions.remove(remoteSocket, messageID);
+
+        if (transmission != null && transmission.cancel()) {
+            LOG.debug("Cancelled retransmission(s) (Remote Socket: {}, Message ID: {})", remoteSocket, messageID);
         }
+        return transmission;
     }
 
 
-    private void scheduleTransmissions(CoapMessage coapMessage, InetSocketAddress remoteSocket) {
-        int messageType = coapMessage.getMessageType();
-        TransmissionTask[] tasks;
-        if(messageType == MessageType.CON) {
-            tasks = new TransmissionTask[5];
-            long[] delays = provideTransmissionDelays();
-            for (int i = 0; i < 5; i++) {
-                tasks[i] = new TransmissionTask(coapMessage, remoteSocket, i);
-                if(i > 0) {
-                    tasks[i].setFuture(this.scheduleTask(tasks[i], delays[i], TimeUnit.MILLISECONDS));
-                    LOG.debug("Scheduled transmission #{} with delay {} ms (Remote Socket: {}, message ID: {}).",
-                            new Object[]{i + 1, delays[i], remoteSocket, coapMessage.getMessageID()}
-                    );
-                }
+    /**
+     * Feeds the round trip time of the given (acknowledged or reset) {@link Transmission} into the RTO estimation
+     * and releases the exchange, i.e. the next queued message to the same remote endpoint is sent.
+     */
+    private void completeTransmission(Transmission transmission, boolean answered) {
+        if (transmission.isConfirmable()) {
+            InetSocketAddress remoteSocket = transmission.getRemoteSocket();
+            if (answered) {
+                this.congestionController.updateRTO(remoteSocket, transmission.getRoundTripTime(),
+                        transmission.getRetransmissions());
             }
-        } else {
-            tasks = new TransmissionTask[1];
-            tasks[0] = new TransmissionTask(coapMessage, remoteSocket, 0);
-            //tasks[0].setFuture(this.scheduleTask(tasks[0], 0, TimeUnit.MILLISECONDS));
+            this.congestionController.release(remoteSocket, transmission.getToken());
         }
+    }
+
 
-        try {
-            this.lock.writeLock().lock();
-            this.transmissions.put(remoteSocket, coapMessage.getMessageID(), tasks);
-        } finally {
-            this.lock.writeLock().unlock();
+    private void scheduleTransmissions(CoapMessage coapMessage, InetSocketAddress remoteSocket) {
+        Transmission transmission = new Transmission(coapMessage, remoteSocket);
+
+        this.transmissions.put(remoteSocket, coapMessage.getMessageID(), transmission);
+
+        // the first transmission is the outbound message itself
+        if (coapMessage.getMessageType() == MessageType.CON) {
+            transmission.start();
         }
     }
 
@@ -219,8 +313,10 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
             int messageID = ((MessageIDFactory.MessageIDRelease) releasedID).getMessageID();
             Token token = ((MessageIDFactory.MessageIDRelease) releasedID).getToken();
 
-            if (stopRetransmissions(remoteSocket, messageID) != null) {
+            Transmission transmission = stopRetransmissions(remoteSocket, messageID);
+            if (transmission != null) {
                 // there was an ongoing outbound transfer (i.e. CON with no ACK or NON with no response)
+                completeTransmission(transmission, false);
                 LOG.warn("Transmission timed out (remote socket: \"{}\", token: {}, message ID: {})",
                         new Object[]{remoteSocket, token, messageID});
                 triggerEvent(new TransmissionTimeoutEvent(remoteSocket, messageID, token), true);
@@ -233,22 +329,34 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
         }
     }
 
-    private class TransmissionTask implements Runnable {
+    private class Transmission extends Retransmission {
 
         private CoapMessage coapMessage;
-        private InetSocketAddress remoteSocket;
-        private int transmissionNumber;
-        private ScheduledFuture future;
+        private final long startTime;
+        private volatile int retransmissions;
+        private long[] delays;
 
-        public TransmissionTask(CoapMessage coapMessage, InetSocketAddress remoteSocket, int transmissionNumber) {
+        public Transmission(CoapMessage coapMessage, InetSocketAddress remoteSocket) {
+            super(remoteSocket);
             this.coapMessage = coapMessage;
-            this.remoteSocket = remoteSocket;
-            this.transmissionNumber = transmissionNumber;
+            this.startTime = System.nanoTime();
+        }
+
+        @Override
+        public void start() {
+            this.delays = congestionController.provideRetransmissionDelays(getRemoteSocket());
+            super.start();
         }
 
         @Override
-        public void run() {
+        protected long provideDelay(int retransmissionNo) {
+            return this.delays[retransmissionNo - 1];
+        }
 
+        @Override
+        protected boolean retransmit(final int retransmissionNo) {
+            this.retransmissions = retransmissionNo;
+            final InetSocketAddress remoteSocket = getRemoteSocket();
             ChannelFuture channelFuture = sendCoapMessage(coapMessage, remoteSocket);
             channelFuture.addListener(new ChannelFutureListener() {
                 @Override
@@ -257,26 +365,38 @@ public class ClientOutboundReliabilityHandler extends AbstractOutboundReliabilit
                     Token token = coapMessage.getToken();
                     if (future.isSuccess()) {
                         triggerEvent(new MessageRetransmittedEvent(remoteSocket, messageID, token), false);
-                        LOG.debug("Finished transmission #{}: {}", transmissionNumber, coapMessage);
+                        LOG.debug("Finished retransmission #{}: {}", retransmissionNo, coapMessage);
                     } else {
                         String desc = "Transmission failed (\"" + future.getCause().getMessage() + "\"";
                         triggerEvent(new MiscellaneousErrorEvent(remoteSocket, messageID, token, desc), false);
                     }
                 }
             });
+            return true;
         }
 
-        public void setFuture(ScheduledFuture future) {
-            this.future = future;
+        @Override
+        protected void expire() {
+            // give up to wait for an ACK, i.e. start the next queued exchange with the remote endpoint
+            LOG.info("No ACK for last retransmission (remote socket: \"{}\", token: {}).", getRemoteSocket(),
+                    getToken());
+            congestionController.release(getRemoteSocket(), getToken());
         }
 
         public Token getToken() {
             return this.coapMessage.getToken();
         }
 
-        public boolean cancel() {
-            return this.future != null && this.future.cancel(true);
+        public boolean isConfirmable() {
+            return this.coapMessage.getMessageType() == MessageType.CON;
+        }
+
+        public int getRetransmissions() {
+            return this.retransmissions;
         }
 
+        public long getRoundTripTime() {
+            return (System.nanoTime() - this.startTime) / 1000000;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,474 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.reliability.outbound;
+
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The {@link CongestionController} keeps the congestion control state per remote endpoint (peer) of a client,
+ * i.e. it is shared by the {@link de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher} and the
+ * {@link ClientOutboundReliabilityHandler} of the same pipeline.</p>
+ *
+ * <p>It enforces NSTART, i.e. the maximum number of outstanding confirmable exchanges per peer (see RFC 7252,
+ * section 4.7). Further confirmable messages are queued and sent (by the executor, i.e. not by the thread that
+ * released the exchange) when an outstanding exchange was acknowledged, reset or timed out (i.e. after
+ * {@link AbstractOutboundReliabilityHandler#MAX_TRANSMIT_WAIT_MILLIS} at the latest).</p>
+ *
+ * <p>Furthermore, it estimates the retransmission timeout (RTO) per peer from the measured round trip times
+ * according to CoCoA (draft-ietf-core-cocoa), i.e. with a strong estimator (RTT of exchanges without
+ * retransmission) and a weak estimator (RTT measured from the first transmission of exchanges with at most 2
+ * retransmissions). The RTO is limited to {@link #MAX_RTO_MILLIS}. The retransmission delays are derived from the
+ * RTO using a variable backoff factor.</p>
+ *
+ * <p>The state of peers without exchanges for {@link #PEER_LIFETIME_MILLIS} is removed by a periodic sweep (every
+ * {@link #SWEEP_INTERVAL_MILLIS} milliseconds).</p>
+ *
+ * @author Oliver Kleine
+ */
+public class CongestionController {
+
+    private static Logger LOG = LoggerFactory.getLogger(CongestionController.class.getName());
+
+    /**
+     * The default maximum number of outstanding confirmable exchanges per peer (1)
+     */
+    public static final int DEFAULT_NSTART = 1;
+
+    /**
+     * The initial RTO (in milliseconds) for peers without RTT measurements (2000)
+     */
+    public static final long INITIAL_RTO_MILLIS = AbstractOutboundReliabilityHandler.ACK_TIMEOUT_MILLIS;
+
+    /**
+     * The upper bound of the RTO (in milliseconds) of a peer (60000, see RFC 6298)
+     */
+    public static final long MAX_RTO_MILLIS = 60000;
+
+    /**
+     * The number of milliseconds (247000) the state of a peer is kept after its last exchange, i.e. the same as the
+     * message IDs (see {@link MessageIDFactory#EXCHANGE_LIFETIME})
+     */
+    public static final long PEER_LIFETIME_MILLIS = TimeUnit.SECONDS.toMillis(MessageIDFactory.EXCHANGE_LIFETIME);
+
+    /**
+     * The number of milliseconds (10000) between two sweeps to remove the state of idle peers
+     */
+    public static final int SWEEP_INTERVAL_MILLIS = 10000;
+
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+
+    private static final Random RANDOM = new Random(System.currentTimeMillis());
+
+    private final ScheduledExecutorService executor;
+    private final int nstart;
+    private final long peerLifetimeMillis;
+    private final ConcurrentHashMap<InetSocketAddress, Peer> peers;
+    private final ScheduledFuture sweepFuture;
+
+    /**
+     * Creates a new instance of {@link CongestionController} with {@link #DEFAULT_NSTART}
+     *
+     * @param executor the {@link ScheduledExecutorService} to run the queued transmissions and to remove the state
+     *                 of idle peers
+     */
+    public CongestionController(ScheduledExecutorService executor) {
+        this(executor, DEFAULT_NSTART);
+    }
+
+    /**
+     * Creates a new instance of {@link CongestionController}
+     *
+     * @param executor the {@link ScheduledExecutorService} to run the queued transmissions and to remove the state
+     *                 of idle peers
+     * @param nstart the maximum number of outstanding confirmable exchanges per peer
+     */
+    public CongestionController(ScheduledExecutorService executor, int nstart) {
+        this(executor, nstart, PEER_LIFETIME_MILLIS, SWEEP_INTERVAL_MILLIS);
+    }
+
+
+    CongestionController(ScheduledExecutorService executor, int nstart, long peerLifetimeMillis,
+            long sweepIntervalMillis) {
+
+        if (nstart < 1) {
+            throw new IllegalArgumentException("NSTART must be at least 1 (but was " + nstart + ")");
+        }
+        this.executor = executor;
+        this.nstart = nstart;
+        this.peerLifetimeMillis = peerLifetimeMillis;
+        this.peers = new ConcurrentHashMap<>();
+        this.sweepFuture = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the maximum number of outstanding confirmable exchanges per peer
+     *
+     * @return the maximum number of outstanding confirmable exchanges per peer
+     */
+    public int getNstart() {
+        return this.nstart;
+    }
+
+    /**
+     * Starts a confirmable exchange with the given peer if the number of outstanding exchanges is below NSTART.
+     * Otherwise the given transmission is queued and run (by the executor) as soon as an outstanding exchange was
+     * released (see {@link #release(InetSocketAddress, Token)}). Then, the exchange is already counted as
+     * outstanding. Queued transmissions that were cancelled in the meantime are skipped.
+     *
+     * @param remoteSocket the socket address of the peer
+     * @param token the {@link Token} of the exchange
+     * @param transmission the transmission to be run later if the exchange can not be started now
+     *
+     * @return <code>true</code> if the exchange was started, i.e. the message is to be sent now, or
+     * <code>false</code> if the transmission was queued
+     */
+    public boolean acquire(InetSocketAddress remoteSocket, Token token, Transmission transmission) {
+        while (true) {
+            Peer peer = getPeer(remoteSocket);
+            synchronized (peer) {
+                if (peer.retired) {
+                    // removed by a concurrent sweep
+                    continue;
+                }
+                return peer.acquire(token, transmission);
+            }
+        }
+    }
+
+    /**
+     * Releases an outstanding exchange with the given peer and hands the next queued transmission (if any) over to
+     * the executor. Releasing an exchange that is not outstanding (e.g. twice) has no effect.
+     *
+     * @param remoteSocket the socket address of the peer
+     * @param token the {@link Token} of the exchange
+     */
+    public void release(InetSocketAddress remoteSocket, Token token) {
+        Peer peer = this.peers.get(remoteSocket);
+        if (peer == null) {
+            return;
+        }
+
+        QueuedTransmission next = peer.release(token);
+        if (next != null) {
+            LOG.debug("Start queued transmission to \"{}\".", remoteSocket);
+            try {
+                this.executor.execute(next.transmission);
+            } catch (RejectedExecutionException ex) {
+                LOG.debug("Queued transmission to \"{}\" rejected (executor shut down).", remoteSocket);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of outstanding confirmable exchanges with the given peer
+     *
+     * @param remoteSocket the socket address of the peer
+     *
+     * @return the number of outstanding confirmable exchanges with the given peer
+     */
+    public int getOutstanding(InetSocketAddress remoteSocket) {
+        Peer peer = this.peers.get(remoteSocket);
+        return peer == null ? 0 : peer.getOutstanding();
+    }
+
+    /**
+     * Returns the number of queued transmissions to the given peer
+     *
+     * @param remoteSocket the socket address of the peer
+     *
+     * @return the number of queued transmissions to the given peer
+     */
+    public int getQueued(InetSocketAddress remoteSocket) {
+        Peer peer = this.peers.get(remoteSocket);
+        return peer == null ? 0 : peer.getQueued();
+    }
+
+    /**
+     * Returns the number of peers this {@link CongestionController} currently keeps the state of
+     *
+     * @return the number of peers this {@link CongestionController} currently keeps the state of
+     */
+    public int getPeerCount() {
+        return this.peers.size();
+    }
+
+    /**
+     * Updates the RTO estimation for the given peer with a measured round trip time
+     *
+     * @param remoteSocket the socket address of the peer
+     * @param rttMillis the round trip time measured from the first transmission of the message
+     * @param retransmissions the number of retransmissions of the message (measurements for messages with more
+     *                        than 2 retransmissions are ignored)
+     */
+    public void updateRTO(InetSocketAddress remoteSocket, long rttMillis, int retransmissions) {
+        if (retransmissions > 2) {
+            return;
+        }
+        long rto = getPeer(remoteSocket).update(rttMillis, retransmissions == 0);
+        LOG.debug("New RTO for \"{}\": {} ms (RTT: {} ms, retransmissions: {})",
+                new Object[]{remoteSocket, rto, rttMillis, retransmissions});
+    }
+
+    /**
+     * Returns the current RTO (in milliseconds) for the given peer
+     *
+     * @param remoteSocket the socket address of the peer
+     *
+     * @return the current RTO (in milliseconds) for the given peer
+     */
+    public long getRTO(InetSocketAddress remoteSocket) {
+        Peer peer = this.peers.get(remoteSocket);
+        return peer == null ? INITIAL_RTO_MILLIS : peer.getRTO();
+    }
+
+    /**
+     * Returns the delays (in milliseconds) of the retransmissions of a confirmable message to the given peer, i.e.
+     * the delay of the first retransmission is the RTO multiplied with a random factor between 1 and
+     * {@link AbstractOutboundReliabilityHandler#ACK_RANDOM_FACTOR} and the following delays are multiplied with
+     * the variable backoff factor (3 for RTOs below 1 second, 1.5 for RTOs above 3 seconds and 2 otherwise). The
+     * last delay is the time to wait for an acknowledgement of the last retransmission. If the delays sum up to
+     * more than {@link AbstractOutboundReliabilityHandler#MAX_TRANSMIT_WAIT_MILLIS}, all delays are shortened
+     * proportionally.
+     *
+     * @param remoteSocket the socket address of the peer
+     *
+     * @return the delays (in milliseconds) of the <code>{@link AbstractOutboundReliabilityHandler#MAX_RETRANSMISSIONS}
+     * + 1</code> retransmissions of a confirmable message to the given peer (the delay of the first retransmission
+     * at index 0)
+     */
+    public long[] provideRetransmissionDelays(InetSocketAddress remoteSocket) {
+        long rto = getRTO(remoteSocket);
+        double backoff = rto < 1000 ? 3 : (rto > 3000 ? 1.5 : 2);
+
+        double[] values = new double[AbstractOutboundReliabilityHandler.MAX_RETRANSMISSIONS + 1];
+        double delay = rto * (1 + RANDOM.nextDouble() * (AbstractOutboundReliabilityHandler.ACK_RANDOM_FACTOR - 1));
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = delay;
+            sum += delay;
+            delay *= backoff;
+        }
+
+        double factor = Math.min(1, AbstractOutboundReliabilityHandler.MAX_TRANSMIT_WAIT_MILLIS / sum);
+        long[] delays = new long[values.length];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = (long) (values[i] * factor);
+        }
+        return delays;
+    }
+
+    /**
+     * Stops the periodic removal of the state of idle peers
+     */
+    public void shutdown() {
+        this.sweepFuture.cancel(false);
+    }
+
+
+    private Peer getPeer(InetSocketAddress remoteSocket) {
+        Peer peer = this.peers.get(remoteSocket);
+        if (peer == null) {
+            Peer previous = this.peers.putIfAbsent(remoteSocket, peer = new Peer());
+            if (previous != null) {
+                peer = previous;
+            }
+        }
+        return peer;
+    }
+
+
+    private void sweep() {
+        long deadline = System.currentTimeMillis() - this.peerLifetimeMillis;
+        for (Map.Entry<InetSocketAddress, Peer> entry : this.peers.entrySet()) {
+            Peer peer = entry.getValue();
+            synchronized (peer) {
+                if (peer.isIdle(deadline)) {
+                    peer.retired = true;
+                    this.peers.remove(entry.getKey(), peer);
+                    LOG.debug("Removed state of idle peer \"{}\".", entry.getKey());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A transmission that is queued by the {@link CongestionController} if there are too many outstanding
+     * exchanges with the peer
+     */
+    public interface Transmission extends Runnable {
+
+        /**
+         * Returns <code>true</code> if the transmission was cancelled while being queued, i.e. is to be skipped,
+         * and <code>false</code> otherwise
+         *
+         * @return <code>true</code> if the transmission was cancelled while being queued and <code>false</code>
+         * otherwise
+         */
+        public boolean isCancelled();
+    }
+
+
+    /**
+     * The congestion control state of a single peer
+     */
+    private class Peer {
+
+        private final Set<Token> outstanding = new HashSet<>();
+        private final Queue<QueuedTransmission> queue = new ArrayDeque<>();
+
+        private Estimator strong = new Estimator(4);
+        private Estimator weak = new Estimator(1);
+        private double rto = INITIAL_RTO_MILLIS;
+        private long lastUpdate = System.currentTimeMillis();
+        private long lastActivity = System.currentTimeMillis();
+        private boolean retired;
+
+        private synchronized boolean acquire(Token token, Transmission transmission) {
+            this.lastActivity = System.currentTimeMillis();
+            if (this.outstanding.size() < nstart) {
+                this.outstanding.add(token);
+                return true;
+            } else {
+                this.queue.add(new QueuedTransmission(token, transmission));
+                return false;
+            }
+        }
+
+        private synchronized QueuedTransmission release(Token token) {
+            if (!this.outstanding.remove(token)) {
+                return null;
+            }
+            this.lastActivity = System.currentTimeMillis();
+
+            // skip the transmissions that were cancelled while being queued
+            QueuedTransmission next;
+            while ((next = this.queue.poll()) != null) {
+                if (next.transmission.isCancelled()) {
+                    LOG.debug("Skipped cancelled transmission (token: {}).", next.token);
+                } else {
+                    this.outstanding.add(next.token);
+                    return next;
+                }
+            }
+            return null;
+        }
+
+        private synchronized boolean isIdle(long deadline) {
+            return this.outstanding.isEmpty() && this.queue.isEmpty() && this.lastActivity < deadline;
+        }
+
+        private synchronized int getOutstanding() {
+            return this.outstanding.size();
+        }
+
+        private synchronized int getQueued() {
+            return this.queue.size();
+        }
+
+        private synchronized long update(long rtt, boolean strong) {
+            if (strong) {
+                this.rto = 0.5 * this.strong.update(rtt) + 0.5 * this.rto;
+            } else {
+                this.rto = 0.25 * this.weak.update(rtt) + 0.75 * this.rto;
+            }
+            this.rto = Math.min(this.rto, MAX_RTO_MILLIS);
+            this.lastUpdate = System.currentTimeMillis();
+            return (long) this.rto;
+        }
+
+        private synchronized long getRTO() {
+            // aging of RTOs without recent measurements (small RTOs grow, large RTOs shrink)
+            long idle = System.currentTimeMillis() - this.lastUpdate;
+            if (this.rto < 1000 && idle > 16 * this.rto) {
+                this.rto = 2 * this.rto;
+                this.lastUpdate = System.currentTimeMillis();
+            } else if (this.rto > 3000 && idle > 4 * this.rto) {
+                this.rto = 1000 + 0.5 * this.rto;
+                this.lastUpdate = System.currentTimeMillis();
+            }
+            return (long) this.rto;
+        }
+    }
+
+
+    /**
+     * An RTO estimator according to RFC 6298 with a variable factor for the RTT variation
+     */
+    private static class Estimator {
+
+        private final int k;
+        private double srtt = -1;
+        private double rttvar;
+
+        private Estimator(int k) {
+            this.k = k;
+        }
+
+        private double update(long rtt) {
+            if (this.srtt < 0) {
+                this.srtt = rtt;
+                this.rttvar = rtt / 2.0;
+            } else {
+                this.rttvar = (1 - BETA) * this.rttvar + BETA * Math.abs(this.srtt - rtt);
+                this.srtt = (1 - ALPHA) * this.srtt + ALPHA * rtt;
+            }
+            return this.srtt + this.k * this.rttvar;
+        }
+    }
+
+
+    private static class QueuedTransmission {
+
+        private final Token token;
+        private final Transmission transmission;
+
+        private QueuedTransmission(Token token, Transmission transmission) {
+            this.token = token;
+            this.transmission = transmission;
+        }
+    }
+}
@@ -24,25 +24,34 @@
  */
 package de.uzl.itm.ncoap.communication.reliability.outbound;
 
-import com.google.common.collect.Ordering;
-import com.google.common.collect.TreeMultimap;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.message.CoapMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Random;
-import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * An instances of {@link MessageIDFactory} creates and manages message IDs for outgoing messages. On creation of
+ * <p>An instances of {@link MessageIDFactory} creates and manages message IDs for outgoing messages. On creation of
  * new message IDs the factory ensures that the same message ID is not used twice for different messages to the
- * same remote CoAP endpoints within {@link #EXCHANGE_LIFETIME} seconds.
+ * same remote CoAP endpoints within {@link #EXCHANGE_LIFETIME} seconds.</p>
+ *
+ * <p>The allocated message IDs of each remote endpoint are kept in a bitmap of {@link #MODULUS} bits plus a queue
+ * of the allocations in chronological order. Expired allocations are released lazily, i.e. on allocation of a new
+ * message ID for the same remote endpoint, and by a single periodic sweep (every {@link #SWEEP_INTERVAL_MILLIS}
+ * milliseconds) for idle remote endpoints. There is no timer task per message ID. Observers are notified about
+ * every released message ID with an instance of {@link MessageIDRelease}.</p>
+ *
+ * <p>The allocations of different remote endpoints are locked independently.</p>
  *
  * @author Oliver Kleine
 */
@@ -60,24 +69,40 @@ public class MessageIDFactory extends Observable {
      */
     public static final int MODULUS = 65536;
 
+    /**
+     * The number of milliseconds (1000) between two sweeps to release expired message IDs, i.e. the maximum delay
+     * of a {@link MessageIDRelease} notification for remote endpoints without further allocations.
+     */
+    public static final int SWEEP_INTERVAL_MILLIS = 1000;
+
     private Logger log = LoggerFactory.getLogger(this.getClass().getName());
 
     private Random random;
 
-    private TreeMultimap<InetSocketAddress, Integer> allocations;
-    private ReentrantReadWriteLock lock;
-    private ScheduledExecutorService executor;
+    private ConcurrentHashMap<InetSocketAddress, Allocations> allocations;
+    private long exchangeLifetimeMillis;
+    private ScheduledFuture sweepFuture;
 
 
     /**
-     * @param executor the {@link ScheduledExecutorService} to provide the thread for operations to
-     *                        provide available message IDs
+     * @param executor the {@link ScheduledExecutorService} to provide the thread for the periodic release of
+     *                 expired message IDs
      */
     public MessageIDFactory(ScheduledExecutorService executor) {
-        this.executor = executor;
-        this.allocations = TreeMultimap.create(Ordering.arbitrary(), Ordering.natural());
-        this.lock = new ReentrantReadWriteLock();
+        this(executor, TimeUnit.SECONDS.toMillis(EXCHANGE_LIFETIME), SWEEP_INTERVAL_MILLIS);
+    }
+
+
+    MessageIDFactory(ScheduledExecutorService executor, long exchangeLifetimeMillis, long sweepIntervalMillis) {
+        this.allocations = new ConcurrentHashMap<>();
         this.random = new Random(System.currentTimeMillis());
+        this.exchangeLifetimeMillis = exchangeLifetimeMillis;
+        this.sweepFuture = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
     }
 
 
@@ -95,73 +120,232 @@ public class MessageIDFactory extends Observable {
      * {@link de.uzl.itm.ncoap.message.CoapMessage#UNDEFINED_MESSAGE_ID} if all IDs are in use.
      */
     public int getNextMessageID(final InetSocketAddress remoteSocket, final Token token) {
+        long now = System.currentTimeMillis();
+        List<MessageIDRelease> releases;
+        int messageID;
 
-        try{
-            lock.readLock().lock();
-
-            if (this.allocations.get(remoteSocket).size() == MODULUS) {
-                log.warn("No more message IDs available for remote endpoint {}.", remoteSocket);
-                return CoapMessage.UNDEFINED_MESSAGE_ID;
+        while (true) {
+            Allocations allocations = getAllocations(remoteSocket);
+            synchronized (allocations) {
+                if (allocations.retired) {
+                    // removed by a concurrent sweep
+                    continue;
+                }
+                releases = allocations.release(remoteSocket, now - this.exchangeLifetimeMillis);
+                messageID = allocations.allocate(token, now);
             }
+            break;
         }
-        finally{
-            lock.readLock().unlock();
+
+        notifyObservers(releases);
+
+        if (messageID == CoapMessage.UNDEFINED_MESSAGE_ID) {
+            log.warn("No more message IDs available for remote endpoint {}.", remoteSocket);
         }
+        return messageID;
+    }
 
-        try{
-            lock.writeLock().lock();
 
-            final SortedSet<Integer> allocations = this.allocations.get(remoteSocket);
-            if (allocations.size() == MODULUS) {
-                log.warn("No more message IDs available for remote endpoint {}.", remoteSocket);
-                return CoapMessage.UNDEFINED_MESSAGE_ID;
+    /**
+     * Returns a message ID for each of the given {@link Token}s (or {@link CoapMessage#UNDEFINED_MESSAGE_ID} for
+     * the tokens where no message ID was available), i.e. the same as an invocation of
+     * {@link #getNextMessageID(InetSocketAddress, Token)} per token but within a single critical section.
+     *
+     * @param remoteSocket the remote socket the message IDs are used for
+     * @param tokens the {@link Token}s of the messages
+     *
+     * @return an array containing the message IDs (in the order of the given tokens)
+     */
+    public int[] getNextMessageIDs(final InetSocketAddress remoteSocket, final Token[] tokens) {
+        long now = System.currentTimeMillis();
+        List<MessageIDRelease> releases;
+        int[] messageIDs = new int[tokens.length];
+
+        while (true) {
+            Allocations allocations = getAllocations(remoteSocket);
+            synchronized (allocations) {
+                if (allocations.retired) {
+                    // removed by a concurrent sweep
+                    continue;
+                }
+                releases = allocations.release(remoteSocket, now - this.exchangeLifetimeMillis);
+                for (int i = 0; i < tokens.length; i++) {
+                    messageIDs[i] = allocations.allocate(tokens[i], now);
+                }
             }
+            break;
+        }
+
+        notifyObservers(releases);
+
+        if (messageIDs.length > 0 && messageIDs[messageIDs.length - 1] == CoapMessage.UNDEFINED_MESSAGE_ID) {
+            log.warn("No more message IDs available for remote endpoint {}.", remoteSocket);
+        }
+        return messageIDs;
+    }
 
-            final int messageID;
-            if (allocations.size() == 0) {
-                messageID = this.random.nextInt(MODULUS);
-            } else {
-                messageID = (allocations.last() + 1);
+
+    private Allocations getAllocations(InetSocketAddress remoteSocket) {
+        Allocations allocations = this.allocations.get(remoteSocket);
+        if (allocations == null) {
+            Allocations newAllocations = new Allocations(this.random.nextInt(MODULUS));
+            allocations = this.allocations.putIfAbsent(remoteSocket, newAllocations);
+            if (allocations == null) {
+                allocations = newAllocations;
             }
-            this.allocations.put(remoteSocket, messageID);
+        }
+        return allocations;
+    }
 
-            this.executor.schedule(new Runnable() {
-                @Override
-                public void run() {
-                    releaseMessageID(remoteSocket, messageID, token);
-                }
-            }, EXCHANGE_LIFETIME, TimeUnit.SECONDS);
 
-            return messageID % MODULUS;
-        } finally {
-            lock.writeLock().unlock();
+    private void sweep() {
+        long deadline = System.currentTimeMillis() - this.exchangeLifetimeMillis;
+        for (Map.Entry<InetSocketAddress, Allocations> entry : this.allocations.entrySet()) {
+            InetSocketAddress remoteSocket = entry.getKey();
+            Allocations allocations = entry.getValue();
+            List<MessageIDRelease> releases;
+            synchronized (allocations) {
+                releases = allocations.release(remoteSocket, deadline);
+                if (allocations.count == 0) {
+                    allocations.retired = true;
+                    this.allocations.remove(remoteSocket, allocations);
+                }
+            }
+            notifyObservers(releases);
         }
     }
 
-    private void releaseMessageID(InetSocketAddress remoteSocket, int messageID, Token token) {
-        try{
-            lock.writeLock().lock();
-            if (this.allocations.remove(remoteSocket, messageID)) {
-                log.info("Released message ID \"{}\" (Remote Socket: \"{}\", Token: {}",
-                        new Object[]{(messageID % MODULUS), remoteSocket, token});
+
+    private void notifyObservers(List<MessageIDRelease> releases) {
+        if (releases == null) {
+            return;
+        }
+
+        for (MessageIDRelease release : releases) {
+            log.debug("Released message ID \"{}\" (Remote Socket: \"{}\", Token: {}",
+                    new Object[]{release.getMessageID(), release.getRemoteSocket(), release.getToken()});
+
+            // setChanged() and notifyObservers(...) must not interleave with other releases
+            synchronized (this) {
+                setChanged();
+                notifyObservers(release);
             }
-            setChanged();
-            notifyObservers(new MessageIDRelease(remoteSocket, messageID % MODULUS, token));
-        } finally {
-            lock.writeLock().unlock();
         }
     }
 
+
+    /**
+     * Stops the periodic release of expired message IDs and removes all allocations (without notifications)
+     */
     public void shutdown() {
-        try{
-            lock.writeLock().lock();
-            this.allocations.clear();
-        } finally {
-            lock.writeLock().lock();
+        this.sweepFuture.cancel(false);
+        for (Allocations allocations : this.allocations.values()) {
+            synchronized (allocations) {
+                allocations.retired = true;
+            }
+        }
+        this.allocations.clear();
+    }
+
+
+    /**
+     * The allocated message IDs of a single remote endpoint
+     */
+    private static class Allocations {
+
+        private long[] bitmap;
+        private int count;
+        private int lastMessageID;
+        private boolean retired;
+
+        // the allocations in chronological order (ring buffer)
+        private int[] messageIDs;
+        private long[] timestamps;
+        private Token[] tokens;
+        private int head;
+
+        private Allocations(int initialMessageID) {
+            this.bitmap = new long[MODULUS / 64];
+            this.lastMessageID = (initialMessageID - 1) & (MODULUS - 1);
+            this.messageIDs = new int[16];
+            this.timestamps = new long[16];
+            this.tokens = new Token[16];
+        }
+
+        private int allocate(Token token, long timestamp) {
+            if (this.count == MODULUS) {
+                return CoapMessage.UNDEFINED_MESSAGE_ID;
+            }
+
+            int messageID = nextFreeMessageID((this.lastMessageID + 1) & (MODULUS - 1));
+            this.bitmap[messageID >>> 6] |= 1L << messageID;
+            this.lastMessageID = messageID;
+
+            if (this.count == this.messageIDs.length) {
+                grow();
+            }
+            int tail = (this.head + this.count) % this.messageIDs.length;
+            this.messageIDs[tail] = messageID;
+            this.timestamps[tail] = timestamp;
+            this.tokens[tail] = token;
+            this.count++;
+
+            return messageID;
+        }
+
+        private int nextFreeMessageID(int start) {
+            int index = start >>> 6;
+            // ignore the bits below the start position in the first word
+            long free = ~this.bitmap[index] & (-1L << start);
+            for (int i = 0; i <= this.bitmap.length; i++) {
+                if (free != 0) {
+                    return (index << 6) + Long.numberOfTrailingZeros(free);
+                }
+                index = (index + 1) % this.bitmap.length;
+                free = ~this.bitmap[index];
+            }
+            // not reachable if count < MODULUS
+            throw new IllegalStateException("No free message ID!");
+        }
+
+        private void grow() {
+            int length = this.messageIDs.length;
+            int[] messageIDs = new int[length * 2];
+            long[] timestamps = new long[length * 2];
+            Token[] tokens = new Token[length * 2];
+            for (int i = 0; i < this.count; i++) {
+                int j = (this.head + i) % length;
+                messageIDs[i] = this.messageIDs[j];
+                timestamps[i] = this.timestamps[j];
+                tokens[i] = this.tokens[j];
+            }
+            this.messageIDs = messageIDs;
+            this.timestamps = timestamps;
+            this.tokens = tokens;
+            this.head = 0;
+        }
+
+        private List<MessageIDRelease> release(InetSocketAddress remoteSocket, long deadline) {
+            List<MessageIDRelease> releases = null;
+            while (this.count > 0 && this.timestamps[this.head] <= deadline) {
+                int messageID = this.messageIDs[this.head];
+                Token token = this.tokens[this.head];
+                this.tokens[this.head] = null;
+                this.bitmap[messageID >>> 6] &= ~(1L << messageID);
+                this.head = (this.head + 1) % this.messageIDs.length;
+                this.count--;
+
+                if (releases == null) {
+                    releases = new ArrayList<>();
+                }
+                releases.add(new MessageIDRelease(remoteSocket, messageID, token));
+            }
+            return releases;
         }
     }
 
-    class MessageIDRelease {
+
+    static class MessageIDRelease {
 
         private InetSocketAddress remoteSocket;
         private int messageID;
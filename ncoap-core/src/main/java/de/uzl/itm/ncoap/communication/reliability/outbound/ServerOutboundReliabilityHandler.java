@@ -24,7 +24,7 @@
  */
 package de.uzl.itm.ncoap.communication.reliability.outbound;
 
-import com.google.common.collect.HashBasedTable;
+import de.uzl.itm.ncoap.communication.ExchangeTable;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
 import de.uzl.itm.ncoap.communication.events.ResetReceivedEvent;
 import de.uzl.itm.ncoap.communication.events.TransmissionTimeoutEvent;
@@ -35,6 +35,7 @@ import de.uzl.itm.ncoap.message.MessageType;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,8 +43,6 @@ import java.net.InetSocketAddress;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
@@ -56,11 +55,11 @@ public class ServerOutboundReliabilityHandler extends AbstractOutboundReliabilit
 
     private static Logger LOG = LoggerFactory.getLogger(ServerOutboundReliabilityHandler.class.getName());
 
-    private HashBasedTable<InetSocketAddress, Integer, Token> transfers1;
-    private HashBasedTable<InetSocketAddress, Token, CoapResponse> transfers2;
-
-    private ReentrantReadWriteLock lock;
-    private final MessageIDFactory messageIDFactory;
+    // the three tables are not updated atomically together, i.e. the "leading" table for a transfer is transfers2
+    // (the others are added after and removed before or only in correspondence with this one)
+    private ExchangeTable<Integer, Token> transfers1;
+    private ExchangeTable<Token, CoapResponse> transfers2;
+    private ExchangeTable<Token, ResponseRetransmission> retransmissions;
 
 
     /**
@@ -69,13 +68,22 @@ public class ServerOutboundReliabilityHandler extends AbstractOutboundReliabilit
      *                 reliable message transfer
      */
     public ServerOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory) {
-        super(executor, factory);
-        this.transfers1 = HashBasedTable.create();
-        this.transfers2 = HashBasedTable.create();
+        this(executor, factory, getDefaultRetransmissionTimer());
+    }
 
-        this.messageIDFactory = new MessageIDFactory(executor);
-        this.messageIDFactory.addObserver(this);
-        this.lock = new ReentrantReadWriteLock();
+    /**
+     * Creates a new instance of {@link de.uzl.itm.ncoap.communication.reliability.outbound.ServerOutboundReliabilityHandler}
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to process the tasks to ensure
+     *                 reliable message transfer
+     * @param retransmissionTimer the {@link Timer} to schedule retransmissions of confirmable messages
+     */
+    public ServerOutboundReliabilityHandler(ScheduledExecutorService executor, MessageIDFactory factory,
+            Timer retransmissionTimer) {
+
+        super(executor, factory, retransmissionTimer);
+        this.transfers1 = new ExchangeTable<>();
+        this.transfers2 = new ExchangeTable<>();
+        this.retransmissions = new ExchangeTable<>();
     }
 
 
@@ -161,162 +169,122 @@ public class ServerOutboundReliabilityHandler extends AbstractOutboundReliabilit
 
         int messageType = coapResponse.getMessageType();
         if (messageType == MessageType.CON) {
-            addTransfer(remoteSocket, coapResponse);
-            scheduleRetransmission(remoteSocket, coapResponse.getToken(), 1);
+            addTransfer(remoteSocket, coapResponse).start();
         }
         return true;
     }
 
 
-    private void addTransfer(InetSocketAddress remoteSocket, CoapResponse coapResponse) {
-        try {
-            this.lock.writeLock().lock();
-            this.transfers1.put(remoteSocket, coapResponse.getMessageID(), coapResponse.getToken());
-            this.transfers2.put(remoteSocket, coapResponse.getToken(), coapResponse);
-        } finally {
-            this.lock.writeLock().unlock();
-        }
-    }
+    private ResponseRetransmission addTransfer(InetSocketAddress remoteSocket, CoapResponse coapResponse) {
+        Token token = coapResponse.getToken();
+        ResponseRetransmission retransmission = new ResponseRetransmission(remoteSocket, token);
 
+        this.transfers2.put(remoteSocket, token, coapResponse);
+        this.transfers1.put(remoteSocket, coapResponse.getMessageID(), token);
+        ResponseRetransmission previous = this.retransmissions.put(remoteSocket, token, retransmission);
 
-    private void scheduleRetransmission(InetSocketAddress remoteSocket, Token token, int retransmissionNo) {
-        long delay = provideRetransmissionDelay(retransmissionNo);
-        ResponseRetransmissionTask task = new ResponseRetransmissionTask(remoteSocket, token, retransmissionNo);
-        getExecutor().schedule(task, delay, TimeUnit.MILLISECONDS);
+        if (previous != null) {
+            previous.cancel();
+        }
+        return retransmission;
     }
 
 
     private Token removeTransfer(InetSocketAddress remoteSocket, int messageID) {
-        try {
-            this.lock.readLock().lock();
-            if (this.transfers1.get(remoteSocket, messageID) == null) {
-                return null;
-            }
-        } finally {
-            this.lock.readLock().unlock();
-        }
-
-        try {
-            this.lock.writeLock().lock();
-            Token token = this.transfers1.remove(remoteSocket, messageID);
-            if (token != null) {
-                this.transfers2.remove(remoteSocket, token);
-            }
-            return token;
-        } finally {
-            this.lock.writeLock().unlock();
+        Token token = this.transfers1.remove(remoteSocket, messageID);
+        if (token != null) {
+            this.transfers2.remove(remoteSocket, token);
+            cancelRetransmission(remoteSocket, token);
         }
+        return token;
     }
 
 
     private CoapResponse removeTransfer(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.readLock().lock();
-            if (!this.transfers2.contains(remoteSocket,token)) {
-                return null;
-            }
-        } finally {
-            this.lock.readLock().unlock();
+        CoapResponse coapResponse = this.transfers2.remove(remoteSocket, token);
+        if (coapResponse != null) {
+            this.transfers1.remove(remoteSocket, coapResponse.getMessageID(), token);
+            cancelRetransmission(remoteSocket, token);
         }
+        return coapResponse;
+    }
 
-        try {
-            this.lock.writeLock().lock();
-            CoapResponse coapResponse = this.transfers2.remove(remoteSocket, token);
-            if (coapResponse != null) {
-                this.transfers1.remove(remoteSocket, coapResponse.getMessageID());
-            }
-            return coapResponse;
-        } finally {
-            this.lock.writeLock().unlock();
+
+    private void cancelRetransmission(InetSocketAddress remoteSocket, Token token) {
+        ResponseRetransmission retransmission = this.retransmissions.remove(remoteSocket, token);
+        if (retransmission != null && retransmission.cancel()) {
+            LOG.debug("Cancelled retransmission(s) (Remote Socket: {}, Token: {})", remoteSocket, token);
         }
     }
 
+
     private boolean updateRetransmission(InetSocketAddress remoteSocket, CoapResponse updatedResponse) {
         Token token = updatedResponse.getToken();
-        try{
-            //update the update notification to be retransmitted
-            lock.readLock().lock();
-            if (this.transfers2.get(remoteSocket, token) == null) {
-                return false;
-            }
-        } finally {
-            lock.readLock().unlock();
-        }
 
-        try{
-            lock.writeLock().lock();
-            CoapResponse previousResponse = this.transfers2.remove(remoteSocket, token);
+        //update the update notification to be retransmitted (retry if there was a concurrent update)
+        while (true) {
+            CoapResponse previousResponse = this.transfers2.get(remoteSocket, token);
             if (previousResponse == null) {
                 return false;
-            } else {
-                int messageID = previousResponse.getMessageID();
-                updatedResponse.setMessageID(messageID);
-                this.transfers2.put(remoteSocket, token, updatedResponse);
+            }
+
+            int messageID = previousResponse.getMessageID();
+            updatedResponse.setMessageID(messageID);
+            if (this.transfers2.replace(remoteSocket, token, previousResponse, updatedResponse)) {
                 LOG.info("Retransmission with updated response...");
                 return true;
             }
-        } finally {
-            lock.writeLock().unlock();
         }
     }
 
 
     private CoapResponse getCoapResponse(InetSocketAddress remoteSocket, Token token) {
-        try {
-            this.lock.readLock().lock();
-            return this.transfers2.get(remoteSocket, token);
-        } finally {
-            this.lock.readLock().unlock();
-        }
+        return this.transfers2.get(remoteSocket, token);
     }
 
-    class ResponseRetransmissionTask implements Runnable {
+    private class ResponseRetransmission extends Retransmission {
 
-        private InetSocketAddress remoteSocket;
         private Token token;
-        private int retransmissionNo;
 
-        private ResponseRetransmissionTask(InetSocketAddress remoteSocket, Token token, int retransmissionNo) {
-            this.remoteSocket = remoteSocket;
+        private ResponseRetransmission(InetSocketAddress remoteSocket, Token token) {
+            super(remoteSocket);
             this.token = token;
-            this.retransmissionNo = retransmissionNo;
         }
 
         @Override
-        public synchronized void run() {
+        protected boolean retransmit(int retransmissionNo) {
+            InetSocketAddress remoteSocket = getRemoteSocket();
+            // the response to be retransmitted might have been replaced by an updated notification
+            final CoapResponse coapResponse = getCoapResponse(remoteSocket, this.token);
 
-            final CoapResponse coapResponse = getCoapResponse(this.remoteSocket, this.token);
+            if (coapResponse == null) {
+                return false;
+            }
 
-            if (!(coapResponse == null)) {
-                if (coapResponse.isUpdateNotification()) {
-                    coapResponse.setObserve();
-                }
+            if (coapResponse.isUpdateNotification()) {
+                coapResponse.setObserve();
+            }
 
-                // retransmit message
-                ChannelFuture future = Channels.future(getContext().getChannel());
-                Channels.write(getContext(), future, coapResponse, remoteSocket);
-                future.addListener(new ChannelFutureListener() {
-                    @Override
-                    public void operationComplete(ChannelFuture future) throws Exception {
-                        if (future.isSuccess()) {
-                            LOG.info("Retransmitted...");
-                        } else {
-                            LOG.error("Retransmission failed...");
-                        }
+            // retransmit message
+            ChannelFuture future = Channels.future(getContext().getChannel());
+            Channels.write(getContext(), future, coapResponse, remoteSocket);
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (future.isSuccess()) {
+                        LOG.info("Retransmitted...");
+                    } else {
+                        LOG.error("Retransmission failed...");
                     }
-                });
-
-                if (retransmissionNo < MAX_RETRANSMISSIONS) {
-                    scheduleRetransmission(remoteSocket, coapResponse.getToken(), retransmissionNo + 1);
-                    LOG.debug("Scheduled next retransmission to \"{}\" (Message ID: {})",
-                            remoteSocket, coapResponse.getMessageID()
-                    );
-                } else {
-                    LOG.warn("No more retransmissions (remote endpoint: {}, message ID: {})!",
-                            remoteSocket, coapResponse.getMessageID()
-                    );
                 }
+            });
+
+            if (retransmissionNo >= MAX_RETRANSMISSIONS) {
+                LOG.warn("No more retransmissions (remote endpoint: {}, message ID: {})!",
+                        remoteSocket, coapResponse.getMessageID()
+                );
             }
+            return true;
         }
     }
 }
\ No newline at end of file
@@ -24,8 +24,7 @@
  */
 package de.uzl.itm.ncoap.message;
 
-import com.google.common.base.Supplier;
-import com.google.common.collect.*;
+import com.google.common.collect.SetMultimap;
 import com.google.common.primitives.Longs;
 import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
@@ -46,6 +45,12 @@ import static de.uzl.itm.ncoap.message.options.Option.*;
  * This class is the base class for inheriting subtypes, e.g. requests and responses. This abstract class provides the
  * cut-set in terms of functionality of {@link CoapRequest} and {@link CoapResponse}.
  *
+ * <p><b>Note:</b> The options are not kept in a (protected) {@link SetMultimap} anymore, i.e. subclasses can not
+ * access them directly. Options are to be changed using the <code>add...Option</code> methods,
+ * {@link #removeOptions(int)} or {@link #setAllOptions(SetMultimap)} and to be read using
+ * {@link #getOptions(int)}, {@link #getOptionCount()}, {@link #getOptionNumber(int)} and
+ * {@link #getOptionValue(int)}. The multimap returned by {@link #getAllOptions()} is an immutable snapshot.</p>
+ *
  * @author Oliver Kleine
  */
 public abstract class CoapMessage {
@@ -80,6 +85,8 @@ public abstract class CoapMessage {
 
     private static final String DOES_NOT_ALLOW_CONTENT = "CoAP messages with code %s do not allow payload.";
     private static final String EXCLUDES = "Already contained option no. %d excludes option no. %d";
+    private static final String OUT_OF_ALLOWED_RANGE = "Value length (%d) is out of allowed range " +
+            "for option no. %d (min: %d, max; %d).";
 
 
     private int messageType;
@@ -87,7 +94,7 @@ public abstract class CoapMessage {
     private int messageID;
     private Token token;
 
-    protected SetMultimap<Integer, OptionValue> options;
+    private final OptionContainer options;
     private ChannelBuffer content;
 
 
@@ -118,8 +125,7 @@ public abstract class CoapMessage {
         this.setMessageID(messageID);
         this.setToken(token);
 
-        this.options = Multimaps.newSetMultimap(new TreeMap<Integer, Collection<OptionValue>>(),
-                LinkedHashSetSupplier.getInstance());
+        this.options = new OptionContainer();
 
         this.content = ChannelBuffers.EMPTY_BUFFER;
 
@@ -135,7 +141,7 @@ public abstract class CoapMessage {
      *         message ID: {@link CoapMessage#UNDEFINED_MESSAGE_ID} (to be set automatically by the framework)
      *     </li>
      *     <li>
-     *         token: {@link Token#Token(byte[])} with empty byte array.
+     *         token: {@link Token#EMPTY}.
      *     </li>
      * </ul>
      * @param messageType the number representing the {@link MessageType} for this {@link CoapMessage}
@@ -144,7 +150,7 @@ public abstract class CoapMessage {
      * @throws IllegalArgumentException if one of the given arguments is invalid
      */
     protected CoapMessage(int messageType, int messageCode) throws IllegalArgumentException {
-        this(messageType, messageCode, UNDEFINED_MESSAGE_ID, new Token(new byte[0]));
+        this(messageType, messageCode, UNDEFINED_MESSAGE_ID, Token.EMPTY);
     }
 
 
@@ -158,7 +164,7 @@ public abstract class CoapMessage {
      * @throws IllegalArgumentException if the given message ID is out of the allowed range
      */
     public static CoapMessage createEmptyReset(int messageID) throws IllegalArgumentException {
-        return new CoapMessage(RST, EMPTY, messageID, new Token(new byte[0])) {};
+        return new CoapMessage(RST, EMPTY, messageID, Token.EMPTY) {};
     }
 
 
@@ -172,7 +178,7 @@ public abstract class CoapMessage {
      * @throws IllegalArgumentException if the given message ID is out of the allowed range
      */
     public static CoapMessage createEmptyAcknowledgement(int messageID) throws IllegalArgumentException {
-        return new CoapMessage(ACK, EMPTY, messageID, new Token(new byte[0])) {};
+        return new CoapMessage(ACK, EMPTY, messageID, Token.EMPTY) {};
     }
 
 
@@ -187,7 +193,7 @@ public abstract class CoapMessage {
      * @throws IllegalArgumentException if the given message ID is out of the allowed range
      */
     public static CoapMessage createPing(int messageID) throws IllegalArgumentException{
-        return new CoapMessage(CON, EMPTY, messageID, new Token(new byte[0])) {};
+        return new CoapMessage(CON, EMPTY, messageID, Token.EMPTY) {};
     }
 
 
@@ -233,16 +239,69 @@ public abstract class CoapMessage {
      */
     public void addOption(int optionNumber, OptionValue optionValue) throws IllegalArgumentException {
         this.checkOptionPermission(optionNumber);
+        this.checkMutualExclusion(optionNumber);
 
-        for(int containedOption : options.keySet()) {
-            if (Option.mutuallyExcludes(containedOption, optionNumber))
-                throw new IllegalArgumentException(String.format(EXCLUDES, containedOption, optionNumber));
+        options.add(optionNumber, optionValue);
+
+        log.debug("Added option (number: {}, value: {})", optionNumber, optionValue);
+
+    }
+
+
+    /**
+     * Adds an option to this {@link CoapMessage} without decoding its value, i.e. the option is only recorded as
+     * slice of the given {@link ChannelBuffer}. The {@link OptionValue} is created on first access to options with
+     * the given number (e.g. via {@link #getOptions(int)}). This method is intended for framework internal use, i.e.
+     * for the {@link de.uzl.itm.ncoap.communication.codec.CoapMessageDecoder}.
+     *
+     * <b>Note:</b> The content of the given {@link ChannelBuffer} must not be modified afterwards!
+     *
+     * @param optionNumber the number representing the option type
+     * @param buffer the {@link ChannelBuffer} containing the encoded option value
+     * @param offset the (absolute) index of the first byte of the encoded option value
+     * @param length the length of the encoded option value
+     *
+     * @throws java.lang.IllegalArgumentException if the given option number is unknwon, or if the given value
+     * exceeds the defined length limits for options with the given option number or if the option is not allowed
+     * (or not allowed once more) with the message code of this {@link CoapMessage}.
+     */
+    public void addOption(int optionNumber, ChannelBuffer buffer, int offset, int length)
+            throws IllegalArgumentException {
+
+        OptionValue.Type type = OptionValue.getType(optionNumber);
+
+        // the values of empty options are ignored and uint options are shortened (see UintOptionValue#shortenValue)
+        if (type != OptionValue.Type.EMPTY) {
+            int effectiveLength = length;
+            if (type == OptionValue.Type.UINT) {
+                while (effectiveLength > 1 && buffer.getByte(offset + length - effectiveLength) == 0) {
+                    effectiveLength--;
+                }
+            }
+
+            int minLength = OptionValue.getMinLength(optionNumber);
+            int maxLength = OptionValue.getMaxLength(optionNumber);
+            if (minLength > effectiveLength || maxLength < effectiveLength) {
+                throw new IllegalArgumentException(String.format(OUT_OF_ALLOWED_RANGE, effectiveLength,
+                        optionNumber, minLength, maxLength));
+            }
         }
 
-        options.put(optionNumber, optionValue);
+        this.checkOptionPermission(optionNumber);
+        this.checkMutualExclusion(optionNumber);
 
-        log.debug("Added option (number: {}, value: {})", optionNumber, optionValue.toString());
+        options.add(optionNumber, buffer, offset, length);
 
+        log.debug("Added encoded option (number: {}, length: {})", optionNumber, length);
+    }
+
+
+    private void checkMutualExclusion(int optionNumber) throws IllegalArgumentException {
+        for (int i = 0; i < options.size(); i++) {
+            int containedOption = options.getNumber(i);
+            if (Option.mutuallyExcludes(containedOption, optionNumber))
+                throw new IllegalArgumentException(String.format(EXCLUDES, containedOption, optionNumber));
+        }
     }
 
 
@@ -333,7 +392,7 @@ public abstract class CoapMessage {
             throw new IllegalArgumentException(String.format(WRONG_OPTION_TYPE, optionNumber, OptionValue.Type.EMPTY));
 
         //Add new option to option list
-        options.put(optionNumber, new EmptyOptionValue(optionNumber));
+        options.add(optionNumber, new EmptyOptionValue(optionNumber));
 
         log.debug("Added empty option (number: {})", optionNumber);
     }
@@ -347,7 +406,7 @@ public abstract class CoapMessage {
      * @return the number of options that were removed, i.e. the count.
      */
     public int removeOptions(int optionNumber) {
-        int result = options.removeAll(optionNumber).size();
+        int result = options.remove(optionNumber);
         log.debug("Removed {} options with number {}.", result, optionNumber);
         return result;
     }
@@ -358,7 +417,7 @@ public abstract class CoapMessage {
         if (permittedOccurence == Option.Occurence.NONE) {
             throw new IllegalArgumentException(String.format(OPTION_NOT_ALLOWED_WITH_MESSAGE_TYPE,
                     optionNumber, Option.asString(optionNumber), this.getMessageCodeName()));
-        } else if (options.containsKey(optionNumber) && permittedOccurence == Option.Occurence.ONCE) {
+        } else if (containsOption(optionNumber) && permittedOccurence == Option.Occurence.ONCE) {
                 throw new IllegalArgumentException(String.format(OPTION_ALREADY_SET, optionNumber));
         }
     }
@@ -475,11 +534,8 @@ public abstract class CoapMessage {
      * is present in this {@link CoapMessage}.
      */
     public long getContentFormat() {
-        if (options.containsKey(CONTENT_FORMAT)) {
-            return ((UintOptionValue) options.get(CONTENT_FORMAT).iterator().next()).getDecodedValue();
-        } else {
-            return ContentFormat.UNDEFINED;
-        }
+        long contentFormat = getUintOptionValue(CONTENT_FORMAT);
+        return contentFormat == UintOptionValue.UNDEFINED ? ContentFormat.UNDEFINED : contentFormat;
     }
 
 
@@ -517,11 +573,7 @@ public abstract class CoapMessage {
      * this {@link CoapRequest}.
      */
     public long getObserve() {
-        if (!options.containsKey(OBSERVE)) {
-            return UintOptionValue.UNDEFINED;
-        } else {
-            return (long) options.get(OBSERVE).iterator().next().getDecodedValue();
-        }
+        return getUintOptionValue(OBSERVE);
     }
 
 
@@ -535,11 +587,8 @@ public abstract class CoapMessage {
      * this {@link CoapRequest}.
      */
     public long getBlock2Number() {
-        if (!options.containsKey(BLOCK_2)) {
-            return UintOptionValue.UNDEFINED;
-        } else {
-            return (long) options.get(BLOCK_2).iterator().next().getDecodedValue() >> 4;
-        }
+        long value = getUintOptionValue(BLOCK_2);
+        return value == UintOptionValue.UNDEFINED ? UintOptionValue.UNDEFINED : value >> 4;
     }
 
 
@@ -555,12 +604,8 @@ public abstract class CoapMessage {
      * @return <code>true</code> if there are no more blocks expected.
      */
     public boolean isLastBlock2() {
-        if (!options.containsKey(BLOCK_2)) {
-            return true;
-        } else {
-            long m = (long) options.get(BLOCK_2).iterator().next().getDecodedValue();
-            return (extractBits(m, 1, 3) == 0);
-        }
+        long value = getUintOptionValue(BLOCK_2);
+        return value == UintOptionValue.UNDEFINED || extractBits(value, 1, 3) == 0;
     }
 
 
@@ -576,18 +621,14 @@ public abstract class CoapMessage {
      * this {@link CoapRequest}.
      */
     public long getBlock2Szx() {
-        if (!options.containsKey(BLOCK_2)) {
-            return UintOptionValue.UNDEFINED;
-        } else {
-            long value = (long) options.get(BLOCK_2).iterator().next().getDecodedValue();
-            return extractBits(value, 3, 0);
-        }
+        long value = getUintOptionValue(BLOCK_2);
+        return value == UintOptionValue.UNDEFINED ? UintOptionValue.UNDEFINED : extractBits(value, 3, 0);
     }
 
 
     public long getBlock2Size() {
         long block2szx = getBlock2Szx();
-        if (block2szx != BlockSize.UNDEFINED) {
+        if (block2szx == UintOptionValue.UNDEFINED) {
             return BlockSize.UNDEFINED;
         } else {
             return BlockSize.getBlockSize(block2szx).getSize();
@@ -603,11 +644,8 @@ public abstract class CoapMessage {
      * this {@link CoapRequest}.
      */
     public long getBlock1Number() {
-        if (!options.containsKey(BLOCK_1)) {
-            return UintOptionValue.UNDEFINED;
-        } else {
-            return (long) options.get(BLOCK_1).iterator().next().getDecodedValue() >> 4;
-        }
+        long value = getUintOptionValue(BLOCK_1);
+        return value == UintOptionValue.UNDEFINED ? UintOptionValue.UNDEFINED : value >> 4;
     }
 
 
@@ -621,12 +659,8 @@ public abstract class CoapMessage {
      * @return <code>true</code> if there are no more blocks expected and <code>false</code> otherwise.
      */
     public boolean isLastBlock1() {
-        if (!options.containsKey(BLOCK_1)) {
-            return true;
-        } else {
-            long m = (long) options.get(BLOCK_1).iterator().next().getDecodedValue();
-            return (extractBits(m, 1, 3) == 0);
-        }
+        long value = getUintOptionValue(BLOCK_1);
+        return value == UintOptionValue.UNDEFINED || extractBits(value, 1, 3) == 0;
     }
 
 
@@ -640,12 +674,8 @@ public abstract class CoapMessage {
      * {@link UintOptionValue#UNDEFINED} if there is no BLOCK1 option contained in this {@link CoapMessage}.
      */
     public long getBlock1Szx() {
-        if (!options.containsKey(BLOCK_1)) {
-            return UintOptionValue.UNDEFINED;
-        } else {
-            long value = (long) options.get(BLOCK_1).iterator().next().getDecodedValue();
-            return extractBits(value, 3, 0);
-        }
+        long value = getUintOptionValue(BLOCK_1);
+        return value == UintOptionValue.UNDEFINED ? UintOptionValue.UNDEFINED : extractBits(value, 3, 0);
     }
 
     /**
@@ -666,32 +696,24 @@ public abstract class CoapMessage {
 
 
     public void setSize2(long size2) throws IllegalArgumentException{
-        this.options.removeAll(SIZE_2);
+        this.removeOptions(SIZE_2);
         this.addUintOption(SIZE_2, size2);
     }
 
 
     public long getSize2() {
-        if (options.containsKey(SIZE_2)) {
-            return ((UintOptionValue) options.get(SIZE_2).iterator().next()).getDecodedValue();
-        } else {
-            return UintOptionValue.UNDEFINED;
-        }
+        return getUintOptionValue(SIZE_2);
     }
 
 
     public void setSize1(long size1) throws IllegalArgumentException{
-        this.options.removeAll(SIZE_1);
+        this.removeOptions(SIZE_1);
         this.addUintOption(SIZE_1, size1);
     }
 
 
     public long getSize1() {
-        if (options.containsKey(SIZE_1)) {
-            return ((UintOptionValue) options.get(SIZE_1).iterator().next()).getDecodedValue();
-        } else {
-            return UintOptionValue.UNDEFINED;
-        }
+        return getUintOptionValue(SIZE_1);
     }
 
 
@@ -859,7 +881,7 @@ public abstract class CoapMessage {
 
     public byte[] getContentAsByteArray() {
         byte[] result = new byte[this.getContentLength()];
-        this.getContent().readBytes(result, 0, this.getContentLength());
+        this.getContent().getBytes(this.getContent().readerIndex(), result);
         return result;
     }
 
@@ -868,24 +890,86 @@ public abstract class CoapMessage {
     }
 
     /**
-     * Returns a {@link Multimap} with the option numbers as keys and
-     * {@link de.uzl.itm.ncoap.message.options.OptionValue}s as values.
+     * Returns an (immutable) {@link SetMultimap} with the option numbers as keys and
+     * {@link de.uzl.itm.ncoap.message.options.OptionValue}s as values (in the order of the option numbers).
      * The returned multimap does not contain options with default values.
      *
-     * @return a {@link Multimap} with the option numbers as keys and {@link de.uzl.itm.ncoap.message.options.OptionValue}s as values.
+     * <b>Note:</b> The returned multimap is a snapshot, i.e. later changes of the options of this
+     * {@link CoapMessage} are not reflected and changes of the returned multimap are not possible (an
+     * {@link UnsupportedOperationException} is thrown). To change the options use {@link #setAllOptions(SetMultimap)}
+     * with a modified copy of the returned multimap (or the option specific methods). Use {@link #getOptionCount()}, {@link #getOptionNumber(int)} and
+     * {@link #getOptionValue(int)} to iterate over the options without creating a snapshot.
+     *
+     * @return a {@link SetMultimap} with the option numbers as keys and
+     * {@link de.uzl.itm.ncoap.message.options.OptionValue}s as values.
      */
     public SetMultimap<Integer, OptionValue> getAllOptions() {
-        return this.options;
+        return this.options.asMultimap();
     }
 
+    /**
+     * Replaces all options of this {@link CoapMessage} with the given ones.
+     *
+     * @param options a {@link SetMultimap} with the option numbers as keys and
+     * {@link de.uzl.itm.ncoap.message.options.OptionValue}s as values.
+     */
     public void setAllOptions (SetMultimap<Integer, OptionValue> options) {
-        this.options = options;
+        this.options.clear();
+        for (Map.Entry<Integer, OptionValue> option : options.entries()) {
+            this.options.add(option.getKey(), option.getValue());
+        }
+    }
+
+    /**
+     * Replaces all options of this {@link CoapMessage} with the options of the given one. As opposed to
+     * {@link #setAllOptions(SetMultimap)} there is no snapshot and the {@link OptionValue} instances are shared, e.g.
+     * to create several messages that differ only in header and token (see
+     * {@link de.uzl.itm.ncoap.communication.codec.CoapMessageEncoder} for the encoding of such messages).
+     *
+     * @param coapMessage the {@link CoapMessage} to copy the options from
+     */
+    public void copyOptions(CoapMessage coapMessage) {
+        this.options.copyFrom(coapMessage.options);
+    }
+
+    /**
+     * Returns the number of options contained in this {@link CoapMessage}. Options with the same option number
+     * are counted separately.
+     *
+     * @return the number of options contained in this {@link CoapMessage}
+     */
+    public int getOptionCount() {
+        return this.options.size();
+    }
+
+    /**
+     * Returns the number of the option at the given index. The options are ordered by their numbers (multiple options
+     * with the same number in the order they were added).
+     *
+     * @param index the index of the option (<code>0 &lt;= index &lt; {@link #getOptionCount()}</code>)
+     *
+     * @return the number of the option at the given index
+     */
+    public int getOptionNumber(int index) {
+        return this.options.getNumber(index);
+    }
+
+    /**
+     * Returns the {@link OptionValue} of the option at the given index. The options are ordered by their numbers
+     * (multiple options with the same number in the order they were added).
+     *
+     * @param index the index of the option (<code>0 &lt;= index &lt; {@link #getOptionCount()}</code>)
+     *
+     * @return the {@link OptionValue} of the option at the given index
+     */
+    public OptionValue getOptionValue(int index) {
+        return this.options.getValue(index);
     }
 
     /**
-     * Returns a {@link Set} containing the {@link OptionValue}s that are explicitly set in this {@link CoapMessage}.
-     * The returned set does not contain options with default values. If this {@link CoapMessage} does not contain any
-     * options of the given option number, then the returned set is empty.
+     * Returns a (read-only) {@link Set} containing the {@link OptionValue}s that are explicitly set in this
+     * {@link CoapMessage}. The returned set does not contain options with default values. If this
+     * {@link CoapMessage} does not contain any options of the given option number, then the returned set is empty.
      *
      * @param optionNumber the option number
      *
@@ -895,6 +979,26 @@ public abstract class CoapMessage {
         return this.options.get(optionNumber);
     }
 
+    /**
+     * Returns the value of the first option with the given number as primitive <code>long</code> or
+     * {@link UintOptionValue#UNDEFINED} if there is no such option. As opposed to
+     * {@link OptionValue#getDecodedValue()} this method does not box the value and does not require the option to be
+     * decoded beforehand.
+     *
+     * @param optionNumber the number of an option of type {@link OptionValue.Type#UINT}
+     *
+     * @return the value of the first option with the given number or {@link UintOptionValue#UNDEFINED} if there is
+     * no such option
+     *
+     * @throws java.lang.IllegalArgumentException if the given number does not refer to an uint option
+     */
+    public long getUintOptionValue(int optionNumber) throws IllegalArgumentException {
+        if (OptionValue.getType(optionNumber) != OptionValue.Type.UINT) {
+            throw new IllegalArgumentException(String.format(WRONG_OPTION_TYPE, optionNumber, OptionValue.Type.UINT));
+        }
+        return this.options.getUint(optionNumber);
+    }
+
     /**
      * Returns <code>true</code> if an option with the given number is contained in this
      * {@link de.uzl.itm.ncoap.message.CoapMessage} and <code>false</code> otherwise.
@@ -905,7 +1009,7 @@ public abstract class CoapMessage {
      * {@link de.uzl.itm.ncoap.message.CoapMessage} and <code>false</code> otherwise.
      */
     public boolean containsOption(int optionNumber) {
-        return !getOptions(optionNumber).isEmpty();
+        return this.options.contains(optionNumber);
     }
 
     @Override
@@ -949,31 +1053,18 @@ public abstract class CoapMessage {
             return false;
 
 
-        //Iterators iterate over the contained options
-        Iterator<Map.Entry<Integer, OptionValue>> iterator1 = this.getAllOptions().entries().iterator();
-        Iterator<Map.Entry<Integer, OptionValue>> iterator2 = other.getAllOptions().entries().iterator();
-
         //Check if both CoAP Messages contain the same options in the same order
-        while(iterator1.hasNext()) {
-
-            //Check if iterator2 has no more options while iterator1 has at least one more
-            if (!iterator2.hasNext())
-                return false;
-
-            Map.Entry<Integer, OptionValue> entry1 = iterator1.next();
-            Map.Entry<Integer, OptionValue> entry2 = iterator2.next();
+        if (this.getOptionCount() != other.getOptionCount())
+            return false;
 
-            if (!entry1.getKey().equals(entry2.getKey()))
+        for (int i = 0; i < this.getOptionCount(); i++) {
+            if (this.getOptionNumber(i) != other.getOptionNumber(i))
                 return false;
 
-            if (!entry1.getValue().equals(entry2.getValue()))
+            if (!this.getOptionValue(i).equals(other.getOptionValue(i)))
                 return false;
         }
 
-        //Check if iterator2 has at least one more option while iterator1 has no more
-        if (iterator2.hasNext())
-            return false;
-
         //Check content
         return this.getContent().equals(other.getContent());
     }
@@ -986,18 +1077,17 @@ public abstract class CoapMessage {
 
         //Header + Token
         result.append("[Header: (V) " + getProtocolVersion() + ", (T) " + getMessageTypeName() + ", (TKL) "
-            + token.getBytes().length + ", (C) " + getMessageCodeName() + ", (ID) " + getMessageID() + " | (Token) "
+            + token.getLength() + ", (C) " + getMessageCodeName() + ", (ID) " + getMessageID() + " | (Token) "
             + token + " | ");
 
         //Options
         result.append("Options:");
-        for(int optionNumber : getAllOptions().keySet()) {
-            result.append(" (No. " + optionNumber + ") ");
-            Iterator<OptionValue> iterator = this.getOptions(optionNumber).iterator();
-            OptionValue optionValue = iterator.next();
-            result.append(optionValue.toString());
-            while(iterator.hasNext())
-                result.append(" / " + iterator.next().toString());
+        for (int i = 0; i < getOptionCount(); i++) {
+            if (i > 0 && getOptionNumber(i) == getOptionNumber(i - 1)) {
+                result.append(" / " + getOptionValue(i).toString());
+            } else {
+                result.append(" (No. " + getOptionNumber(i) + ") " + getOptionValue(i).toString());
+            }
         }
         result.append(" | ");
 
@@ -1020,26 +1110,4 @@ public abstract class CoapMessage {
 
         this.messageCode = messageCode;
     }
-
-
-    /**
-     * This is the supplier to provide the {@link LinkedHashSet} to contain the {@link de.uzl.itm.ncoap.message.options.OptionValue} instances. There
-     * is one {@link LinkedHashSet} provided per option number. The order prevention of the values contained
-     * in such a set is necessary to keep the order of multiple values for one option (e.g. URI path).
-     */
-    private final static class LinkedHashSetSupplier implements Supplier<LinkedHashSet<OptionValue>> {
-
-        public static LinkedHashSetSupplier instance = new LinkedHashSetSupplier();
-
-        private LinkedHashSetSupplier() {}
-
-        public static LinkedHashSetSupplier getInstance() {
-            return instance;
-        }
-
-        @Override
-        public LinkedHashSet<OptionValue> get() {
-            return new LinkedHashSet<>();
-        }
-    }
 }
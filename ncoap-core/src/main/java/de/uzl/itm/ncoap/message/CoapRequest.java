@@ -224,7 +224,7 @@ public class CoapRequest extends CoapMessage {
      */
     public Set<byte[]> getIfMatch() {
 
-        Set<OptionValue> ifMatchOptionValues = options.get(IF_MATCH);
+        Set<OptionValue> ifMatchOptionValues = getOptions(IF_MATCH);
         Set<byte[]> result = new HashSet<>(ifMatchOptionValues.size());
 
         for (OptionValue ifMatchOptionValue : ifMatchOptionValues)
@@ -242,8 +242,8 @@ public class CoapRequest extends CoapMessage {
      */
     public String getUriHost() {
 
-        if (options.containsKey(URI_HOST))
-            return ((StringOptionValue) options.get(URI_HOST).iterator().next()).getDecodedValue();
+        if (containsOption(URI_HOST))
+            return ((StringOptionValue) getOptions(URI_HOST).iterator().next()).getDecodedValue();
 
         return null;
     }
@@ -285,7 +285,7 @@ public class CoapRequest extends CoapMessage {
     public Set<byte[]> getEtags() {
         Set<byte[]> result = new HashSet<>();
 
-        for (OptionValue optionValue : options.get(ETAG))
+        for (OptionValue optionValue : getOptions(ETAG))
             result.add(((OpaqueOptionValue) optionValue).getDecodedValue());
 
         return result;
@@ -300,7 +300,7 @@ public class CoapRequest extends CoapMessage {
      * @return <code>true</code> if the option is set after method returned or <code>false</code> otherwise.
      */
     public boolean setIfNonMatch() {
-        if (options.containsKey(IF_NONE_MATCH))
+        if (containsOption(IF_NONE_MATCH))
             return true;
 
         try{
@@ -320,7 +320,7 @@ public class CoapRequest extends CoapMessage {
      * no such option present in this {@link CoapRequest}.
      */
     public boolean isIfNonMatchSet() {
-        return options.containsKey(IF_NONE_MATCH);
+        return containsOption(IF_NONE_MATCH);
     }
 
 
@@ -332,10 +332,8 @@ public class CoapRequest extends CoapMessage {
      * present in this {@link CoapRequest}.
      */
     public long getUriPort() {
-        if (options.containsKey(URI_PORT))
-            return ((UintOptionValue) options.get(URI_PORT).iterator().next()).getDecodedValue();
-
-        return OptionValue.URI_PORT_DEFAULT;
+        long uriPort = getUintOptionValue(URI_PORT);
+        return uriPort == UintOptionValue.UNDEFINED ? OptionValue.URI_PORT_DEFAULT : uriPort;
     }
 
 
@@ -347,16 +345,16 @@ public class CoapRequest extends CoapMessage {
      * {@link CoapRequest}.
      */
     public String getUriPath() {
-        String result = "/";
+        StringBuilder result = new StringBuilder("/");
 
-        Iterator<OptionValue> iterator = options.get(URI_PATH).iterator();
+        Iterator<OptionValue> iterator = getOptions(URI_PATH).iterator();
         if (iterator.hasNext())
-            result += ((StringOptionValue) iterator.next()).getDecodedValue();
+            result.append(((StringOptionValue) iterator.next()).getDecodedValue());
 
         while(iterator.hasNext())
-            result += ("/" + ((StringOptionValue) iterator.next()).getDecodedValue());
+            result.append('/').append(((StringOptionValue) iterator.next()).getDecodedValue());
 
-        return result;
+        return result.toString();
     }
 
     /**
@@ -369,9 +367,9 @@ public class CoapRequest extends CoapMessage {
     public String getUriQuery() {
         String result = "";
 
-        if (options.containsKey(URI_QUERY)) {
+        if (containsOption(URI_QUERY)) {
 
-            Iterator<OptionValue> iterator = options.get(URI_QUERY).iterator();
+            Iterator<OptionValue> iterator = getOptions(URI_QUERY).iterator();
             result += (((StringOptionValue) iterator.next()).getDecodedValue());
 
             while(iterator.hasNext())
@@ -398,7 +396,7 @@ public class CoapRequest extends CoapMessage {
         if (!parameter.endsWith("="))
             parameter += "=";
 
-        for(OptionValue optionValue : options.get(URI_QUERY)) {
+        for(OptionValue optionValue : getOptions(URI_QUERY)) {
             String value = ((StringOptionValue) optionValue).getDecodedValue();
 
             if (value.startsWith(parameter))
@@ -421,13 +419,13 @@ public class CoapRequest extends CoapMessage {
      * format
      */
     public void setAccept(long... contentFormatNumbers) throws IllegalArgumentException {
-        options.removeAll(ACCEPT);
+        removeOptions(ACCEPT);
         try{
             for(long contentFormatNumber : contentFormatNumbers)
                 this.addUintOption(ACCEPT, contentFormatNumber);
         }
         catch (IllegalArgumentException e) {
-            options.removeAll(ACCEPT);
+            removeOptions(ACCEPT);
             throw e;
         }
     }
@@ -443,8 +441,8 @@ public class CoapRequest extends CoapMessage {
     public Set<Long> getAcceptedContentFormats() {
         Set<Long> result = new HashSet<>();
 
-        for(OptionValue optionValue : options.get(ACCEPT))
-            result.add(((UintOptionValue) optionValue).getDecodedValue());
+        for(OptionValue optionValue : getOptions(ACCEPT))
+            result.add(((UintOptionValue) optionValue).getLongValue());
 
         return result;
     }
@@ -466,17 +464,17 @@ public class CoapRequest extends CoapMessage {
      * URI host, URI port, URI path, and URI query options is invalid.
      */
     public URI getProxyURI() throws URISyntaxException {
-        if (options.containsKey(PROXY_URI)) {
-            OptionValue proxyUriOptionValue = options.get(PROXY_URI).iterator().next();
+        if (containsOption(PROXY_URI)) {
+            OptionValue proxyUriOptionValue = getOptions(PROXY_URI).iterator().next();
             return new URI(((StringOptionValue) proxyUriOptionValue).getDecodedValue());
         }
 
-        if (options.get(PROXY_SCHEME).size() == 1) {
-            OptionValue proxySchemeOptionValue = options.get(PROXY_SCHEME).iterator().next();
+        if (getOptions(PROXY_SCHEME).size() == 1) {
+            OptionValue proxySchemeOptionValue = getOptions(PROXY_SCHEME).iterator().next();
             String scheme = ((StringOptionValue) proxySchemeOptionValue).getDecodedValue();
             String uriHost = getUriHost();
-            OptionValue uriPortOptionValue = options.get(URI_PORT).iterator().next();
-            int uriPort = ((UintOptionValue) uriPortOptionValue).getDecodedValue().intValue();
+            OptionValue uriPortOptionValue = getOptions(URI_PORT).iterator().next();
+            int uriPort = (int) ((UintOptionValue) uriPortOptionValue).getLongValue();
             String uriPath = getUriPath();
             String uriQuery = getUriQuery();
 
@@ -569,6 +567,6 @@ public class CoapRequest extends CoapMessage {
      * {@link CoapRequest} or <code>false</code> otherwise.
      */
     public boolean isObservationRequest() {
-        return(!options.get(OBSERVE).isEmpty());
+        return(!getOptions(OBSERVE).isEmpty());
     }
 }
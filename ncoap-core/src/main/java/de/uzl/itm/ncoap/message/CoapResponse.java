@@ -162,8 +162,8 @@ public class CoapResponse extends CoapMessage {
      * @return the byte array representing the ETAG of the content returned by {@link #getContent()}
      */
     public byte[] getEtag() {
-        if (options.containsKey(ETAG)) {
-            return ((OpaqueOptionValue) options.get(ETAG).iterator().next()).getDecodedValue();
+        if (containsOption(ETAG)) {
+            return ((OpaqueOptionValue) getOptions(ETAG).iterator().next()).getDecodedValue();
         } else {
             return null;
         }
@@ -256,8 +256,8 @@ public class CoapResponse extends CoapMessage {
      */
     public void setLocationURI(URI locationURI) throws IllegalArgumentException {
 
-        options.removeAll(LOCATION_PATH);
-        options.removeAll(LOCATION_QUERY);
+        removeOptions(LOCATION_PATH);
+        removeOptions(LOCATION_QUERY);
 
         String locationPath = locationURI.getRawPath();
         String locationQuery = locationURI.getRawQuery();
@@ -277,8 +277,8 @@ public class CoapResponse extends CoapMessage {
                     this.addStringOption(LOCATION_QUERY, queryComponent);
             }
         } catch(IllegalArgumentException ex) {
-            options.removeAll(LOCATION_PATH);
-            options.removeAll(LOCATION_QUERY);
+            removeOptions(LOCATION_PATH);
+            removeOptions(LOCATION_QUERY);
             throw ex;
         }
     }
@@ -296,16 +296,16 @@ public class CoapResponse extends CoapMessage {
         //Reconstruct path
         StringBuilder locationPath = new StringBuilder();
 
-        if (options.containsKey(LOCATION_PATH)) {
-            for (OptionValue optionValue : options.get(LOCATION_PATH))
+        if (containsOption(LOCATION_PATH)) {
+            for (OptionValue optionValue : getOptions(LOCATION_PATH))
                 locationPath.append("/").append(((StringOptionValue) optionValue).getDecodedValue());
         }
 
         //Reconstruct query
         StringBuilder locationQuery = new StringBuilder();
 
-        if (options.containsKey(LOCATION_QUERY)) {
-            Iterator<OptionValue> queryComponentIterator = options.get(LOCATION_QUERY).iterator();
+        if (containsOption(LOCATION_QUERY)) {
+            Iterator<OptionValue> queryComponentIterator = getOptions(LOCATION_QUERY).iterator();
             locationQuery.append(((StringOptionValue) queryComponentIterator.next()).getDecodedValue());
             while(queryComponentIterator.hasNext())
                 locationQuery.append("&")
@@ -327,7 +327,7 @@ public class CoapResponse extends CoapMessage {
      */
     public void setMaxAge(long maxAge) {
         try {
-            this.options.removeAll(MAX_AGE);
+            this.removeOptions(MAX_AGE);
             this.addUintOption(MAX_AGE, maxAge);
         } catch (IllegalArgumentException e) {
             log.error("This should never happen.", e);
@@ -343,10 +343,7 @@ public class CoapResponse extends CoapMessage {
      * exists, this method returns {@link de.uzl.itm.ncoap.message.options.OptionValue#MAX_AGE_DEFAULT}.
      */
     public long getMaxAge() {
-        if (options.containsKey(MAX_AGE)) {
-            return ((UintOptionValue) options.get(MAX_AGE).iterator().next()).getDecodedValue();
-        } else {
-            return OptionValue.MAX_AGE_DEFAULT;
-        }
+        long maxAge = getUintOptionValue(MAX_AGE);
+        return maxAge == UintOptionValue.UNDEFINED ? OptionValue.MAX_AGE_DEFAULT : maxAge;
     }
 }
@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.message;
+
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import de.uzl.itm.ncoap.message.options.*;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link OptionContainer} holds the options of a {@link CoapMessage} in parallel arrays that are sorted by option
+ * number. Multiple values of the same option number keep the order in which they were added. Equal values of the same
+ * option number are contained only once.
+ *
+ * Options of inbound messages are recorded as slices (offset and length) of the {@link ChannelBuffer} containing the
+ * encoded message. The corresponding {@link OptionValue} instances are only created on first access.
+ *
+ * @author Oliver Kleine
+ */
+final class OptionContainer {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] numbers;
+    private OptionValue[] values;
+    private int[] offsets;
+    private int[] lengths;
+    private int size;
+
+    private ChannelBuffer buffer;
+
+    OptionContainer() {
+        this.numbers = new int[INITIAL_CAPACITY];
+        this.values = new OptionValue[INITIAL_CAPACITY];
+        this.offsets = new int[INITIAL_CAPACITY];
+        this.lengths = new int[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+
+    /**
+     * Returns the number of contained options
+     * @return the number of contained options
+     */
+    int size() {
+        return this.size;
+    }
+
+
+    int getNumber(int index) {
+        return this.numbers[index];
+    }
+
+
+    /**
+     * Returns the {@link OptionValue} at the given index (which is created if the option was not yet decoded)
+     *
+     * @param index the index of the option
+     *
+     * @return the {@link OptionValue} at the given index
+     */
+    OptionValue getValue(int index) {
+        OptionValue value = this.values[index];
+        if (value == null) {
+            value = createOptionValue(this.numbers[index], this.offsets[index], this.lengths[index]);
+            this.values[index] = value;
+        }
+        return value;
+    }
+
+
+    /**
+     * Returns the index of the first option with the given number or <code>-1</code> if there is no such option.
+     *
+     * @param optionNumber the option number
+     *
+     * @return the index of the first option with the given number or <code>-1</code> if there is no such option.
+     */
+    int indexOf(int optionNumber) {
+        int index = lowerBound(optionNumber);
+        return index < this.size && this.numbers[index] == optionNumber ? index : -1;
+    }
+
+
+    /**
+     * Returns the value of the first option with the given number as primitive <code>long</code> (without creating
+     * an {@link OptionValue} instance if the option was not yet decoded) or {@link UintOptionValue#UNDEFINED} if
+     * there is no such option. The given number must refer to an option of type
+     * {@link de.uzl.itm.ncoap.message.options.OptionValue.Type#UINT}.
+     *
+     * @param optionNumber the option number (of an uint option)
+     *
+     * @return the value of the first option with the given number or {@link UintOptionValue#UNDEFINED}
+     */
+    long getUint(int optionNumber) {
+        int index = indexOf(optionNumber);
+        if (index < 0) {
+            return UintOptionValue.UNDEFINED;
+        } else if (this.values[index] != null) {
+            return ((UintOptionValue) this.values[index]).getLongValue();
+        } else {
+            long result = 0;
+            for (int i = this.offsets[index]; i < this.offsets[index] + this.lengths[index]; i++) {
+                result = (result << 8) | (this.buffer.getByte(i) & 0xFF);
+            }
+            return result;
+        }
+    }
+
+
+    boolean contains(int optionNumber) {
+        return indexOf(optionNumber) >= 0;
+    }
+
+
+    /**
+     * Returns a (read-only) {@link java.util.Set} view on the values of the given option number.
+     *
+     * @param optionNumber the option number
+     *
+     * @return a (read-only) {@link java.util.Set} view on the values of the given option number.
+     */
+    AbstractSet<OptionValue> get(final int optionNumber) {
+        return new AbstractSet<OptionValue>() {
+            @Override
+            public Iterator<OptionValue> iterator() {
+                final int end = upperBound(optionNumber);
+                return new Iterator<OptionValue>() {
+
+                    private int index = lowerBound(optionNumber);
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.index < end;
+                    }
+
+                    @Override
+                    public OptionValue next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return getValue(this.index++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return upperBound(optionNumber) - lowerBound(optionNumber);
+            }
+        };
+    }
+
+
+    /**
+     * Adds the given {@link OptionValue} (unless there is already an equal value with the same option number)
+     *
+     * @param optionNumber the option number
+     * @param optionValue the {@link OptionValue} to be added
+     */
+    void add(int optionNumber, OptionValue optionValue) {
+        int end = upperBound(optionNumber);
+        for (int i = lowerBound(optionNumber); i < end; i++) {
+            if (getValue(i).equals(optionValue)) {
+                return;
+            }
+        }
+        insert(end, optionNumber, optionValue, 0, 0);
+    }
+
+
+    /**
+     * Adds an option which is not decoded yet but given as slice of a {@link ChannelBuffer}. If this container
+     * already holds slices of another {@link ChannelBuffer}, then these are decoded beforehand.
+     *
+     * @param optionNumber the option number
+     * @param buffer the {@link ChannelBuffer} containing the encoded value
+     * @param offset the (absolute) index of the first byte of the encoded value
+     * @param length the length of the encoded value
+     */
+    void add(int optionNumber, ChannelBuffer buffer, int offset, int length) {
+        if (this.buffer != buffer) {
+            for (int i = 0; i < this.size; i++) {
+                getValue(i);
+            }
+            this.buffer = buffer;
+        }
+
+        int end = upperBound(optionNumber);
+        for (int i = lowerBound(optionNumber); i < end; i++) {
+            if (hasEncodedValue(i, offset, length)) {
+                return;
+            }
+        }
+        insert(end, optionNumber, null, offset, length);
+    }
+
+
+    /**
+     * Removes all options with the given number
+     *
+     * @param optionNumber the option number
+     *
+     * @return the number of removed options
+     */
+    int remove(int optionNumber) {
+        int start = lowerBound(optionNumber);
+        int end = upperBound(optionNumber);
+        int count = end - start;
+
+        if (count > 0) {
+            System.arraycopy(this.numbers, end, this.numbers, start, this.size - end);
+            System.arraycopy(this.values, end, this.values, start, this.size - end);
+            System.arraycopy(this.offsets, end, this.offsets, start, this.size - end);
+            System.arraycopy(this.lengths, end, this.lengths, start, this.size - end);
+            this.size -= count;
+            Arrays.fill(this.values, this.size, this.size + count, null);
+        }
+
+        return count;
+    }
+
+
+    void clear() {
+        Arrays.fill(this.values, 0, this.size, null);
+        this.size = 0;
+        this.buffer = null;
+    }
+
+
+    /**
+     * Replaces all options of this {@link OptionContainer} with the options of the given one. The
+     * {@link OptionValue} instances (which are immutable) are shared, i.e. not copied.
+     *
+     * @param other the {@link OptionContainer} to copy the options from
+     */
+    void copyFrom(OptionContainer other) {
+        clear();
+        int capacity = Math.max(other.size, INITIAL_CAPACITY);
+        if (this.numbers.length < capacity) {
+            this.numbers = new int[capacity];
+            this.values = new OptionValue[capacity];
+            this.offsets = new int[capacity];
+            this.lengths = new int[capacity];
+        }
+
+        System.arraycopy(other.numbers, 0, this.numbers, 0, other.size);
+        System.arraycopy(other.values, 0, this.values, 0, other.size);
+        System.arraycopy(other.offsets, 0, this.offsets, 0, other.size);
+        System.arraycopy(other.lengths, 0, this.lengths, 0, other.size);
+        this.size = other.size;
+        this.buffer = other.buffer;
+    }
+
+
+    /**
+     * Returns an immutable {@link SetMultimap} containing all options (in the order of their numbers).
+     *
+     * @return an immutable {@link SetMultimap} containing all options (in the order of their numbers).
+     */
+    SetMultimap<Integer, OptionValue> asMultimap() {
+        ImmutableSetMultimap.Builder<Integer, OptionValue> builder = ImmutableSetMultimap.builder();
+        for (int i = 0; i < this.size; i++) {
+            builder.put(this.numbers[i], getValue(i));
+        }
+        return builder.build();
+    }
+
+
+    private void insert(int index, int optionNumber, OptionValue value, int offset, int length) {
+        if (this.size == this.numbers.length) {
+            int capacity = this.size * 2;
+            this.numbers = Arrays.copyOf(this.numbers, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+        }
+
+        if (index < this.size) {
+            System.arraycopy(this.numbers, index, this.numbers, index + 1, this.size - index);
+            System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+            System.arraycopy(this.offsets, index, this.offsets, index + 1, this.size - index);
+            System.arraycopy(this.lengths, index, this.lengths, index + 1, this.size - index);
+        }
+
+        this.numbers[index] = optionNumber;
+        this.values[index] = value;
+        this.offsets[index] = offset;
+        this.lengths[index] = length;
+        this.size++;
+    }
+
+
+    // returns the index of the first option with a number greater or equal to the given one
+    private int lowerBound(int optionNumber) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.numbers[middle] < optionNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    // returns the index of the first option with a number greater than the given one
+    private int upperBound(int optionNumber) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.numbers[middle] <= optionNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    // returns true if the (encoded) value at the given index equals the given slice of the buffer
+    private boolean hasEncodedValue(int index, int offset, int length) {
+        if (this.values[index] != null) {
+            byte[] value = this.values[index].getValue();
+            if (value.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (value[i] != this.buffer.getByte(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            if (this.lengths[index] != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.buffer.getByte(this.offsets[index] + i) != this.buffer.getByte(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    private OptionValue createOptionValue(int optionNumber, int offset, int length) {
+        if (OptionValue.getType(optionNumber) == OptionValue.Type.EMPTY) {
+            return new EmptyOptionValue(optionNumber);
+        }
+
+        byte[] value = new byte[length];
+        this.buffer.getBytes(offset, value);
+
+        switch (OptionValue.getType(optionNumber)) {
+            case OPAQUE:
+                return new OpaqueOptionValue(optionNumber, value);
+            case STRING:
+                return new StringOptionValue(optionNumber, value, true);
+            default:
+                return new UintOptionValue(optionNumber, value, true);
+        }
+    }
+}
@@ -24,10 +24,10 @@
  */
 package de.uzl.itm.ncoap.message.options;
 
+import com.google.common.primitives.Longs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigInteger;
 import java.util.Arrays;
 
 /**
@@ -47,6 +47,8 @@ public class UintOptionValue extends OptionValue<Long> {
 
     private static Logger log = LoggerFactory.getLogger(UintOptionValue.class.getName());
 
+    private final long decodedValue;
+
     /**
      * @param optionNumber the option number of the {@link StringOptionValue} to be created
      * @param value the value of the {@link StringOptionValue} to be created
@@ -70,8 +72,11 @@ public class UintOptionValue extends OptionValue<Long> {
      */
     public UintOptionValue(int optionNumber, byte[] value, boolean allowDefault) throws IllegalArgumentException {
         super(optionNumber, shortenValue(value), allowDefault);
+        this.decodedValue = decode(this.value);
 
-        log.debug("Uint Option (#{}) created with value: {}", optionNumber, this.getDecodedValue());
+        if (log.isDebugEnabled()) {
+            log.debug("Uint Option (#{}) created with value: {}", optionNumber, this.decodedValue);
+        }
     }
 
 
@@ -81,13 +86,24 @@ public class UintOptionValue extends OptionValue<Long> {
 
     @Override
     public Long getDecodedValue() {
-        return new BigInteger(1, value).longValue();
+        return this.decodedValue;
+    }
+
+
+    /**
+     * Returns the decoded value of this {@link UintOptionValue} as primitive <code>long</code>, i.e. without
+     * boxing (as opposed to {@link #getDecodedValue()}).
+     *
+     * @return the decoded value of this {@link UintOptionValue}
+     */
+    public long getLongValue() {
+        return this.decodedValue;
     }
 
 
     @Override
     public int hashCode() {
-        return getDecodedValue().hashCode();
+        return Longs.hashCode(this.decodedValue);
     }
 
 
@@ -101,6 +117,22 @@ public class UintOptionValue extends OptionValue<Long> {
     }
 
 
+    /**
+     * Returns the unsigned integer value represented by the given byte array (big endian).
+     *
+     * @param value the encoded value
+     *
+     * @return the unsigned integer value represented by the given byte array
+     */
+    public static long decode(byte[] value) {
+        long result = 0;
+        for (byte b : value) {
+            result = (result << 8) | (b & 0xFF);
+        }
+        return result;
+    }
+
+
     public static byte[] shortenValue(byte[] value) {
         int index = 0;
         while(index < value.length - 1 && value[index] == 0)
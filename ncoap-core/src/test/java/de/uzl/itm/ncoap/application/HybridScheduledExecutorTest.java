@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests if the {@link HybridScheduledExecutor} executes scheduled tasks and Netty I/O on its platform threads and
+ * all other tasks on the given task executor.
+ *
+ * @author Oliver Kleine
+ */
+public class HybridScheduledExecutorTest extends AbstractCoapTest {
+
+    private static final Callable<String> THREAD_NAME = new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+            return Thread.currentThread().getName();
+        }
+    };
+
+    private HybridScheduledExecutor executor;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createExecutor() {
+        ExecutorService taskExecutor =
+                Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("Task #%d").build());
+        this.executor = new HybridScheduledExecutor(
+                1, new ThreadFactoryBuilder().setNameFormat("Platform #%d").build(), taskExecutor
+        );
+    }
+
+    @After
+    public void shutdownExecutor() throws Exception {
+        this.executor.shutdownNow();
+        assertTrue("Executor not terminated!", this.executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSubmittedTaskIsExecutedByTaskExecutor() throws Exception {
+        String threadName = this.executor.submit(THREAD_NAME).get(1, TimeUnit.SECONDS);
+        assertTrue("Wrong thread: " + threadName, threadName.startsWith("Task #"));
+    }
+
+    @Test
+    public void testExecutedTaskIsExecutedByTaskExecutor() throws Exception {
+        FutureTask<String> task = new FutureTask<>(THREAD_NAME);
+        this.executor.execute(task);
+        String threadName = task.get(1, TimeUnit.SECONDS);
+        assertTrue("Wrong thread: " + threadName, threadName.startsWith("Task #"));
+    }
+
+    @Test
+    public void testScheduledTaskIsExecutedByPlatformThread() throws Exception {
+        String threadName = this.executor.schedule(THREAD_NAME, 10, TimeUnit.MILLISECONDS).get(1, TimeUnit.SECONDS);
+        assertEquals("Wrong thread!", "Platform #0", threadName);
+    }
+
+    @Test
+    public void testPlatformExecutorUsesPlatformThread() throws Exception {
+        FutureTask<String> task = new FutureTask<>(THREAD_NAME);
+        this.executor.getPlatformExecutor().execute(task);
+        assertEquals("Wrong thread!", "Platform #0", task.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testVirtualThreadPerTaskExecutorDependsOnRuntime() throws Exception {
+        ExecutorService virtualExecutor = HybridScheduledExecutor.newVirtualThreadPerTaskExecutor("Virtual #");
+
+        boolean supported;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            supported = true;
+        } catch (NoSuchMethodException ex) {
+            supported = false;
+        }
+
+        if (supported) {
+            assertNotNull("No executor for virtual threads!", virtualExecutor);
+            FutureTask<String> task = new FutureTask<>(THREAD_NAME);
+            virtualExecutor.execute(task);
+            assertEquals("Wrong thread!", "Virtual #1", task.get(1, TimeUnit.SECONDS));
+            virtualExecutor.shutdown();
+        } else {
+            assertNull("Virtual threads are not supported!", virtualExecutor);
+        }
+    }
+}
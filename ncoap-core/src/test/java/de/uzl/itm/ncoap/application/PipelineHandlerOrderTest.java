@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.application.client.ClientChannelPipelineFactory;
+import de.uzl.itm.ncoap.application.server.CoapServerChannelPipelineFactory;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.server.NotFoundHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the order of the handlers in the pipelines created by the {@link CoapChannelPipelineFactory}s. The order
+ * is essential for the message processing and must be kept if the handlers are (re-)arranged, e.g. when porting
+ * the pipelines to another version of Netty.
+ *
+ * <p>This test stands in for the (deferred) port to Netty 4.1, i.e. it pins the order the ported pipelines have to
+ * reproduce. Handlers added to (or removed from) the pipelines must be added to (or removed from) the expected
+ * order.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class PipelineHandlerOrderTest extends AbstractCoapTest {
+
+    private ScheduledThreadPoolExecutor executor;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createExecutor() {
+        this.executor = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testServerPipelineOrder() throws Exception {
+        CoapChannelPipelineFactory factory = new CoapServerChannelPipelineFactory(
+                executor, NotFoundHandler.getDefault(), BlockSize.UNBOUND, BlockSize.UNBOUND
+        );
+
+        List<String> expected = Arrays.asList(
+                "ExecutionHandler", "ServerResponseCacheHandler", "CoapMessageEncoder", "CoapMessageDecoder",
+                "ServerIdentificationHandler", "ServerOutboundReliabilityHandler", "ServerInboundReliabilityHandler",
+                "ServerBlock1Handler", "ServerBlock2Handler", "ServerObservationHandler", "RequestDispatcher"
+        );
+
+        assertEquals("Wrong handler order", expected, factory.getPipeline().getNames());
+    }
+
+    @Test
+    public void testClientPipelineOrder() throws Exception {
+        CoapChannelPipelineFactory factory = new ClientChannelPipelineFactory(executor);
+
+        List<String> expected = Arrays.asList(
+                "ExecutionHandler", "CoapMessageEncoder", "CoapMessageDecoder", "ClientIdentificationHandler",
+                "ClientOutboundReliabilityHandler", "ClientInboundReliabilityHandler", "ClientBlock2Handler",
+                "ClientBlock1Handler", "ClientObservationHandler", "ClientResponseCacheHandler", "ResponseDispatcher"
+        );
+
+        assertEquals("Wrong handler order", expected, factory.getPipeline().getNames());
+    }
+}
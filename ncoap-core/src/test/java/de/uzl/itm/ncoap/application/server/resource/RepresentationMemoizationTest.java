@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.application.server.resource;
+
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.SettableFuture;
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests if the serialized representations of a {@link NotObservableWebresource} are memoized per status and
+ * content format.
+ *
+ * @author Oliver Kleine
+ */
+public class RepresentationMemoizationTest extends AbstractCoapTest {
+
+    private ScheduledThreadPoolExecutor executor;
+    private CountingWebresource webresource;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createWebresource() {
+        this.executor = new ScheduledThreadPoolExecutor(1);
+        this.webresource = new CountingWebresource("/test", "status 1", executor);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testStatusIsSerializedOnlyOnce() {
+        for (int i = 0; i < 10; i++) {
+            WrappedResourceStatus status = webresource.getWrappedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8);
+            assertEquals("Wrong content!", "status 1", new String(status.getContent(), CoapMessage.CHARSET));
+        }
+        assertEquals("Wrong number of serializations!", 1, webresource.serializations.get());
+    }
+
+    @Test
+    public void testNewStatusInvalidatesRepresentations() {
+        WrappedResourceStatus status1 = webresource.getWrappedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8);
+        webresource.setResourceStatus("status 2", 60);
+        WrappedResourceStatus status2 = webresource.getWrappedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8);
+
+        assertEquals("Wrong content!", "status 2", new String(status2.getContent(), CoapMessage.CHARSET));
+        assertFalse("ETAG was not updated!", Ints.fromByteArray(status1.getEtag()) ==
+                Ints.fromByteArray(status2.getEtag()));
+        assertEquals("Wrong number of serializations!", 2, webresource.serializations.get());
+    }
+
+    @Test
+    public void testUnsupportedContentFormatIsMemoized() {
+        assertNull("Unsupported format!", webresource.getWrappedResourceStatus(ContentFormat.APP_JSON));
+        assertNull("Unsupported format!", webresource.getWrappedResourceStatus(ContentFormat.APP_JSON));
+        assertEquals("Wrong number of serializations!", 1, webresource.serializations.get());
+    }
+
+    @Test
+    public void testMaxAgeIsNotMemoized() throws Exception {
+        webresource.setResourceStatus("status 2", 3);
+        assertEquals("Wrong max-age!", 2,
+                webresource.getWrappedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8).getMaxAge());
+        Thread.sleep(1500);
+        assertEquals("Wrong max-age!", 1,
+                webresource.getWrappedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8).getMaxAge());
+    }
+
+    @Test
+    public void testContentBuffersShareContentButNotIndices() {
+        WrappedResourceStatus status = webresource.getWrappedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8);
+        ChannelBuffer buffer1 = status.getContentBuffer();
+        ChannelBuffer buffer2 = status.getContentBuffer();
+
+        buffer1.readBytes(new byte[buffer1.readableBytes()]);
+        assertEquals("Wrong content!", "status 1", buffer2.toString(CoapMessage.CHARSET));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testContentBufferIsReadOnly() {
+        WrappedResourceStatus status = webresource.getWrappedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8);
+        status.getContentBuffer().setByte(0, 0);
+    }
+
+
+    private static class CountingWebresource extends NotObservableWebresource<String> {
+
+        private final AtomicInteger serializations = new AtomicInteger(0);
+        private byte[] etag;
+
+        private CountingWebresource(String path, String initialStatus, ScheduledExecutorService executor) {
+            super(path, initialStatus, 60, executor);
+        }
+
+        @Override
+        public byte[] getSerializedResourceStatus(long contentFormat) {
+            serializations.incrementAndGet();
+            if (contentFormat == ContentFormat.TEXT_PLAIN_UTF8) {
+                return getResourceStatus().getBytes(CoapMessage.CHARSET);
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public byte[] getEtag(long contentFormat) {
+            return this.etag;
+        }
+
+        @Override
+        public void updateEtag(String resourceStatus) {
+            this.etag = Ints.toByteArray(resourceStatus.hashCode());
+        }
+
+        @Override
+        public void processCoapRequest(SettableFuture<CoapResponse> responseFuture, CoapRequest coapRequest,
+                                       InetSocketAddress remoteSocket) throws Exception {
+            // not used...
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to do...
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import de.uzl.itm.ncoap.application.client.CoapClient;
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher;
+import de.uzl.itm.ncoap.endpoints.client.TestCallback;
+import de.uzl.itm.ncoap.endpoints.server.NotObservableTestWebresource;
+import de.uzl.itm.ncoap.endpoints.server.ObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the coalescing of identical GET requests (see {@link ResponseDispatcher#setCoalescing(boolean)}).
+ *
+ * <ul>
+ *     <li>20 identical requests to <code>/slow</code> (processing time 1 second) are sent in parallel.</li>
+ *     <li>Another request to <code>/slow</code> is sent after the responses were received.</li>
+ *     <li>An observation of <code>/observable</code> is started and 5 (plain) GET requests to
+ *     <code>/observable</code> are sent afterwards.</li>
+ *     <li>An observation of <code>/stale</code> (Max-Age 1 second) is started and a (plain) GET request to
+ *     <code>/stale</code> is sent 2 seconds later, i.e. when the update notification is not fresh anymore.</li>
+ * </ul>
+ *
+ * @author Oliver Kleine
+ */
+public class ClientCoalescesIdenticalRequestsTest extends AbstractCoapCommunicationTest {
+
+    private static final int NUMBER_OF_PARALLEL_REQUESTS = 20;
+    private static final int NUMBER_OF_OBSERVATION_REQUESTS = 5;
+
+    private static CoapServer server;
+    private static CountingWebresource slowWebresource;
+    private static CoapClient client;
+    private static InetSocketAddress serverSocket;
+
+    private static List<CoapResponse> parallelResponses;
+    private static CoapResponse laterResponse;
+    private static TestCallback observationCallback;
+    private static List<CoapResponse> observationResponses;
+    private static CoapResponse staleObservationResponse;
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger(ResponseDispatcher.class.getName()).setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Override
+    public void setupComponents() throws Exception {
+        server = new CoapServer();
+        serverSocket = new InetSocketAddress("localhost", server.getPort());
+
+        slowWebresource = new CountingWebresource("/slow", "Slow status", 1000, server.getExecutor());
+        server.registerWebresource(slowWebresource);
+        server.registerWebresource(new ObservableTestWebresource("/observable", 1, 0, server.getExecutor()));
+
+        ObservableTestWebresource staleWebresource = new ObservableTestWebresource("/stale", 1, 0,
+                server.getExecutor());
+        staleWebresource.setResourceStatus(1, 1);
+        server.registerWebresource(staleWebresource);
+
+        client = new CoapClient();
+        client.setCoalescing(true);
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        server.shutdown().get();
+        client.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        List<ListenableFuture<CoapResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_PARALLEL_REQUESTS; i++) {
+            futures.add(client.sendCoapRequest(createRequest("/slow"), serverSocket, 10, TimeUnit.SECONDS));
+        }
+        parallelResponses = Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+        laterResponse = client.sendCoapRequest(createRequest("/slow"), serverSocket, 10, TimeUnit.SECONDS).get();
+
+        observationCallback = new TestCallback() {
+            @Override
+            public boolean continueObservation() {
+                return true;
+            }
+        };
+        CoapRequest observationRequest = createRequest("/observable");
+        observationRequest.setObserve(0);
+        client.sendCoapRequest(observationRequest, serverSocket, observationCallback);
+        Thread.sleep(1000);
+
+        futures.clear();
+        for (int i = 0; i < NUMBER_OF_OBSERVATION_REQUESTS; i++) {
+            futures.add(client.sendCoapRequest(createRequest("/observable"), serverSocket, 5, TimeUnit.SECONDS));
+        }
+        observationResponses = Futures.allAsList(futures).get(5, TimeUnit.SECONDS);
+
+        CoapRequest staleObservationRequest = createRequest("/stale");
+        staleObservationRequest.setObserve(0);
+        client.sendCoapRequest(staleObservationRequest, serverSocket, new TestCallback() {
+            @Override
+            public boolean continueObservation() {
+                return true;
+            }
+        });
+        Thread.sleep(2000);
+
+        staleObservationResponse = client.sendCoapRequest(createRequest("/stale"), serverSocket, 5, TimeUnit.SECONDS)
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    private static CoapRequest createRequest(String path) throws Exception {
+        URI uri = new URI("coap", null, "localhost", server.getPort(), path, null, null);
+        return new CoapRequest(MessageType.CON, MessageCode.GET, uri);
+    }
+
+    @Test
+    public void testAllParallelRequestsReceivedTheResponse() {
+        assertEquals("Wrong number of responses!", NUMBER_OF_PARALLEL_REQUESTS, parallelResponses.size());
+        for (CoapResponse coapResponse : parallelResponses) {
+            assertEquals("Wrong content!", "Slow status", coapResponse.getContent().toString(CoapMessage.CHARSET));
+        }
+    }
+
+    @Test
+    public void testServerReceivedTwoRequests() {
+        assertEquals("Wrong content!", "Slow status", laterResponse.getContent().toString(CoapMessage.CHARSET));
+        assertEquals("Wrong number of requests!", 2, slowWebresource.getRequestCount());
+    }
+
+    @Test
+    public void testRequestsWereAnsweredWithNotification() {
+        assertTrue("No notification received!", observationCallback.getCoapResponses().size() > 0);
+        assertEquals("Wrong number of responses!", NUMBER_OF_OBSERVATION_REQUESTS, observationResponses.size());
+        for (CoapResponse coapResponse : observationResponses) {
+            assertTrue("Response is no update notification!", coapResponse.isUpdateNotification());
+            assertEquals("Wrong content!", "Status #1", coapResponse.getContent().toString(CoapMessage.CHARSET));
+        }
+    }
+
+    @Test
+    public void testRequestWasSentIfNotificationWasStale() {
+        assertFalse("Response is an update notification!", staleObservationResponse.isUpdateNotification());
+        assertEquals("Wrong content!", "Status #1", staleObservationResponse.getContent().toString(CoapMessage.CHARSET));
+    }
+
+
+    private static class CountingWebresource extends NotObservableTestWebresource {
+
+        private AtomicInteger requestCount = new AtomicInteger();
+
+        private CountingWebresource(String path, String initialStatus, long processingTime,
+                ScheduledExecutorService executor) {
+            super(path, initialStatus, 0, processingTime, executor);
+        }
+
+        @Override
+        public void processCoapRequest(SettableFuture<CoapResponse> responseFuture, CoapRequest coapRequest,
+                InetSocketAddress remoteAddress) throws Exception {
+
+            this.requestCount.incrementAndGet();
+            super.processCoapRequest(responseFuture, coapRequest, remoteAddress);
+        }
+
+        private int getRequestCount() {
+            return this.requestCount.get();
+        }
+    }
+}
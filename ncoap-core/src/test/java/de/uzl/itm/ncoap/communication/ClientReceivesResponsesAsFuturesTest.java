@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import de.uzl.itm.ncoap.application.client.CoapClient;
+import de.uzl.itm.ncoap.application.client.ResponseFuture;
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.endpoints.server.NotObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ResponseFuture}s returned by
+ * {@link CoapClient#sendCoapRequest(CoapRequest, InetSocketAddress, long, TimeUnit)}.
+ *
+ * <ul>
+ *     <li>100 requests to <code>/service1</code> to <code>/service100</code> are sent in parallel and the futures
+ *     are combined with {@link Futures#allAsList(Iterable)}.</li>
+ *     <li>A request to <code>/slow</code> (processing time 2 seconds) is sent with a deadline of 500 ms.</li>
+ * </ul>
+ *
+ * @author Oliver Kleine
+ */
+public class ClientReceivesResponsesAsFuturesTest extends AbstractCoapCommunicationTest {
+
+    private static final int NUMBER_OF_PARALLEL_REQUESTS = 100;
+
+    private static CoapServer server;
+    private static CoapClient client;
+    private static InetSocketAddress serverSocket;
+
+    private static List<CoapResponse> responses;
+    private static ResponseFuture slowFuture;
+    private static long slowFutureDuration;
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger(ResponseFuture.class.getName()).setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Override
+    public void setupComponents() throws Exception {
+        server = new CoapServer();
+        serverSocket = new InetSocketAddress("localhost", server.getPort());
+
+        for (int i = 1; i <= NUMBER_OF_PARALLEL_REQUESTS; i++) {
+            server.registerWebresource(new NotObservableTestWebresource("/service" + i,
+                    "This is the status of service " + i, 0, 0, server.getExecutor()));
+        }
+        server.registerWebresource(new NotObservableTestWebresource("/slow", "Slow", 0, 2000, server.getExecutor()));
+
+        client = new CoapClient();
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        server.shutdown().get();
+        client.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        List<ListenableFuture<CoapResponse>> futures = new ArrayList<>();
+        for (int i = 1; i <= NUMBER_OF_PARALLEL_REQUESTS; i++) {
+            futures.add(client.sendCoapRequest(createRequest("/service" + i), serverSocket, 10, TimeUnit.SECONDS));
+        }
+        responses = Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+
+        long start = System.currentTimeMillis();
+        slowFuture = client.sendCoapRequest(createRequest("/slow"), serverSocket, 500, TimeUnit.MILLISECONDS);
+        try {
+            slowFuture.get();
+        } catch (ExecutionException ex) {
+            // expected (see test)
+        }
+        slowFutureDuration = System.currentTimeMillis() - start;
+
+        // wait for the (ignored) response of the slow resource
+        Thread.sleep(2500);
+    }
+
+    private static CoapRequest createRequest(String path) throws Exception {
+        URI uri = new URI("coap", null, "localhost", server.getPort(), path, null, null);
+        return new CoapRequest(MessageType.CON, MessageCode.GET, uri);
+    }
+
+    @Test
+    public void testAllResponsesWereReceivedInOrder() {
+        assertEquals("Wrong number of responses!", NUMBER_OF_PARALLEL_REQUESTS, responses.size());
+        for (int i = 1; i <= NUMBER_OF_PARALLEL_REQUESTS; i++) {
+            String content = responses.get(i - 1).getContent().toString(CoapMessage.CHARSET);
+            assertEquals("Wrong content!", "This is the status of service " + i, content);
+        }
+    }
+
+    @Test
+    public void testSlowRequestExpiredAtDeadline() throws Exception {
+        assertTrue("Future was not completed!", slowFuture.isDone());
+        assertTrue("Deadline was not kept (" + slowFutureDuration + " ms)!", slowFutureDuration < 1500);
+        try {
+            slowFuture.get();
+        } catch (ExecutionException ex) {
+            assertTrue("Wrong cause (" + ex.getCause() + ")!", ex.getCause() instanceof TimeoutException);
+            return;
+        }
+        throw new AssertionError("Future did not fail!");
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import de.uzl.itm.ncoap.application.ExecutionMode;
+import de.uzl.itm.ncoap.application.client.CoapClient;
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.communication.dispatching.client.ResponseDispatcher;
+import de.uzl.itm.ncoap.communication.reliability.outbound.CongestionController;
+import de.uzl.itm.ncoap.endpoints.client.TestCallback;
+import de.uzl.itm.ncoap.endpoints.server.NotObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the per-destination queue of the {@link ResponseDispatcher}, i.e. the requests to the same remote endpoint
+ * are written in batches (with tokens assigned in bulk).
+ *
+ * <ul>
+ *     <li>4 threads send 100 confirmable requests each to <code>/service1</code> to <code>/service400</code>
+ *     at the same time.</li>
+ * </ul>
+ *
+ * <p>The requests are confirmable (i.e. retransmitted if a datagram is lost) and the client's NSTART is large enough
+ * to not let the {@link CongestionController} hold back any of them. A handler between the {@link ResponseDispatcher}
+ * and the other handlers of the client records the messages written by the {@link ResponseDispatcher}. As every drain
+ * of a queue is written as one {@link OutboundMessageBatch}, the test proves that all requests were written in
+ * batches (none of them individually), that no batch exceeded {@link ResponseDispatcher#MAX_BATCH_SIZE} and that
+ * there were fewer batches than requests, i.e. concurrently queued requests shared a batch.</p>
+ *
+ * @author Oliver Kleine
+ */
+public class ClientSendsQueuedRequestsInBatchesTest extends AbstractCoapCommunicationTest {
+
+    private static final int NUMBER_OF_THREADS = 4;
+    private static final int REQUESTS_PER_THREAD = 100;
+    private static final int NUMBER_OF_REQUESTS = NUMBER_OF_THREADS * REQUESTS_PER_THREAD;
+
+    private static CoapServer server;
+    private static CoapClient client;
+    private static InetSocketAddress serverSocket;
+
+    private static CountDownLatch responses;
+    private static boolean allResponsesReceived;
+    private static List<LatchCallback> callbacks;
+
+    private static List<Integer> batchSizes;
+    private static AtomicInteger singleRequests;
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger(ResponseDispatcher.class.getName()).setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Override
+    public void setupComponents() throws Exception {
+        server = new CoapServer();
+        serverSocket = new InetSocketAddress("localhost", server.getPort());
+
+        for (int i = 1; i <= NUMBER_OF_REQUESTS; i++) {
+            server.registerWebresource(new NotObservableTestWebresource("/service" + i,
+                    "This is the status of service " + i, 0, 0, server.getExecutor()));
+        }
+
+        // NSTART is the number of requests, i.e. no request is queued by the congestion controller
+        client = new CoapClient("Batching Client", new InetSocketAddress(0), ExecutionMode.PLATFORM_THREADS, 0,
+                NUMBER_OF_REQUESTS);
+
+        batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        singleRequests = new AtomicInteger(0);
+        client.getChannel().getPipeline().addBefore("ResponseDispatcher", "BatchRecorder",
+                new SimpleChannelDownstreamHandler() {
+                    @Override
+                    public void writeRequested(ChannelHandlerContext ctx, MessageEvent me) throws Exception {
+                        if (me.getMessage() instanceof OutboundMessageBatch) {
+                            batchSizes.add(((OutboundMessageBatch) me.getMessage()).size());
+                        } else if (me.getMessage() instanceof CoapRequest) {
+                            singleRequests.incrementAndGet();
+                        }
+                        super.writeRequested(ctx, me);
+                    }
+                });
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        server.shutdown().get();
+        client.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        responses = new CountDownLatch(NUMBER_OF_REQUESTS);
+        callbacks = new ArrayList<>(NUMBER_OF_REQUESTS);
+        for (int i = 0; i < NUMBER_OF_REQUESTS; i++) {
+            callbacks.add(new LatchCallback());
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(NUMBER_OF_THREADS);
+        for (int t = 0; t < NUMBER_OF_THREADS; t++) {
+            final int offset = t * REQUESTS_PER_THREAD;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = offset; i < offset + REQUESTS_PER_THREAD; i++) {
+                            CoapRequest coapRequest = createRequest("/service" + (i + 1));
+                            client.sendCoapRequest(coapRequest, serverSocket, callbacks.get(i));
+                        }
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // wait for the responses (lost datagrams are retransmitted after 2 to 3 seconds)
+        allResponsesReceived = responses.await(30, TimeUnit.SECONDS);
+    }
+
+    private static CoapRequest createRequest(String path) throws Exception {
+        URI uri = new URI("coap", null, "localhost", server.getPort(), path, null, null);
+        return new CoapRequest(MessageType.CON, MessageCode.GET, uri);
+    }
+
+    @Test
+    public void testAllResponsesWereReceived() {
+        assertTrue("Missing responses: " + responses.getCount(), allResponsesReceived);
+        for (int i = 1; i <= NUMBER_OF_REQUESTS; i++) {
+            TestCallback callback = callbacks.get(i - 1);
+            assertEquals("Wrong number of responses for request " + i + "!", 1, callback.getCoapResponses().size());
+            CoapResponse coapResponse = callback.getCoapResponse(0);
+            String content = coapResponse.getContent().toString(CoapMessage.CHARSET);
+            assertEquals("Wrong content!", "This is the status of service " + i, content);
+        }
+    }
+
+    @Test
+    public void testAllTokensWereDistinct() {
+        Set<Token> tokens = new HashSet<>();
+        for (TestCallback callback : callbacks) {
+            for (CoapResponse coapResponse : callback.getCoapResponses().values()) {
+                tokens.add(coapResponse.getToken());
+            }
+        }
+        assertEquals("Duplicate tokens!", NUMBER_OF_REQUESTS, tokens.size());
+    }
+
+    @Test
+    public void testRequestsWereWrittenInBatches() {
+        assertEquals("Requests were written individually!", 0, singleRequests.get());
+
+        int requests = 0;
+        synchronized (batchSizes) {
+            for (int batchSize : batchSizes) {
+                assertTrue("Batch too large: " + batchSize, batchSize <= ResponseDispatcher.MAX_BATCH_SIZE);
+                requests += batchSize;
+            }
+            assertTrue("No requests shared a batch!", batchSizes.size() < NUMBER_OF_REQUESTS);
+        }
+        assertEquals("Wrong number of requests in batches!", NUMBER_OF_REQUESTS, requests);
+    }
+
+
+    private static class LatchCallback extends TestCallback {
+
+        @Override
+        public void processCoapResponse(CoapResponse coapResponse) {
+            super.processCoapResponse(coapResponse);
+            responses.countDown();
+        }
+    }
+}
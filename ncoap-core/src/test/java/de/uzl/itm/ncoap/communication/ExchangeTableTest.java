@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the composite keys and the atomic operations of the {@link ExchangeTable}
+ *
+ * @author Oliver Kleine
+ */
+public class ExchangeTableTest extends AbstractCoapTest {
+
+    private static final Token TOKEN_1 = new Token(new byte[]{1, 2, 3});
+    private static final Token TOKEN_2 = new Token(new byte[]{4, 5, 6});
+
+    private ExchangeTable<Token, String> table;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createTable() {
+        this.table = new ExchangeTable<>();
+    }
+
+    @Test
+    public void testEqualSocketsAreTheSameKey() throws Exception {
+        InetSocketAddress socket1 = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 5683);
+        InetSocketAddress socket2 = new InetSocketAddress(InetAddress.getByAddress(new byte[]{127, 0, 0, 1}), 5683);
+
+        table.put(socket1, TOKEN_1, "A");
+        assertEquals("A", table.get(socket2, TOKEN_1));
+        assertNull(table.get(socket2, TOKEN_2));
+        assertNull(table.get(new InetSocketAddress(socket1.getAddress(), 5684), TOKEN_1));
+    }
+
+    @Test
+    public void testIPv4AndIPv6SocketsAreDifferentKeys() throws Exception {
+        InetSocketAddress socket1 = new InetSocketAddress(InetAddress.getByName("0.0.0.1"), 5683);
+        InetSocketAddress socket2 = new InetSocketAddress(InetAddress.getByName("::1"), 5683);
+
+        table.put(socket1, TOKEN_1, "A");
+        table.put(socket2, TOKEN_1, "B");
+        assertEquals(2, table.size());
+        assertEquals("A", table.get(socket1, TOKEN_1));
+        assertEquals("B", table.get(socket2, TOKEN_1));
+    }
+
+    @Test
+    public void testUnresolvedSockets() throws Exception {
+        InetSocketAddress socket1 = InetSocketAddress.createUnresolved("example.org", 5683);
+        InetSocketAddress socket2 = InetSocketAddress.createUnresolved("example.com", 5683);
+
+        table.put(socket1, TOKEN_1, "A");
+        assertEquals("A", table.get(InetSocketAddress.createUnresolved("example.org", 5683), TOKEN_1));
+        assertNull(table.get(socket2, TOKEN_1));
+    }
+
+    @Test
+    public void testAtomicOperations() throws Exception {
+        InetSocketAddress socket = new InetSocketAddress("127.0.0.1", 5683);
+
+        assertNull(table.putIfAbsent(socket, TOKEN_1, "A"));
+        assertEquals("A", table.putIfAbsent(socket, TOKEN_1, "B"));
+
+        assertFalse(table.replace(socket, TOKEN_1, "B", "C"));
+        assertTrue(table.replace(socket, TOKEN_1, "A", "C"));
+        assertNull(table.replace(socket, TOKEN_2, "D"));
+        assertFalse(table.contains(socket, TOKEN_2));
+
+        assertFalse(table.remove(socket, TOKEN_1, "A"));
+        assertTrue(table.remove(socket, TOKEN_1, "C"));
+        assertEquals(0, table.size());
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.application.client.CoapClient;
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.server.NotFoundHandler;
+import de.uzl.itm.ncoap.endpoints.server.NotObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.jboss.netty.channel.socket.DatagramChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests if all channels of a {@link CoapServer} with multiple channels (SO_REUSEPORT) are bound to the same
+ * (ephemeral) port if the server is started on port 0.
+ *
+ * @author Oliver Kleine
+ */
+public class MultiChannelServerOnEphemeralPortTest extends AbstractCoapTest {
+
+    private static final int NUMBER_OF_CHANNELS = 4;
+    private static final int NUMBER_OF_CLIENTS = 8;
+
+    private CoapServer server;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void startServer() {
+        this.server = new CoapServer(CoapServer.DEFAULT_NAME, NotFoundHandler.getDefault(), new InetSocketAddress(0),
+                BlockSize.UNBOUND, BlockSize.UNBOUND, NUMBER_OF_CHANNELS);
+        this.server.registerWebresource(new NotObservableTestWebresource("/test", "Status", 0, 0,
+                this.server.getExecutor()));
+    }
+
+    @After
+    public void shutdownServer() throws Exception {
+        this.server.shutdown().get();
+    }
+
+    @Test
+    public void testAllChannelsAreBoundToTheSamePort() {
+        int port = this.server.getPort();
+        assertTrue("No ephemeral port!", port > 0);
+        for (DatagramChannel channel : this.server.getChannels()) {
+            assertEquals("Wrong port!", port, channel.getLocalAddress().getPort());
+        }
+    }
+
+    @Test
+    public void testRequestsToReportedPortAreAnswered() throws Exception {
+        InetSocketAddress serverSocket = new InetSocketAddress("localhost", this.server.getPort());
+        URI uri = new URI("coap", null, "localhost", this.server.getPort(), "/test", null, null);
+
+        // the clients (i.e. remote sockets) are distributed among the channels
+        for (int i = 0; i < NUMBER_OF_CLIENTS; i++) {
+            CoapClient client = new CoapClient("Client #" + (i + 1));
+            try {
+                CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, uri);
+                CoapResponse coapResponse = client.sendCoapRequest(coapRequest, serverSocket, 5, TimeUnit.SECONDS)
+                        .get();
+                assertEquals("Wrong content!", "Status", coapResponse.getContent().toString(CoapMessage.CHARSET));
+            } finally {
+                client.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.communication.reliability.inbound.ServerResponseCacheHandler;
+import de.uzl.itm.ncoap.endpoints.DummyEndpoint;
+import de.uzl.itm.ncoap.endpoints.server.NotObservableTestWebresourceForPost;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests if duplicates of (non-idempotent) requests are answered with the cached response, i.e. without processing
+ * the duplicate again. The duplicates have the same message ID as the original requests but a different payload
+ * to make a second processing visible.
+ *
+ * @author Oliver Kleine
+ */
+public class ServerReplaysCachedResponseTest extends AbstractCoapCommunicationTest {
+
+    private static final String PATH = "/post";
+
+    private static CoapServer server;
+    private static NotObservableTestWebresourceForPost webresource;
+    private static DummyEndpoint endpoint;
+
+    @Override
+    public void setupComponents() throws Exception {
+        server = new CoapServer();
+        webresource = new NotObservableTestWebresourceForPost(PATH, "0", 0, server.getExecutor());
+        server.registerWebresource(webresource);
+
+        endpoint = new DummyEndpoint();
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        server.shutdown().get();
+        endpoint.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        InetSocketAddress serverSocket = new InetSocketAddress("localhost", server.getPort());
+        URI serviceURI = new URI("coap", null, "localhost", server.getPort(), PATH, null, null);
+
+        // confirmable request (piggy-backed response) and its duplicate
+        endpoint.writeMessage(createRequest(MessageType.CON, serviceURI, 11, "1"), serverSocket);
+        Thread.sleep(1000);
+        endpoint.writeMessage(createRequest(MessageType.CON, serviceURI, 11, "2"), serverSocket);
+        Thread.sleep(1000);
+
+        // non-confirmable request (non-confirmable response) and its duplicate
+        endpoint.writeMessage(createRequest(MessageType.NON, serviceURI, 12, "3"), serverSocket);
+        Thread.sleep(1000);
+        endpoint.writeMessage(createRequest(MessageType.NON, serviceURI, 12, "4"), serverSocket);
+        Thread.sleep(1000);
+    }
+
+    private static CoapRequest createRequest(int messageType, URI serviceURI, int messageID, String content)
+            throws Exception {
+
+        CoapRequest coapRequest = new CoapRequest(messageType, MessageCode.POST, serviceURI);
+        coapRequest.setMessageID(messageID);
+        coapRequest.setToken(new Token(new byte[]{(byte) messageID}));
+        coapRequest.setContent(content.getBytes(CoapMessage.CHARSET), ContentFormat.TEXT_PLAIN_UTF8);
+        return coapRequest;
+    }
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger(ServerResponseCacheHandler.class.getName()).setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Test
+    public void testEndpointReceivedFourMessages() {
+        assertEquals("Wrong number of received messages!", 4, endpoint.getReceivedCoapMessages().size());
+    }
+
+    @Test
+    public void testDuplicatesWereNotProcessed() {
+        assertEquals("Wrong resource status!", "3", webresource.getResourceStatus());
+    }
+
+    @Test
+    public void testResponseToConfirmableDuplicateIsReplayed() {
+        CoapMessage response = endpoint.getReceivedMessage(0);
+        CoapMessage replayed = endpoint.getReceivedMessage(1);
+
+        assertEquals("Response is no ACK!", MessageType.ACK, response.getMessageType());
+        assertEquals("Response has wrong message ID!", 11, response.getMessageID());
+        assertEquals("Replayed response differs!", response, replayed);
+        assertEquals("Wrong content!", "1", replayed.getContent().toString(CoapMessage.CHARSET));
+    }
+
+    @Test
+    public void testResponseToNonConfirmableDuplicateIsReplayed() {
+        CoapMessage response = endpoint.getReceivedMessage(2);
+        CoapMessage replayed = endpoint.getReceivedMessage(3);
+
+        assertEquals("Response is no NON!", MessageType.NON, response.getMessageType());
+        assertEquals("Replayed response differs!", response, replayed);
+        assertEquals("Wrong content!", "3", replayed.getContent().toString(CoapMessage.CHARSET));
+    }
+}
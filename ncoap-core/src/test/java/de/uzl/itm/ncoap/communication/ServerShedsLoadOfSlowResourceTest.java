@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication;
+
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.application.server.resource.BoundedRequestExecutor;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.communication.dispatching.server.RequestDispatcher;
+import de.uzl.itm.ncoap.endpoints.DummyEndpoint;
+import de.uzl.itm.ncoap.endpoints.server.NotObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the bounded request execution of resources with a {@link BoundedRequestExecutor}, i.e. a slow resource
+ * (one thread, at most two in-flight requests) must neither delay the requests for another resource nor accept
+ * more requests than its bound. The third request for the slow resource is to be rejected immediately with
+ * {@link MessageCode#SERVICE_UNAVAILABLE_503}.
+ *
+ * @author Oliver Kleine
+ */
+public class ServerShedsLoadOfSlowResourceTest extends AbstractCoapCommunicationTest {
+
+    private static final String SLOW_PATH = "/slow";
+    private static final String FAST_PATH = "/fast";
+
+    private static CoapServer server;
+    private static NotObservableTestWebresource slowWebresource;
+    private static DummyEndpoint endpoint;
+
+    @Override
+    public void setupComponents() throws Exception {
+        server = new CoapServer();
+
+        slowWebresource = new NotObservableTestWebresource(SLOW_PATH, "slow", 0, 1500, server.getExecutor());
+        slowWebresource.setRequestExecutor(BoundedRequestExecutor.create("slow", 1, 2));
+        server.registerWebresource(slowWebresource);
+        server.registerWebresource(new NotObservableTestWebresource(FAST_PATH, "fast", 0, 0, server.getExecutor()));
+
+        endpoint = new DummyEndpoint();
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        server.shutdown().get();
+        endpoint.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        InetSocketAddress serverSocket = new InetSocketAddress("localhost", server.getPort());
+
+        // three requests for the slow resource (the third exceeds the bound) and one for the fast resource
+        endpoint.writeMessage(createRequest(SLOW_PATH, 1), serverSocket);
+        Thread.sleep(100);
+        endpoint.writeMessage(createRequest(SLOW_PATH, 2), serverSocket);
+        Thread.sleep(100);
+        endpoint.writeMessage(createRequest(SLOW_PATH, 3), serverSocket);
+        Thread.sleep(100);
+        endpoint.writeMessage(createRequest(FAST_PATH, 4), serverSocket);
+
+        // wait for the slow resource to process the two accepted requests
+        Thread.sleep(4000);
+    }
+
+    private static CoapRequest createRequest(String path, int number) throws Exception {
+        URI serviceURI = new URI("coap", null, "localhost", server.getPort(), path, null, null);
+        CoapRequest coapRequest = new CoapRequest(MessageType.NON, MessageCode.GET, serviceURI);
+        coapRequest.setMessageID(number);
+        coapRequest.setToken(new Token(new byte[]{(byte) number}));
+        return coapRequest;
+    }
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger(RequestDispatcher.class.getName()).setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Test
+    public void testEndpointReceivedFourMessages() {
+        assertEquals("Wrong number of received messages!", 4, endpoint.getReceivedCoapMessages().size());
+    }
+
+    @Test
+    public void testRequestExceedingTheBoundIsRejectedImmediately() {
+        CoapResponse coapResponse = (CoapResponse) endpoint.getReceivedMessage(0);
+
+        assertEquals("Wrong token!", new Token(new byte[]{3}), coapResponse.getToken());
+        assertEquals("Wrong message code!", MessageCode.SERVICE_UNAVAILABLE_503, coapResponse.getMessageCode());
+        assertEquals("Wrong max-age!", BoundedRequestExecutor.DEFAULT_RETRY_AFTER, coapResponse.getMaxAge());
+    }
+
+    @Test
+    public void testFastResourceIsNotDelayedBySlowResource() {
+        CoapResponse coapResponse = (CoapResponse) endpoint.getReceivedMessage(1);
+
+        assertEquals("Wrong token!", new Token(new byte[]{4}), coapResponse.getToken());
+        assertEquals("Wrong message code!", MessageCode.CONTENT_205, coapResponse.getMessageCode());
+    }
+
+    @Test
+    public void testAcceptedRequestsForSlowResourceWereProcessed() {
+        for (int i = 2; i < 4; i++) {
+            CoapResponse coapResponse = (CoapResponse) endpoint.getReceivedMessage(i);
+            assertEquals("Wrong token!", new Token(new byte[]{(byte) (i - 1)}), coapResponse.getToken());
+            assertEquals("Wrong message code!", MessageCode.CONTENT_205, coapResponse.getMessageCode());
+        }
+    }
+
+    @Test
+    public void testAllSlotsWereReleased() {
+        assertEquals("Wrong number of in-flight requests!", 0,
+                slowWebresource.getRequestExecutor().getInFlightRequests());
+    }
+}
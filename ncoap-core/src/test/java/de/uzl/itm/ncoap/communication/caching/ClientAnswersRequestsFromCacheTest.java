@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.caching;
+
+import com.google.common.util.concurrent.SettableFuture;
+import de.uzl.itm.ncoap.application.ExecutionMode;
+import de.uzl.itm.ncoap.application.client.CoapClient;
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.application.server.resource.NotObservableWebresource;
+import de.uzl.itm.ncoap.communication.AbstractCoapCommunicationTest;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link ClientResponseCacheHandler} of a {@link CoapClient} with a response cache. The addressed resource
+ * responds with Max-Age 1 and an ETag (and with 2.03 (Valid) if the request contains that ETag).
+ *
+ * <ul>
+ *     <li>Request 1 is sent to the server (miss).</li>
+ *     <li>Request 2 is sent immediately afterwards and answered from the cache (hit).</li>
+ *     <li>Request 3 is sent 1.5 seconds later with the ETag of the stale response (revalidation).</li>
+ *     <li>Request 4 is sent immediately afterwards and answered from the validated response (hit).</li>
+ * </ul>
+ *
+ * @author Oliver Kleine
+ */
+public class ClientAnswersRequestsFromCacheTest extends AbstractCoapCommunicationTest {
+
+    private static final byte[] ETAG = new byte[]{1, 2, 3, 4};
+
+    private static CoapServer server;
+    private static CachableWebresource webresource;
+    private static CoapClient client;
+    private static InetSocketAddress serverSocket;
+
+    private static List<CoapResponse> responses;
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger(ClientResponseCacheHandler.class.getName()).setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Override
+    public void setupComponents() throws Exception {
+        server = new CoapServer();
+        serverSocket = new InetSocketAddress("localhost", server.getPort());
+        webresource = new CachableWebresource("/cachable", "Cachable status", server.getExecutor());
+        server.registerWebresource(webresource);
+
+        client = new CoapClient("Caching Client", new InetSocketAddress(0), ExecutionMode.PLATFORM_THREADS,
+                ClientResponseCacheHandler.DEFAULT_MAXIMUM_SIZE);
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        server.shutdown().get();
+        client.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        responses = new ArrayList<>();
+        responses.add(client.sendCoapRequest(createRequest(), serverSocket, 5, TimeUnit.SECONDS).get());
+        responses.add(client.sendCoapRequest(createRequest(), serverSocket, 5, TimeUnit.SECONDS).get());
+        Thread.sleep(1500);
+        responses.add(client.sendCoapRequest(createRequest(), serverSocket, 5, TimeUnit.SECONDS).get());
+        responses.add(client.sendCoapRequest(createRequest(), serverSocket, 5, TimeUnit.SECONDS).get());
+    }
+
+    private static CoapRequest createRequest() throws Exception {
+        URI uri = new URI("coap", null, "localhost", server.getPort(), "/cachable", null, null);
+        return new CoapRequest(MessageType.CON, MessageCode.GET, uri);
+    }
+
+    @Test
+    public void testAllResponsesContainTheStatus() {
+        assertEquals("Wrong number of responses!", 4, responses.size());
+        for (CoapResponse coapResponse : responses) {
+            assertEquals("Wrong message code!", MessageCode.CONTENT_205, coapResponse.getMessageCode());
+            assertEquals("Wrong content!", "Cachable status",
+                    coapResponse.getContent().toString(CoapMessage.CHARSET));
+            assertEquals("Wrong ETag!", Arrays.toString(ETAG), Arrays.toString(coapResponse.getEtag()));
+        }
+    }
+
+    @Test
+    public void testServerReceivedTwoRequests() {
+        assertEquals("Wrong number of requests!", 2, webresource.getRequestCount());
+        assertEquals("Wrong number of validations!", 1, webresource.getValidationCount());
+    }
+
+    @Test
+    public void testCacheMetrics() {
+        ClientResponseCacheHandler responseCache = client.getResponseCache();
+        assertEquals("Wrong number of hits!", 2, responseCache.getHitCount());
+        assertEquals("Wrong number of misses!", 2, responseCache.getMissCount());
+        assertEquals("Wrong number of revalidations!", 1, responseCache.getRevalidationCount());
+        assertEquals("Wrong cache size!", 1, responseCache.getSize());
+    }
+
+
+    /**
+     * Resource with Max-Age 1 and a constant ETag. Requests with that ETag are answered with 2.03 (Valid).
+     */
+    private static class CachableWebresource extends NotObservableWebresource<String> {
+
+        private AtomicInteger requestCount = new AtomicInteger();
+        private AtomicInteger validationCount = new AtomicInteger();
+
+        private CachableWebresource(String uriPath, String initialStatus, ScheduledExecutorService executor) {
+            super(uriPath, initialStatus, 1, executor);
+        }
+
+        @Override
+        public void processCoapRequest(SettableFuture<CoapResponse> responseFuture, CoapRequest coapRequest,
+                InetSocketAddress remoteAddress) throws Exception {
+
+            this.requestCount.incrementAndGet();
+            CoapResponse coapResponse;
+            if (!coapRequest.getEtags().isEmpty() && Arrays.equals(ETAG, coapRequest.getEtags().iterator().next())) {
+                this.validationCount.incrementAndGet();
+                coapResponse = new CoapResponse(coapRequest.getMessageType(), MessageCode.VALID_203);
+            } else {
+                coapResponse = new CoapResponse(coapRequest.getMessageType(), MessageCode.CONTENT_205);
+                coapResponse.setContent(getSerializedResourceStatus(ContentFormat.TEXT_PLAIN_UTF8),
+                        ContentFormat.TEXT_PLAIN_UTF8);
+            }
+            coapResponse.setEtag(ETAG);
+            coapResponse.setMaxAge(1);
+            responseFuture.set(coapResponse);
+        }
+
+        @Override
+        public byte[] getSerializedResourceStatus(long contentFormat) {
+            return getResourceStatus().getBytes(CoapMessage.CHARSET);
+        }
+
+        @Override
+        public byte[] getEtag(long contentFormat) {
+            return ETAG;
+        }
+
+        @Override
+        public void updateEtag(String resourceStatus) {
+            //nothing to do...
+        }
+
+        @Override
+        public void shutdown() {
+            //nothing to do...
+        }
+
+        private int getRequestCount() {
+            return this.requestCount.get();
+        }
+
+        private int getValidationCount() {
+            return this.validationCount.get();
+        }
+    }
+}
@@ -24,6 +24,7 @@
  */
 package de.uzl.itm.ncoap.communication.codec;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import de.uzl.itm.ncoap.AbstractCoapTest;
 import de.uzl.itm.ncoap.communication.dispatching.Token;
@@ -70,7 +71,15 @@ public class DecodeEncodedMessageTest extends AbstractCoapTest {
 
                 //[1] TKL is 8, but only 6 remaining bytes after header
                 new Object[]{new CoapRequest(MessageType.NON, MessageCode.POST,
-                        new URI("coap://coap.me:5683/p1/p2/p3/p4/p5/p6/p7"))}
+                        new URI("coap://coap.me:5683/p1/p2/p3/p4/p5/p6/p7"))},
+
+                //[2] options with extended length fields
+                new Object[]{new CoapRequest(MessageType.CON, MessageCode.GET,
+                        new URI("coap://coap.me:5683/" + Strings.repeat("a", 20) + "/" + Strings.repeat("b", 255)))},
+
+                //[3] option with extended delta field and payload
+                new Object[]{new CoapRequest(MessageType.NON, MessageCode.PUT,
+                        new URI("coap://coap.me:5683/" + Strings.repeat("c", 13)))}
         );
     }
 
@@ -81,11 +90,15 @@ public class DecodeEncodedMessageTest extends AbstractCoapTest {
         coapMessage.setMessageID(1234);
         coapMessage.setToken(new Token(new byte[]{1,2,3,4}));
 
-        if (coapMessage.getMessageCode() == MessageCode.POST) {
+        if (coapMessage.getMessageCode() == MessageCode.POST || coapMessage.getMessageCode() == MessageCode.PUT) {
             String payload = "Some arbitrary payload";
             coapMessage.setContent(payload.getBytes(CoapMessage.CHARSET), ContentFormat.TEXT_PLAIN_UTF8);
         }
 
+        if (coapMessage.getMessageCode() == MessageCode.PUT) {
+            coapMessage.setSize1(22);
+        }
+
         this.coapMessage = coapMessage;
     }
 
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.codec;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.communication.OutboundMessageBatch;
+import de.uzl.itm.ncoap.communication.codec.tools.CoapTestEncoder;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the encoding of {@link OutboundMessageBatch}es by the {@link CoapMessageEncoder}, i.e. that every message
+ * of a batch is written as a separate datagram with exactly the same bytes as if it was written on its own (even
+ * if it shares the encoded options and payload with other messages of the batch).
+ *
+ * @author Oliver Kleine
+ */
+public class EncodeOutboundMessageBatchTest extends AbstractCoapTest {
+
+    private EncoderEmbedder<ChannelBuffer> embedder;
+    private List<CoapMessage> coapMessages;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void writeBatch() throws Exception {
+        this.embedder = new EncoderEmbedder<>(new CoapMessageEncoder());
+        this.coapMessages = new ArrayList<>();
+
+        // update notification with payload
+        CoapResponse notification = new CoapResponse(MessageType.CON, MessageCode.CONTENT_205);
+        notification.setMessageID(1234);
+        notification.setToken(new Token(new byte[]{1, 2, 3, 4}));
+        notification.setContent("Status #1".getBytes(CoapMessage.CHARSET), ContentFormat.TEXT_PLAIN_UTF8);
+        notification.setObserve(17);
+        this.coapMessages.add(notification);
+
+        // update notifications sharing options and payload with the first one (i.e. shared encoding)
+        for (int i = 0; i < 2; i++) {
+            CoapResponse copy = new CoapResponse(MessageType.NON, MessageCode.CONTENT_205);
+            copy.setMessageID(1235 + i);
+            copy.setToken(new Token(new byte[]{(byte) i}));
+            copy.copyOptions(notification);
+            copy.setContent(notification.getContent());
+            this.coapMessages.add(copy);
+        }
+
+        // empty ACK (header only)
+        this.coapMessages.add(CoapMessage.createEmptyAcknowledgement(4711));
+
+        // response without payload
+        CoapResponse response = new CoapResponse(MessageType.NON, MessageCode.NOT_FOUND_404);
+        response.setMessageID(65535);
+        response.setToken(new Token(new byte[]{5, 6, 7, 8, 9, 10, 11, 12}));
+        response.setMaxAge(300);
+        this.coapMessages.add(response);
+
+        OutboundMessageBatch batch = new OutboundMessageBatch(this.coapMessages.size());
+        for (int i = 0; i < this.coapMessages.size(); i++) {
+            InetSocketAddress remoteSocket = new InetSocketAddress("localhost", 5683 + i);
+            batch.add(this.coapMessages.get(i), remoteSocket, Channels.future(this.embedder.getPipeline().getChannel()));
+        }
+
+        this.embedder.offer(batch);
+    }
+
+    @Test
+    public void testEveryMessageIsWrittenAsSeparateDatagram() {
+        assertEquals("Wrong number of datagrams!", this.coapMessages.size(), this.embedder.size());
+    }
+
+    @Test
+    public void testDatagramsEqualSingleEncodedMessages() throws Exception {
+        CoapTestEncoder encoder = new CoapTestEncoder();
+        for (CoapMessage coapMessage : this.coapMessages) {
+            ChannelBuffer expected = encoder.encode(coapMessage);
+            ChannelBuffer actual = this.embedder.poll();
+            assertEquals("Wrong encoding!", ChannelBuffers.hexDump(expected), ChannelBuffers.hexDump(actual));
+        }
+        assertNull("Unexpected datagram!", this.embedder.poll());
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.dispatching;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the representation of {@link Token}s as <code>long</code> value and length, i.e. that the semantics of the
+ * byte array representation (equality, order, bytes) are kept.
+ *
+ * @author Oliver Kleine
+ */
+public class TokenTest extends AbstractCoapTest {
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Test
+    public void testBytesAreKept() {
+        byte[] bytes = new byte[]{(byte) 0xFF, 0x00, 0x7F, (byte) 0x80};
+        Token token = new Token(bytes);
+        assertTrue("Wrong bytes!", Arrays.equals(bytes, token.getBytes()));
+        assertEquals("Wrong value!", 0xFF007F80L, token.getValue());
+        assertEquals("Wrong length!", 4, token.getLength());
+        assertEquals("Wrong string!", "0xFF007F80", token.toString());
+    }
+
+    @Test
+    public void testMaximumLengthBytesAreKept() {
+        byte[] bytes = new byte[]{(byte) 0x80, 1, 2, 3, 4, 5, 6, (byte) 0xFF};
+        assertTrue("Wrong bytes!", Arrays.equals(bytes, new Token(bytes).getBytes()));
+    }
+
+    @Test
+    public void testTokensWithZeroBytesOfDifferentLengthDiffer() {
+        Token token1 = new Token(new byte[1]);
+        Token token2 = new Token(new byte[2]);
+        assertFalse("Tokens must not be equal!", token1.equals(token2));
+        assertFalse("Tokens must not be equal!", Token.EMPTY.equals(token1));
+        assertTrue("Shorter token must be smaller!", token1.compareTo(token2) < 0);
+    }
+
+    @Test
+    public void testEqualTokensHaveEqualHashCodes() {
+        Token token1 = new Token(new byte[]{1, 2, 3});
+        Token token2 = new Token(0x010203L, 3);
+        assertEquals("Tokens must be equal!", token1, token2);
+        assertEquals("Hash codes must be equal!", token1.hashCode(), token2.hashCode());
+        assertEquals("Tokens must be equal!", 0, token1.compareTo(token2));
+    }
+
+    @Test
+    public void testTokensOfSameLengthAreComparedUnsigned() {
+        Token token1 = new Token(new byte[]{0x7F, 0x00});
+        Token token2 = new Token(new byte[]{(byte) 0x80, 0x00});
+        assertTrue("Wrong order!", token1.compareTo(token2) < 0);
+        assertTrue("Wrong order!", token2.compareTo(token1) > 0);
+    }
+
+    @Test
+    public void testEmptyTokenIsShared() {
+        assertSame("Empty token is not shared!", Token.EMPTY, Token.valueOf(0, 0));
+        assertEquals("Empty token must be equal!", Token.EMPTY, new Token(new byte[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueExceedingLengthIsRejected() {
+        new Token(0x0100L, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLongByteArrayIsRejected() {
+        new Token(new byte[9]);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.dispatching.client;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link TokenSet}, i.e. the primitive hash set of the values of active tokens, against a
+ * {@link java.util.HashSet} (including the removal of values that are part of longer probe sequences).
+ *
+ * @author Oliver Kleine
+ */
+public class TokenSetTest extends AbstractCoapTest {
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Test
+    public void testAddContainsRemove() {
+        TokenSet tokenSet = new TokenSet();
+        assertTrue("Value was not added!", tokenSet.add(4711));
+        assertFalse("Value was added twice!", tokenSet.add(4711));
+        assertTrue("Value not contained!", tokenSet.contains(4711));
+        assertTrue("Value was not removed!", tokenSet.remove(4711));
+        assertFalse("Value still contained!", tokenSet.contains(4711));
+        assertFalse("Value was removed twice!", tokenSet.remove(4711));
+        assertEquals("Wrong size!", 0, tokenSet.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashSet() {
+        TokenSet tokenSet = new TokenSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(4711);
+
+        // small values lead to collisions and long probe sequences
+        for (int i = 0; i < 100000; i++) {
+            long value = 1 + random.nextInt(1000);
+            if (random.nextBoolean()) {
+                assertEquals("Wrong result of add!", expected.add(value), tokenSet.add(value));
+            } else {
+                assertEquals("Wrong result of remove!", expected.remove(value), tokenSet.remove(value));
+            }
+        }
+
+        assertEquals("Wrong size!", expected.size(), tokenSet.size());
+        for (long value = 1; value <= 1000; value++) {
+            assertEquals("Wrong result of contains!", expected.contains(value), tokenSet.contains(value));
+        }
+    }
+
+    @Test
+    public void testTokenFactoryReleasesGeneratedTokensOnly() {
+        TokenFactory tokenFactory = new TokenFactory();
+        assertTrue("Token was not released!", tokenFactory.releaseToken(tokenFactory.getNextToken()));
+        assertFalse("Unknown token was released!", tokenFactory.releaseToken(
+                new Token(new byte[]{1, 2, 3})));
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.dispatching.server;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.application.server.resource.Webresource;
+import de.uzl.itm.ncoap.endpoints.server.NotObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the matching of literal, templated, and subtree paths by the {@link UriPathRouter}
+ *
+ * @author Oliver Kleine
+ */
+public class UriPathRouterTest extends AbstractCoapTest {
+
+    private ScheduledThreadPoolExecutor executor;
+    private UriPathRouter router;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createRouter() {
+        this.executor = new ScheduledThreadPoolExecutor(1);
+        this.router = new UriPathRouter();
+    }
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    private Webresource add(String uriPath) {
+        Webresource webresource = new NotObservableTestWebresource(uriPath, uriPath, 0, 0, this.executor);
+        this.router.add(webresource);
+        return webresource;
+    }
+
+    private static CoapRequest createRequest(String uriPath) throws Exception {
+        URI uri = new URI("coap", null, "localhost", -1, uriPath, null, null);
+        return new CoapRequest(MessageType.CON, MessageCode.GET, uri);
+    }
+
+    @Test
+    public void testLiteralPaths() throws Exception {
+        Webresource root = add("/");
+        Webresource sensors = add("/sensors");
+        Webresource wkc = add("/.well-known/core");
+
+        assertSame(root, router.find(createRequest("/")));
+        assertSame(sensors, router.find(createRequest("/sensors")));
+        assertSame(wkc, router.find(createRequest("/.well-known/core")));
+        assertNull(router.find(createRequest("/sensors/1")));
+        assertNull(router.find(createRequest("/.well-known")));
+    }
+
+    @Test
+    public void testTemplatedPaths() throws Exception {
+        Webresource temp = add("/sensors/{id}/temp");
+        Webresource special = add("/sensors/1/temp");
+
+        assertSame(special, router.find(createRequest("/sensors/1/temp")));
+        assertSame(temp, router.find(createRequest("/sensors/2/temp")));
+        assertNull(router.find(createRequest("/sensors/2")));
+        assertNull(router.find(createRequest("/sensors/2/humidity")));
+    }
+
+    @Test
+    public void testSubtreePaths() throws Exception {
+        Webresource files = add("/files/*");
+        Webresource readme = add("/files/readme");
+
+        assertSame(readme, router.find(createRequest("/files/readme")));
+        assertSame(files, router.find(createRequest("/files")));
+        assertSame(files, router.find(createRequest("/files/a/b/c")));
+        assertNull(router.find(createRequest("/other")));
+    }
+
+    @Test
+    public void testBacktrackingFromLiteralToTemplate() throws Exception {
+        Webresource literal = add("/a/b/c");
+        Webresource template = add("/a/{x}/d");
+
+        assertSame(literal, router.find(createRequest("/a/b/c")));
+        assertSame(template, router.find(createRequest("/a/b/d")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTemplatesWithDifferentNamesAreTheSamePath() throws Exception {
+        add("/sensors/{id}");
+        add("/sensors/{name}");
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        add("/sensors/{id}/temp");
+        add("/files/*");
+
+        assertTrue(router.remove("/sensors/{id}/temp"));
+        assertFalse(router.remove("/sensors/{id}/temp"));
+        assertNull(router.find("/sensors/1/temp"));
+
+        assertTrue(router.remove("/files/*"));
+        assertNull(router.find("/files/readme"));
+
+        // a removed path can be registered again
+        Webresource temp = add("/sensors/{id}/temp");
+        assertSame(temp, router.find("/sensors/1/temp"));
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observe;
+
+import de.uzl.itm.ncoap.application.client.CoapClient;
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.communication.AbstractCoapCommunicationTest;
+import de.uzl.itm.ncoap.endpoints.client.TestCallback;
+import de.uzl.itm.ncoap.endpoints.server.ObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the coalescing and rate limiting of update notifications, i.e. the minimum and maximum notification
+ * interval of {@link de.uzl.itm.ncoap.application.server.resource.ObservableWebresource}s.
+ *
+ * <ul>
+ *     <li>The status of <code>/pmin</code> (minimum interval: 1 second) is updated 20 times within 2 seconds. The
+ *     observer is to receive only a few notifications (at least 1 second apart) with the latest status.</li>
+ *     <li>The status of <code>/pmax</code> (maximum interval: 1 second) is never updated. The observer is to
+ *     receive a notification about every second anyway.</li>
+ * </ul>
+ *
+ * @author Oliver Kleine
+ */
+public class ServerRateLimitsUpdateNotificationsTest extends AbstractCoapCommunicationTest {
+
+    private static final int UPDATES = 20;
+
+    private static CoapServer server;
+    private static ObservableTestWebresource pminWebresource;
+    private static ObservableTestWebresource pmaxWebresource;
+
+    private static CoapClient client;
+    private static TestCallback pminCallback;
+    private static TestCallback pmaxCallback;
+
+    @Override
+    public void setupComponents() throws Exception {
+        server = new CoapServer();
+
+        pminWebresource = new ObservableTestWebresource("/pmin", 1, 0, server.getExecutor());
+        pminWebresource.setNotificationIntervals(1000, 0);
+        server.registerWebresource(pminWebresource);
+
+        pmaxWebresource = new ObservableTestWebresource("/pmax", 1, 0, server.getExecutor());
+        pmaxWebresource.setNotificationIntervals(0, 1000);
+        server.registerWebresource(pmaxWebresource);
+
+        client = new CoapClient();
+        pminCallback = new ObservationCallback();
+        pmaxCallback = new ObservationCallback();
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        client.shutdown();
+        server.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        InetSocketAddress serverSocket = new InetSocketAddress("localhost", server.getPort());
+
+        client.sendCoapRequest(createObservationRequest("/pmin"), serverSocket, pminCallback);
+        client.sendCoapRequest(createObservationRequest("/pmax"), serverSocket, pmaxCallback);
+        Thread.sleep(500);
+
+        for (int i = 2; i <= UPDATES + 1; i++) {
+            pminWebresource.setResourceStatus(i, 60);
+            Thread.sleep(100);
+        }
+
+        Thread.sleep(2000);
+    }
+
+    private static CoapRequest createObservationRequest(String path) throws Exception {
+        URI serviceURI = new URI("coap", null, "localhost", server.getPort(), path, null, null);
+        CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, serviceURI);
+        coapRequest.setObserve(0);
+        return coapRequest;
+    }
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger("de.uzl.itm.ncoap.communication.observing.ServerObservationHandler").setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Test
+    public void testStatusChangesWereCoalesced() {
+        int responses = pminCallback.getCoapResponses().size();
+        assertTrue("Too many notifications (" + responses + ")!", responses <= 5);
+        assertTrue("Too few notifications (" + responses + ")!", responses >= 3);
+    }
+
+    @Test
+    public void testLatestNotificationContainsLatestStatus() {
+        Map<Long, CoapResponse> responses = pminCallback.getCoapResponses();
+        CoapResponse latest = pminCallback.getCoapResponse(responses.size() - 1);
+        assertEquals("Wrong status!", "Status #" + (UPDATES + 1), latest.getContent().toString(CoapMessage.CHARSET));
+    }
+
+    @Test
+    public void testMinimumIntervalWasKept() {
+        List<Long> times = new ArrayList<>(pminCallback.getCoapResponses().keySet());
+        for (int i = 2; i < times.size(); i++) {
+            // allow some tolerance (the first notification is measured from the response)
+            long interval = times.get(i) - times.get(i - 1);
+            assertTrue("Interval too short (" + interval + " ms)!", interval >= 900);
+        }
+    }
+
+    @Test
+    public void testUnchangedStatusIsNotifiedAfterMaximumInterval() {
+        int responses = pmaxCallback.getCoapResponses().size();
+        assertTrue("Too few notifications (" + responses + ")!", responses >= 4);
+        for (CoapResponse coapResponse : pmaxCallback.getCoapResponses().values()) {
+            assertEquals("Wrong status!", "Status #1", coapResponse.getContent().toString(CoapMessage.CHARSET));
+        }
+    }
+
+
+    private static class ObservationCallback extends TestCallback {
+        @Override
+        public boolean continueObservation() {
+            return true;
+        }
+    }
+}
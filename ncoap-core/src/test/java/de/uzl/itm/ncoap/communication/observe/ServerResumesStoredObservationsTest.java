@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observe;
+
+import de.uzl.itm.ncoap.application.client.CoapClient;
+import de.uzl.itm.ncoap.application.server.CoapServer;
+import de.uzl.itm.ncoap.communication.AbstractCoapCommunicationTest;
+import de.uzl.itm.ncoap.communication.observing.MappedObservationStore;
+import de.uzl.itm.ncoap.endpoints.client.TestCallback;
+import de.uzl.itm.ncoap.endpoints.server.ObservableTestWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the resumption of observations after a restart of the server, i.e. the observations are recorded in a
+ * {@link MappedObservationStore} and the new server (using the same file) continues to send update notifications
+ * to the observer without a new registration.
+ *
+ * <ul>
+ *     <li>The client registers as observer of <code>/observable</code> (status 1) at the first server.</li>
+ *     <li>The first server is shut down (no notification is sent to the observer).</li>
+ *     <li>The second server (same port, same file) is started and the resource is registered (status 2).</li>
+ *     <li>The status is updated to 3.</li>
+ * </ul>
+ *
+ * @author Oliver Kleine
+ */
+public class ServerResumesStoredObservationsTest extends AbstractCoapCommunicationTest {
+
+    private static File file;
+
+    private static CoapServer server1;
+    private static CoapServer server2;
+
+    private static CoapClient client;
+    private static TestCallback callback;
+
+    private static int port;
+
+    @Override
+    public void setupComponents() throws Exception {
+        file = File.createTempFile("observations", ".bin");
+        file.deleteOnExit();
+
+        server1 = new CoapServer();
+        server1.setObservationStore(new MappedObservationStore(file));
+        server1.registerWebresource(new ObservableTestWebresource("/observable", 1, 0, server1.getExecutor()));
+        port = server1.getPort();
+
+        client = new CoapClient();
+        callback = new TestCallback() {
+            @Override
+            public boolean continueObservation() {
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public void shutdownComponents() throws Exception {
+        client.shutdown();
+        server2.shutdown();
+    }
+
+    @Override
+    public void createTestScenario() throws Exception {
+        URI serviceURI = new URI("coap", null, "localhost", port, "/observable", null, null);
+        CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, serviceURI);
+        coapRequest.setObserve(0);
+        client.sendCoapRequest(coapRequest, new InetSocketAddress("localhost", port), callback);
+        Thread.sleep(500);
+
+        server1.shutdown().get();
+        Thread.sleep(500);
+
+        server2 = new CoapServer(port);
+        server2.setObservationStore(new MappedObservationStore(file));
+        ObservableTestWebresource webresource =
+                new ObservableTestWebresource("/observable", 2, 0, server2.getExecutor());
+
+        // the initial status is set asynchronously, i.e. registering the resource before would (occasionally) make
+        // the server send status 2 twice (once upon resumption and once upon the status "update")
+        long deadline = System.currentTimeMillis() + 2000;
+        while (webresource.getResourceStatus() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        server2.registerWebresource(webresource);
+        Thread.sleep(500);
+
+        webresource.setResourceStatus(3, 60);
+        Thread.sleep(500);
+    }
+
+    @Override
+    public void setupLogging() throws Exception {
+        Logger.getLogger("de.uzl.itm.ncoap.communication.observing.ServerObservationHandler").setLevel(Level.DEBUG);
+        Logger.getRootLogger().setLevel(Level.ERROR);
+    }
+
+    @Test
+    public void testObserverReceivedThreeResponses() {
+        assertEquals("Wrong number of responses!", 3, callback.getCoapResponses().size());
+    }
+
+    @Test
+    public void testNoShutdownNotificationWasSent() {
+        for (CoapResponse coapResponse : callback.getCoapResponses().values()) {
+            assertEquals("Wrong message code!", MessageCode.CONTENT_205, coapResponse.getMessageCode());
+        }
+    }
+
+    @Test
+    public void testResumedObservationReceivedStatusOfNewServer() {
+        assertEquals("Wrong status!", "Status #1", getContent(0));
+        assertEquals("Wrong status!", "Status #2", getContent(1));
+        assertEquals("Wrong status!", "Status #3", getContent(2));
+    }
+
+    @Test
+    public void testObserveNumbersKeptIncreasing() {
+        long previous = -1;
+        for (CoapResponse coapResponse : callback.getCoapResponses().values()) {
+            long observe = coapResponse.getObserve();
+            assertTrue("Observe number did not increase!", observe > previous);
+            previous = observe;
+        }
+    }
+
+    private static String getContent(int index) {
+        return callback.getCoapResponse(index).getContent().toString(CoapMessage.CHARSET);
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observing;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the persistence of {@link ObservationRecord}s by the {@link MappedObservationStore}, i.e. that the running
+ * observations are loaded from the file by a new instance (e.g. after a restart of the server).
+ *
+ * @author Oliver Kleine
+ */
+public class MappedObservationStoreTest extends AbstractCoapTest {
+
+    private File file;
+    private MappedObservationStore store;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createStore() throws Exception {
+        this.file = File.createTempFile("observations", ".bin");
+        this.store = new MappedObservationStore(this.file, 256);
+    }
+
+    @After
+    public void deleteStore() {
+        this.store.close();
+        this.file.delete();
+    }
+
+    @Test
+    public void testAddedRecordIsReloaded() throws Exception {
+        ObservationRecord record = createRecord(1);
+        this.store.add(record);
+
+        List<ObservationRecord> records = reload();
+        assertEquals("Wrong number of records!", 1, records.size());
+
+        ObservationRecord reloaded = records.get(0);
+        assertEquals("Wrong remote socket!", record.getRemoteSocket(), reloaded.getRemoteSocket());
+        assertEquals("Wrong token!", record.getToken(), reloaded.getToken());
+        assertEquals("Wrong path!", "/test", reloaded.getUriPath());
+        assertEquals("Wrong content format!", ContentFormat.TEXT_PLAIN_UTF8, reloaded.getContentFormat());
+        assertEquals("Wrong block size!", BlockSize.SIZE_64, reloaded.getBlock2Size());
+        assertEquals("Wrong sequence number!", 4711, reloaded.getSequenceNumber());
+    }
+
+    @Test
+    public void testRemovedRecordIsNotReloaded() throws Exception {
+        this.store.add(createRecord(1));
+        this.store.add(createRecord(2));
+        this.store.remove(createRecord(1).getRemoteSocket(), createRecord(1).getToken());
+
+        List<ObservationRecord> records = reload();
+        assertEquals("Wrong number of records!", 1, records.size());
+        assertEquals("Wrong token!", createRecord(2).getToken(), records.get(0).getToken());
+    }
+
+    @Test
+    public void testFileIsCompactedWhenFull() throws Exception {
+        // every record takes about 40 bytes, i.e. the file is full after a few records
+        for (int i = 0; i < 100; i++) {
+            this.store.add(createRecord(i));
+            this.store.remove(createRecord(i).getRemoteSocket(), createRecord(i).getToken());
+        }
+        this.store.add(createRecord(100));
+
+        assertEquals("File was not supposed to grow!", 256, this.store.getFileSize());
+        assertFalse("Temporary file was not supposed to remain!", new File(this.file.getPath() + ".tmp").exists());
+        assertEquals("Wrong number of records!", 1, reload().size());
+    }
+
+    @Test
+    public void testFileGrowsWithRunningObservations() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            this.store.add(createRecord(i));
+        }
+
+        assertTrue("File did not grow!", this.store.getFileSize() > 256);
+        assertEquals("Wrong number of records!", 100, reload().size());
+    }
+
+
+    private List<ObservationRecord> reload() throws Exception {
+        this.store.close();
+        this.store = new MappedObservationStore(this.file, 256);
+        return new ArrayList<>(this.store.load());
+    }
+
+    private static ObservationRecord createRecord(int number) {
+        InetSocketAddress remoteSocket = new InetSocketAddress("127.0.0.1", 5683 + number);
+        Token token = new Token(new byte[]{1, 2, (byte) number});
+        return new ObservationRecord(remoteSocket, token, "/test", ContentFormat.TEXT_PLAIN_UTF8, BlockSize.SIZE_64, 4711);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.observing;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ObserverRegistry}, i.e. the grouping by content format, the immutability of snapshots and
+ * concurrent modifications.
+ *
+ * @author Oliver Kleine
+ */
+public class ObserverRegistryTest extends AbstractCoapTest {
+
+    private ObserverRegistry registry;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createRegistry() {
+        this.registry = new ObserverRegistry();
+    }
+
+    private static ObservationParams createParams(int port, long contentFormat) {
+        InetSocketAddress remoteSocket = new InetSocketAddress("localhost", port);
+        Token token = new Token(new byte[]{(byte) (port >>> 8), (byte) port});
+        return new ObservationParams(null, remoteSocket, token, contentFormat, BlockSize.UNBOUND);
+    }
+
+    @Test
+    public void testObservationsAreGroupedByContentFormat() {
+        this.registry.add(createParams(1, ContentFormat.TEXT_PLAIN_UTF8));
+        this.registry.add(createParams(2, ContentFormat.APP_XML));
+        this.registry.add(createParams(3, ContentFormat.TEXT_PLAIN_UTF8));
+
+        ObserverRegistry.Group[] groups = this.registry.getGroups();
+        assertEquals("Wrong number of groups!", 2, groups.length);
+        assertEquals("Wrong content format!", ContentFormat.TEXT_PLAIN_UTF8, groups[0].getContentFormat());
+        assertEquals("Wrong group size!", 2, groups[0].size());
+        assertEquals("Wrong group size!", 1, groups[1].size());
+        assertEquals("Wrong number of observations!", 3, this.registry.size());
+    }
+
+    @Test
+    public void testEmptyGroupsAreRemoved() {
+        ObservationParams params = createParams(1, ContentFormat.TEXT_PLAIN_UTF8);
+        this.registry.add(params);
+
+        assertTrue("Observation was not removed!", this.registry.remove(params));
+        assertFalse("Observation was removed twice!", this.registry.remove(params));
+        assertEquals("Wrong number of groups!", 0, this.registry.getGroups().length);
+    }
+
+    @Test
+    public void testSnapshotsAreNotModified() {
+        ObservationParams params = createParams(1, ContentFormat.TEXT_PLAIN_UTF8);
+        this.registry.add(params);
+        ObserverRegistry.Group[] snapshot = this.registry.getGroups();
+
+        this.registry.add(createParams(2, ContentFormat.TEXT_PLAIN_UTF8));
+        this.registry.remove(params);
+
+        assertEquals("Snapshot was modified!", 1, snapshot[0].size());
+        assertTrue("Snapshot was modified!", snapshot[0].get(0) == params);
+    }
+
+    @Test
+    public void testConcurrentModifications() throws Exception {
+        final int threads = 8;
+        final int observationsPerThread = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * observationsPerThread;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        List<ObservationParams> added = new ArrayList<>();
+                        for (int i = 0; i < observationsPerThread; i++) {
+                            ObservationParams params = createParams(offset + i, offset % 3);
+                            registry.add(params);
+                            added.add(params);
+                        }
+                        // remove every second observation
+                        for (int i = 0; i < added.size(); i += 2) {
+                            registry.remove(added.get(i));
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        finished.await();
+
+        assertEquals("Wrong number of observations!", threads * observationsPerThread / 2, this.registry.size());
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.reliability.outbound;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link CongestionController}, i.e. the limitation of outstanding exchanges per remote endpoint (NSTART),
+ * the RTO estimation from measured round trip times and the removal of idle remote endpoints.
+ *
+ * @author Oliver Kleine
+ */
+public class CongestionControllerTest extends AbstractCoapTest {
+
+    private static final InetSocketAddress PEER_1 = new InetSocketAddress("127.0.0.1", 5683);
+    private static final InetSocketAddress PEER_2 = new InetSocketAddress("127.0.0.2", 5683);
+
+    private ScheduledExecutorService executor;
+    private CongestionController congestionController;
+    private List<Integer> transmissions;
+    private List<Thread> threads;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createCongestionController() {
+        this.executor = new ScheduledThreadPoolExecutor(1);
+        this.congestionController = new CongestionController(this.executor, 2);
+        this.transmissions = Collections.synchronizedList(new ArrayList<Integer>());
+        this.threads = Collections.synchronizedList(new ArrayList<Thread>());
+    }
+
+    @After
+    public void shutdownExecutor() {
+        this.congestionController.shutdown();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testExchangesBeyondNstartAreQueued() {
+        assertTrue("First exchange was not started!", acquire(PEER_1, 1));
+        assertTrue("Second exchange was not started!", acquire(PEER_1, 2));
+        assertFalse("Third exchange was not queued!", acquire(PEER_1, 3));
+        assertFalse("Fourth exchange was not queued!", acquire(PEER_1, 4));
+
+        assertEquals("Wrong number of outstanding exchanges!", 2, this.congestionController.getOutstanding(PEER_1));
+        assertEquals("Wrong number of queued exchanges!", 2, this.congestionController.getQueued(PEER_1));
+        assertTrue("Exchange with other peer was not started!", acquire(PEER_2, 1));
+    }
+
+    @Test
+    public void testQueuedExchangesAreStartedInOrderOnRelease() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            acquire(PEER_1, i);
+        }
+
+        this.congestionController.release(PEER_1, createToken(2));
+        this.congestionController.release(PEER_1, createToken(1));
+        awaitTransmissions();
+
+        assertEquals("Wrong transmissions!", 2, this.transmissions.size());
+        assertEquals("Wrong transmission order!", 3, (int) this.transmissions.get(0));
+        assertEquals("Wrong transmission order!", 4, (int) this.transmissions.get(1));
+        assertEquals("Wrong number of outstanding exchanges!", 2, this.congestionController.getOutstanding(PEER_1));
+    }
+
+    @Test
+    public void testUnknownOrRepeatedReleaseHasNoEffect() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            acquire(PEER_1, i);
+        }
+
+        this.congestionController.release(PEER_1, createToken(1));
+        this.congestionController.release(PEER_1, createToken(1));
+        this.congestionController.release(PEER_1, createToken(99));
+        awaitTransmissions();
+
+        assertEquals("Wrong transmissions!", 1, this.transmissions.size());
+        assertEquals("Wrong number of outstanding exchanges!", 2, this.congestionController.getOutstanding(PEER_1));
+    }
+
+    @Test
+    public void testQueuedTransmissionIsNotRunByReleasingThread() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            acquire(PEER_1, i);
+        }
+
+        this.congestionController.release(PEER_1, createToken(1));
+        awaitTransmissions();
+
+        assertEquals("Wrong transmissions!", 1, this.transmissions.size());
+        assertNotSame("Transmission was run by releasing thread!", Thread.currentThread(), this.threads.get(0));
+    }
+
+    @Test
+    public void testCancelledTransmissionsAreSkipped() throws Exception {
+        acquire(PEER_1, 1);
+        acquire(PEER_1, 2);
+        for (int i = 0; i < 100000; i++) {
+            this.congestionController.acquire(PEER_1, createToken(3), new TestTransmission(3, true));
+        }
+        acquire(PEER_1, 4);
+
+        this.congestionController.release(PEER_1, createToken(1));
+        awaitTransmissions();
+
+        assertEquals("Wrong transmissions!", 1, this.transmissions.size());
+        assertEquals("Wrong transmission!", 4, (int) this.transmissions.get(0));
+        assertEquals("Wrong number of queued exchanges!", 0, this.congestionController.getQueued(PEER_1));
+    }
+
+    @Test
+    public void testRTODecreasesWithShortRoundTripTimes() {
+        assertEquals("Wrong initial RTO!", CongestionController.INITIAL_RTO_MILLIS,
+                this.congestionController.getRTO(PEER_1));
+
+        for (int i = 0; i < 20; i++) {
+            this.congestionController.updateRTO(PEER_1, 100, 0);
+        }
+
+        long rto = this.congestionController.getRTO(PEER_1);
+        assertTrue("RTO too large (" + rto + " ms)!", rto < 1000);
+        assertEquals("RTO of other peer changed!", CongestionController.INITIAL_RTO_MILLIS,
+                this.congestionController.getRTO(PEER_2));
+    }
+
+    @Test
+    public void testMeasurementsWithMoreThanTwoRetransmissionsAreIgnored() {
+        this.congestionController.updateRTO(PEER_1, 10000, 3);
+        assertEquals("RTO changed!", CongestionController.INITIAL_RTO_MILLIS, this.congestionController.getRTO(PEER_1));
+
+        this.congestionController.updateRTO(PEER_1, 10000, 2);
+        assertTrue("RTO did not change!", this.congestionController.getRTO(PEER_1) > 2000);
+    }
+
+    @Test
+    public void testSmallRTOLeadsToLargeBackoffFactor() {
+        for (int i = 0; i < 20; i++) {
+            this.congestionController.updateRTO(PEER_1, 100, 0);
+        }
+
+        long rto = this.congestionController.getRTO(PEER_1);
+        long[] delays = this.congestionController.provideRetransmissionDelays(PEER_1);
+        assertEquals("Wrong number of delays!", AbstractOutboundReliabilityHandler.MAX_RETRANSMISSIONS + 1,
+                delays.length);
+        assertTrue("Delay too short!", delays[0] >= rto);
+        assertTrue("Delay too long!", delays[0] <= rto * AbstractOutboundReliabilityHandler.ACK_RANDOM_FACTOR);
+        for (int i = 1; i < delays.length; i++) {
+            assertEquals("Wrong backoff factor!", 3.0, (double) delays[i] / delays[i - 1], 0.05);
+        }
+    }
+
+
+    @Test
+    public void testRTOAndDelaysAreLimited() {
+        for (int i = 0; i < 20; i++) {
+            this.congestionController.updateRTO(PEER_1, 300000, 2);
+        }
+        assertEquals("Wrong RTO!", CongestionController.MAX_RTO_MILLIS, this.congestionController.getRTO(PEER_1));
+
+        long sum = 0;
+        for (long delay : this.congestionController.provideRetransmissionDelays(PEER_1)) {
+            sum += delay;
+        }
+        assertTrue("Delays too long (" + sum + " ms)!",
+                sum <= AbstractOutboundReliabilityHandler.MAX_TRANSMIT_WAIT_MILLIS);
+    }
+
+    @Test
+    public void testIdlePeersAreRemoved() throws Exception {
+        this.congestionController = new CongestionController(this.executor, 2, 100, 50);
+        acquire(PEER_1, 1);
+        this.congestionController.release(PEER_1, createToken(1));
+        acquire(PEER_2, 1);
+        assertEquals("Wrong number of peers!", 2, this.congestionController.getPeerCount());
+
+        Thread.sleep(500);
+        assertEquals("Wrong number of peers!", 1, this.congestionController.getPeerCount());
+        assertEquals("Outstanding exchange was removed!", 1, this.congestionController.getOutstanding(PEER_2));
+    }
+
+
+    private boolean acquire(InetSocketAddress remoteSocket, int number) {
+        return this.congestionController.acquire(remoteSocket, createToken(number), new TestTransmission(number, false));
+    }
+
+    private void awaitTransmissions() throws Exception {
+        // the executor has a single thread, i.e. the transmissions were run before this (no-op) task
+        this.executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                //nothing to do...
+            }
+        }).get();
+    }
+
+    private static Token createToken(int number) {
+        return new Token(new byte[]{(byte) number});
+    }
+
+
+    private class TestTransmission implements CongestionController.Transmission {
+
+        private final int number;
+        private final boolean cancelled;
+
+        private TestTransmission(int number, boolean cancelled) {
+            this.number = number;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public void run() {
+            transmissions.add(this.number);
+            threads.add(Thread.currentThread());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.communication.reliability.outbound;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.communication.dispatching.Token;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the allocation and (lazy and periodic) release of message IDs by the {@link MessageIDFactory}
+ *
+ * @author Oliver Kleine
+ */
+public class MessageIDFactoryTest extends AbstractCoapTest {
+
+    private static final InetSocketAddress REMOTE_SOCKET_1 = new InetSocketAddress("localhost", 5683);
+    private static final InetSocketAddress REMOTE_SOCKET_2 = new InetSocketAddress("localhost", 5684);
+    private static final Token TOKEN = new Token(new byte[]{1, 2, 3});
+
+    private ScheduledThreadPoolExecutor executor;
+    private List<MessageIDFactory.MessageIDRelease> releases;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createExecutor() {
+        this.executor = new ScheduledThreadPoolExecutor(1);
+        this.releases = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    private MessageIDFactory createFactory(long exchangeLifetimeMillis, long sweepIntervalMillis) {
+        MessageIDFactory factory = new MessageIDFactory(executor, exchangeLifetimeMillis, sweepIntervalMillis);
+        factory.addObserver(new Observer() {
+            @Override
+            public void update(Observable factory, Object release) {
+                releases.add((MessageIDFactory.MessageIDRelease) release);
+            }
+        });
+        return factory;
+    }
+
+    @Test
+    public void testConsecutiveMessageIDs() {
+        MessageIDFactory factory = createFactory(60000, 60000);
+        int first = factory.getNextMessageID(REMOTE_SOCKET_1, TOKEN);
+        for (int i = 1; i < 100; i++) {
+            assertEquals((first + i) % MessageIDFactory.MODULUS, factory.getNextMessageID(REMOTE_SOCKET_1, TOKEN));
+        }
+    }
+
+    @Test
+    public void testAllMessageIDsInUse() {
+        MessageIDFactory factory = createFactory(60000, 60000);
+        Set<Integer> messageIDs = new HashSet<>();
+        for (int i = 0; i < MessageIDFactory.MODULUS; i++) {
+            messageIDs.add(factory.getNextMessageID(REMOTE_SOCKET_1, TOKEN));
+        }
+
+        assertEquals("Duplicate message IDs", MessageIDFactory.MODULUS, messageIDs.size());
+        assertEquals(CoapMessage.UNDEFINED_MESSAGE_ID, factory.getNextMessageID(REMOTE_SOCKET_1, TOKEN));
+        assertNotEquals(CoapMessage.UNDEFINED_MESSAGE_ID, factory.getNextMessageID(REMOTE_SOCKET_2, TOKEN));
+    }
+
+    @Test
+    public void testLazyRelease() throws Exception {
+        MessageIDFactory factory = createFactory(100, 60000);
+        for (int i = 0; i < MessageIDFactory.MODULUS; i++) {
+            factory.getNextMessageID(REMOTE_SOCKET_1, TOKEN);
+        }
+        Thread.sleep(200);
+
+        assertNotEquals(CoapMessage.UNDEFINED_MESSAGE_ID, factory.getNextMessageID(REMOTE_SOCKET_1, TOKEN));
+        assertEquals("Wrong number of released message IDs", MessageIDFactory.MODULUS, releases.size());
+    }
+
+    @Test
+    public void testPeriodicRelease() throws Exception {
+        MessageIDFactory factory = createFactory(100, 50);
+        int messageID = factory.getNextMessageID(REMOTE_SOCKET_1, TOKEN);
+        Thread.sleep(500);
+
+        assertEquals("Wrong number of released message IDs", 1, releases.size());
+        MessageIDFactory.MessageIDRelease release = releases.get(0);
+        assertEquals(REMOTE_SOCKET_1, release.getRemoteSocket());
+        assertEquals(messageID, release.getMessageID());
+        assertEquals(TOKEN, release.getToken());
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2016, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.ncoap.message;
+
+import de.uzl.itm.ncoap.AbstractCoapTest;
+import de.uzl.itm.ncoap.message.options.*;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static de.uzl.itm.ncoap.message.options.Option.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link OptionContainer} backing the options of {@link CoapMessage}s
+ *
+ * @author Oliver Kleine
+ */
+public class OptionContainerTest extends AbstractCoapTest {
+
+    private OptionContainer options;
+
+    @Override
+    public void setupLogging() throws Exception {
+        //nothing to do...
+    }
+
+    @Before
+    public void createOptions() throws Exception {
+        this.options = new OptionContainer();
+        this.options.add(URI_QUERY, new StringOptionValue(URI_QUERY, "q=1"));
+        this.options.add(URI_PATH, new StringOptionValue(URI_PATH, "a"));
+        this.options.add(URI_HOST, new StringOptionValue(URI_HOST, "example.org"));
+        this.options.add(URI_PATH, new StringOptionValue(URI_PATH, "b"));
+    }
+
+    @Test
+    public void testOptionsAreSortedByNumber() {
+        assertEquals(4, options.size());
+        assertEquals(URI_HOST, options.getNumber(0));
+        assertEquals(URI_PATH, options.getNumber(1));
+        assertEquals(URI_PATH, options.getNumber(2));
+        assertEquals(URI_QUERY, options.getNumber(3));
+    }
+
+    @Test
+    public void testValuesOfSameNumberKeepOrder() {
+        Iterator<OptionValue> values = options.get(URI_PATH).iterator();
+        assertEquals("a", values.next().getDecodedValue());
+        assertEquals("b", values.next().getDecodedValue());
+        assertFalse(values.hasNext());
+    }
+
+    @Test
+    public void testEqualValuesAreContainedOnce() {
+        options.add(URI_PATH, new StringOptionValue(URI_PATH, "a"));
+        assertEquals(2, options.get(URI_PATH).size());
+    }
+
+    @Test
+    public void testRemove() {
+        assertEquals(2, options.remove(URI_PATH));
+        assertFalse(options.contains(URI_PATH));
+        assertEquals(2, options.size());
+        assertEquals(URI_QUERY, options.getNumber(1));
+        assertEquals(0, options.get(URI_PATH).size());
+    }
+
+    @Test
+    public void testEncodedValuesAreDecodedOnAccess() {
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(new byte[]{'x', 'y', 'z', 0x00, 0x28});
+        options.add(CONTENT_FORMAT, buffer, 3, 2);
+        options.add(URI_PATH, buffer, 0, 3);
+
+        assertEquals(6, options.size());
+        assertEquals("xyz", options.get(URI_PATH).toArray(new OptionValue[3])[2].getDecodedValue());
+        assertEquals(40L, options.get(CONTENT_FORMAT).iterator().next().getDecodedValue());
+        assertEquals(CONTENT_FORMAT, options.getNumber(4));
+    }
+
+    @Test
+    public void testUintValues() {
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(new byte[]{0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+        options.add(BLOCK_2, buffer, 1, 3);
+        options.add(MAX_AGE, new UintOptionValue(MAX_AGE, new byte[]{0x00, 0x01, 0x00}));
+
+        assertEquals(0xFFFFFFL, options.getUint(BLOCK_2));
+        assertEquals(0xFFFFFFL, ((UintOptionValue) options.get(BLOCK_2).iterator().next()).getLongValue());
+        assertEquals(256L, options.getUint(MAX_AGE));
+        assertEquals(UintOptionValue.UNDEFINED, options.getUint(SIZE_2));
+    }
+}